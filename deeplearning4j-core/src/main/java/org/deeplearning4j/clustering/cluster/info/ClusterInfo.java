@@ -27,6 +27,7 @@ public class ClusterInfo {
 	private double maxPointDistanceFromCenter;
 	private double pointDistanceFromCenterVariance;
 	private double totalPointDistanceFromCenter;
+	private int pointCount = -1;
 	private Map<String, Double>	pointDistancesFromCenter = new ConcurrentHashMap<>();
 
 	public ClusterInfo() {
@@ -108,6 +109,18 @@ public class ClusterInfo {
 		this.pointDistanceFromCenterVariance = pointDistanceFromCenterVariance;
 	}
 
+	/**
+	 * @return Number of points in the cluster: the explicitly set count if any (for engines that do not keep per
+	 *         point distances), otherwise the number of point distances
+	 */
+	public int getPointCount() {
+		return pointCount >= 0 ? pointCount : pointDistancesFromCenter.size();
+	}
+
+	public void setPointCount(int pointCount) {
+		this.pointCount = pointCount;
+	}
+
 	public double getMaxPointDistanceFromCenter() {
 		return maxPointDistanceFromCenter;
 	}
@@ -94,7 +94,7 @@ public class ClusterSetInfo {
 	public int getPointsCount() {
 		int count = 0;
 		for(ClusterInfo clusterInfo : clustersInfos.values())
-			count += clusterInfo.getPointDistancesFromCenter().size();
+			count += clusterInfo.getPointCount();
 		return count;
 	}
 
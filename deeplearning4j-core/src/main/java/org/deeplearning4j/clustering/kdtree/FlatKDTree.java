@@ -0,0 +1,363 @@
+package org.deeplearning4j.clustering.kdtree;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Balanced, bulk loaded KD tree over the rows of a [n, d] matrix, for exact (euclidean) k-nearest neighbour queries.
+ * <p>
+ * Unlike {@link KDTree}, which inserts one point at a time into a tree of node objects, the points are median
+ * partitioned once, and the tree is implicit in the order of the points: the node for the range [lo, hi) holds
+ * the point at mid = (lo + hi) / 2, points below it on the split dimension in [lo, mid) and the others in
+ * (mid, hi). Ranges of at most {@link #LEAF_SIZE} points are leaves, and are scanned linearly. Points are copied in
+ * tree order into one flat array, so that nearby points are also nearby in memory.
+ * <p>
+ * The tree is immutable once built: any number of threads can query it concurrently.
+ * {@link #knn(INDArray, int, int[], double[])} answers a batch of queries in parallel.
+ */
+public class FlatKDTree {
+    /** Maximum number of points in a leaf */
+    public static final int LEAF_SIZE = 8;
+    private static final int PARALLEL_BUILD_THRESHOLD = 10000;
+    private static final int QUERIES_PER_TASK = 64;
+
+    private final int numPoints;
+    private final int dims;
+    private final double[] points;
+    private final int[] index;
+    private final int[] splitDim;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param points Points, one per row
+     * @param pool   Pool to build the tree and answer batched queries in, or null to use the calling thread
+     */
+    public FlatKDTree(INDArray points, ForkJoinPool pool) {
+        this(points.dup('c').data().asDouble(), points.rows(), points.columns(), pool);
+    }
+
+    /**
+     * @param data      Points, row-major: point i is data[i * dims] to data[(i + 1) * dims - 1]. Not modified
+     * @param numPoints Number of points
+     * @param dims      Number of dimensions of each point
+     * @param pool      Pool to build the tree and answer batched queries in, or null to use the calling thread
+     */
+    public FlatKDTree(double[] data, int numPoints, int dims, ForkJoinPool pool) {
+        if (data.length < (long) numPoints * dims)
+            throw new IllegalArgumentException("Data array is too small: " + data.length + " < " + numPoints + " x " + dims);
+        this.numPoints = numPoints;
+        this.dims = dims;
+        this.pool = pool;
+        this.points = new double[numPoints * dims];
+        System.arraycopy(data, 0, points, 0, numPoints * dims);
+        this.index = new int[numPoints];
+        for (int i = 0; i < numPoints; i++)
+            index[i] = i;
+        this.splitDim = new int[numPoints];
+
+        BuildTask root = new BuildTask(0, numPoints);
+        if (pool == null)
+            root.compute();
+        else
+            pool.invoke(root);
+    }
+
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    public int getDims() {
+        return dims;
+    }
+
+    private class BuildTask extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+
+        private BuildTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            build(lo, hi);
+        }
+
+        private void build(int lo, int hi) {
+            while (hi - lo > LEAF_SIZE) {
+                //Split on the dimension with the largest spread
+                int dim = 0;
+                double maxSpread = -1.0;
+                for (int d = 0; d < dims; d++) {
+                    double min = Double.POSITIVE_INFINITY;
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (int i = lo; i < hi; i++) {
+                        double v = points[i * dims + d];
+                        if (v < min)
+                            min = v;
+                        if (v > max)
+                            max = v;
+                    }
+                    if (max - min > maxSpread) {
+                        maxSpread = max - min;
+                        dim = d;
+                    }
+                }
+
+                int mid = (lo + hi) >>> 1;
+                select(lo, hi - 1, mid, dim);
+                splitDim[mid] = dim;
+
+                if (hi - mid > PARALLEL_BUILD_THRESHOLD && inForkJoinPool()) {
+                    BuildTask right = new BuildTask(mid + 1, hi);
+                    right.fork();
+                    build(lo, mid);
+                    right.join();
+                    return;
+                }
+                build(mid + 1, hi);
+                hi = mid;
+            }
+        }
+
+        //Quickselect on positions [left, right], by coordinate dim. Partitions three ways, so that points with the
+        //same coordinate as the pivot are done with at once: this stays linear with many duplicate coordinates
+        private void select(int left, int right, int k, int dim) {
+            while (right > left) {
+                double pivot = points[((left + right) >>> 1) * dims + dim];
+                //[left, lt) below the pivot, [lt, gt] equal to it, (gt, right] above it
+                int lt = left;
+                int gt = right;
+                int i = left;
+                while (i <= gt) {
+                    double v = points[i * dims + dim];
+                    if (v < pivot)
+                        swap(lt++, i++);
+                    else if (v > pivot)
+                        swap(i, gt--);
+                    else
+                        i++;
+                }
+                if (k < lt)
+                    right = lt - 1;
+                else if (k > gt)
+                    left = gt + 1;
+                else
+                    return;
+            }
+        }
+
+        private void swap(int i, int j) {
+            if (i == j)
+                return;
+            int t = index[i];
+            index[i] = index[j];
+            index[j] = t;
+            int iOffset = i * dims;
+            int jOffset = j * dims;
+            for (int d = 0; d < dims; d++) {
+                double v = points[iOffset + d];
+                points[iOffset + d] = points[jOffset + d];
+                points[jOffset + d] = v;
+            }
+        }
+    }
+
+    /**
+     * Find the k nearest neighbours of a point
+     *
+     * @param query     Query point (length dims)
+     * @param k         Number of neighbours
+     * @param indexes   Output: row indexes of the neighbours, nearest first (length at least k)
+     * @param distances Output: euclidean distances to the neighbours (length at least k)
+     * @return Number of neighbours found: min(k, number of points)
+     */
+    public int knn(double[] query, int k, int[] indexes, double[] distances) {
+        if (query.length != dims)
+            throw new IllegalArgumentException("Query has " + query.length + " dimensions; expected " + dims);
+        return knn(query, 0, k, indexes, distances, 0);
+    }
+
+    /**
+     * @return Row index of the nearest point to the query, or -1 if the tree is empty
+     */
+    public int nn(double[] query) {
+        int[] idx = new int[1];
+        double[] dist = new double[1];
+        return knn(query, 1, idx, dist) == 0 ? -1 : idx[0];
+    }
+
+    /**
+     * Find the k nearest neighbours of each row of a matrix, in parallel
+     *
+     * @param queries   Query points, one per row
+     * @param k         Number of neighbours
+     * @param indexes   Output, [numQueries * k]: row indexes of the neighbours of query q, nearest first, at
+     *                  q * k to q * k + k - 1. Unused entries (when there are fewer than k points) are set to -1
+     * @param distances Output, [numQueries * k]: euclidean distances; unused entries are set to infinity
+     */
+    public void knn(INDArray queries, int k, int[] indexes, double[] distances) {
+        if (queries.columns() != dims)
+            throw new IllegalArgumentException("Queries have " + queries.columns() + " columns; expected " + dims);
+        knn(queries.dup('c').data().asDouble(), queries.rows(), k, indexes, distances);
+    }
+
+    /**
+     * As {@link #knn(INDArray, int, int[], double[])}, for query points in a flat row-major array
+     */
+    public void knn(double[] queries, int numQueries, int k, int[] indexes, double[] distances) {
+        if (indexes.length < (long) numQueries * k || distances.length < (long) numQueries * k)
+            throw new IllegalArgumentException("Output arrays must have length at least numQueries * k");
+        QueryTask task = new QueryTask(queries, 0, numQueries, k, indexes, distances);
+        if (pool == null || numQueries <= QUERIES_PER_TASK)
+            task.compute();
+        else
+            pool.invoke(task);
+    }
+
+    private class QueryTask extends RecursiveAction {
+        private final double[] queries;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final int[] indexes;
+        private final double[] distances;
+
+        private QueryTask(double[] queries, int from, int to, int k, int[] indexes, double[] distances) {
+            this.queries = queries;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.indexes = indexes;
+            this.distances = distances;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > QUERIES_PER_TASK && inForkJoinPool()) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new QueryTask(queries, from, mid, k, indexes, distances),
+                                new QueryTask(queries, mid, to, k, indexes, distances));
+                return;
+            }
+            for (int q = from; q < to; q++) {
+                int found = knn(queries, q * dims, k, indexes, distances, q * k);
+                for (int j = found; j < k; j++) {
+                    indexes[q * k + j] = -1;
+                    distances[q * k + j] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+    }
+
+    private int knn(double[] query, int queryOffset, int k, int[] indexes, double[] distances, int outOffset) {
+        if (k <= 0 || numPoints == 0)
+            return 0;
+        //Max-heap of squared distances, in the output arrays
+        int[] size = new int[1];
+        search(0, numPoints, query, queryOffset, k, indexes, distances, outOffset, size);
+
+        int n = size[0];
+        for (int end = n - 1; end > 0; end--) {
+            swap(indexes, distances, outOffset, outOffset + end);
+            siftDown(indexes, distances, outOffset, 0, end);
+        }
+        for (int j = 0; j < n; j++)
+            distances[outOffset + j] = Math.sqrt(distances[outOffset + j]);
+        return n;
+    }
+
+    private void search(int lo, int hi, double[] query, int queryOffset, int k, int[] heapIdx, double[] heapDist,
+                        int heapOffset, int[] size) {
+        while (hi - lo > LEAF_SIZE) {
+            int mid = (lo + hi) >>> 1;
+            offer(mid, query, queryOffset, k, heapIdx, heapDist, heapOffset, size);
+
+            double diff = query[queryOffset + splitDim[mid]] - points[mid * dims + splitDim[mid]];
+            int nearLo, nearHi, farLo, farHi;
+            if (diff < 0) {
+                nearLo = lo;
+                nearHi = mid;
+                farLo = mid + 1;
+                farHi = hi;
+            } else {
+                nearLo = mid + 1;
+                nearHi = hi;
+                farLo = lo;
+                farHi = mid;
+            }
+            search(nearLo, nearHi, query, queryOffset, k, heapIdx, heapDist, heapOffset, size);
+            //The far side can only contain closer points if the splitting plane is closer than the current k-th point
+            if (size[0] == k && diff * diff >= heapDist[heapOffset])
+                return;
+            lo = farLo;
+            hi = farHi;
+        }
+        for (int i = lo; i < hi; i++)
+            offer(i, query, queryOffset, k, heapIdx, heapDist, heapOffset, size);
+    }
+
+    private void offer(int position, double[] query, int queryOffset, int k, int[] heapIdx, double[] heapDist,
+                       int heapOffset, int[] size) {
+        int pOffset = position * dims;
+        int n = size[0];
+        double bound = (n < k ? Double.POSITIVE_INFINITY : heapDist[heapOffset]);
+        double dist = 0.0;
+        for (int d = 0; d < dims; d++) {
+            double diff = query[queryOffset + d] - points[pOffset + d];
+            dist += diff * diff;
+            if (dist >= bound)
+                return;
+        }
+
+        if (n < k) {
+            int i = n;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapDist[heapOffset + parent] >= dist)
+                    break;
+                heapIdx[heapOffset + i] = heapIdx[heapOffset + parent];
+                heapDist[heapOffset + i] = heapDist[heapOffset + parent];
+                i = parent;
+            }
+            heapIdx[heapOffset + i] = index[position];
+            heapDist[heapOffset + i] = dist;
+            size[0] = n + 1;
+        } else {
+            heapIdx[heapOffset] = index[position];
+            heapDist[heapOffset] = dist;
+            siftDown(heapIdx, heapDist, heapOffset, 0, k);
+        }
+    }
+
+    private static void siftDown(int[] heapIdx, double[] heapDist, int offset, int i, int n) {
+        int idx = heapIdx[offset + i];
+        double dist = heapDist[offset + i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n)
+                break;
+            if (child + 1 < n && heapDist[offset + child + 1] > heapDist[offset + child])
+                child++;
+            if (heapDist[offset + child] <= dist)
+                break;
+            heapIdx[offset + i] = heapIdx[offset + child];
+            heapDist[offset + i] = heapDist[offset + child];
+            i = child;
+        }
+        heapIdx[offset + i] = idx;
+        heapDist[offset + i] = dist;
+    }
+
+    private static void swap(int[] idx, double[] dist, int i, int j) {
+        int t = idx[i];
+        idx[i] = idx[j];
+        idx[j] = t;
+        double d = dist[i];
+        dist[i] = dist[j];
+        dist[j] = d;
+    }
+}
@@ -0,0 +1,886 @@
+package org.deeplearning4j.clustering.kmeans;
+
+import org.deeplearning4j.clustering.algorithm.condition.ClusteringAlgorithmCondition;
+import org.deeplearning4j.clustering.algorithm.condition.FixedIterationCountCondition;
+import org.deeplearning4j.clustering.algorithm.iteration.IterationHistory;
+import org.deeplearning4j.clustering.algorithm.iteration.IterationInfo;
+import org.deeplearning4j.clustering.cluster.info.ClusterInfo;
+import org.deeplearning4j.clustering.cluster.info.ClusterSetInfo;
+import org.deeplearning4j.util.MultiThreadUtils;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * K-means clustering (euclidean distance) over a single [n, d] matrix.
+ * <p>
+ * Unlike {@link KMeansClustering}, points are not wrapped in individual {@link org.deeplearning4j.clustering.cluster.Point}
+ * objects: the data is copied once into a flat array, and nearest center assignment computes blocks of squared
+ * distances as ||x||^2 - 2 x.c + ||c||^2, for chunks of rows in parallel. Supported features:
+ * <ul>
+ *     <li>Seeded initialization: k-means++ (default) or random points</li>
+ *     <li>Triangle inequality pruning of distance calculations: Hamerly (default; one lower bound per point) or
+ *     Elkan (one lower bound per point and cluster: fewer distance calculations, but n x k extra memory)</li>
+ *     <li>Mini-batch k-means: {@link #partialFit(INDArray)} for streaming data, or {@link Builder#batchSize(int)}
+ *     to fit random mini-batches of a large data set</li>
+ * </ul>
+ * Termination is controlled by a {@link ClusteringAlgorithmCondition}, evaluated against the {@link IterationHistory}
+ * after each iteration (for example {@link org.deeplearning4j.clustering.algorithm.condition.ConvergenceCondition}),
+ * and by the maximum number of iterations. Full batch fitting also stops once no point changes cluster.
+ */
+public class MatrixKMeansClustering implements Serializable {
+
+	private static final long serialVersionUID = -2297455327187618409L;
+	private static final Logger log = LoggerFactory.getLogger(MatrixKMeansClustering.class);
+
+	/** Number of rows per block of distance calculations */
+	private static final int BLOCK_SIZE = 64;
+	/** Minimum number of rows per parallel task */
+	private static final int MIN_ROWS_PER_TASK = 256;
+
+	public enum Initialization {
+		RANDOM, KMEANS_PLUS_PLUS
+	}
+
+	public enum Pruning {
+		NONE, HAMERLY, ELKAN
+	}
+
+	private final int clusterCount;
+	private final int maxIterations;
+	private final ClusteringAlgorithmCondition terminationCondition;
+	private final Initialization initialization;
+	private final Pruning pruning;
+	private final int batchSize;
+	private final int numThreads;
+	private final Random random;
+	private transient ExecutorService exec;
+
+	private int dims;
+	private double[] centers;
+	private double[] centerNorms;
+	private long[] centerCounts;
+	private int[] assignments;
+	private double inertia;
+	private IterationHistory iterationHistory;
+
+	protected MatrixKMeansClustering(Builder builder) {
+		if (builder.clusterCount < 1)
+			throw new IllegalArgumentException("Invalid cluster count: " + builder.clusterCount);
+		this.clusterCount = builder.clusterCount;
+		this.maxIterations = builder.maxIterations;
+		this.terminationCondition = (builder.terminationCondition != null ? builder.terminationCondition
+				: FixedIterationCountCondition.iterationCountGreaterThan(builder.maxIterations));
+		this.initialization = builder.initialization;
+		this.pruning = builder.pruning;
+		this.batchSize = builder.batchSize;
+		this.numThreads = Math.max(1, builder.numThreads);
+		this.random = new Random(builder.seed);
+	}
+
+	/**
+	 * Cluster the rows of the given matrix
+	 *
+	 * @param data Data, one point per row
+	 * @return Cluster index of each row
+	 */
+	public int[] fit(INDArray data) {
+		double[] x = toArray(data);
+		int n = data.rows();
+		if (n < clusterCount)
+			throw new IllegalArgumentException("Cannot create " + clusterCount + " clusters from " + n + " points");
+		dims = data.columns();
+		double[] xNorms = rowNorms(x, n);
+		iterationHistory = new IterationHistory();
+
+		initCenters(x, xNorms, n);
+		if (batchSize > 0 && batchSize < n) {
+			fitMiniBatches(x, xNorms, n);
+			assignments = new int[n];
+			inertia = assignAll(x, xNorms, n, assignments);
+		} else {
+			lloyd(x, xNorms, n);
+		}
+		return assignments;
+	}
+
+	/**
+	 * Mini-batch k-means update from one batch of (streaming) data. The first batch also initializes the cluster
+	 * centers, and must contain at least as many points as clusters.
+	 *
+	 * @param batch Batch of data, one point per row
+	 * @return Cluster index of each row of the batch, before the update
+	 */
+	public int[] partialFit(INDArray batch) {
+		double[] x = toArray(batch);
+		int n = batch.rows();
+		double[] xNorms;
+		if (centers == null) {
+			if (n < clusterCount)
+				throw new IllegalArgumentException("First batch must have at least " + clusterCount + " points: got " + n);
+			dims = batch.columns();
+			xNorms = rowNorms(x, n);
+			iterationHistory = new IterationHistory();
+			initCenters(x, xNorms, n);
+		} else {
+			checkColumns(batch);
+			xNorms = rowNorms(x, n);
+		}
+		int[] batchAssignments = new int[n];
+		assignAll(x, xNorms, n, batchAssignments);
+		updateMiniBatch(x, n, null, batchAssignments);
+		return batchAssignments;
+	}
+
+	/**
+	 * @param data Data, one point per row
+	 * @return Index of the nearest cluster center for each row
+	 */
+	public int[] predict(INDArray data) {
+		if (centers == null)
+			throw new IllegalStateException("Clustering has not been fit");
+		checkColumns(data);
+		double[] x = toArray(data);
+		int n = data.rows();
+		int[] out = new int[n];
+		assignAll(x, rowNorms(x, n), n, out);
+		return out;
+	}
+
+	/**
+	 * @return Cluster centers, one per row
+	 */
+	public INDArray getCenters() {
+		return centers == null ? null : Nd4j.create(Arrays.copyOf(centers, centers.length), new int[] {clusterCount, dims});
+	}
+
+	/**
+	 * @return Cluster index of each point of the last {@link #fit(INDArray)}
+	 */
+	public int[] getAssignments() {
+		return assignments;
+	}
+
+	/**
+	 * @return Sum of squared distances from each point to its cluster center, for the last {@link #fit(INDArray)}
+	 */
+	public double getInertia() {
+		return inertia;
+	}
+
+	public IterationHistory getIterationHistory() {
+		return iterationHistory;
+	}
+
+	public int getClusterCount() {
+		return clusterCount;
+	}
+
+	private void checkColumns(INDArray data) {
+		if (data.columns() != dims)
+			throw new IllegalArgumentException("Data has " + data.columns() + " columns; expected " + dims);
+	}
+
+	private static double[] toArray(INDArray data) {
+		if (data.rank() != 2)
+			throw new IllegalArgumentException("Data must be a matrix: got rank " + data.rank());
+		return data.dup('c').data().asDouble();
+	}
+
+	private double[] rowNorms(final double[] x, int n) {
+		final double[] norms = new double[n];
+		parallel(n, new ChunkTask() {
+			@Override
+			public void run(int chunk, int from, int to) {
+				for (int i = from; i < to; i++)
+					norms[i] = dot(x, i * dims, x, i * dims, dims);
+			}
+		});
+		return norms;
+	}
+
+	private static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+		double sum = 0.0;
+		for (int t = 0; t < length; t++)
+			sum += a[aOffset + t] * b[bOffset + t];
+		return sum;
+	}
+
+	private static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+		double sum = 0.0;
+		for (int t = 0; t < length; t++) {
+			double diff = a[aOffset + t] - b[bOffset + t];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private void updateCenterNorms() {
+		for (int j = 0; j < clusterCount; j++)
+			centerNorms[j] = dot(centers, j * dims, centers, j * dims, dims);
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Parallel execution over chunks of rows
+
+	private interface ChunkTask {
+		void run(int chunk, int from, int to);
+	}
+
+	private int numChunks(int n) {
+		return Math.max(1, Math.min(4 * numThreads, n / MIN_ROWS_PER_TASK));
+	}
+
+	private void parallel(final int n, final ChunkTask task) {
+		final int numChunks = numChunks(n);
+		final int chunkSize = (n + numChunks - 1) / numChunks;
+		if (numChunks == 1 || numThreads == 1) {
+			for (int c = 0; c < numChunks; c++)
+				task.run(c, c * chunkSize, Math.min(n, (c + 1) * chunkSize));
+			return;
+		}
+		if (exec == null)
+			exec = MultiThreadUtils.newExecutorService(numThreads);
+
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		List<Runnable> tasks = new ArrayList<>(numChunks);
+		for (int c = 0; c < numChunks; c++) {
+			final int chunk = c;
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run(chunk, chunk * chunkSize, Math.min(n, (chunk + 1) * chunkSize));
+					} catch (Throwable t) {
+						error.compareAndSet(null, t);
+					}
+				}
+			});
+		}
+		MultiThreadUtils.parallelTasks(tasks, exec);
+		if (error.get() != null)
+			throw new RuntimeException("Error in parallel clustering task", error.get());
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Initialization
+
+	private void initCenters(final double[] x, double[] xNorms, final int n) {
+		final int k = clusterCount;
+		centers = new double[k * dims];
+		centerNorms = new double[k];
+		centerCounts = new long[k];
+
+		if (initialization == Initialization.RANDOM) {
+			//Floyd's algorithm: k distinct random rows
+			Set<Integer> chosen = new LinkedHashSet<>();
+			for (int i = n - k; i < n; i++) {
+				int r = random.nextInt(i + 1);
+				chosen.add(chosen.contains(r) ? i : r);
+			}
+			int j = 0;
+			for (int row : chosen)
+				System.arraycopy(x, row * dims, centers, (j++) * dims, dims);
+			updateCenterNorms();
+			return;
+		}
+
+		//k-means++: each new center is a point chosen with probability proportional to its squared distance to the
+		//nearest existing center
+		final double[] minDistances = new double[n];
+		Arrays.fill(minDistances, Double.MAX_VALUE);
+		final double[] chunkSums = new double[numChunks(n)];
+		int chunkSize = (n + chunkSums.length - 1) / chunkSums.length;
+		int row = random.nextInt(n);
+		for (int c = 0; c < k; c++) {
+			if (c > 0) {
+				double total = 0.0;
+				for (double sum : chunkSums)
+					total += sum;
+				row = (total > 0.0 ? sample(minDistances, chunkSums, chunkSize, random.nextDouble() * total, n)
+						: random.nextInt(n));
+			}
+			final int cOffset = c * dims;
+			System.arraycopy(x, row * dims, centers, cOffset, dims);
+			if (c == k - 1)
+				break;
+			parallel(n, new ChunkTask() {
+				@Override
+				public void run(int chunk, int from, int to) {
+					double sum = 0.0;
+					for (int i = from; i < to; i++) {
+						double d = squaredDistance(x, i * dims, centers, cOffset, dims);
+						if (d < minDistances[i])
+							minDistances[i] = d;
+						sum += minDistances[i];
+					}
+					chunkSums[chunk] = sum;
+				}
+			});
+		}
+		updateCenterNorms();
+	}
+
+	//Index i such that the cumulative sum of weights up to and including i first exceeds target
+	private static int sample(double[] weights, double[] chunkSums, int chunkSize, double target, int n) {
+		int chunk = 0;
+		while (chunk < chunkSums.length - 1 && target >= chunkSums[chunk]) {
+			target -= chunkSums[chunk];
+			chunk++;
+		}
+		int end = Math.min(n, (chunk + 1) * chunkSize);
+		int last = -1;
+		for (int i = chunk * chunkSize; i < end; i++) {
+			if (weights[i] > 0.0) {
+				last = i;
+				target -= weights[i];
+				if (target < 0.0)
+					return i;
+			}
+		}
+		//Rounding: return the last candidate
+		return last >= 0 ? last : Math.min(n - 1, chunk * chunkSize);
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Assignment
+
+	//Squared distances from rows[0 .. count) to all centers, out[r * k + j]
+	private void distanceBlock(double[] x, double[] xNorms, int[] rows, int count, double[] out) {
+		int k = clusterCount;
+		for (int j = 0; j < k; j++) {
+			int cOffset = j * dims;
+			double cNorm = centerNorms[j];
+			for (int r = 0; r < count; r++) {
+				int i = rows[r];
+				double d = xNorms[i] - 2.0 * dot(x, i * dims, centers, cOffset, dims) + cNorm;
+				out[r * k + j] = (d > 0.0 ? d : 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Blocked assignment of rows to their nearest center, initializing the pruning bounds if upper is not null
+	 *
+	 * @param rows      Rows to assign, or null for rows 0 to n-1
+	 * @param n         Number of rows
+	 * @param out       Output: nearest center, for each row (compared with the existing value to count changes)
+	 * @param sqDist    Output, may be null: squared distance to the nearest center, for each row
+	 * @return Number of rows whose assignment changed
+	 */
+	private int assignBlocked(final double[] x, final double[] xNorms, final int[] rows, int n, final int[] out,
+							  final double[] sqDist, final double[] upper, final double[] lower) {
+		final int k = clusterCount;
+		final int[] changes = new int[numChunks(n)];
+		parallel(n, new ChunkTask() {
+			@Override
+			public void run(int chunk, int from, int to) {
+				int[] block = new int[BLOCK_SIZE];
+				double[] dist = new double[BLOCK_SIZE * k];
+				int changed = 0;
+				for (int b = from; b < to; b += BLOCK_SIZE) {
+					int count = Math.min(BLOCK_SIZE, to - b);
+					for (int r = 0; r < count; r++)
+						block[r] = (rows == null ? b + r : rows[b + r]);
+					distanceBlock(x, xNorms, block, count, dist);
+
+					for (int r = 0; r < count; r++) {
+						int rOffset = r * k;
+						int best = 0;
+						double d1 = Double.MAX_VALUE;
+						double d2 = Double.MAX_VALUE;
+						for (int j = 0; j < k; j++) {
+							double d = dist[rOffset + j];
+							if (d < d1) {
+								d2 = d1;
+								d1 = d;
+								best = j;
+							} else if (d < d2) {
+								d2 = d;
+							}
+						}
+						if (out[b + r] != best)
+							changed++;
+						out[b + r] = best;
+						if (sqDist != null)
+							sqDist[b + r] = d1;
+						if (upper != null) {
+							int i = block[r];
+							upper[i] = Math.sqrt(d1);
+							if (pruning == Pruning.HAMERLY) {
+								lower[i] = Math.sqrt(d2);
+							} else {
+								for (int j = 0; j < k; j++)
+									lower[i * k + j] = Math.sqrt(dist[rOffset + j]);
+							}
+						}
+					}
+				}
+				changes[chunk] = changed;
+			}
+		});
+		int changed = 0;
+		for (int c : changes)
+			changed += c;
+		return changed;
+	}
+
+	private double assignAll(double[] x, double[] xNorms, int n, int[] out) {
+		double[] sqDist = new double[n];
+		assignBlocked(x, xNorms, null, n, out, sqDist, null, null);
+		double sum = 0.0;
+		for (double d : sqDist)
+			sum += d;
+		return sum;
+	}
+
+	//Hamerly: skip points whose upper bound is below both the lower bound and half the distance to the nearest
+	//other center; otherwise tighten the upper bound, and only then compute all distances (in blocks)
+	private int assignHamerly(final double[] x, final double[] xNorms, int n, final double[] upper,
+							  final double[] lower, final double[] halfMinCenterDistance) {
+		final int k = clusterCount;
+		final int[] changes = new int[numChunks(n)];
+		parallel(n, new ChunkTask() {
+			@Override
+			public void run(int chunk, int from, int to) {
+				int[] block = new int[BLOCK_SIZE];
+				double[] dist = new double[BLOCK_SIZE * k];
+				int count = 0;
+				int changed = 0;
+				for (int i = from; i < to; i++) {
+					int a = assignments[i];
+					double m = Math.max(halfMinCenterDistance[a], lower[i]);
+					if (upper[i] <= m)
+						continue;
+					upper[i] = Math.sqrt(squaredDistance(x, i * dims, centers, a * dims, dims));
+					if (upper[i] <= m)
+						continue;
+					block[count++] = i;
+					if (count == BLOCK_SIZE) {
+						changed += resolveHamerly(x, xNorms, block, count, dist, upper, lower);
+						count = 0;
+					}
+				}
+				if (count > 0)
+					changed += resolveHamerly(x, xNorms, block, count, dist, upper, lower);
+				changes[chunk] = changed;
+			}
+		});
+		int changed = 0;
+		for (int c : changes)
+			changed += c;
+		return changed;
+	}
+
+	private int resolveHamerly(double[] x, double[] xNorms, int[] block, int count, double[] dist, double[] upper,
+							   double[] lower) {
+		int k = clusterCount;
+		distanceBlock(x, xNorms, block, count, dist);
+		int changed = 0;
+		for (int r = 0; r < count; r++) {
+			int rOffset = r * k;
+			int best = 0;
+			double d1 = Double.MAX_VALUE;
+			double d2 = Double.MAX_VALUE;
+			for (int j = 0; j < k; j++) {
+				double d = dist[rOffset + j];
+				if (d < d1) {
+					d2 = d1;
+					d1 = d;
+					best = j;
+				} else if (d < d2) {
+					d2 = d;
+				}
+			}
+			int i = block[r];
+			if (assignments[i] != best)
+				changed++;
+			assignments[i] = best;
+			upper[i] = Math.sqrt(d1);
+			lower[i] = Math.sqrt(d2);
+		}
+		return changed;
+	}
+
+	//Elkan: one lower bound per point and center, and center to center distances
+	private int assignElkan(final double[] x, int n, final double[] upper, final double[] lower,
+							final double[] halfMinCenterDistance, final double[] centerDistances) {
+		final int k = clusterCount;
+		final int[] changes = new int[numChunks(n)];
+		parallel(n, new ChunkTask() {
+			@Override
+			public void run(int chunk, int from, int to) {
+				int changed = 0;
+				for (int i = from; i < to; i++) {
+					int a = assignments[i];
+					double u = upper[i];
+					if (u <= halfMinCenterDistance[a])
+						continue;
+					int lOffset = i * k;
+					boolean tight = false;
+					for (int j = 0; j < k; j++) {
+						if (j == a)
+							continue;
+						double z = Math.max(lower[lOffset + j], 0.5 * centerDistances[a * k + j]);
+						if (u <= z)
+							continue;
+						if (!tight) {
+							u = Math.sqrt(squaredDistance(x, i * dims, centers, a * dims, dims));
+							lower[lOffset + a] = u;
+							tight = true;
+							if (u <= z)
+								continue;
+						}
+						double d = Math.sqrt(squaredDistance(x, i * dims, centers, j * dims, dims));
+						lower[lOffset + j] = d;
+						if (d < u) {
+							a = j;
+							u = d;
+						}
+					}
+					upper[i] = u;
+					if (assignments[i] != a) {
+						assignments[i] = a;
+						changed++;
+					}
+				}
+				changes[chunk] = changed;
+			}
+		});
+		int changed = 0;
+		for (int c : changes)
+			changed += c;
+		return changed;
+	}
+
+	private void computeCenterDistances(double[] halfMinCenterDistance, double[] centerDistances) {
+		int k = clusterCount;
+		Arrays.fill(halfMinCenterDistance, Double.MAX_VALUE);
+		for (int j = 0; j < k; j++) {
+			for (int l = j + 1; l < k; l++) {
+				double d = Math.sqrt(squaredDistance(centers, j * dims, centers, l * dims, dims));
+				if (centerDistances != null) {
+					centerDistances[j * k + l] = d;
+					centerDistances[l * k + j] = d;
+				}
+				halfMinCenterDistance[j] = Math.min(halfMinCenterDistance[j], 0.5 * d);
+				halfMinCenterDistance[l] = Math.min(halfMinCenterDistance[l], 0.5 * d);
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Batch k-means
+
+	private void lloyd(final double[] x, double[] xNorms, final int n) {
+		final int k = clusterCount;
+		assignments = new int[n];
+		Arrays.fill(assignments, -1);
+		final double[] upper = (pruning == Pruning.NONE ? null : new double[n]);
+		final double[] lower = (pruning == Pruning.HAMERLY ? new double[n]
+				: pruning == Pruning.ELKAN ? new double[n * k] : null);
+		double[] halfMinCenterDistance = new double[k];
+		double[] centerDistances = (pruning == Pruning.ELKAN ? new double[k * k] : null);
+		final double[] movement = new double[k];
+
+		for (int iteration = 0; ; iteration++) {
+			int changed;
+			if (iteration == 0 || pruning == Pruning.NONE) {
+				changed = assignBlocked(x, xNorms, null, n, assignments, null, upper, lower);
+			} else {
+				computeCenterDistances(halfMinCenterDistance, centerDistances);
+				if (pruning == Pruning.HAMERLY)
+					changed = assignHamerly(x, xNorms, n, upper, lower, halfMinCenterDistance);
+				else
+					changed = assignElkan(x, n, upper, lower, halfMinCenterDistance, centerDistances);
+			}
+
+			ClusterStats stats = accumulate(x, n, upper);
+			inertia = stats.squaredDistanceSum;
+			recordIteration(iteration, changed, stats);
+			log.debug("Clustering iteration {}: {} points changed cluster", iteration, changed);
+
+			updateCenters(stats, x, n, movement);
+			if ((iteration > 0 && changed == 0) || iteration + 1 >= maxIterations
+					|| terminationCondition.isSatisfied(iterationHistory))
+				break;
+
+			if (upper != null)
+				updateBounds(n, movement, upper, lower);
+		}
+	}
+
+	/** Per cluster sums of points and of distances to the center */
+	private static class ClusterStats {
+		private final double[] sums;
+		private final int[] counts;
+		private final double[] distanceSum;
+		private final double[] distanceSquaredSum;
+		private final double[] distanceMax;
+		private double squaredDistanceSum;
+
+		private ClusterStats(int k, int dims) {
+			sums = new double[k * dims];
+			counts = new int[k];
+			distanceSum = new double[k];
+			distanceSquaredSum = new double[k];
+			distanceMax = new double[k];
+		}
+
+		private void add(ClusterStats other) {
+			for (int i = 0; i < sums.length; i++)
+				sums[i] += other.sums[i];
+			for (int j = 0; j < counts.length; j++) {
+				counts[j] += other.counts[j];
+				distanceSum[j] += other.distanceSum[j];
+				distanceSquaredSum[j] += other.distanceSquaredSum[j];
+				distanceMax[j] = Math.max(distanceMax[j], other.distanceMax[j]);
+			}
+			squaredDistanceSum += other.squaredDistanceSum;
+		}
+	}
+
+	//Sums per cluster, and exact distances to the assigned centers (which also tighten the upper bounds)
+	private ClusterStats accumulate(final double[] x, int n, final double[] upper) {
+		final ClusterStats[] partial = new ClusterStats[numChunks(n)];
+		parallel(n, new ChunkTask() {
+			@Override
+			public void run(int chunk, int from, int to) {
+				ClusterStats stats = new ClusterStats(clusterCount, dims);
+				for (int i = from; i < to; i++) {
+					int a = assignments[i];
+					int xOffset = i * dims;
+					int sOffset = a * dims;
+					for (int t = 0; t < dims; t++)
+						stats.sums[sOffset + t] += x[xOffset + t];
+					double sq = squaredDistance(x, xOffset, centers, sOffset, dims);
+					double d = Math.sqrt(sq);
+					if (upper != null)
+						upper[i] = d;
+					stats.counts[a]++;
+					stats.distanceSum[a] += d;
+					stats.distanceSquaredSum[a] += sq;
+					stats.distanceMax[a] = Math.max(stats.distanceMax[a], d);
+					stats.squaredDistanceSum += sq;
+				}
+				partial[chunk] = stats;
+			}
+		});
+		ClusterStats total = partial[0];
+		for (int c = 1; c < partial.length; c++)
+			total.add(partial[c]);
+		return total;
+	}
+
+	//Move each center to the mean of its points (empty clusters: to a random point), and record the movements
+	private void updateCenters(ClusterStats stats, double[] x, int n, double[] movement) {
+		double[] previous = Arrays.copyOf(centers, centers.length);
+		for (int j = 0; j < clusterCount; j++) {
+			int cOffset = j * dims;
+			if (stats.counts[j] == 0) {
+				int row = random.nextInt(n);
+				log.debug("Cluster {} is empty: moving it to point {}", j, row);
+				System.arraycopy(x, row * dims, centers, cOffset, dims);
+			} else {
+				double mult = 1.0 / stats.counts[j];
+				for (int t = 0; t < dims; t++)
+					centers[cOffset + t] = stats.sums[cOffset + t] * mult;
+			}
+			movement[j] = Math.sqrt(squaredDistance(previous, cOffset, centers, cOffset, dims));
+		}
+		updateCenterNorms();
+	}
+
+	private void updateBounds(int n, final double[] movement, final double[] upper, final double[] lower) {
+		final int k = clusterCount;
+		int maxIdx = 0;
+		for (int j = 1; j < k; j++) {
+			if (movement[j] > movement[maxIdx])
+				maxIdx = j;
+		}
+		double second = 0.0;
+		for (int j = 0; j < k; j++) {
+			if (j != maxIdx)
+				second = Math.max(second, movement[j]);
+		}
+		final int maxMoved = maxIdx;
+		final double maxMovement = movement[maxIdx];
+		final double secondMovement = second;
+		parallel(n, new ChunkTask() {
+			@Override
+			public void run(int chunk, int from, int to) {
+				for (int i = from; i < to; i++) {
+					int a = assignments[i];
+					upper[i] += movement[a];
+					if (pruning == Pruning.HAMERLY) {
+						lower[i] -= (a == maxMoved ? secondMovement : maxMovement);
+					} else {
+						int lOffset = i * k;
+						for (int j = 0; j < k; j++)
+							lower[lOffset + j] = Math.max(0.0, lower[lOffset + j] - movement[j]);
+					}
+				}
+			}
+		});
+	}
+
+	private void recordIteration(int iteration, int changed, ClusterStats stats) {
+		ClusterSetInfo info = new ClusterSetInfo();
+		for (int j = 0; j < clusterCount; j++) {
+			ClusterInfo clusterInfo = info.addClusterInfo(String.valueOf(j));
+			int count = stats.counts[j];
+			double average = (count > 0 ? stats.distanceSum[j] / count : 0.0);
+			clusterInfo.setPointCount(count);
+			clusterInfo.setTotalPointDistanceFromCenter(stats.distanceSum[j]);
+			clusterInfo.setAveragePointDistanceFromCenter(average);
+			clusterInfo.setMaxPointDistanceFromCenter(stats.distanceMax[j]);
+			clusterInfo.setPointDistanceFromCenterVariance(
+					count > 0 ? Math.max(0.0, stats.distanceSquaredSum[j] / count - average * average) : 0.0);
+		}
+		info.getPointLocationChange().set(changed);
+		iterationHistory.getIterationsInfos().put(iteration, new IterationInfo(iteration, info));
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Mini-batch k-means
+
+	private void fitMiniBatches(double[] x, double[] xNorms, int n) {
+		int[] batch = new int[batchSize];
+		int[] batchAssignments = new int[batchSize];
+		double[] sqDist = new double[batchSize];
+		int[] lastAssignments = new int[n];
+		Arrays.fill(lastAssignments, -1);
+
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			for (int b = 0; b < batchSize; b++)
+				batch[b] = random.nextInt(n);
+			assignBlocked(x, xNorms, batch, batchSize, batchAssignments, sqDist, null, null);
+
+			ClusterStats stats = new ClusterStats(clusterCount, 0);
+			int changed = 0;
+			for (int b = 0; b < batchSize; b++) {
+				int a = batchAssignments[b];
+				if (lastAssignments[batch[b]] != a)
+					changed++;
+				lastAssignments[batch[b]] = a;
+				double d = Math.sqrt(sqDist[b]);
+				stats.counts[a]++;
+				stats.distanceSum[a] += d;
+				stats.distanceSquaredSum[a] += sqDist[b];
+				stats.distanceMax[a] = Math.max(stats.distanceMax[a], d);
+				stats.squaredDistanceSum += sqDist[b];
+			}
+			recordIteration(iteration, changed, stats);
+
+			updateMiniBatch(x, batchSize, batch, batchAssignments);
+			if (terminationCondition.isSatisfied(iterationHistory))
+				break;
+		}
+	}
+
+	//Per center learning rate 1 / (number of points assigned so far), as in Sculley, "Web-Scale K-Means Clustering"
+	private void updateMiniBatch(double[] x, int count, int[] rows, int[] batchAssignments) {
+		for (int b = 0; b < count; b++) {
+			int i = (rows == null ? b : rows[b]);
+			int j = batchAssignments[b];
+			double eta = 1.0 / (++centerCounts[j]);
+			int xOffset = i * dims;
+			int cOffset = j * dims;
+			for (int t = 0; t < dims; t++)
+				centers[cOffset + t] += eta * (x[xOffset + t] - centers[cOffset + t]);
+		}
+		updateCenterNorms();
+	}
+
+	public static class Builder {
+		private int clusterCount;
+		private int maxIterations = 100;
+		private ClusteringAlgorithmCondition terminationCondition;
+		private Initialization initialization = Initialization.KMEANS_PLUS_PLUS;
+		private Pruning pruning = Pruning.HAMERLY;
+		private int batchSize = 0;
+		private long seed = 12345;
+		private int numThreads = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * @param clusterCount Number of clusters
+		 */
+		public Builder(int clusterCount) {
+			this.clusterCount = clusterCount;
+		}
+
+		/**
+		 * Maximum number of iterations (mini-batches, in mini-batch mode). Default: 100
+		 */
+		public Builder maxIterations(int maxIterations) {
+			this.maxIterations = maxIterations;
+			return this;
+		}
+
+		/**
+		 * Condition to stop iterating, evaluated after each iteration. Default: none other than the maximum number of
+		 * iterations
+		 */
+		public Builder terminationCondition(ClusteringAlgorithmCondition terminationCondition) {
+			this.terminationCondition = terminationCondition;
+			return this;
+		}
+
+		/**
+		 * Center initialization. Default: k-means++
+		 */
+		public Builder initialization(Initialization initialization) {
+			this.initialization = initialization;
+			return this;
+		}
+
+		/**
+		 * Triangle inequality pruning for full batch fitting. Default: Hamerly
+		 */
+		public Builder pruning(Pruning pruning) {
+			this.pruning = pruning;
+			return this;
+		}
+
+		/**
+		 * If positive (and smaller than the data set), {@link #fit(INDArray)} uses mini-batch k-means with batches of
+		 * this many randomly sampled points. Default: 0 (full batch)
+		 */
+		public Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/**
+		 * Random seed, for initialization and mini-batch sampling. Default: 12345
+		 */
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Number of threads. Default: number of available processors
+		 */
+		public Builder numThreads(int numThreads) {
+			this.numThreads = numThreads;
+			return this;
+		}
+
+		public MatrixKMeansClustering build() {
+			return new MatrixKMeansClustering(this);
+		}
+	}
+
+}
@@ -0,0 +1,301 @@
+package org.deeplearning4j.clustering.sptree;
+
+import java.util.Arrays;
+
+/**
+ * Space partitioning tree (quadtree in 2d, octree in 3d, ...) for Barnes-Hut approximations, over points stored in a
+ * flat, row-major double array.
+ * <p>
+ * This is the array based equivalent of {@link SpTree}: all nodes are stored in parallel primitive arrays (center of
+ * mass, cell corner and width, number of points, index of the first child), the 2^D children of a node are stored
+ * contiguously, and each leaf holds at most one distinct point. Duplicate points are counted but not stored.
+ * <p>
+ * The tree is not modified by {@link #computeNonEdgeForces(int, double, double[], int)} and
+ * {@link #computeEdgeForces(int[], int[], double[], int, int, double[])}, so these can be called concurrently
+ * (for different output rows) once the tree is built.
+ */
+public class FlatSpTree {
+    /** Maximum number of dimensions: each node has 2^D children */
+    public static final int MAX_DIMENSIONS = 10;
+
+    private final double[] data;
+    private final int numPoints;
+    private final int D;
+    private final int numChildren;
+
+    private int numNodes;
+    private double[] centerOfMass;
+    private double[] corner;
+    private double[] width;
+    private double[] maxWidth;
+    private int[] cumSize;
+    private int[] firstChild;
+    private int[] pointIdx;
+
+    /**
+     * @param data      Points, row-major: point i is data[i * dims] to data[(i + 1) * dims - 1]
+     * @param numPoints Number of points
+     * @param dims      Number of dimensions of each point
+     */
+    public FlatSpTree(double[] data, int numPoints, int dims) {
+        if (dims < 1 || dims > MAX_DIMENSIONS)
+            throw new IllegalArgumentException("Invalid number of dimensions: " + dims + " (must be 1 to "
+                            + MAX_DIMENSIONS + ")");
+        if (data.length < (long) numPoints * dims)
+            throw new IllegalArgumentException("Data array is too small: " + data.length + " < " + numPoints + " x " + dims);
+        this.data = data;
+        this.numPoints = numPoints;
+        this.D = dims;
+        this.numChildren = 1 << dims;
+
+        allocate(Math.max(16, 2 * numPoints));
+
+        //Root cell: centered on the mean, covering all points
+        double[] mean = new double[D];
+        double[] min = new double[D];
+        double[] max = new double[D];
+        Arrays.fill(min, Double.MAX_VALUE);
+        Arrays.fill(max, -Double.MAX_VALUE);
+        for (int i = 0; i < numPoints; i++) {
+            int offset = i * D;
+            for (int d = 0; d < D; d++) {
+                double v = data[offset + d];
+                mean[d] += v;
+                min[d] = Math.min(min[d], v);
+                max[d] = Math.max(max[d], v);
+            }
+        }
+        double rootMaxWidth = 0.0;
+        for (int d = 0; d < D; d++) {
+            mean[d] = (numPoints > 0 ? mean[d] / numPoints : 0.0);
+            double w = (numPoints > 0 ? Math.max(max[d] - mean[d], mean[d] - min[d]) : 0.0) + 1e-5;
+            corner[d] = mean[d];
+            width[d] = w;
+            rootMaxWidth = Math.max(rootMaxWidth, w);
+        }
+        maxWidth[0] = rootMaxWidth;
+        firstChild[0] = -1;
+        pointIdx[0] = -1;
+        numNodes = 1;
+
+        for (int i = 0; i < numPoints; i++)
+            insert(i);
+    }
+
+    private void allocate(int capacity) {
+        centerOfMass = new double[capacity * D];
+        corner = new double[capacity * D];
+        width = new double[capacity * D];
+        maxWidth = new double[capacity];
+        cumSize = new int[capacity];
+        firstChild = new int[capacity];
+        pointIdx = new int[capacity];
+    }
+
+    private void ensureCapacity(int nodes) {
+        int capacity = cumSize.length;
+        if (nodes <= capacity)
+            return;
+        int newCapacity = Math.max(nodes, capacity + (capacity >> 1));
+        centerOfMass = Arrays.copyOf(centerOfMass, newCapacity * D);
+        corner = Arrays.copyOf(corner, newCapacity * D);
+        width = Arrays.copyOf(width, newCapacity * D);
+        maxWidth = Arrays.copyOf(maxWidth, newCapacity);
+        cumSize = Arrays.copyOf(cumSize, newCapacity);
+        firstChild = Arrays.copyOf(firstChild, newCapacity);
+        pointIdx = Arrays.copyOf(pointIdx, newCapacity);
+    }
+
+    private void insert(int p) {
+        int pOffset = p * D;
+        int node = 0;
+        while (true) {
+            //Online update of the center of mass
+            int count = ++cumSize[node];
+            int nOffset = node * D;
+            for (int d = 0; d < D; d++)
+                centerOfMass[nOffset + d] += (data[pOffset + d] - centerOfMass[nOffset + d]) / count;
+
+            if (firstChild[node] < 0) {
+                int existing = pointIdx[node];
+                if (existing < 0) {
+                    pointIdx[node] = p;
+                    return;
+                }
+                if (samePoint(existing, p))
+                    return;
+
+                //Split the leaf. All previous points in this node are copies of the existing point
+                subdivide(node);
+                int child = childFor(node, existing);
+                cumSize[child] = count - 1;
+                System.arraycopy(data, existing * D, centerOfMass, child * D, D);
+                pointIdx[child] = existing;
+                pointIdx[node] = -1;
+            }
+            node = childFor(node, p);
+        }
+    }
+
+    private boolean samePoint(int i, int j) {
+        int iOffset = i * D;
+        int jOffset = j * D;
+        for (int d = 0; d < D; d++) {
+            if (data[iOffset + d] != data[jOffset + d])
+                return false;
+        }
+        return true;
+    }
+
+    private void subdivide(int node) {
+        ensureCapacity(numNodes + numChildren);
+        int first = numNodes;
+        numNodes += numChildren;
+        firstChild[node] = first;
+
+        int nOffset = node * D;
+        for (int c = 0; c < numChildren; c++) {
+            int child = first + c;
+            int cOffset = child * D;
+            for (int d = 0; d < D; d++) {
+                double halfWidth = 0.5 * width[nOffset + d];
+                width[cOffset + d] = halfWidth;
+                corner[cOffset + d] = corner[nOffset + d] + ((c & (1 << d)) != 0 ? halfWidth : -halfWidth);
+                centerOfMass[cOffset + d] = 0.0;
+            }
+            maxWidth[child] = 0.5 * maxWidth[node];
+            cumSize[child] = 0;
+            firstChild[child] = -1;
+            pointIdx[child] = -1;
+        }
+    }
+
+    private int childFor(int node, int p) {
+        int pOffset = p * D;
+        int nOffset = node * D;
+        int c = 0;
+        for (int d = 0; d < D; d++) {
+            if (data[pOffset + d] >= corner[nOffset + d])
+                c |= (1 << d);
+        }
+        return firstChild[node] + c;
+    }
+
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Compute the Barnes-Hut approximation of the repulsive (non-edge) t-SNE forces on one point, and its
+     * contribution to the normalization term sum(Q).
+     *
+     * @param pointIndex    Point to compute the forces for
+     * @param theta         Barnes-Hut trade-off parameter: 0 for exact forces
+     * @param negativeForce Output: the (unnormalized) negative force is added at positions offset to offset + D - 1
+     * @param offset        Offset in the output array
+     * @return Contribution of this point to sum(Q)
+     */
+    public double computeNonEdgeForces(int pointIndex, double theta, double[] negativeForce, int offset) {
+        return computeNonEdgeForces(0, pointIndex * D, theta * theta, negativeForce, offset);
+    }
+
+    private double computeNonEdgeForces(int node, int pOffset, double theta2, double[] negativeForce, int offset) {
+        int count = cumSize[node];
+        if (count == 0)
+            return 0.0;
+
+        int nOffset = node * D;
+        double D2 = 0.0;
+        for (int d = 0; d < D; d++) {
+            double diff = data[pOffset + d] - centerOfMass[nOffset + d];
+            D2 += diff * diff;
+        }
+
+        boolean leaf = firstChild[node] < 0;
+        if (leaf && D2 == 0.0) {
+            //The point itself (and any duplicates of it): no force, no self interaction
+            return count - 1;
+        }
+
+        //Use this node as a summary if it is a leaf, or small relative to its distance: maxWidth / sqrt(D2) < theta
+        if (leaf || maxWidth[node] * maxWidth[node] < theta2 * D2) {
+            double q = 1.0 / (1.0 + D2);
+            double mult = count * q;
+            double sumQ = mult;
+            mult *= q;
+            for (int d = 0; d < D; d++)
+                negativeForce[offset + d] += mult * (data[pOffset + d] - centerOfMass[nOffset + d]);
+            return sumQ;
+        }
+
+        double sumQ = 0.0;
+        int first = firstChild[node];
+        for (int c = 0; c < numChildren; c++)
+            sumQ += computeNonEdgeForces(first + c, pOffset, theta2, negativeForce, offset);
+        return sumQ;
+    }
+
+    /**
+     * Compute the attractive (edge) t-SNE forces for rows [fromRow, toRow) of a sparse (CSR) matrix of input
+     * similarities.
+     *
+     * @param rowP          CSR row pointers (length N + 1)
+     * @param colP          CSR column indexes
+     * @param valP          CSR values
+     * @param fromRow       First row (inclusive)
+     * @param toRow         Last row (exclusive)
+     * @param positiveForce Output, N x D row-major: forces are added to rows [fromRow, toRow)
+     */
+    public void computeEdgeForces(int[] rowP, int[] colP, double[] valP, int fromRow, int toRow,
+                                  double[] positiveForce) {
+        for (int n = fromRow; n < toRow; n++) {
+            int nOffset = n * D;
+            for (int i = rowP[n]; i < rowP[n + 1]; i++) {
+                int mOffset = colP[i] * D;
+                double D2 = 0.0;
+                for (int d = 0; d < D; d++) {
+                    double diff = data[nOffset + d] - data[mOffset + d];
+                    D2 += diff * diff;
+                }
+                double mult = valP[i] / (1.0 + D2);
+                for (int d = 0; d < D; d++)
+                    positiveForce[nOffset + d] += mult * (data[nOffset + d] - data[mOffset + d]);
+            }
+        }
+    }
+
+    /**
+     * Verifies the structure of the tree: every point is inside the cell of every node on its path, and the point
+     * counts of the nodes are consistent
+     */
+    public boolean isCorrect() {
+        return isCorrect(0);
+    }
+
+    private boolean isCorrect(int node) {
+        int first = firstChild[node];
+        if (first < 0) {
+            int p = pointIdx[node];
+            if (p < 0)
+                return cumSize[node] == 0;
+            int pOffset = p * D;
+            int nOffset = node * D;
+            for (int d = 0; d < D; d++) {
+                if (Math.abs(data[pOffset + d] - corner[nOffset + d]) > width[nOffset + d])
+                    return false;
+            }
+            return true;
+        }
+        int total = 0;
+        for (int c = 0; c < numChildren; c++) {
+            if (!isCorrect(first + c))
+                return false;
+            total += cumSize[first + c];
+        }
+        return total == cumSize[node];
+    }
+}
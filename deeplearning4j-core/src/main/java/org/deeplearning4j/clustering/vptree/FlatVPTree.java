@@ -0,0 +1,347 @@
+package org.deeplearning4j.clustering.vptree;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Vantage point tree over points stored in a flat, row-major double array, for exact k-nearest neighbour search.
+ * <p>
+ * Unlike {@link VPTree}, no pairwise distance map is kept: the tree is bulk loaded in O(n log n) distance calculations,
+ * and the tree itself is implicit in a permutation of the point indexes: the node for range [lo, hi) has its vantage
+ * point at position lo, points closer than the node's threshold in [lo+1, mid) and the remaining points in [mid, hi),
+ * with mid = (lo + 1 + hi) / 2. Only one threshold per position is stored in addition to the permutation.
+ * <p>
+ * The tree is immutable once built, so any number of threads can search it concurrently.
+ * Supported distance functions: "euclidean" (default), "manhattan", and "cosinesimilarity". For cosine similarity,
+ * a normalized copy of the data is indexed, and distances are Euclidean distances between normalized vectors,
+ * sqrt(2 * (1 - cosineSimilarity)), which give the same neighbours as cosine similarity.
+ * Both the nearest and the farthest points can be searched for, which covers the (inverted or not) distances of
+ * {@link VPTree}.
+ */
+public class FlatVPTree {
+    private static final int PARALLEL_BUILD_THRESHOLD = 10000;
+
+    private final double[] data;
+    private final int numPoints;
+    private final int dims;
+    private final boolean manhattan;
+    private final int[] items;
+    private final double[] thresholds;
+
+    /**
+     * @param data               Points, row-major: point i is data[i * dims] to data[(i + 1) * dims - 1]
+     * @param numPoints          Number of points
+     * @param dims               Number of dimensions of each point
+     * @param similarityFunction "euclidean", "manhattan" or "cosinesimilarity"
+     * @param pool               Pool to build the tree in, or null to build it on the calling thread
+     */
+    public FlatVPTree(double[] data, int numPoints, int dims, String similarityFunction, ForkJoinPool pool) {
+        if (data.length < (long) numPoints * dims)
+            throw new IllegalArgumentException("Data array is too small: " + data.length + " < " + numPoints + " x " + dims);
+        this.numPoints = numPoints;
+        this.dims = dims;
+        this.manhattan = "manhattan".equals(similarityFunction);
+        this.data = ("cosinesimilarity".equals(similarityFunction) ? normalizeRows(data, numPoints, dims) : data);
+
+        items = new int[numPoints];
+        for (int i = 0; i < numPoints; i++)
+            items[i] = i;
+        thresholds = new double[numPoints];
+
+        double[] scratch = new double[numPoints];
+        BuildTask root = new BuildTask(0, numPoints, scratch, 12345L);
+        if (pool == null)
+            root.compute();
+        else
+            pool.invoke(root);
+    }
+
+    private static double[] normalizeRows(double[] data, int numPoints, int dims) {
+        double[] out = new double[numPoints * dims];
+        for (int i = 0; i < numPoints; i++) {
+            int offset = i * dims;
+            double norm = 0.0;
+            for (int d = 0; d < dims; d++)
+                norm += data[offset + d] * data[offset + d];
+            norm = Math.sqrt(norm);
+            double mult = (norm > 0.0 ? 1.0 / norm : 0.0);
+            for (int d = 0; d < dims; d++)
+                out[offset + d] = data[offset + d] * mult;
+        }
+        return out;
+    }
+
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * Distance between two indexed points
+     */
+    public double distance(int i, int j) {
+        return distance(data, i * dims, data, j * dims);
+    }
+
+    private double distance(double[] a, int aOffset, double[] b, int bOffset) {
+        double sum = 0.0;
+        if (manhattan) {
+            for (int d = 0; d < dims; d++)
+                sum += Math.abs(a[aOffset + d] - b[bOffset + d]);
+            return sum;
+        }
+        for (int d = 0; d < dims; d++) {
+            double diff = a[aOffset + d] - b[bOffset + d];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private class BuildTask extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+        private final double[] dist;
+        private final long seed;
+
+        private BuildTask(int lo, int hi, double[] dist, long seed) {
+            this.lo = lo;
+            this.hi = hi;
+            this.dist = dist;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            build(lo, hi, new Random(seed));
+        }
+
+        //Builds the inside subtree by iteration, the outside subtree by recursion (or as a forked task)
+        private void build(int lo, int hi, Random rng) {
+            while (hi - lo > 1) {
+                int v = lo + rng.nextInt(hi - lo);
+                swap(lo, v);
+                int vOffset = items[lo] * dims;
+                for (int i = lo + 1; i < hi; i++)
+                    dist[i] = distance(data, vOffset, data, items[i] * dims);
+
+                int mid = (lo + 1 + hi) >>> 1;
+                select(lo + 1, hi - 1, mid);
+                thresholds[lo] = (mid < hi ? dist[mid] : 0.0);
+
+                if (hi - mid > PARALLEL_BUILD_THRESHOLD && inForkJoinPool()) {
+                    BuildTask outside = new BuildTask(mid, hi, dist, rng.nextLong());
+                    outside.fork();
+                    build(lo + 1, mid, rng);
+                    outside.join();
+                    return;
+                }
+                build(mid, hi, rng);
+                lo = lo + 1;
+                hi = mid;
+            }
+        }
+
+        //Quickselect on positions [left, right] of the permutation, by the distances in dist. Partitions three ways,
+        //so that this stays linear with many equal distances (duplicate points)
+        private void select(int left, int right, int k) {
+            while (right > left) {
+                double pivot = dist[(left + right) >>> 1];
+                //[left, lt) below the pivot, [lt, gt] equal to it, (gt, right] above it
+                int lt = left;
+                int gt = right;
+                int i = left;
+                while (i <= gt) {
+                    if (dist[i] < pivot)
+                        swap(lt++, i++);
+                    else if (dist[i] > pivot)
+                        swap(i, gt--);
+                    else
+                        i++;
+                }
+                if (k < lt)
+                    right = lt - 1;
+                else if (k > gt)
+                    left = gt + 1;
+                else
+                    return;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int t = items[i];
+            items[i] = items[j];
+            items[j] = t;
+            double d = dist[i];
+            dist[i] = dist[j];
+            dist[j] = d;
+        }
+    }
+
+    /**
+     * Find the k nearest neighbours of an indexed point, excluding the point itself.
+     * Results are sorted by increasing distance. If there are fewer than k other points, the remaining entries of the
+     * output arrays are not modified.
+     *
+     * @param pointIndex Index of the query point
+     * @param k          Number of neighbours
+     * @param indexes    Output: indexes of the neighbours (length at least k)
+     * @param distances  Output: distances to the neighbours (length at least k)
+     * @return Number of neighbours found: min(k, numPoints - 1)
+     */
+    public int search(int pointIndex, int k, int[] indexes, double[] distances) {
+        return search(data, pointIndex * dims, pointIndex, k, indexes, distances);
+    }
+
+    /**
+     * Find the k nearest neighbours of an arbitrary query point (which must be normalized by the caller, for cosine
+     * similarity). See {@link #search(int, int, int[], double[])}
+     */
+    public int search(double[] query, int k, int[] indexes, double[] distances) {
+        if (query.length != dims)
+            throw new IllegalArgumentException("Query has " + query.length + " dimensions; expected " + dims);
+        return search(query, 0, -1, k, false, indexes, distances);
+    }
+
+    /**
+     * Find the k farthest points from an indexed point. Results are sorted by decreasing distance; otherwise as
+     * {@link #search(int, int, int[], double[])}. This is what {@link VPTree} returns for inverted distances.
+     */
+    public int searchFarthest(int pointIndex, int k, int[] indexes, double[] distances) {
+        return search(data, pointIndex * dims, pointIndex, k, true, indexes, distances);
+    }
+
+    private int search(double[] query, int queryOffset, int exclude, int k, boolean farthest, int[] indexes,
+                       double[] distances) {
+        if (k <= 0)
+            return 0;
+        //Max-heap (by distance, or by negated distance for the farthest points) of the best candidates so far,
+        //in the output arrays
+        int[] size = new int[1];
+        if (farthest)
+            searchRangeFarthest(0, numPoints, query, queryOffset, exclude, k, indexes, distances, size);
+        else
+            searchRange(0, numPoints, query, queryOffset, exclude, k, indexes, distances, size);
+
+        //Heap sort: gives increasing distance order (decreasing, for the farthest points)
+        int n = size[0];
+        for (int end = n - 1; end > 0; end--) {
+            swap(indexes, distances, 0, end);
+            siftDown(indexes, distances, 0, end);
+        }
+        if (farthest) {
+            for (int i = 0; i < n; i++)
+                distances[i] = -distances[i];
+        }
+        return n;
+    }
+
+    private void searchRange(int lo, int hi, double[] query, int queryOffset, int exclude, int k, int[] heapIdx,
+                             double[] heapDist, int[] size) {
+        while (lo < hi) {
+            int v = items[lo];
+            double d = distance(query, queryOffset, data, v * dims);
+            if (v != exclude)
+                offer(v, d, k, heapIdx, heapDist, size);
+            if (hi - lo == 1)
+                return;
+
+            int mid = (lo + 1 + hi) >>> 1;
+            double threshold = thresholds[lo];
+            if (d < threshold) {
+                //Inside first; outside only if the query ball crosses the threshold
+                if (d - tau(k, heapDist, size) <= threshold)
+                    searchRange(lo + 1, mid, query, queryOffset, exclude, k, heapIdx, heapDist, size);
+                if (d + tau(k, heapDist, size) >= threshold) {
+                    lo = mid;
+                    continue;
+                }
+                return;
+            } else {
+                if (d + tau(k, heapDist, size) >= threshold)
+                    searchRange(mid, hi, query, queryOffset, exclude, k, heapIdx, heapDist, size);
+                if (d - tau(k, heapDist, size) <= threshold) {
+                    hi = mid;
+                    lo = lo + 1;
+                    continue;
+                }
+                return;
+            }
+        }
+    }
+
+    private void searchRangeFarthest(int lo, int hi, double[] query, int queryOffset, int exclude, int k,
+                                     int[] heapIdx, double[] heapDist, int[] size) {
+        while (lo < hi) {
+            int v = items[lo];
+            double d = distance(query, queryOffset, data, v * dims);
+            if (v != exclude)
+                offer(v, -d, k, heapIdx, heapDist, size);
+            if (hi - lo == 1)
+                return;
+
+            int mid = (lo + 1 + hi) >>> 1;
+            double threshold = thresholds[lo];
+            //Outside points can be arbitrarily far; inside points are at most d + threshold from the query
+            searchRangeFarthest(mid, hi, query, queryOffset, exclude, k, heapIdx, heapDist, size);
+            if (-(d + threshold) > tau(k, heapDist, size))
+                return;
+            lo = lo + 1;
+            hi = mid;
+        }
+    }
+
+    private static double tau(int k, double[] heapDist, int[] size) {
+        return (size[0] < k ? Double.POSITIVE_INFINITY : heapDist[0]);
+    }
+
+    private static void offer(int idx, double dist, int k, int[] heapIdx, double[] heapDist, int[] size) {
+        int n = size[0];
+        if (n < k) {
+            //Sift up
+            int i = n;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapDist[parent] >= dist)
+                    break;
+                heapIdx[i] = heapIdx[parent];
+                heapDist[i] = heapDist[parent];
+                i = parent;
+            }
+            heapIdx[i] = idx;
+            heapDist[i] = dist;
+            size[0] = n + 1;
+        } else if (dist < heapDist[0]) {
+            heapIdx[0] = idx;
+            heapDist[0] = dist;
+            siftDown(heapIdx, heapDist, 0, k);
+        }
+    }
+
+    private static void siftDown(int[] heapIdx, double[] heapDist, int i, int n) {
+        int idx = heapIdx[i];
+        double dist = heapDist[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n)
+                break;
+            if (child + 1 < n && heapDist[child + 1] > heapDist[child])
+                child++;
+            if (heapDist[child] <= dist)
+                break;
+            heapIdx[i] = heapIdx[child];
+            heapDist[i] = heapDist[child];
+            i = child;
+        }
+        heapIdx[i] = idx;
+        heapDist[i] = dist;
+    }
+
+    private static void swap(int[] idx, double[] dist, int i, int j) {
+        int t = idx[i];
+        idx[i] = idx[j];
+        idx[j] = t;
+        double d = dist[i];
+        dist[i] = dist[j];
+        dist[j] = d;
+    }
+}
@@ -20,6 +20,7 @@ package org.deeplearning4j.datasets.fetchers;
 
 import org.apache.commons.io.FileUtils;
 import org.deeplearning4j.base.MnistFetcher;
+import org.deeplearning4j.datasets.mnist.IdxFile;
 import org.deeplearning4j.datasets.mnist.MnistManager;
 import org.deeplearning4j.util.MathUtils;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -28,7 +29,6 @@ import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Random;
 
 
@@ -44,6 +44,8 @@ public class MnistDataFetcher extends BaseDataFetcher {
     protected static final String MNIST_ROOT = TEMP_ROOT + File.separator + "MNIST" + File.separator;
 
     protected transient MnistManager man;
+    protected transient IdxFile imageFile;
+    protected transient IdxFile labelFile;
     protected boolean binarize = true;
     protected boolean train;
     protected int[] order;
@@ -83,6 +85,8 @@ public class MnistDataFetcher extends BaseDataFetcher {
             new MnistFetcher().downloadAndUntar();
             man = new MnistManager(images, labels, train);
         }
+        imageFile = new IdxFile(new File(images));
+        labelFile = new IdxFile(new File(labels));
 
         numOutcomes = 10;
         this.binarize = binarize;
@@ -125,41 +129,22 @@ public class MnistDataFetcher extends BaseDataFetcher {
         }
 
 
-        float[][] featureData = new float[numExamples][0];
-        float[][] labelData = new float[numExamples][0];
+        //Read directly from the memory-mapped files into one array per minibatch, binarizing/normalizing as we go
+        int actualExamples = Math.min(numExamples, totalExamples - cursor);
+        int entryLength = imageFile.getEntryLength();
+        float[] featureData = new float[actualExamples * entryLength];
+        float[] labelData = new float[actualExamples * 10];
+        byte[] buffer = new byte[entryLength];
 
-        int actualExamples = 0;
-        for( int i=0; i<numExamples; i++, cursor++ ){
-            if(!hasMore()) break;
-
-            byte[] img = man.readImageUnsafe(order[cursor]);
-            int label = man.readLabel(order[cursor]);
-
-            float[] featureVec = new float[img.length];
-            featureData[actualExamples] = featureVec;
-            labelData[actualExamples] = new float[10];
-            labelData[actualExamples][label] = 1.0f;
-
-            for( int j=0; j<img.length; j++ ){
-                float v = ((int)img[j]) & 0xFF; //byte is loaded as signed -> convert to unsigned
-                if(binarize){
-                    if(v > 30.0f) featureVec[j] = 1.0f;
-                    else featureVec[j] = 0.0f;
-                } else {
-                    featureVec[j] = v/255.0f;
-                }
-            }
-
-            actualExamples++;
-        }
-
-        if(actualExamples < numExamples){
-            featureData = Arrays.copyOfRange(featureData,0,actualExamples);
-            labelData = Arrays.copyOfRange(labelData,0,actualExamples);
+        for( int i=0; i<actualExamples; i++, cursor++ ){
+            imageFile.readEntry(order[cursor], featureData, i * entryLength, 0.0f, binarize ? 1.0f : 1.0f / 255.0f,
+                    binarize ? 30.0f : Float.NaN, buffer);
+            int label = labelFile.readInt(order[cursor], 0);
+            labelData[i * 10 + label] = 1.0f;
         }
 
-        INDArray features = Nd4j.create(featureData);
-        INDArray labels = Nd4j.create(labelData);
+        INDArray features = Nd4j.create(featureData, new int[]{actualExamples, entryLength});
+        INDArray labels = Nd4j.create(labelData, new int[]{actualExamples, 10});
         curr = new DataSet(features,labels);
     }
 
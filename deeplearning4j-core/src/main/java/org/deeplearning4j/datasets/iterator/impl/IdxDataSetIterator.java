@@ -0,0 +1,316 @@
+package org.deeplearning4j.datasets.iterator.impl;
+
+import org.deeplearning4j.datasets.iterator.parallel.IndexedBatchSource;
+import org.deeplearning4j.datasets.mnist.IdxFile;
+import org.deeplearning4j.util.MathUtils;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * DataSetIterator for any pair of IDX format files (images/features and labels), such as MNIST.<br>
+ * Both files are memory-mapped: each minibatch is built by converting the mapped bytes directly into a single feature
+ * array and a single one-hot label array, with binarization or normalization applied during the conversion. No
+ * per-example arrays are created.
+ * <p>
+ * Shuffling is done by permuting example indexes at the start of each epoch. For distributed or multi-process
+ * training, {@link Builder#shard(int, int)} restricts this iterator to every numShards-th example of the (shuffled)
+ * order; all shards using the same seed see the same permutation, so shards are disjoint and together cover the
+ * whole data set.
+ * <p>
+ * This class is also an {@link IndexedBatchSource}, so minibatches can be built by several threads using
+ * {@link org.deeplearning4j.datasets.iterator.parallel.ParallelPrefetchDataSetIterator}; in that case, recycled
+ * DataSets are refilled in place.
+ */
+public class IdxDataSetIterator implements DataSetIterator, IndexedBatchSource<DataSet> {
+
+    private final IdxFile features;
+    private final IdxFile labels;
+    private final int numClasses;
+    private final int batchSize;
+    private final int numExamples;
+    private final float shift;
+    private final float scale;
+    private final float threshold;
+    private final boolean shuffle;
+    private final Random rng;
+    private final int shardIndex;
+    private final int numShards;
+    private final ThreadLocal<byte[]> byteScratch = new ThreadLocal<>();
+    private final ThreadLocal<float[]> floatScratch = new ThreadLocal<>();
+
+    private volatile int[] order;
+    private int cursor = 0;
+    private DataSetPreProcessor preProcessor;
+
+    private IdxDataSetIterator(Builder builder) throws IOException {
+        this.features = new IdxFile(builder.featuresFile);
+        this.labels = new IdxFile(builder.labelsFile);
+        if (features.getNumEntries() != labels.getNumEntries())
+            throw new IllegalArgumentException("Features file has " + features.getNumEntries()
+                    + " entries, but labels file has " + labels.getNumEntries());
+        if (labels.getEntryLength() != 1)
+            throw new IllegalArgumentException("Labels file must contain one class index per entry");
+        if (builder.numShards < 1 || builder.shardIndex < 0 || builder.shardIndex >= builder.numShards)
+            throw new IllegalArgumentException("Invalid shard: " + builder.shardIndex + " of " + builder.numShards);
+
+        this.numClasses = builder.numClasses;
+        this.batchSize = builder.batchSize;
+        this.numExamples = (builder.numExamples > 0 ? Math.min(builder.numExamples, features.getNumEntries())
+                : features.getNumEntries());
+        this.shift = builder.shift;
+        this.scale = builder.scale;
+        this.threshold = builder.threshold;
+        this.shuffle = builder.shuffle;
+        this.rng = new Random(builder.seed);
+        this.shardIndex = builder.shardIndex;
+        this.numShards = builder.numShards;
+        reset();
+    }
+
+    @Override
+    public int numBatches() {
+        return (order.length + batchSize - 1) / batchSize;
+    }
+
+    @Override
+    public DataSet getBatch(int batchIndex, DataSet reuse) {
+        int[] order = this.order;
+        int start = batchIndex * batchSize;
+        if (batchIndex < 0 || start >= order.length)
+            throw new IndexOutOfBoundsException("Invalid batch index " + batchIndex + ", numBatches=" + numBatches());
+        int n = Math.min(batchSize, order.length - start);
+        int entryLength = features.getEntryLength();
+
+        boolean canReuse = reuse != null && canReuse(reuse.getFeatures(), n, entryLength)
+                && canReuse(reuse.getLabels(), n, numClasses);
+        float[] featureData = canReuse ? scratch(n * entryLength) : new float[n * entryLength];
+        byte[] bytes = byteScratch.get();
+        if (bytes == null || bytes.length < entryLength) {
+            bytes = new byte[entryLength];
+            byteScratch.set(bytes);
+        }
+        float[] labelData = new float[n * numClasses];
+
+        for (int i = 0; i < n; i++) {
+            int idx = order[start + i];
+            features.readEntry(idx, featureData, i * entryLength, shift, scale, threshold, bytes);
+            int label = labels.readInt(idx, 0);
+            if (label < 0 || label >= numClasses)
+                throw new IllegalStateException("Label " + label + " for example " + idx + " is not in range 0 to " + (numClasses - 1));
+            labelData[i * numClasses + label] = 1.0f;
+        }
+
+        if (canReuse) {
+            reuse.getFeatures().data().setData(featureData);
+            reuse.getLabels().data().setData(labelData);
+            return reuse;
+        }
+        return new DataSet(Nd4j.create(featureData, new int[]{n, entryLength}),
+                Nd4j.create(labelData, new int[]{n, numClasses}));
+    }
+
+    private float[] scratch(int length) {
+        float[] f = floatScratch.get();
+        if (f == null || f.length != length) {
+            f = new float[length];
+            floatScratch.set(f);
+        }
+        return f;
+    }
+
+    private static boolean canReuse(INDArray arr, int rows, int columns) {
+        return arr != null && arr.ordering() == 'c' && arr.offset() == 0 && arr.rank() == 2 && arr.size(0) == rows
+                && arr.size(1) == columns && arr.data().length() == arr.length();
+    }
+
+    /**
+     * Start a new epoch: reshuffle (if enabled) and select this shard's examples
+     */
+    @Override
+    public synchronized void reset() {
+        int[] all = new int[numExamples];
+        for (int i = 0; i < all.length; i++) all[i] = i;
+        if (shuffle) MathUtils.shuffleArray(all, rng);
+
+        int[] shard = new int[(numExamples - shardIndex + numShards - 1) / numShards];
+        for (int i = shardIndex, j = 0; i < all.length; i += numShards, j++) shard[j] = all[i];
+        order = shard;
+        cursor = 0;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return cursor < numBatches();
+    }
+
+    @Override
+    public synchronized DataSet next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        DataSet ds = getBatch(cursor++, null);
+        if (preProcessor != null) preProcessor.preProcess(ds);
+        return ds;
+    }
+
+    @Override
+    public DataSet next(int num) {
+        throw new UnsupportedOperationException("next(int) not supported: use the batch size set in the builder");
+    }
+
+    @Override
+    public int totalExamples() {
+        return order.length;
+    }
+
+    @Override
+    public int inputColumns() {
+        return features.getEntryLength();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return numClasses;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public synchronized int cursor() {
+        return Math.min(cursor * batchSize, order.length);
+    }
+
+    @Override
+    public int numExamples() {
+        return totalExamples();
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        List<String> out = new ArrayList<>(numClasses);
+        for (int i = 0; i < numClasses; i++) out.add(String.valueOf(i));
+        return out;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unmap the underlying files
+     */
+    public void close() throws IOException {
+        features.close();
+        labels.close();
+    }
+
+
+    public static class Builder {
+        private File featuresFile;
+        private File labelsFile;
+        private int numClasses;
+        private int batchSize = 32;
+        private int numExamples = -1;
+        private float shift = 0.0f;
+        private float scale = 1.0f;
+        private float threshold = Float.NaN;
+        private boolean shuffle = false;
+        private long seed = System.currentTimeMillis();
+        private int shardIndex = 0;
+        private int numShards = 1;
+
+        /**
+         * @param featuresFile IDX file with the features/images; one entry per example
+         * @param labelsFile   IDX file with one class index per example
+         * @param numClasses   Number of classes (size of the one-hot label vectors)
+         */
+        public Builder(File featuresFile, File labelsFile, int numClasses) {
+            this.featuresFile = featuresFile;
+            this.labelsFile = labelsFile;
+            this.numClasses = numClasses;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Only use the first numExamples entries of the files (default: all)
+         */
+        public Builder numExamples(int numExamples) {
+            this.numExamples = numExamples;
+            return this;
+        }
+
+        /**
+         * Normalize values as {@code (value - shift) * scale}. For example, normalize(0, 1/255f) for byte images
+         */
+        public Builder normalize(float shift, float scale) {
+            this.shift = shift;
+            this.scale = scale;
+            this.threshold = Float.NaN;
+            return this;
+        }
+
+        /**
+         * Binarize values: 1.0 if the raw value is greater than the threshold, 0.0 otherwise
+         */
+        public Builder binarize(float threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        public Builder shuffle(boolean shuffle, long seed) {
+            this.shuffle = shuffle;
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Only return the examples for the given shard (worker) index, out of numShards shards. All shards must
+         * use the same shuffle seed
+         */
+        public Builder shard(int shardIndex, int numShards) {
+            this.shardIndex = shardIndex;
+            this.numShards = numShards;
+            return this;
+        }
+
+        public IdxDataSetIterator build() throws IOException {
+            return new IdxDataSetIterator(this);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.deeplearning4j.datasets.mnist;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory-mapped reader for files in the IDX format (the format used by MNIST).<br>
+ * An IDX file starts with a magic number: two zero bytes, a byte giving the data type, and a byte giving the number of
+ * dimensions. This is followed by the size of each dimension (big-endian ints), and then the data (big-endian).
+ * The first dimension is the number of entries; an entry is one image, label, etc.
+ * <p>
+ * The data section is mapped in chunks of whole entries, so files larger than 2GB are supported. Reads do not
+ * modify any shared state, so entries can be read concurrently from multiple threads.
+ */
+public class IdxFile implements Closeable {
+    public static final int TYPE_UBYTE = 0x08;
+    public static final int TYPE_BYTE = 0x09;
+    public static final int TYPE_SHORT = 0x0B;
+    public static final int TYPE_INT = 0x0C;
+    public static final int TYPE_FLOAT = 0x0D;
+    public static final int TYPE_DOUBLE = 0x0E;
+
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final int dataType;
+    private final int elementSize;
+    private final int[] dims;
+    private final int numEntries;
+    private final int entryLength;
+    private final int entryBytes;
+    private final int entriesPerChunk;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    public IdxFile(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        try {
+            int magic = raf.readInt();
+            if ((magic >>> 16) != 0)
+                throw new IOException("Not an IDX file (invalid magic number " + Integer.toHexString(magic) + "): " + file);
+            dataType = (magic >>> 8) & 0xFF;
+            elementSize = elementSize(dataType);
+            int rank = magic & 0xFF;
+            if (rank < 1) throw new IOException("Invalid IDX file: 0 dimensions: " + file);
+
+            dims = new int[rank];
+            long length = 1;
+            for (int i = 0; i < rank; i++) {
+                dims[i] = raf.readInt();
+                if (i > 0) length *= dims[i];
+            }
+            if (length * elementSize > Integer.MAX_VALUE)
+                throw new IOException("IDX entries larger than 2GB are not supported: " + file);
+            numEntries = dims[0];
+            entryLength = (int) length;
+            entryBytes = entryLength * elementSize;
+
+            long dataOffset = 4L + 4L * rank;
+            long expected = dataOffset + (long) numEntries * entryBytes;
+            if (raf.length() < expected)
+                throw new IOException("IDX file is truncated: expected " + expected + " bytes, got " + raf.length() + ": " + file);
+
+            entriesPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / Math.max(1, entryBytes));
+            FileChannel channel = raf.getChannel();
+            for (long first = 0; first < numEntries; first += entriesPerChunk) {
+                long count = Math.min(entriesPerChunk, numEntries - first);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + first * entryBytes,
+                        count * entryBytes);
+                chunk.order(ByteOrder.BIG_ENDIAN);
+                chunks.add(chunk);
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static int elementSize(int dataType) throws IOException {
+        switch (dataType) {
+            case TYPE_UBYTE:
+            case TYPE_BYTE:
+                return 1;
+            case TYPE_SHORT:
+                return 2;
+            case TYPE_INT:
+            case TYPE_FLOAT:
+                return 4;
+            case TYPE_DOUBLE:
+                return 8;
+            default:
+                throw new IOException("Unknown IDX data type: 0x" + Integer.toHexString(dataType));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getDataType() {
+        return dataType;
+    }
+
+    /**
+     * @return All dimensions, including the first (number of entries)
+     */
+    public int[] getDims() {
+        return dims.clone();
+    }
+
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    /**
+     * @return Number of values per entry (for example, 784 for MNIST images)
+     */
+    public int getEntryLength() {
+        return entryLength;
+    }
+
+    /**
+     * Copy the raw bytes of one entry. Only valid for (unsigned) byte files
+     */
+    public void readEntry(int index, byte[] dst, int dstOffset) {
+        if (elementSize != 1) throw new UnsupportedOperationException("readEntry(byte[]) requires a byte IDX file");
+        entryBuffer(index).get(dst, dstOffset, entryLength);
+    }
+
+    /**
+     * Read a single value as an int; for example a label, in a label file with 1 dimension
+     */
+    public int readInt(int index, int offsetInEntry) {
+        ByteBuffer bb = entryBuffer(index);
+        int pos = bb.position() + offsetInEntry * elementSize;
+        switch (dataType) {
+            case TYPE_UBYTE:
+                return bb.get(pos) & 0xFF;
+            case TYPE_BYTE:
+                return bb.get(pos);
+            case TYPE_SHORT:
+                return bb.getShort(pos);
+            case TYPE_INT:
+                return bb.getInt(pos);
+            case TYPE_FLOAT:
+                return (int) bb.getFloat(pos);
+            default:
+                return (int) bb.getDouble(pos);
+        }
+    }
+
+    /**
+     * Read one entry into a float array, applying {@code (value - shift) * scale}. If {@code threshold} is not NaN,
+     * values are instead binarized: 1.0 if the raw value is greater than the threshold, 0.0 otherwise.
+     *
+     * @param index     Entry index
+     * @param dst       Destination array
+     * @param dstOffset Offset in the destination array
+     * @param buffer    Scratch array of at least {@link #getEntryLength()} bytes, used for byte files (may be null)
+     */
+    public void readEntry(int index, float[] dst, int dstOffset, float shift, float scale, float threshold,
+                          byte[] buffer) {
+        ByteBuffer bb = entryBuffer(index);
+        boolean binarize = !Float.isNaN(threshold);
+        if (elementSize == 1) {
+            if (buffer == null || buffer.length < entryLength) buffer = new byte[entryLength];
+            bb.get(buffer, 0, entryLength);
+            boolean unsigned = (dataType == TYPE_UBYTE);
+            for (int j = 0; j < entryLength; j++) {
+                float v = unsigned ? (buffer[j] & 0xFF) : buffer[j];
+                dst[dstOffset + j] = binarize ? (v > threshold ? 1.0f : 0.0f) : (v - shift) * scale;
+            }
+            return;
+        }
+
+        for (int j = 0; j < entryLength; j++) {
+            float v;
+            switch (dataType) {
+                case TYPE_SHORT:
+                    v = bb.getShort();
+                    break;
+                case TYPE_INT:
+                    v = bb.getInt();
+                    break;
+                case TYPE_FLOAT:
+                    v = bb.getFloat();
+                    break;
+                default:
+                    v = (float) bb.getDouble();
+            }
+            dst[dstOffset + j] = binarize ? (v > threshold ? 1.0f : 0.0f) : (v - shift) * scale;
+        }
+    }
+
+    //Returns an independent buffer positioned at the start of the entry
+    private ByteBuffer entryBuffer(int index) {
+        if (index < 0 || index >= numEntries)
+            throw new IndexOutOfBoundsException("Entry " + index + " is not in the range 0 to " + (numEntries - 1));
+        ByteBuffer bb = chunks.get(index / entriesPerChunk).duplicate();
+        bb.order(ByteOrder.BIG_ENDIAN);
+        bb.position((index % entriesPerChunk) * entryBytes);
+        return bb;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunks.clear();
+        raf.close();
+    }
+}
@@ -2,7 +2,7 @@ package org.deeplearning4j.parallelism;
 
 import lombok.NonNull;
 import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
-import org.deeplearning4j.datasets.iterator.AsyncMultiDataSetIterator;
+import org.deeplearning4j.datasets.iterator.parallel.ParallelPrefetchMultiDataSetIterator;
 import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.api.Updater;
@@ -99,7 +99,7 @@ public class ParallelWrapper implements AutoCloseable {
 
         MultiDataSetIterator iterator;
         if (prefetchSize > 0 && source.asyncSupported()) {
-            iterator = new AsyncMultiDataSetIterator(source, prefetchSize);
+            iterator = new ParallelPrefetchMultiDataSetIterator.Builder(source).workers(1).queueSize(prefetchSize).build();
         } else iterator = source;
 
         AtomicInteger locker = new AtomicInteger(0);
@@ -0,0 +1,504 @@
+package org.deeplearning4j.parallelism;
+
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.layers.recurrent.GravesBidirectionalLSTM;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves streaming (one time step at a time) RNN inference for many concurrent sessions with a single network.
+ * <p>
+ * {@link MultiLayerNetwork#rnnTimeStep(INDArray)} keeps the hidden state inside the recurrent layers, so a network can
+ * only serve one stream at a time. Here the state of every session is kept outside of the network instead: for each
+ * recurrent layer and state array (e.g. activations and memory cells of a GravesLSTM), one preallocated matrix with a
+ * row per session slot. A time step gathers the state rows of all sessions in the step in to one minibatch, does a single
+ * rnnTimeStep, and scatters the new states back.
+ * <p>
+ * Time steps can be done synchronously with {@link #step(Map)}, or submitted with {@link #submit(Object, INDArray)}:
+ * a background thread then collects all pending time steps (at most one per session, up to maxBatchSize) in to
+ * each minibatch. Sessions idle for longer than the idle timeout are evicted, and their slots reused.
+ * <p>
+ * PLEASE NOTE: bidirectional layers can't be used, since they need the whole time series at once.
+ *
+ * @param <K> session key type
+ */
+public class RnnSessionServer<K> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(RnnSessionServer.class);
+
+    private final Model model;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long idleTimeoutMillis;
+
+    // session -> slot, in access order: the first entries are the least recently used sessions
+    private final LinkedHashMap<K, Integer> slots = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, Long> lastAccess = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    // layer -> state key -> [capacity, stateSize] matrix, allocated after the first time step
+    private Map<String, Map<String, INDArray>> stateStore;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private volatile Thread batcher;
+
+    private class Request implements Future<INDArray> {
+        private final K session;
+        private final INDArray input;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile INDArray output;
+        private volatile RuntimeException exception;
+
+        private Request(K session, INDArray input) {
+            this.session = session;
+            this.input = input;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        @Override
+        public INDArray get() throws InterruptedException, ExecutionException {
+            latch.await();
+            if (exception != null)
+                throw new ExecutionException(exception);
+            return output;
+        }
+
+        @Override
+        public INDArray get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!latch.await(timeout, unit))
+                throw new TimeoutException();
+            return get();
+        }
+    }
+
+    protected RnnSessionServer(Model model, int capacity, int maxBatchSize, long idleTimeoutMillis) {
+        this.model = model;
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+
+        for (Layer layer : layers()) {
+            if (layer instanceof GravesBidirectionalLSTM)
+                throw new IllegalArgumentException("Bidirectional layers can't be used for time step inference");
+        }
+        for (int i = capacity - 1; i >= 0; i--)
+            freeSlots.push(i);
+    }
+
+    private Layer[] layers() {
+        return model instanceof MultiLayerNetwork ? ((MultiLayerNetwork) model).getLayers() : ((ComputationGraph) model).getLayers();
+    }
+
+    /**
+     * Does one time step for each of the given sessions, as one minibatch. New sessions start with a zero state.
+     *
+     * @param inputs session -> input for this time step, with shape [1, nIn]
+     * @return session -> output for this time step
+     */
+    public synchronized Map<K, INDArray> step(@NonNull Map<K, INDArray> inputs) {
+        if (inputs.isEmpty())
+            return new HashMap<>();
+        if (inputs.size() > capacity)
+            throw new IllegalArgumentException("Number of sessions in one step exceeds capacity: " + inputs.size() + " > " + capacity);
+
+        List<K> sessions = new ArrayList<>(inputs.keySet());
+        int[] rows = new int[sessions.size()];
+        INDArray[] features = new INDArray[sessions.size()];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = slotFor(sessions.get(i), now, inputs.keySet());
+            features[i] = inputs.get(sessions.get(i));
+        }
+
+        //Gather: states of these sessions, as one minibatch
+        if (stateStore != null) {
+            Map<String, Map<String, INDArray>> states = new HashMap<>();
+            for (Map.Entry<String, Map<String, INDArray>> layer : stateStore.entrySet()) {
+                Map<String, INDArray> layerState = new HashMap<>();
+                for (Map.Entry<String, INDArray> entry : layer.getValue().entrySet()) {
+                    INDArray store = entry.getValue();
+                    INDArray batch = Nd4j.create(rows.length, store.size(1));
+                    for (int i = 0; i < rows.length; i++)
+                        batch.putRow(i, store.getRow(rows[i]));
+                    layerState.put(entry.getKey(), batch);
+                }
+                states.put(layer.getKey(), layerState);
+            }
+            setStates(states);
+        } else {
+            clearStates();
+        }
+
+        INDArray output = timeStep(Nd4j.vstack(features));
+
+        //Scatter: new states back to the session slots
+        Map<String, Map<String, INDArray>> states = getStates();
+        if (stateStore == null) {
+            stateStore = new HashMap<>();
+            for (Map.Entry<String, Map<String, INDArray>> layer : states.entrySet()) {
+                Map<String, INDArray> layerStore = new HashMap<>();
+                for (Map.Entry<String, INDArray> entry : layer.getValue().entrySet())
+                    layerStore.put(entry.getKey(), Nd4j.zeros(capacity, entry.getValue().size(1)));
+                stateStore.put(layer.getKey(), layerStore);
+            }
+        }
+        for (Map.Entry<String, Map<String, INDArray>> layer : states.entrySet()) {
+            Map<String, INDArray> layerStore = stateStore.get(layer.getKey());
+            for (Map.Entry<String, INDArray> entry : layer.getValue().entrySet()) {
+                INDArray store = layerStore.get(entry.getKey());
+                for (int i = 0; i < rows.length; i++)
+                    store.putRow(rows[i], entry.getValue().getRow(i));
+            }
+        }
+        clearStates();
+
+        Map<K, INDArray> ret = new HashMap<>();
+        for (int i = 0; i < rows.length; i++)
+            ret.put(sessions.get(i), output.getRow(i).dup());
+        return ret;
+    }
+
+    /**
+     * Submits one time step of a session. The time step is done by a background thread, batched together with the
+     * pending time steps of other sessions. Time steps of one session are done in submission order.
+     *
+     * @param session session key
+     * @param input   input for this time step, with shape [1, nIn]
+     * @return the output of this time step
+     */
+    public Future<INDArray> submit(@NonNull K session, @NonNull INDArray input) {
+        if (!running.get())
+            throw new IllegalStateException("RnnSessionServer was closed");
+        Request request = new Request(session, input);
+        if (batcher == null)
+            startBatcher();
+        queue.add(request);
+        //Closed concurrently: the batcher may already have stopped, so fail what is left in the queue
+        if (!running.get())
+            failQueued();
+        return request;
+    }
+
+    private synchronized void startBatcher() {
+        if (batcher != null)
+            return;
+        batcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<Request> deferred = new ArrayList<>();
+                List<Request> pending = new ArrayList<>();
+                try {
+                    while (running.get()) {
+                        pending.clear();
+                        pending.addAll(deferred);
+                        deferred.clear();
+                        if (pending.isEmpty()) {
+                            Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                            if (first == null) {
+                                evictIdle();
+                                continue;
+                            }
+                            pending.add(first);
+                        }
+                        queue.drainTo(pending);
+
+                        //At most one time step per session in a minibatch: later ones go in to the next minibatch
+                        Map<K, Request> batch = new LinkedHashMap<>();
+                        for (Request request : pending) {
+                            if (batch.size() < maxBatchSize && !batch.containsKey(request.session))
+                                batch.put(request.session, request);
+                            else
+                                deferred.add(request);
+                        }
+                        pending.clear();
+                        process(batch);
+                    }
+                } catch (InterruptedException e) {
+                    //Closed
+                } finally {
+                    //Requests taken from the queue but not processed yet
+                    fail(deferred);
+                    fail(pending);
+                    failQueued();
+                }
+            }
+        });
+        batcher.setName("RnnSessionServer batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    private void process(Map<K, Request> batch) {
+        Map<K, INDArray> inputs = new LinkedHashMap<>();
+        for (Request request : batch.values())
+            inputs.put(request.session, request.input);
+        try {
+            Map<K, INDArray> outputs = step(inputs);
+            for (Request request : batch.values())
+                request.output = outputs.get(request.session);
+        } catch (RuntimeException e) {
+            logger.error("Time step failed", e);
+            for (Request request : batch.values())
+                request.exception = e;
+        }
+        for (Request request : batch.values())
+            request.latch.countDown();
+    }
+
+    private int slotFor(K session, long now, Set<K> inStep) {
+        Integer slot = slots.get(session);
+        if (slot == null) {
+            if (freeSlots.isEmpty())
+                evictIdle();
+            if (freeSlots.isEmpty())
+                evictLeastRecentlyUsed(inStep);
+            slot = freeSlots.pop();
+            slots.put(session, slot);
+        }
+        lastAccess.put(session, now);
+        return slot;
+    }
+
+    private void evictLeastRecentlyUsed(Set<K> inStep) {
+        Iterator<K> iterator = slots.keySet().iterator();
+        while (iterator.hasNext()) {
+            K session = iterator.next();
+            if (!inStep.contains(session)) {
+                logger.warn("No free session slots: evicting least recently used session [{}]", session);
+                release(session);
+                return;
+            }
+        }
+        throw new IllegalStateException("No free session slots");
+    }
+
+    /**
+     * Removes all sessions without a time step during the idle timeout
+     *
+     * @return number of evicted sessions
+     */
+    public synchronized int evictIdle() {
+        if (idleTimeoutMillis <= 0)
+            return 0;
+        long threshold = System.currentTimeMillis() - idleTimeoutMillis;
+        List<K> idle = new ArrayList<>();
+        for (Map.Entry<K, Long> entry : lastAccess.entrySet()) {
+            if (entry.getValue() < threshold)
+                idle.add(entry.getKey());
+        }
+        for (K session : idle)
+            release(session);
+        return idle.size();
+    }
+
+    /**
+     * Ends a session, and frees its state slot. A later time step for the same key starts a new session.
+     */
+    public synchronized void endSession(@NonNull K session) {
+        if (slots.containsKey(session))
+            release(session);
+    }
+
+    private void release(K session) {
+        int slot = slots.remove(session);
+        lastAccess.remove(session);
+        if (stateStore != null) {
+            for (Map<String, INDArray> layerStore : stateStore.values()) {
+                for (INDArray store : layerStore.values())
+                    store.getRow(slot).assign(0.0);
+            }
+        }
+        freeSlots.push(slot);
+    }
+
+    /**
+     * @return the number of sessions with stored state
+     */
+    public synchronized int numSessions() {
+        return slots.size();
+    }
+
+    /**
+     * @return keys of all sessions with stored state
+     */
+    public synchronized Set<K> sessions() {
+        return new HashSet<>(slots.keySet());
+    }
+
+    private INDArray timeStep(INDArray input) {
+        if (model instanceof MultiLayerNetwork)
+            return ((MultiLayerNetwork) model).rnnTimeStep(input);
+        return ((ComputationGraph) model).rnnTimeStep(input)[0];
+    }
+
+    private Map<String, Map<String, INDArray>> getStates() {
+        if (model instanceof ComputationGraph)
+            return ((ComputationGraph) model).rnnGetPreviousStates();
+
+        MultiLayerNetwork network = (MultiLayerNetwork) model;
+        Map<String, Map<String, INDArray>> states = new HashMap<>();
+        for (int i = 0; i < network.getnLayers(); i++) {
+            if (network.getLayer(i) instanceof RecurrentLayer)
+                states.put(String.valueOf(i), network.rnnGetPreviousState(i));
+        }
+        return states;
+    }
+
+    private void setStates(Map<String, Map<String, INDArray>> states) {
+        if (model instanceof ComputationGraph) {
+            ((ComputationGraph) model).rnnSetPreviousStates(states);
+        } else {
+            for (Map.Entry<String, Map<String, INDArray>> entry : states.entrySet())
+                ((MultiLayerNetwork) model).rnnSetPreviousState(Integer.parseInt(entry.getKey()), entry.getValue());
+        }
+    }
+
+    private void clearStates() {
+        if (model instanceof MultiLayerNetwork)
+            ((MultiLayerNetwork) model).rnnClearPreviousState();
+        else
+            ((ComputationGraph) model).rnnClearPreviousState();
+    }
+
+    /**
+     * Stops the background thread. Time steps submitted but not done yet fail
+     */
+    @Override
+    public void close() {
+        running.set(false);
+        Thread thread = batcher;
+        if (thread != null)
+            thread.interrupt();
+
+        failQueued();
+    }
+
+    private void failQueued() {
+        List<Request> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        fail(pending);
+    }
+
+    private void fail(List<Request> requests) {
+        for (Request request : requests) {
+            if (request.isDone())
+                continue;
+            request.exception = new IllegalStateException("RnnSessionServer was closed");
+            request.latch.countDown();
+        }
+        requests.clear();
+    }
+
+    public static class Builder {
+        private Model model;
+        private int capacity = 1024;
+        private int maxBatchSize = 256;
+        private long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+
+        /**
+         * Build RnnSessionServer for MultiLayerNetwork
+         *
+         * @param mln
+         */
+        public Builder(@NonNull MultiLayerNetwork mln) {
+            model = mln;
+        }
+
+        /**
+         * Build RnnSessionServer for ComputationGraph, with one input and one output
+         *
+         * @param graph
+         */
+        public Builder(@NonNull ComputationGraph graph) {
+            if (graph.getNumInputArrays() != 1 || graph.getNumOutputArrays() != 1)
+                throw new IllegalArgumentException("Only ComputationGraphs with 1 input and 1 output are supported");
+            model = graph;
+        }
+
+        /**
+         * Maximum number of sessions with stored state. State memory is allocated for all of them up front.
+         * When all slots are used, idle sessions are evicted first, then the least recently used ones.
+         *
+         * Default value: 1024
+         *
+         * @param capacity
+         * @return
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Maximum number of sessions in one minibatch, for submitted time steps
+         *
+         * Default value: 256
+         *
+         * @param maxBatchSize
+         * @return
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sessions without a time step for this long are evicted. 0 disables eviction of idle sessions.
+         *
+         * Default value: 10 minutes
+         *
+         * @param timeout
+         * @param unit
+         * @return
+         */
+        public Builder idleTimeout(long timeout, TimeUnit unit) {
+            this.idleTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public <K> RnnSessionServer<K> build() {
+            if (capacity < 1 || maxBatchSize < 1)
+                throw new IllegalArgumentException("Capacity and batch size must be positive");
+            return new RnnSessionServer<K>(model, capacity, Math.min(maxBatchSize, capacity), idleTimeoutMillis);
+        }
+    }
+}
@@ -19,12 +19,9 @@
 package org.deeplearning4j.plot;
 
 
-import com.google.common.util.concurrent.AtomicDouble;
-import org.apache.commons.math3.util.FastMath;
 import org.deeplearning4j.berkeley.Pair;
-import org.deeplearning4j.clustering.sptree.DataPoint;
-import org.deeplearning4j.clustering.sptree.SpTree;
-import org.deeplearning4j.clustering.vptree.VPTree;
+import org.deeplearning4j.clustering.sptree.FlatSpTree;
+import org.deeplearning4j.clustering.vptree.FlatVPTree;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
@@ -33,10 +30,6 @@ import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.IterationListener;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.indexing.BooleanIndexing;
-import org.nd4j.linalg.indexing.conditions.Conditions;
-import org.nd4j.linalg.indexing.functions.Value;
-import org.nd4j.linalg.learning.AdaGrad;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,13 +37,13 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import static org.nd4j.linalg.factory.Nd4j.*;
-import static org.nd4j.linalg.ops.transforms.Transforms.pow;
-import static org.nd4j.linalg.ops.transforms.Transforms.sign;
 
 
 /**
@@ -58,6 +51,11 @@ import static org.nd4j.linalg.ops.transforms.Transforms.sign;
  * Work based on:
  * http://lvdmaaten.github.io/tsne/
  * For hight dimensions, it's recommanded to reduce the dimension up to 50 using another method (PCA or other)
+ * <p>
+ * The embedding, its gradient and the sparse input similarities are held in flat primitive arrays. Input similarities
+ * are computed from the 3 * perplexity nearest neighbours of each point (found with a {@link FlatVPTree}), and the
+ * forces are computed with a {@link FlatSpTree}; both steps are split over a fork/join pool of
+ * {@link Builder#workers(int)} threads.
  * @author Adam Gibson
  */
 public class BarnesHutTsne implements Model {
@@ -75,24 +73,31 @@ public class BarnesHutTsne implements Model {
     protected int stopLyingIteration = 250;
     protected double tolerance = 1e-5;
     protected double learningRate = 500;
-    protected AdaGrad adaGrad;
     protected boolean useAdaGrad = true;
     protected double perplexity = 30;
-    //protected INDArray gains,yIncs;
+    protected int workers = Runtime.getRuntime().availableProcessors();
     protected INDArray Y;
     private int N;
     private double theta;
-    private INDArray rows;
-    private INDArray cols;
-    private INDArray vals;
     private String simiarlityFunction = "cosinesimilarity";
     private boolean invert = true;
     private INDArray x;
     private int numDimensions = 0;
     public final static String Y_GRAD = "yIncs";
-    private SpTree tree;
-    private INDArray gains;
-    private INDArray yIncs;
+    private static final double ADAGRAD_LEARNING_RATE = 1e-1;
+    private static final double ADAGRAD_EPSILON = 1e-6;
+
+    //Embedding (N x numDimensions, row-major) and optimizer state
+    private double[] y;
+    private double[] gains;
+    private double[] yIncs;
+    private double[] adaGradHistory;
+    private double[] grad;
+    //Sparse (CSR) input similarities
+    private int[] rowP;
+    private int[] colP;
+    private double[] valP;
+    private transient ForkJoinPool pool;
     protected transient IterationListener iterationListener;
 
     public BarnesHutTsne(int numDimensions, String simiarlityFunction, double theta,
@@ -101,6 +106,17 @@ public class BarnesHutTsne implements Model {
                          boolean normalize, int stopLyingIteration, double tolerance,
                          double learningRate, boolean useAdaGrad, double perplexity,
                          IterationListener iterationListener, double minGain) {
+        this(numDimensions, simiarlityFunction, theta, invert, maxIter, realMin, initialMomentum, finalMomentum,
+                momentum, switchMomentumIteration, normalize, stopLyingIteration, tolerance, learningRate,
+                useAdaGrad, perplexity, iterationListener, minGain, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BarnesHutTsne(int numDimensions, String simiarlityFunction, double theta,
+                         boolean invert, int maxIter, double realMin, double initialMomentum,
+                         double finalMomentum, double momentum, int switchMomentumIteration,
+                         boolean normalize, int stopLyingIteration, double tolerance,
+                         double learningRate, boolean useAdaGrad, double perplexity,
+                         IterationListener iterationListener, double minGain, int workers) {
         this.maxIter = maxIter;
         this.realMin = realMin;
         this.initialMomentum = initialMomentum;
@@ -119,6 +135,7 @@ public class BarnesHutTsne implements Model {
         this.theta = theta;
         this.iterationListener = iterationListener;
         this.invert = invert;
+        this.workers = Math.max(1, workers);
     }
 
 
@@ -154,6 +171,68 @@ public class BarnesHutTsne implements Model {
         this.numDimensions = numDimensions;
     }
 
+    public int getWorkers() {
+        return workers;
+    }
+
+    /** A computation over a range of rows [from, to), returning a value to be summed over all ranges */
+    private interface RowRangeFunction {
+        double apply(int from, int to);
+    }
+
+    private class RowRangeTask extends RecursiveTask<Double> {
+        private final RowRangeFunction function;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        private RowRangeTask(RowRangeFunction function, int from, int to, int grain) {
+            this.function = function;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= grain)
+                return function.apply(from, to);
+            int mid = (from + to) >>> 1;
+            RowRangeTask right = new RowRangeTask(function, mid, to, grain);
+            right.fork();
+            double left = new RowRangeTask(function, from, mid, grain).compute();
+            return left + right.join();
+        }
+    }
+
+    private ForkJoinPool pool() {
+        if (pool == null)
+            pool = new ForkJoinPool(workers);
+        return pool;
+    }
+
+    /** Apply the function to all rows [0, n), in parallel, and return the sum of the results */
+    private double parallelSum(int n, int minGrain, RowRangeFunction function) {
+        if (n <= 0)
+            return 0.0;
+        int grain = Math.max(minGrain, n / (8 * workers));
+        if (workers == 1 || n <= grain)
+            return function.apply(0, n);
+        return pool().invoke(new RowRangeTask(function, 0, n, grain));
+    }
+
+    private static double[] toArray(INDArray arr) {
+        return arr.dup('c').data().asDouble();
+    }
+
+    private static int[] toIntArray(INDArray arr) {
+        double[] d = toArray(arr);
+        int[] out = new int[d.length];
+        for (int i = 0; i < d.length; i++)
+            out[i] = (int) d[i];
+        return out;
+    }
+
     /**
      * Convert data to probability
      * co-occurrences (aka calculating the kernel)
@@ -163,89 +242,96 @@ public class BarnesHutTsne implements Model {
      */
     public INDArray computeGaussianPerplexity(final INDArray d,  double u) {
         N = d.rows();
+        computeGaussianPerplexity(toArray(d), d.columns(), u);
+        return Nd4j.create(valP);
+    }
 
-        final int k = (int) (3 * u);
+    private void computeGaussianPerplexity(final double[] data, final int dims, double u) {
+        final int k = Math.min((int) (3 * u), N - 1);
         if(u > k)
-            throw new IllegalStateException("Illegal k value " + k + "greater than " + u);
-
-
-        rows = zeros(1,N + 1);
-        cols = zeros(1,N * k);
-        vals = zeros(1,N * k);
+            throw new IllegalStateException("Illegal k value " + k + " greater than " + u);
 
+        rowP = new int[N + 1];
+        colP = new int[N * k];
+        valP = new double[N * k];
         for(int n = 0; n < N; n++)
-            rows.putScalar(n + 1,rows.getDouble(n) + k);
-
+            rowP[n + 1] = rowP[n] + k;
 
-        final INDArray beta =  ones(N, 1);
-
-        final double logU =  FastMath.log(u);
-        VPTree tree = new VPTree(d,simiarlityFunction,invert);
+        final double logU = Math.log(u);
+        logger.info("Building nearest neighbour tree for {} records...", N);
+        final FlatVPTree tree = new FlatVPTree(data, N, dims, simiarlityFunction, (workers > 1 ? pool() : null));
+        //As for VPTree: distances are those of DataPoint, negated if inverted; for cosine similarity, the "distance"
+        //is the similarity itself, so the most similar points come first only if inverted
+        final boolean cosine = "cosinesimilarity".equals(simiarlityFunction);
+        final boolean farthest = (cosine != invert);
 
         logger.info("Calculating probabilities of data similarities...");
-        for(int i = 0; i < N; i++) {
-            if(i % 500 == 0)
-                logger.info("Handled " + i + " records");
-
-            double betaMin = -Double.MAX_VALUE;
-            double betaMax = Double.MAX_VALUE;
-            List<DataPoint> results = new ArrayList<>();
-            tree.search(new DataPoint(i,d.slice(i)),k + 1,results,new ArrayList<Double>());
-            double betas = beta.getDouble(i);
-
-            INDArray cArr = VPTree.buildFromData(results);
-            Pair<INDArray,Double> pair =  computeGaussianKernel(cArr, beta.getDouble(i),k);
-            INDArray currP = pair.getFirst();
-            double hDiff =  pair.getSecond() - logU;
-            int tries = 0;
-            boolean found = false;
-            //binary search
-            while(!found && tries < 200) {
-                if(hDiff < tolerance && -hDiff < tolerance)
-                    found = true;
-                else {
-                    if(hDiff > 0) {
-                        betaMin = betas;
-
-                        if(betaMax == Double.MAX_VALUE || betaMax == -Double.MAX_VALUE)
-                            betas *= 2;
-                        else
-                            betas = (betas + betaMax) / 2.0;
-                    }
-                    else {
-                        betaMax = betas;
-                        if(betaMin == -Double.MAX_VALUE || betaMin == Double.MAX_VALUE)
-                            betas /= 2.0;
-                        else
-                            betas = (betas + betaMin) / 2.0;
+        parallelSum(N, 16, new RowRangeFunction() {
+            @Override
+            public double apply(int from, int to) {
+                int[] indexes = new int[k];
+                double[] distances = new double[k];
+                for (int i = from; i < to; i++) {
+                    if (farthest)
+                        tree.searchFarthest(i, k, indexes, distances);
+                    else
+                        tree.search(i, k, indexes, distances);
+                    for (int m = 0; m < k; m++) {
+                        //Cosine similarity from the distance between normalized vectors
+                        double d = (cosine ? 1.0 - distances[m] * distances[m] / 2.0 : distances[m]);
+                        distances[m] = (invert ? -d : d);
                     }
-
-                    pair = computeGaussianKernel(cArr, betas,k);
-                    hDiff = pair.getSecond() - logU;
-                    tries++;
+                    int offset = rowP[i];
+                    computeRow(distances, k, logU, valP, offset);
+                    System.arraycopy(indexes, 0, colP, offset, k);
                 }
-
+                return 0.0;
             }
+        });
+    }
 
-
-            currP.divi(currP.sum(Integer.MAX_VALUE));
-            INDArray indices = Nd4j.create(1,k + 1);
-            for(int j = 0; j < indices.length(); j++) {
-                if(j >= results.size())
-                    break;
-                indices.putScalar(j, results.get(j).getIndex());
+    /**
+     * Binary search for the precision (beta) of the Gaussian kernel of one row, given the distances to the
+     * neighbours in increasing order; the normalized row is written to out[offset] to out[offset + k - 1]
+     */
+    private void computeRow(double[] distances, int k, double logU, double[] out, int offset) {
+        //Distances are shifted by the minimum, for numerical stability: this cancels out after normalization
+        double minDistance = distances[0];
+        double beta = 1.0;
+        double betaMin = -Double.MAX_VALUE;
+        double betaMax = Double.MAX_VALUE;
+        double sum = 0.0;
+        for (int tries = 0; tries < 200; tries++) {
+            sum = 0.0;
+            double h = 0.0;
+            for (int m = 0; m < k; m++) {
+                double shifted = distances[m] - minDistance;
+                double p = Math.exp(-beta * shifted);
+                out[offset + m] = p;
+                sum += p;
+                h += beta * shifted * p;
             }
-
-            for(int l = 0; l < k; l++) {
-                cols.putScalar(rows.getInt(i) + l,indices.getDouble(l + 1));
-                vals.putScalar(rows.getInt(i) + l,currP.getDouble(l));
+            h = h / sum + Math.log(sum);
+
+            double hDiff = h - logU;
+            if (hDiff < tolerance && -hDiff < tolerance)
+                break;
+            if (hDiff > 0) {
+                betaMin = beta;
+                if (betaMax == Double.MAX_VALUE || betaMax == -Double.MAX_VALUE)
+                    beta *= 2;
+                else
+                    beta = (beta + betaMax) / 2.0;
+            } else {
+                betaMax = beta;
+                if (betaMin == -Double.MAX_VALUE || betaMin == Double.MAX_VALUE)
+                    beta /= 2.0;
+                else
+                    beta = (beta + betaMin) / 2.0;
             }
-
-
-
         }
-        return vals;
-
+        for (int m = 0; m < k; m++)
+            out[offset + m] /= sum;
     }
 
     @Override
@@ -309,85 +395,126 @@ public class BarnesHutTsne implements Model {
      * @return
      */
     public INDArray symmetrized(INDArray rowP,INDArray colP,INDArray valP) {
-        INDArray rowCounts = Nd4j.create(N);
-        for(int n = 0; n < N; n++) {
-            int begin = rowP.getInt(n);
-            int end = rowP.getInt(n + 1);
-            for(int i = begin; i < end; i++) {
-                boolean present = false;
-                for(int m = rowP.getInt(colP.getInt(i)); m < rowP.getInt(colP.getInt(i) + 1); m++)
-                    if(colP.getInt(m) == n) {
-                        present = true;
-                    }
-
-
-                if(present)
-                    rowCounts.putScalar(n,rowCounts.getDouble(n) + 1);
-
-                else {
-                    rowCounts.putScalar(n,rowCounts.getDouble(n) + 1);
-                    rowCounts.putScalar(colP.getInt(i),rowCounts.getDouble(colP.getInt(i)) + 1);
-                }
-            }
-        }
-
-
-        int numElements = rowCounts.sum(Integer.MAX_VALUE).getInt(0);
-        INDArray offset = Nd4j.create(N);
-        INDArray symRowP = Nd4j.create(N + 1);
-        INDArray symColP = Nd4j.create(numElements);
-        INDArray symValP = Nd4j.create(numElements);
-
-        for(int n = 0; n < N; n++)
-            symRowP.putScalar(n + 1,symRowP.getDouble(n) + rowCounts.getDouble(n));
-
-
-
+        N = rowP.length() - 1;
+        this.rowP = toIntArray(rowP);
+        this.colP = toIntArray(colP);
+        this.valP = toArray(valP);
+        symmetrize();
+        return Nd4j.create(this.valP);
+    }
 
-        for(int n = 0; n < N; n++) {
-            for(int i = rowP.getInt(n); i < rowP.getInt(n + 1); i++) {
-                boolean present = false;
-                for(int m = rowP.getInt(colP.getInt(i)); m < rowP.getInt(colP.getInt(i)) + 1; m++) {
-                    if(colP.getInt(m) == n) {
-                        present = true;
-                        if(n < colP.getInt(i)) {
-                            // make sure we do not add elements twice
-                            symColP.putScalar(symRowP.getInt(n) + offset.getInt(n),colP.getInt(i));
-                            symColP.putScalar(symRowP.getInt(colP.getInt(i)) + offset.getInt(colP.getInt(i)), n);
-                            symValP.putScalar(symRowP.getInt(n) + offset.getInt(n),valP.getDouble(i) + valP.getDouble(m));
-                            symValP.putScalar(symRowP.getInt(colP.getInt(i)) + offset.getInt(colP.getInt(i)) ,valP.getDouble(i) + valP.getDouble(m));
+    /**
+     * Replace the sparse similarities P by (P + P^T) / 2
+     */
+    private void symmetrize() {
+        final int[] rowP = this.rowP;
+        final int[] colP = this.colP;
+        final double[] valP = this.valP;
+
+        //Sort each row by column
+        parallelSum(N, 64, new RowRangeFunction() {
+            @Override
+            public double apply(int from, int to) {
+                for (int n = from; n < to; n++) {
+                    for (int i = rowP[n] + 1; i < rowP[n + 1]; i++) {
+                        int c = colP[i];
+                        double v = valP[i];
+                        int j = i - 1;
+                        while (j >= rowP[n] && colP[j] > c) {
+                            colP[j + 1] = colP[j];
+                            valP[j + 1] = valP[j];
+                            j--;
                         }
+                        colP[j + 1] = c;
+                        valP[j + 1] = v;
                     }
                 }
-
-                // If (colP[i], n) is not present, there is no addition involved
-                if(!present) {
-                    int colPI = colP.getInt(i);
-                    if(n < colPI) {
-                        symColP.putScalar(symRowP.getInt(n) + offset.getInt(n), colPI);
-                        symColP.putScalar(symRowP.getInt(colP.getInt(i)) + offset.getInt(colPI),n);
-                        symValP.putScalar(symRowP.getInt(n) + offset.getInt(n),valP.getDouble(i));
-                        symValP.putScalar(symRowP.getInt(colPI) + offset.getInt(colPI),valP.getDouble(i));
-                    }
-
-                }
-
-                // Update offsets
-                if(!present || (present && n < colP.getInt(i))) {
-                    offset.putScalar(n,offset.getInt(n)+ 1);
-                    int colPI = colP.getInt(i);
-                    if(colPI != n)
-                        offset.putScalar(colPI,offset.getDouble(colPI) + 1);
-                }
+                return 0.0;
+            }
+        });
+
+        //Transpose, by counting: rows of the transpose are sorted by column, as rows are visited in order
+        final int[] tRowP = new int[N + 1];
+        for (int i = 0; i < rowP[N]; i++)
+            tRowP[colP[i] + 1]++;
+        for (int n = 0; n < N; n++)
+            tRowP[n + 1] += tRowP[n];
+        final int[] tColP = new int[rowP[N]];
+        final double[] tValP = new double[rowP[N]];
+        int[] position = Arrays.copyOf(tRowP, N);
+        for (int n = 0; n < N; n++) {
+            for (int i = rowP[n]; i < rowP[n + 1]; i++) {
+                int p = position[colP[i]]++;
+                tColP[p] = n;
+                tValP[p] = valP[i];
             }
         }
 
-        // Divide the result by two
-        symValP.divi(2.0);
-
-
-        return symValP;
-
+        //Merge rows of P and P^T: first count the entries of each row, then fill them in
+        final int[] symRowP = new int[N + 1];
+        parallelSum(N, 64, new RowRangeFunction() {
+            @Override
+            public double apply(int from, int to) {
+                for (int n = from; n < to; n++)
+                    symRowP[n + 1] = mergeRow(n, rowP, colP, valP, tRowP, tColP, tValP, null, null, 0);
+                return 0.0;
+            }
+        });
+        for (int n = 0; n < N; n++)
+            symRowP[n + 1] += symRowP[n];
+
+        final int[] symColP = new int[symRowP[N]];
+        final double[] symValP = new double[symRowP[N]];
+        double sum = parallelSum(N, 64, new RowRangeFunction() {
+            @Override
+            public double apply(int from, int to) {
+                for (int n = from; n < to; n++)
+                    mergeRow(n, rowP, colP, valP, tRowP, tColP, tValP, symColP, symValP, symRowP[n]);
+                double sum = 0.0;
+                for (int i = symRowP[from]; i < symRowP[to]; i++)
+                    sum += symValP[i];
+                return sum;
+            }
+        });
+
+        //Divide by two, and normalize the result
+        double mult = (sum > 0.0 ? 1.0 / sum : 0.5);
+        for (int i = 0; i < symValP.length; i++)
+            symValP[i] *= mult;
+
+        this.rowP = symRowP;
+        this.colP = symColP;
+        this.valP = symValP;
+    }
+
+    //Merges row n of two sorted sparse matrices; counts only if outCols is null. Returns the number of entries
+    private static int mergeRow(int n, int[] aRowP, int[] aColP, double[] aValP, int[] bRowP, int[] bColP,
+                                double[] bValP, int[] outCols, double[] outVals, int outOffset) {
+        int i = aRowP[n];
+        int iEnd = aRowP[n + 1];
+        int j = bRowP[n];
+        int jEnd = bRowP[n + 1];
+        int count = 0;
+        while (i < iEnd || j < jEnd) {
+            int col;
+            double val;
+            if (j >= jEnd || (i < iEnd && aColP[i] < bColP[j])) {
+                col = aColP[i];
+                val = aValP[i++];
+            } else if (i >= iEnd || bColP[j] < aColP[i]) {
+                col = bColP[j];
+                val = bValP[j++];
+            } else {
+                col = aColP[i];
+                val = aValP[i++] + bValP[j++];
+            }
+            if (outCols != null) {
+                outCols[outOffset + count] = col;
+                outVals[outOffset + count] = val;
+            }
+            count++;
+        }
+        return count;
     }
 
     /**
@@ -402,14 +529,14 @@ public class BarnesHutTsne implements Model {
         // Compute Gaussian kernel row
         INDArray currP = Nd4j.create(k);
         for(int m = 0; m < k; m++)
-            currP.putScalar(m, FastMath.exp(-beta * distances.getDouble(m + 1)));
+            currP.putScalar(m, Math.exp(-beta * distances.getDouble(m + 1)));
 
         double sum = currP.sum(Integer.MAX_VALUE).getDouble(0);
         double h = 0.0;
         for(int m = 0; m < k; m++)
             h += beta * (distances.getDouble(m + 1) * currP.getDouble(m));
 
-        h = (h / sum) + FastMath.log(sum);
+        h = (h / sum) + Math.log(sum);
 
         return new Pair<>(currP,h);
     }
@@ -425,33 +552,57 @@ public class BarnesHutTsne implements Model {
                     stopLyingIteration, tolerance, learningRate, useAdaGrad, perplexity);
             Y = decomposedTsne.calculate(x, numDimensions, perplexity);
         } else {
+            N = x.rows();
             //output
-            if (Y == null) {
-                Y = randn(x.rows(), numDimensions, Nd4j.getRandom()).muli(1e-3f);
+            if (Y == null || Y.rows() != N || Y.columns() != numDimensions) {
+                Y = randn(N, numDimensions, Nd4j.getRandom()).muli(1e-3f);
             }
+            initState();
 
-
-            computeGaussianPerplexity(x,perplexity);
-            vals = symmetrized(rows, cols, vals).divi(vals.sum(Integer.MAX_VALUE));
+            computeGaussianPerplexity(toArray(x), x.columns(), perplexity);
+            symmetrize();
             //lie about gradient
-            vals.muli(12);
+            scaleValues(12);
             for(int i = 0; i < maxIter; i++) {
-                step(vals,i);
+                step(null, i);
 
                 if(i == switchMomentumIteration)
                     momentum = finalMomentum;
                 if(i == stopLyingIteration)
-                    vals.divi(12);
+                    scaleValues(1.0 / 12);
 
 
                 if (iterationListener != null) {
+                    syncData();
                     iterationListener.iterationDone(this, i);
                 }
-                logger.info("Error at iteration " + i + " is " + score());
+                if (i % 50 == 0 || i == maxIter - 1)
+                    logger.info("Error at iteration " + i + " is " + score());
             }
+            syncData();
         }
     }
 
+    private void scaleValues(double scale) {
+        for (int i = 0; i < valP.length; i++)
+            valP[i] *= scale;
+    }
+
+    //Copy the embedding to flat arrays, and reset the optimizer state
+    private void initState() {
+        N = Y.rows();
+        y = toArray(Y);
+        gains = new double[y.length];
+        Arrays.fill(gains, 1.0);
+        yIncs = new double[y.length];
+        adaGradHistory = (useAdaGrad ? new double[y.length] : null);
+        grad = new double[y.length];
+    }
+
+    private void syncData() {
+        Y = Nd4j.create(Arrays.copyOf(y, y.length), new int[] {N, numDimensions});
+    }
+
     @Override
     public void update(Gradient gradient) {
 
@@ -464,39 +615,69 @@ public class BarnesHutTsne implements Model {
      * @param i the iteration (primarily for debugging purposes)
      */
     public void step(INDArray p, int i) {
-        update(gradient().getGradientFor(Y_GRAD), Y_GRAD);
+        if (y == null)
+            initState();
+        computeGradient(grad);
+        applyUpdate(grad);
     }
 
 
     @Override
     public void update(INDArray gradient, String paramType) {
-        INDArray yGrads = gradient;
-
-        gains = gains.add(.2)
-                .muli(sign(yGrads)).neqi(sign(yIncs))
-                .addi(gains.mul(0.8).muli(sign(yGrads)).neqi(sign(yIncs)));
-
-        BooleanIndexing.applyWhere(
-                gains,
-                Conditions.lessThan(minGain),
-                new Value(minGain));
-
-
-        INDArray gradChange = gains.mul(yGrads);
-
-        if(useAdaGrad) {
-            if(adaGrad == null)
-                adaGrad = new AdaGrad();
-            gradChange = adaGrad.getGradient(gradChange,0);
+        if (y == null)
+            initState();
+        applyUpdate(toArray(gradient));
+        syncData();
+    }
+
+    private void applyUpdate(double[] yGrads) {
+        for (int j = 0; j < y.length; j++) {
+            double gradSign = Math.signum(yGrads[j]);
+            double incSign = Math.signum(yIncs[j]);
+            double gain = ((gains[j] + 0.2) * gradSign != incSign ? 1.0 : 0.0)
+                    + (gains[j] * 0.8 * gradSign != incSign ? 1.0 : 0.0);
+            if (gain < minGain)
+                gain = minGain;
+            gains[j] = gain;
+
+            double gradChange = gain * yGrads[j];
+            if (useAdaGrad) {
+                //Same as a default AdaGrad: its own learning rate, not this one
+                adaGradHistory[j] += gradChange * gradChange;
+                gradChange = ADAGRAD_LEARNING_RATE * gradChange / (Math.sqrt(adaGradHistory[j]) + ADAGRAD_EPSILON);
+            } else {
+                gradChange *= learningRate;
+            }
 
+            yIncs[j] = momentum * yIncs[j] - gradChange;
+            y[j] += yIncs[j];
         }
+    }
 
-        else
-            gradChange.muli(learningRate);
-
-        yIncs.muli(momentum).subi(gradChange);
-        Y.addi(yIncs);
+    /**
+     * Compute the gradient of the current embedding: attractive forces along the edges of the sparse input
+     * similarities, and Barnes-Hut approximated repulsive forces
+     */
+    private void computeGradient(double[] out) {
+        final FlatSpTree tree = new FlatSpTree(y, N, numDimensions);
+        final int D = numDimensions;
+        final double[] posF = new double[N * D];
+        final double[] negF = out;
+        Arrays.fill(negF, 0.0);
+
+        double sumQ = parallelSum(N, 64, new RowRangeFunction() {
+            @Override
+            public double apply(int from, int to) {
+                tree.computeEdgeForces(rowP, colP, valP, from, to, posF);
+                double sumQ = 0.0;
+                for (int n = from; n < to; n++)
+                    sumQ += tree.computeNonEdgeForces(n, theta, negF, n * D);
+                return sumQ;
+            }
+        });
 
+        for (int j = 0; j < out.length; j++)
+            out[j] = posF[j] - negF[j] / sumQ;
     }
 
 
@@ -558,31 +739,43 @@ public class BarnesHutTsne implements Model {
 
     @Override
     public double score() {
+        if (y == null || valP == null)
+            return 0.0;
+        final FlatSpTree tree = new FlatSpTree(y, N, numDimensions);
+        final int D = numDimensions;
+
         // Get estimate of normalization term
-        INDArray buff = Nd4j.create(numDimensions);
-        AtomicDouble sum_Q = new AtomicDouble(0.0);
-        for(int n = 0; n < N; n++)
-            tree.computeNonEdgeForces(n, theta, buff, sum_Q);
+        final double sumQ = parallelSum(N, 64, new RowRangeFunction() {
+            @Override
+            public double apply(int from, int to) {
+                double[] buff = new double[D];
+                double sumQ = 0.0;
+                for (int n = from; n < to; n++)
+                    sumQ += tree.computeNonEdgeForces(n, theta, buff, 0);
+                return sumQ;
+            }
+        });
 
         // Loop over all edges to compute t-SNE error
-        double C = .0;
-        INDArray linear = Y;
-        for(int n = 0; n < N; n++) {
-            int begin = rows.getInt(n);
-            int end = rows.getInt(n + 1);
-            int ind1 = n;
-            for(int i = begin; i < end; i++) {
-                int ind2 = cols.getInt(i);
-                buff.assign(linear.slice(ind1));
-                buff.subi(linear.slice(ind2));
-
-                double Q = pow(buff,2).sum(Integer.MAX_VALUE).getDouble(0);
-                Q = (1.0 / (1.0 + Q)) / sum_Q.doubleValue();
-                C += vals.getDouble(i) * FastMath.log(vals.getDouble(i) + Nd4j.EPS_THRESHOLD) / (Q + Nd4j.EPS_THRESHOLD);
+        return parallelSum(N, 64, new RowRangeFunction() {
+            @Override
+            public double apply(int from, int to) {
+                double C = 0.0;
+                for (int n = from; n < to; n++) {
+                    for (int i = rowP[n]; i < rowP[n + 1]; i++) {
+                        int mOffset = colP[i] * D;
+                        double Q = 0.0;
+                        for (int d = 0; d < D; d++) {
+                            double diff = y[n * D + d] - y[mOffset + d];
+                            Q += diff * diff;
+                        }
+                        Q = (1.0 / (1.0 + Q)) / sumQ;
+                        C += valP[i] * Math.log((valP[i] + Nd4j.EPS_THRESHOLD) / (Q + Nd4j.EPS_THRESHOLD));
+                    }
+                }
+                return C;
             }
-        }
-
-        return C;
+        });
     }
 
     @Override
@@ -653,27 +846,13 @@ public class BarnesHutTsne implements Model {
 
     @Override
     public Gradient gradient() {
-        if(yIncs == null)
-            yIncs =  zeros(Y.shape());
-        if(gains == null)
-            gains = ones(Y.shape());
-
-        AtomicDouble sumQ = new AtomicDouble(0);
-        /* Calculate gradient based on barnes hut approximation with positive and negative forces */
-        INDArray posF = Nd4j.create(Y.shape());
-        INDArray negF = Nd4j.create(Y.shape());
-        if(tree == null)
-            tree = new SpTree(Y);
-        tree.computeEdgeForces(rows,cols,vals,N,posF);
-
-        for(int n = 0; n < N; n++)
-            tree.computeNonEdgeForces(n,theta,negF.slice(n),sumQ);
-
-
-        INDArray dC = posF.subi(negF.divi(sumQ));
+        if (y == null)
+            initState();
+        double[] dC = new double[y.length];
+        computeGradient(dC);
 
         Gradient ret = new DefaultGradient();
-        ret.gradientForVariable().put(Y_GRAD,dC);
+        ret.gradientForVariable().put(Y_GRAD, Nd4j.create(dC, new int[] {N, numDimensions}));
         return ret;
     }
 
@@ -706,6 +885,7 @@ public class BarnesHutTsne implements Model {
 
     public void setData(INDArray data) {
         this.Y = data;
+        this.y = null;
     }
 
     public static class Builder {
@@ -726,6 +906,7 @@ public class BarnesHutTsne implements Model {
         private boolean invert = true;
         private int numDim = 2;
         private String similarityFunction = "cosinesimilarity";
+        private int workers = Runtime.getRuntime().availableProcessors();
 
         public Builder minGain(double minGain) {
             this.minGain  = minGain;
@@ -814,10 +995,18 @@ public class BarnesHutTsne implements Model {
             return this;
         }
 
+        /**
+         * Number of threads to compute input similarities and gradients with. Default: number of available processors
+         */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
         public BarnesHutTsne build() {
             return new BarnesHutTsne(numDim, similarityFunction, theta, invert,
                     maxIter, realMin, initialMomentum, finalMomentum, momentum, switchMomentumIteration, normalize,
-                    stopLyingIteration, tolerance, learningRate, useAdaGrad, perplexity, null, minGain);
+                    stopLyingIteration, tolerance, learningRate, useAdaGrad, perplexity, null, minGain, workers);
         }
 
     }
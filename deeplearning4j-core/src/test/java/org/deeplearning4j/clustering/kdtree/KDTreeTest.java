@@ -23,6 +23,10 @@ import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -40,5 +44,81 @@ public class KDTreeTest {
         assertEquals(half,pair.getSecond());
     }
 
+    @Test
+    public void testFlatTreeKnn() {
+        int n = 5000;
+        int dims = 3;
+        int k = 7;
+        Random r = new Random(12345);
+        double[][] data = new double[n][dims];
+        for (double[] row : data)
+            for (int d = 0; d < dims; d++)
+                row[d] = r.nextDouble();
+        //Some duplicate points
+        for (int i = 1; i < 20; i++)
+            data[i] = data[0].clone();
+        INDArray points = Nd4j.create(data);
+
+        FlatKDTree tree = new FlatKDTree(points, new ForkJoinPool(2));
+        assertEquals(n, tree.getNumPoints());
+
+        int numQueries = 300;
+        double[][] queries = new double[numQueries][];
+        for (int q = 0; q < numQueries; q++)
+            queries[q] = new double[] {r.nextDouble(), r.nextDouble(), r.nextDouble()};
+        queries[0] = data[0].clone();
+        int[] indexes = new int[numQueries * k];
+        double[] distances = new double[numQueries * k];
+        tree.knn(Nd4j.create(queries), k, indexes, distances);
+
+        for (int q = 0; q < numQueries; q++) {
+            double[] all = new double[n];
+            for (int i = 0; i < n; i++)
+                all[i] = distance(queries[q], data[i]);
+            Arrays.sort(all);
+            for (int j = 0; j < k; j++) {
+                assertEquals(all[j], distances[q * k + j], 1e-12);
+                assertEquals(all[j], distance(queries[q], data[indexes[q * k + j]]), 1e-12);
+            }
+        }
+        assertEquals(0.0, distances[k - 1], 0.0);
+        assertEquals(0, distance(data[0], data[tree.nn(data[0])]), 0.0);
+    }
+
+    @Test(timeout = 60000)
+    public void testFlatTreeHeavyDuplicates() {
+        //Only 3 distinct values per coordinate: quickselect must not degrade to quadratic time
+        int n = 200000;
+        int dims = 2;
+        int k = 5;
+        Random r = new Random(12345);
+        double[][] data = new double[n][dims];
+        for (double[] row : data)
+            for (int d = 0; d < dims; d++)
+                row[d] = r.nextInt(3);
+        FlatKDTree tree = new FlatKDTree(Nd4j.create(data), null);
+
+        int[] indexes = new int[k];
+        double[] distances = new double[k];
+        for (int q = 0; q < 20; q++) {
+            double[] query = {3 * r.nextDouble(), 3 * r.nextDouble()};
+            assertEquals(k, tree.knn(query, k, indexes, distances));
+            double best = Double.POSITIVE_INFINITY;
+            for (double[] row : data)
+                best = Math.min(best, distance(query, row));
+            for (int j = 0; j < k; j++) {
+                //Every grid point is duplicated many times, so all k neighbours are at the nearest distance
+                assertEquals(best, distances[j], 1e-12);
+                assertEquals(best, distance(query, data[indexes[j]]), 1e-12);
+            }
+        }
+    }
+
+    private static double distance(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int d = 0; d < a.length; d++)
+            sum += (a[d] - b[d]) * (a[d] - b[d]);
+        return Math.sqrt(sum);
+    }
 
 }
@@ -0,0 +1,85 @@
+package org.deeplearning4j.clustering.kmeans;
+
+import org.deeplearning4j.clustering.algorithm.condition.ConvergenceCondition;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MatrixKMeansClusteringTest {
+
+	private static double[][] data(int n, int k, int d, Random r, int[] labels) {
+		double[][] centers = new double[k][d];
+		for (int j = 0; j < k; j++)
+			centers[j][j % d] = 20 * (1 + j / d);
+		double[][] x = new double[n][d];
+		for (int i = 0; i < n; i++) {
+			labels[i] = i % k;
+			for (int t = 0; t < d; t++)
+				x[i][t] = centers[labels[i]][t] + r.nextGaussian();
+		}
+		return x;
+	}
+
+	@Test
+	public void testPruningGivesSameResult() {
+		int n = 3000;
+		int k = 6;
+		int[] labels = new int[n];
+		INDArray x = Nd4j.create(data(n, k, 4, new Random(12345), labels));
+
+		int[] expected = null;
+		INDArray expectedCenters = null;
+		for (MatrixKMeansClustering.Pruning pruning : MatrixKMeansClustering.Pruning.values()) {
+			MatrixKMeansClustering kMeans = new MatrixKMeansClustering.Builder(k).pruning(pruning).seed(42)
+					.maxIterations(100).build();
+			int[] assignments = kMeans.fit(x);
+			if (expected == null) {
+				expected = assignments;
+				expectedCenters = kMeans.getCenters();
+			} else {
+				assertArrayEquals(pruning.toString(), expected, assignments);
+				assertEquals(pruning.toString(), expectedCenters, kMeans.getCenters());
+			}
+			assertArrayEquals(assignments, kMeans.predict(x));
+		}
+
+		//Well separated clusters: each true cluster maps to exactly one found cluster
+		int[] mapping = new int[k];
+		Arrays.fill(mapping, -1);
+		for (int i = 0; i < n; i++) {
+			if (mapping[labels[i]] < 0)
+				mapping[labels[i]] = expected[i];
+			assertEquals(mapping[labels[i]], expected[i]);
+		}
+	}
+
+	@Test
+	public void testMiniBatch() {
+		int n = 5000;
+		int k = 4;
+		int[] labels = new int[n];
+		INDArray x = Nd4j.create(data(n, k, 4, new Random(12345), labels));
+
+		MatrixKMeansClustering miniBatch = new MatrixKMeansClustering.Builder(k).batchSize(500).maxIterations(50)
+				.terminationCondition(ConvergenceCondition.distributionVariationRateLessThan(0.001)).build();
+		miniBatch.fit(x);
+		assertTrue(miniBatch.getIterationHistory().getIterationCount() <= 50);
+		//Noise has variance 1 in each of the 4 dimensions
+		assertTrue(String.valueOf(miniBatch.getInertia() / n), miniBatch.getInertia() / n < 4.5);
+
+		MatrixKMeansClustering streaming = new MatrixKMeansClustering.Builder(k).build();
+		for (int i = 0; i < n; i += 500)
+			streaming.partialFit(x.get(NDArrayIndex.interval(i, i + 500),
+					NDArrayIndex.all()));
+		assertEquals(k, streaming.getCenters().rows());
+		assertEquals(n, streaming.predict(x).length);
+	}
+}
@@ -25,6 +25,9 @@ import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -59,4 +62,43 @@ public class SPTreeTest {
         SpTree tree = new SpTree(arr);
     }
 
+    @Test
+    public void testFlatTreeExactForces() {
+        int n = 200;
+        int D = 2;
+        Random r = new Random(12345);
+        double[] y = new double[n * D];
+        for (int i = 0; i < y.length; i++)
+            y[i] = 5 * r.nextGaussian();
+        //Duplicate point
+        y[2] = y[0];
+        y[3] = y[1];
+
+        FlatSpTree tree = new FlatSpTree(y, n, D);
+        assertTrue(tree.isCorrect());
+
+        //With theta = 0, the forces are exact
+        double[] negF = new double[n * D];
+        double sumQ = 0.0;
+        for (int i = 0; i < n; i++)
+            sumQ += tree.computeNonEdgeForces(i, 0.0, negF, i * D);
+
+        double[] expNegF = new double[n * D];
+        double expSumQ = 0.0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == j)
+                    continue;
+                double dx = y[i * D] - y[j * D];
+                double dy = y[i * D + 1] - y[j * D + 1];
+                double q = 1.0 / (1.0 + dx * dx + dy * dy);
+                expSumQ += q;
+                expNegF[i * D] += q * q * dx;
+                expNegF[i * D + 1] += q * q * dy;
+            }
+        }
+        assertEquals(expSumQ, sumQ, 1e-8);
+        assertArrayEquals(expNegF, negF, 1e-10);
+    }
+
 }
@@ -23,7 +23,10 @@ import org.junit.Test;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 
@@ -48,4 +51,95 @@ public class VpTreeNodeTest {
 
     }
 
+    @Test
+    public void flatVpTreeMatchesBruteForce() {
+        int n = 2000;
+        int dims = 5;
+        int k = 10;
+        Random r = new Random(12345);
+        double[] data = new double[n * dims];
+        for (int i = 0; i < data.length; i++)
+            data[i] = r.nextGaussian();
+
+        for (String similarityFunction : new String[] {"euclidean", "manhattan", "cosinesimilarity"}) {
+            FlatVPTree tree = new FlatVPTree(data, n, dims, similarityFunction, new ForkJoinPool(2));
+            int[] indexes = new int[k];
+            double[] distances = new double[k];
+            for (int q = 0; q < 50; q++) {
+                int query = r.nextInt(n);
+                assertEquals(k, tree.search(query, k, indexes, distances));
+
+                double[] all = new double[n - 1];
+                int c = 0;
+                for (int j = 0; j < n; j++) {
+                    if (j != query)
+                        all[c++] = tree.distance(query, j);
+                }
+                Arrays.sort(all);
+                for (int j = 0; j < k; j++) {
+                    assertEquals(similarityFunction, all[j], distances[j], 1e-12);
+                    assertEquals(distances[j], tree.distance(query, indexes[j]), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void flatVpTreeFarthestMatchesBruteForce() {
+        int n = 1000;
+        int dims = 3;
+        int k = 10;
+        Random r = new Random(12345);
+        double[] data = new double[n * dims];
+        for (int i = 0; i < data.length; i++)
+            data[i] = r.nextGaussian();
+
+        for (String similarityFunction : new String[] {"euclidean", "manhattan", "cosinesimilarity"}) {
+            FlatVPTree tree = new FlatVPTree(data, n, dims, similarityFunction, null);
+            int[] indexes = new int[k];
+            double[] distances = new double[k];
+            for (int q = 0; q < 50; q++) {
+                int query = r.nextInt(n);
+                assertEquals(k, tree.searchFarthest(query, k, indexes, distances));
+
+                double[] all = new double[n - 1];
+                int c = 0;
+                for (int j = 0; j < n; j++) {
+                    if (j != query)
+                        all[c++] = tree.distance(query, j);
+                }
+                Arrays.sort(all);
+                for (int j = 0; j < k; j++) {
+                    assertEquals(similarityFunction, all[n - 2 - j], distances[j], 1e-12);
+                    assertEquals(distances[j], tree.distance(query, indexes[j]), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void flatVpTreeHeavyDuplicates() {
+        //Mostly identical points: many equal distances, which must not make the build quadratic
+        int n = 100000;
+        int dims = 2;
+        int k = 5;
+        Random r = new Random(12345);
+        double[] data = new double[n * dims];
+        for (int i = 0; i < n; i++) {
+            if (i % 100 == 0) {
+                data[i * dims] = r.nextGaussian();
+                data[i * dims + 1] = r.nextGaussian();
+            }
+        }
+        FlatVPTree tree = new FlatVPTree(data, n, dims, "euclidean", null);
+
+        int[] indexes = new int[k];
+        double[] distances = new double[k];
+        assertEquals(k, tree.search(1, k, indexes, distances));
+        for (int j = 0; j < k; j++) {
+            assertEquals(0.0, distances[j], 0.0);
+            assertEquals(0.0, tree.distance(1, indexes[j]), 0.0);
+        }
+    }
+
 }
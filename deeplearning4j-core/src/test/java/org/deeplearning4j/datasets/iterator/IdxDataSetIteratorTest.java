@@ -0,0 +1,89 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.deeplearning4j.datasets.iterator.impl.IdxDataSetIterator;
+import org.junit.Test;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class IdxDataSetIteratorTest {
+
+    private static final int NUM_EXAMPLES = 25;
+    private static final int ROWS = 3;
+    private static final int COLS = 4;
+
+    @Test
+    public void testReadNormalizeAndShard() throws Exception {
+        File images = File.createTempFile("images", ".idx3");
+        File labels = File.createTempFile("labels", ".idx1");
+        images.deleteOnExit();
+        labels.deleteOnExit();
+        writeFiles(images, labels);
+
+        IdxDataSetIterator iter = new IdxDataSetIterator.Builder(images, labels, 10)
+                .batchSize(10)
+                .normalize(0.0f, 1.0f / 255.0f)
+                .build();
+        assertEquals(ROWS * COLS, iter.inputColumns());
+
+        int count = 0;
+        while (iter.hasNext()) {
+            DataSet ds = iter.next();
+            for (int i = 0; i < ds.numExamples(); i++, count++) {
+                //Pixel j of example n has value (n + j) % 256; label is n % 10
+                for (int j = 0; j < ROWS * COLS; j++) {
+                    assertEquals(((count + j) % 256) / 255.0, ds.getFeatures().getDouble(i, j), 1e-6);
+                }
+                assertEquals(1.0, ds.getLabels().getDouble(i, count % 10), 0.0);
+                assertEquals(1.0, ds.getLabels().getRow(i).sumNumber().doubleValue(), 0.0);
+            }
+        }
+        assertEquals(NUM_EXAMPLES, count);
+        iter.close();
+
+        //Shuffled shards should be disjoint and cover all examples
+        Set<Double> seen = new HashSet<>();
+        int total = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            IdxDataSetIterator s = new IdxDataSetIterator.Builder(images, labels, 10)
+                    .batchSize(4)
+                    .shuffle(true, 12345)
+                    .shard(shard, 3)
+                    .build();
+            while (s.hasNext()) {
+                DataSet ds = s.next();
+                for (int i = 0; i < ds.numExamples(); i++) {
+                    seen.add(ds.getFeatures().getDouble(i, 0));
+                    total++;
+                }
+            }
+            s.close();
+        }
+        assertEquals(NUM_EXAMPLES, total);
+        assertEquals(NUM_EXAMPLES, seen.size());
+    }
+
+    private static void writeFiles(File images, File labels) throws IOException {
+        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(images))) {
+            dos.writeInt(0x00000803);
+            dos.writeInt(NUM_EXAMPLES);
+            dos.writeInt(ROWS);
+            dos.writeInt(COLS);
+            for (int n = 0; n < NUM_EXAMPLES; n++) {
+                for (int j = 0; j < ROWS * COLS; j++) dos.writeByte((n + j) % 256);
+            }
+        }
+        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(labels))) {
+            dos.writeInt(0x00000801);
+            dos.writeInt(NUM_EXAMPLES);
+            for (int n = 0; n < NUM_EXAMPLES; n++) dos.writeByte(n % 10);
+        }
+    }
+}
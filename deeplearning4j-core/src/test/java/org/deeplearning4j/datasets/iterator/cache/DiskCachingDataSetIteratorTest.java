@@ -0,0 +1,92 @@
+package org.deeplearning4j.datasets.iterator.cache;
+
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.junit.Test;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DiskCachingDataSetIteratorTest {
+
+    @Test
+    public void testCacheRoundTrip() throws Exception {
+        File f = File.createTempFile("dl4jcache", ".bin");
+        f.delete();
+        f.deleteOnExit();
+
+        List<DataSet> expected = collect(new IrisDataSetIterator(10, 150));
+
+        DiskCachingDataSetIterator iter = new DiskCachingDataSetIterator.Builder(new IrisDataSetIterator(10, 150), f).build();
+        assertFalse(iter.isCached());
+        assertEquals(expected, collect(iter));
+
+        iter.reset();
+        assertTrue(iter.isCached());
+        assertTrue(DataSetCacheReader.isValid(f));
+        for (int epoch = 0; epoch < 3; epoch++) {
+            List<DataSet> fromCache = collect(iter);
+            assertEquals(expected.size(), fromCache.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getFeatures(), fromCache.get(i).getFeatures());
+                assertEquals(expected.get(i).getLabels(), fromCache.get(i).getLabels());
+            }
+            iter.reset();
+        }
+        iter.shutdown();
+
+        //Cache should be reused: underlying iterator is empty here
+        DataSetIterator exhausted = new IrisDataSetIterator(10, 150);
+        while (exhausted.hasNext()) exhausted.next();
+        DiskCachingDataSetIterator reused = new DiskCachingDataSetIterator.Builder(exhausted, f)
+                .readahead(2, 4)
+                .build();
+        assertTrue(reused.isCached());
+        assertEquals(expected.size(), collect(reused).size());
+        reused.shutdown();
+    }
+
+    @Test
+    public void testShuffleAndMasks() throws Exception {
+        File f = File.createTempFile("dl4jcache", ".bin");
+        f.delete();
+        f.deleteOnExit();
+
+        DataSetCacheWriter writer = new DataSetCacheWriter(f);
+        for (int i = 0; i < 20; i++) {
+            DataSet ds = new DataSet(Nd4j.rand(new int[]{2, 3, 5}).addi(i), Nd4j.zeros(2, 4, 5).addi(i),
+                    Nd4j.ones(2, 5), Nd4j.ones(2, 5));
+            writer.write(ds);
+        }
+        assertFalse(DataSetCacheReader.isValid(f));
+        writer.close();
+        assertTrue(DataSetCacheReader.isValid(f));
+
+        DataSetCacheReader reader = new DataSetCacheReader(f, true, 12345);
+        assertEquals(20, reader.numBatches());
+        assertEquals(40, reader.numExamples());
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < reader.numBatches(); i++) {
+            DataSet ds = reader.getBatch(i, null);
+            assertArrayEquals(new int[]{2, 3, 5}, ds.getFeatures().shape());
+            assertNotNull(ds.getFeaturesMaskArray());
+            assertNotNull(ds.getLabelsMaskArray());
+            seen.add(ds.getLabels().getInt(0));
+        }
+        assertEquals(20, seen.size());
+        reader.close();
+    }
+
+    private static List<DataSet> collect(DataSetIterator iter) {
+        List<DataSet> out = new ArrayList<>();
+        while (iter.hasNext()) out.add(iter.next());
+        return out;
+    }
+}
@@ -0,0 +1,189 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.MultiDataSetIteratorAdapter;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.junit.Test;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ParallelPrefetchDataSetIteratorTest {
+
+    @Test
+    public void testOrderedIndexedSource() {
+        int numBatches = 50;
+        ParallelPrefetchDataSetIterator iter = new ParallelPrefetchDataSetIterator.Builder(new TestSource(numBatches))
+                .workers(4)
+                .queueSize(6)
+                .build();
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            for (int i = 0; i < numBatches; i++) {
+                assertTrue(iter.hasNext());
+                DataSet ds = iter.next();
+                assertEquals(i, ds.getFeatureMatrix().getDouble(0), 0.0);
+                assertEquals(i, ds.getLabels().getDouble(0), 0.0);
+            }
+            assertFalse(iter.hasNext());
+            iter.reset();
+        }
+
+        PrefetchStats stats = iter.getStats();
+        assertEquals(4, stats.getNumWorkers());
+        assertTrue(stats.getBatchesProduced() >= 2 * numBatches);
+        iter.shutdown();
+    }
+
+    @Test
+    public void testUnorderedRecycling() {
+        int numBatches = 40;
+        TestSource source = new TestSource(numBatches);
+        ParallelPrefetchDataSetIterator iter = new ParallelPrefetchDataSetIterator.Builder(source)
+                .workers(3)
+                .ordered(false)
+                .recycleCapacity(8)
+                .build();
+
+        Set<Integer> seen = new HashSet<>();
+        while (iter.hasNext()) {
+            DataSet ds = iter.next();
+            assertTrue(seen.add((int) ds.getFeatureMatrix().getDouble(0)));
+            iter.recycle(ds);
+        }
+        assertEquals(numBatches, seen.size());
+        assertTrue(iter.getStats().getBatchesRecycled() > 0);
+        iter.shutdown();
+    }
+
+    @Test
+    public void testSequentialSourceParallelPreProcessing() {
+        DataSetIterator base = new IrisDataSetIterator(10, 150);
+        List<DataSet> expected = new ArrayList<>();
+        while (base.hasNext()) {
+            DataSet ds = base.next();
+            ds.getFeatureMatrix().muli(2.0);
+            expected.add(ds);
+        }
+        base.reset();
+
+        ParallelPrefetchDataSetIterator iter = new ParallelPrefetchDataSetIterator.Builder(base)
+                .workers(4)
+                .preProcessor(new DataSetPreProcessor() {
+                    @Override
+                    public void preProcess(org.nd4j.linalg.dataset.api.DataSet toPreProcess) {
+                        toPreProcess.getFeatures().muli(2.0);
+                    }
+                })
+                .build();
+
+        int count = 0;
+        while (iter.hasNext()) {
+            assertEquals(expected.get(count++), iter.next());
+        }
+        assertEquals(expected.size(), count);
+
+        //next(int) should merge and split batches as required
+        iter.reset();
+        assertEquals(25, iter.next(25).numExamples());
+        assertEquals(25, iter.next(25).numExamples());
+        iter.shutdown();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testExceptionPropagation() {
+        ParallelPrefetchDataSetIterator iter = new ParallelPrefetchDataSetIterator.Builder(new TestSource(10) {
+            @Override
+            public DataSet getBatch(int batchIndex, DataSet reuse) {
+                if (batchIndex == 5) throw new RuntimeException("Expected exception");
+                return super.getBatch(batchIndex, reuse);
+            }
+        }).workers(2).build();
+
+        while (iter.hasNext()) iter.next();
+    }
+
+    @Test(expected = OutOfMemoryError.class)
+    public void testErrorPropagation() {
+        ParallelPrefetchDataSetIterator iter = new ParallelPrefetchDataSetIterator.Builder(new TestSource(10) {
+            @Override
+            public DataSet getBatch(int batchIndex, DataSet reuse) {
+                if (batchIndex == 5) throw new OutOfMemoryError("Expected error");
+                return super.getBatch(batchIndex, reuse);
+            }
+        }).workers(2).build();
+
+        while (iter.hasNext()) iter.next();
+    }
+
+    @Test
+    public void testMultiEpochFitResetsIterator() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(4).nOut(3)
+                        .activation("softmax").build(), "in")
+                .setOutputs("out")
+                .build();
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        final AtomicInteger examples = new AtomicInteger();
+        MultiDataSetIteratorAdapter iter = new MultiDataSetIteratorAdapter(new IrisDataSetIterator(10, 150)) {
+            @Override
+            public MultiDataSet next() {
+                MultiDataSet mds = super.next();
+                examples.addAndGet(mds.getFeatures(0).size(0));
+                return mds;
+            }
+        };
+
+        //fit(MultiDataSetIterator) prefetches: each epoch must see the whole data set, not an exhausted iterator
+        for (int epoch = 0; epoch < 3; epoch++) {
+            examples.set(0);
+            net.fit(iter);
+            assertEquals("Epoch " + epoch, 150, examples.get());
+        }
+    }
+
+    private static class TestSource implements IndexedBatchSource<DataSet> {
+        private final int numBatches;
+
+        private TestSource(int numBatches) {
+            this.numBatches = numBatches;
+        }
+
+        @Override
+        public int numBatches() {
+            return numBatches;
+        }
+
+        @Override
+        public DataSet getBatch(int batchIndex, DataSet reuse) {
+            if (reuse != null) {
+                reuse.getFeatureMatrix().assign(batchIndex);
+                reuse.getLabels().assign(batchIndex);
+                return reuse;
+            }
+            return new DataSet(Nd4j.zeros(1, 3).addi(batchIndex), Nd4j.zeros(1, 2).addi(batchIndex));
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
@@ -133,6 +133,45 @@ public class TestComputationGraphNetwork {
         assertEquals(mlnAct.get(2),activations.get("outputLayer"));
     }
 
+    @Test
+    public void testOutputMatchesFeedForward(){
+        //Fan-out from "input" and "dense1", so activations must be kept until all their consumers are done
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .weightInit(WeightInit.XAVIER)
+                .graphBuilder()
+                .addInputs("input")
+                .addLayer("dense1", new DenseLayer.Builder().nIn(4).nOut(5).activation("tanh").build(), "input")
+                .addLayer("dense2", new DenseLayer.Builder().nIn(5).nOut(5).activation("tanh").build(), "dense1")
+                .addLayer("dense3", new DenseLayer.Builder().nIn(4).nOut(5).activation("tanh").build(), "input")
+                .addVertex("merge", new MergeVertex(), "dense1", "dense2", "dense3")
+                .addLayer("out", new OutputLayer.Builder().nIn(15).nOut(3).activation("softmax")
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "merge")
+                .setOutputs("out")
+                .build();
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(getIrisMLNConfiguration());
+        net.init();
+
+        INDArray features = new IrisDataSetIterator(150,150).next().getFeatureMatrix();
+        INDArray copy = features.dup();
+
+        Map<String,INDArray> activations = graph.feedForward(features, false);
+        INDArray dense2Input = graph.getLayer("dense2").input();
+        assertEquals(activations.get("out"), graph.outputSingle(features));
+        //Layer state set by feedForward is left alone
+        assertSame(dense2Input, graph.getLayer("dense2").input());
+
+        List<INDArray> mlnAct = net.feedForward(features, false);
+        INDArray layer1Input = net.getLayer(1).input();
+        assertEquals(mlnAct.get(mlnAct.size() - 1), net.output(features, false));
+        assertSame(layer1Input, net.getLayer(1).input());
+
+        //Inputs must not be modified
+        assertEquals(copy, features);
+    }
+
     @Test
     public void testBackwardIrisBasic(){
         ComputationGraphConfiguration configuration = getIrisGraphConfiguration();
@@ -742,4 +781,51 @@ public class TestComputationGraphNetwork {
 
     }
 
+    @Test
+    public void testGradientAccumulation() {
+        DataSet ds = new IrisDataSetIterator(30, 30).next();
+        ds.normalizeZeroMeanZeroUnitVariance();
+
+        ComputationGraph net = new ComputationGraph(getGradientAccumulationConf(1));
+        net.init();
+        ComputationGraph netMicro = new ComputationGraph(getGradientAccumulationConf(3));
+        netMicro.init();
+        assertEquals(net.params(), netMicro.params());
+
+        for (int i = 0; i < 3; i++) {
+            net.fit(ds);
+            netMicro.fit(ds);
+            assertEquals(net.score(), netMicro.score(), 1e-5);
+        }
+
+        INDArray p = net.params();
+        INDArray pMicro = netMicro.params();
+        for (int i = 0; i < p.length(); i++) {
+            assertEquals(p.getDouble(i), pMicro.getDouble(i), 1e-5);
+        }
+        assertEquals(30, netMicro.batchSize());
+
+        //Configuration round trip
+        ComputationGraphConfiguration conf = getGradientAccumulationConf(3);
+        assertEquals(conf, ComputationGraphConfiguration.fromJson(conf.toJson()));
+        assertEquals(3, conf.clone().getMicroBatches());
+    }
+
+    private static ComputationGraphConfiguration getGradientAccumulationConf(int microBatches) {
+        return new NeuralNetConfiguration.Builder()
+                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .iterations(1).seed(12345)
+                .updater(Updater.NESTEROVS).momentum(0.9).learningRate(0.1)
+                .regularization(true).l2(0.01)
+                .weightInit(WeightInit.XAVIER)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("0", new DenseLayer.Builder().nIn(4).nOut(6).activation("tanh").build(), "in")
+                .addLayer("1", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(6).nOut(3)
+                        .activation("softmax").build(), "0")
+                .setOutputs("1")
+                .microBatches(microBatches)
+                .backprop(true).pretrain(false)
+                .build();
+    }
 }
@@ -1,5 +1,6 @@
 package org.deeplearning4j.nn.layers.convolution;
 
+import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.api.Layer;
@@ -14,6 +15,7 @@ import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.conf.layers.SubsamplingLayer;
 import org.deeplearning4j.nn.conf.layers.setup.ConvolutionLayerSetup;
+import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.junit.Before;
@@ -29,6 +31,8 @@ import org.nd4j.linalg.indexing.INDArrayIndex;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 /**
@@ -285,6 +289,64 @@ public class ConvolutionLayerTest {
         assertEquals(expectedOutput, convActivations);
     }
 
+    @Test
+    public void testCpuHelperMatchesIm2col() {
+        //1x1 (gemm), 3x3 stride 1 (Winograd forward), and other kernels (helper returns null: im2col fallback)
+        int[][] kernels = {{1, 1}, {3, 3}, {3, 3}, {5, 3}, {2, 2}};
+        int[][] strides = {{1, 1}, {1, 1}, {1, 1}, {2, 1}, {2, 2}};
+        int[][] pads = {{0, 0}, {0, 0}, {1, 1}, {2, 0}, {0, 0}};
+
+        Nd4j.getRandom().setSeed(12345);
+        for (int i = 0; i < kernels.length; i++) {
+            ConvolutionLayer conf = new ConvolutionLayer.Builder(kernels[i], strides[i], pads[i])
+                    .nIn(3)
+                    .nOut(4)
+                    .activation("tanh")
+                    .weightInit(WeightInit.XAVIER)
+                    .build();
+            NeuralNetConfiguration nnc = new NeuralNetConfiguration.Builder().layer(conf).build();
+            int numParams = nnc.getLayer().initializer().numParams(nnc, true);
+            INDArray params = Nd4j.rand(1, numParams).subi(0.5);
+
+            org.deeplearning4j.nn.layers.convolution.ConvolutionLayer direct =
+                    (org.deeplearning4j.nn.layers.convolution.ConvolutionLayer) nnc.getLayer().instantiate(nnc, null, 0, params, true);
+            org.deeplearning4j.nn.layers.convolution.ConvolutionLayer im2col =
+                    (org.deeplearning4j.nn.layers.convolution.ConvolutionLayer) nnc.getLayer().instantiate(nnc, null, 0, params, true);
+            direct.helper = new CpuConvolutionHelper();
+            im2col.helper = null;
+            direct.setBackpropGradientsViewArray(Nd4j.create(1, numParams));
+            im2col.setBackpropGradientsViewArray(Nd4j.create(1, numParams));
+
+            //Input with the strides of convolution layer activations: [depth, miniBatch, H, W] permuted
+            INDArray input = Nd4j.rand(new int[]{3, 2, 9, 8}).permute(1, 0, 2, 3);
+            String msg = "Kernel " + Arrays.toString(kernels[i]);
+
+            direct.setInput(input);
+            im2col.setInput(input);
+            INDArray expOut = im2col.activate(true);
+            INDArray out = direct.activate(true);
+            assertArrayEquals(msg, expOut.shape(), out.shape());
+            assertEquals(msg, expOut, out);
+
+            INDArray epsilon = Nd4j.rand(out.shape());
+            Pair<Gradient, INDArray> exp = im2col.backpropGradient(epsilon);
+            Pair<Gradient, INDArray> act = direct.backpropGradient(epsilon);
+            assertEquals(msg, exp.getSecond(), act.getSecond());
+            assertEquals(msg, exp.getFirst().getGradientFor("W"), act.getFirst().getGradientFor("W"));
+            assertEquals(msg, exp.getFirst().getGradientFor("b"), act.getFirst().getGradientFor("b"));
+        }
+    }
+
+    @Test
+    public void testCpuHelperDisabled() {
+        ConvolutionLayer conf = new ConvolutionLayer.Builder(1, 1).nIn(3).nOut(4).cpuHelper(false).build();
+        NeuralNetConfiguration nnc = new NeuralNetConfiguration.Builder().layer(conf).build();
+        int numParams = nnc.getLayer().initializer().numParams(nnc, true);
+        org.deeplearning4j.nn.layers.convolution.ConvolutionLayer layer =
+                (org.deeplearning4j.nn.layers.convolution.ConvolutionLayer) nnc.getLayer().instantiate(nnc, null, 0, Nd4j.create(1, numParams), true);
+        assertNull(layer.helper());
+    }
+
     //////////////////////////////////////////////////////////////////////////////////
 
     private static Layer getCNNConfig(int nIn, int nOut, int[] kernelSize, int[] stride, int[] padding){
@@ -0,0 +1,71 @@
+package org.deeplearning4j.nn.layers.convolution;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Compares the CPU helper with the im2col + gemm implementation, on the shapes the helper handles (1x1 forward and
+ * backprop, 3x3 stride 1 forward). Not run as part of the build: run manually, on the target hardware.
+ */
+@Ignore
+public class CpuConvolutionHelperBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void benchmark() {
+        //{kernel, inDepth, outDepth, size, miniBatch}
+        int[][] shapes = {
+                {1, 64, 64, 28, 32},
+                {1, 256, 64, 14, 32},
+                {3, 32, 32, 28, 32},
+                {3, 64, 64, 14, 32},
+        };
+        for (int[] shape : shapes) {
+            Layer helper = getLayer(shape, true);
+            Layer im2col = getLayer(shape, false);
+            INDArray input = Nd4j.rand(new int[]{shape[1], shape[4], shape[3], shape[3]}).permute(1, 0, 2, 3);
+            boolean backprop = shape[0] == 1;
+
+            double helperMs = time(helper, input, backprop);
+            double im2colMs = time(im2col, input, backprop);
+            System.out.println(String.format("kernel %dx%d, depth %d->%d, %dx%d, minibatch %d%s: helper %.2f ms, im2col %.2f ms",
+                    shape[0], shape[0], shape[1], shape[2], shape[3], shape[3], shape[4],
+                    backprop ? " (forward + backprop)" : " (forward)", helperMs, im2colMs));
+        }
+    }
+
+    private static Layer getLayer(int[] shape, boolean cpuHelper) {
+        int pad = shape[0] / 2;
+        ConvolutionLayer conf = new ConvolutionLayer.Builder(new int[]{shape[0], shape[0]}, new int[]{1, 1}, new int[]{pad, pad})
+                .nIn(shape[1])
+                .nOut(shape[2])
+                .activation("identity")
+                .weightInit(WeightInit.XAVIER)
+                .cpuHelper(cpuHelper)
+                .build();
+        NeuralNetConfiguration nnc = new NeuralNetConfiguration.Builder().seed(12345).layer(conf).build();
+        int numParams = nnc.getLayer().initializer().numParams(nnc, true);
+        Layer layer = nnc.getLayer().instantiate(nnc, null, 0, Nd4j.create(1, numParams), true);
+        layer.setBackpropGradientsViewArray(Nd4j.create(1, numParams));
+        return layer;
+    }
+
+    private static double time(Layer layer, INDArray input, boolean backprop) {
+        long total = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            INDArray out = layer.activate(input, true);
+            if (backprop) layer.backpropGradient(out);
+            if (i >= WARMUP) total += System.nanoTime() - start;
+        }
+        return total / (1e6 * ITERATIONS);
+    }
+}
@@ -0,0 +1,62 @@
+package org.deeplearning4j.nn.layers.convolution.subsampling;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.SubsamplingLayer.PoolingType;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.Assert.*;
+
+public class CpuSubsamplingHelperTest {
+
+    @Test
+    public void testMatchesIm2col() {
+        int[][] kernels = {{2, 2}, {3, 3}, {3, 2}};
+        int[][] strides = {{2, 2}, {1, 1}, {2, 1}};
+        int[][] pads = {{0, 0}, {1, 1}, {1, 0}};
+
+        Nd4j.getRandom().setSeed(12345);
+        for (PoolingType poolingType : new PoolingType[]{PoolingType.MAX, PoolingType.AVG}) {
+            for (int i = 0; i < kernels.length; i++) {
+                SubsamplingLayer direct = getLayer(poolingType, kernels[i], strides[i], pads[i]);
+                SubsamplingLayer im2col = getLayer(poolingType, kernels[i], strides[i], pads[i]);
+                direct.helper = new CpuSubsamplingHelper();
+                im2col.helper = null;
+
+                //Input with the strides of convolution layer activations: [depth, miniBatch, H, W] permuted
+                INDArray input = Nd4j.randn(new int[]{3, 2, 7, 6}).permute(1, 0, 2, 3);
+
+                direct.setInput(input);
+                im2col.setInput(input);
+                INDArray expOut = im2col.activate(true);
+                INDArray out = direct.activate(true);
+                String msg = poolingType + " " + i;
+                assertArrayEquals(msg, expOut.shape(), out.shape());
+                assertEquals(msg, expOut, out);
+
+                INDArray epsilon = Nd4j.rand(out.shape());
+                Pair<Gradient, INDArray> exp = im2col.backpropGradient(epsilon);
+                Pair<Gradient, INDArray> act = direct.backpropGradient(epsilon);
+                assertArrayEquals(msg, exp.getSecond().shape(), act.getSecond().shape());
+                assertEquals(msg, exp.getSecond(), act.getSecond());
+
+                //Without the argmax positions of a forward pass
+                INDArray noForward = direct.backpropGradient(epsilon).getSecond();
+                assertEquals(msg, exp.getSecond(), noForward);
+            }
+        }
+    }
+
+    private static SubsamplingLayer getLayer(PoolingType poolingType, int[] kernel, int[] stride, int[] pad) {
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(123)
+                .layer(new org.deeplearning4j.nn.conf.layers.SubsamplingLayer.Builder(poolingType, kernel, stride)
+                        .padding(pad)
+                        .build())
+                .build();
+        return (SubsamplingLayer) conf.getLayer().instantiate(conf, null, 0, null, true);
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class EmbeddingLayerTest {
 
@@ -338,4 +339,63 @@ public class EmbeddingLayerTest {
         }
     }
 
+    @Test
+    public void testSparseGradients() {
+        int nClassesIn = 20;
+        int batchSize = 4;
+
+        //AdaGrad: updates of unused rows are zero, so sparse and dense updates should be identical
+        MultiLayerNetwork dense = getNet(nClassesIn, Updater.ADAGRAD, false);
+        MultiLayerNetwork sparse = getNet(nClassesIn, Updater.ADAGRAD, true);
+        sparse.setParams(dense.params().dup());
+
+        Random r = new Random(12345);
+        for (int iter = 0; iter < 5; iter++) {
+            //Different rows in each iteration, to check that rows of earlier iterations are zeroed
+            INDArray in = Nd4j.create(batchSize, 1);
+            INDArray labels = Nd4j.create(batchSize, 4);
+            for (int i = 0; i < batchSize; i++) {
+                in.putScalar(i, r.nextInt(nClassesIn));
+                labels.putScalar(new int[]{i, r.nextInt(4)}, 1.0);
+            }
+            dense.fit(in, labels);
+            sparse.fit(in, labels);
+            assertEquals(dense.params(), sparse.params());
+        }
+
+        //Adam: only the rows used are updated
+        MultiLayerNetwork adam = getNet(nClassesIn, Updater.ADAM, true);
+        INDArray weightsBefore = adam.getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY).dup();
+        INDArray in = Nd4j.create(new double[]{1, 3, 3, 7}, new int[]{batchSize, 1});
+        INDArray labels = Nd4j.create(batchSize, 4);
+        for (int i = 0; i < batchSize; i++) labels.putScalar(new int[]{i, i % 4}, 1.0);
+        for (int iter = 0; iter < 3; iter++) {
+            adam.fit(in, labels);
+        }
+        INDArray weightsAfter = adam.getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY);
+        for (int row = 0; row < nClassesIn; row++) {
+            if (row == 1 || row == 3 || row == 7) {
+                assertNotEquals(weightsBefore.getRow(row), weightsAfter.getRow(row));
+            } else {
+                assertEquals(weightsBefore.getRow(row), weightsAfter.getRow(row));
+            }
+        }
+    }
+
+    private static MultiLayerNetwork getNet(int nClassesIn, Updater updater, boolean sparseGradients) {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation("tanh")
+                .seed(12345)
+                .iterations(1)
+                .learningRate(0.1)
+                .updater(updater)
+                .list()
+                .layer(0, new EmbeddingLayer.Builder().nIn(nClassesIn).nOut(5).sparseGradients(sparseGradients).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(4).activation("softmax").build())
+                .pretrain(false).backprop(true)
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
 }
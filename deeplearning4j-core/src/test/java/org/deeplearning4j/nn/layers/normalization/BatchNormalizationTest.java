@@ -340,6 +340,59 @@ public class BatchNormalizationTest {
         assertEquals(dldinExp, p.getSecond());
     }
 
+    @Test
+    public void testCpuHelperMatchesBuiltIn() {
+        Nd4j.getRandom().setSeed(12345);
+        int nOut = 3;
+        INDArray[] inputs = {
+                Nd4j.rand('c', new int[]{5, nOut}),
+                Nd4j.rand('f', new int[]{5, nOut}),
+                Nd4j.rand('c', new int[]{2, nOut, 4, 5}),
+                //Strides of convolution layer activations
+                Nd4j.rand('c', new int[]{nOut, 2, 4, 5}).permute(1, 0, 2, 3)};
+
+        for (boolean lockGammaBeta : new boolean[]{false, true}) {
+            for (INDArray input : inputs) {
+                String msg = "lockGammaBeta=" + lockGammaBeta + ", shape=" + Arrays.toString(input.shape());
+                Layer direct = getLayer(nOut, 1e-5, lockGammaBeta, 2.0, 0.5);
+                Layer builtIn = getLayer(nOut, 1e-5, lockGammaBeta, 2.0, 0.5);
+                ((org.deeplearning4j.nn.layers.normalization.BatchNormalization) direct).helper =
+                        new CpuBatchNormalizationHelper();
+                ((org.deeplearning4j.nn.layers.normalization.BatchNormalization) builtIn).helper = null;
+                if (!lockGammaBeta) {
+                    INDArray gamma = Nd4j.rand(1, nOut);
+                    INDArray beta = Nd4j.rand(1, nOut);
+                    direct.getParam(BatchNormalizationParamInitializer.GAMMA).assign(gamma);
+                    direct.getParam(BatchNormalizationParamInitializer.BETA).assign(beta);
+                    builtIn.getParam(BatchNormalizationParamInitializer.GAMMA).assign(gamma);
+                    builtIn.getParam(BatchNormalizationParamInitializer.BETA).assign(beta);
+                }
+
+                INDArray expOut = builtIn.activate(input, true);
+                INDArray out = direct.activate(input, true);
+                assertArrayEquals(msg, expOut.shape(), out.shape());
+                assertEquals(msg, expOut, out);
+                assertEquals(msg, builtIn.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN),
+                        direct.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN));
+                assertEquals(msg, builtIn.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR),
+                        direct.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR));
+
+                INDArray epsilon = Nd4j.rand(input.shape());
+                Pair<Gradient, INDArray> exp = builtIn.backpropGradient(epsilon);
+                Pair<Gradient, INDArray> act = direct.backpropGradient(epsilon);
+                assertEquals(msg, exp.getSecond(), act.getSecond());
+                assertEquals(msg, exp.getFirst().gradientForVariable().keySet(),
+                        act.getFirst().gradientForVariable().keySet());
+                for (String key : exp.getFirst().gradientForVariable().keySet()) {
+                    assertEquals(msg + " " + key, exp.getFirst().getGradientFor(key), act.getFirst().getGradientFor(key));
+                }
+
+                //Test mode: global mean and variance
+                assertEquals(msg, builtIn.activate(input, false), direct.activate(input, false));
+            }
+        }
+    }
+
     @Test
     public void testDBNBNMultiLayer() throws Exception {
         DataSetIterator iter = new MnistDataSetIterator(2, 2);
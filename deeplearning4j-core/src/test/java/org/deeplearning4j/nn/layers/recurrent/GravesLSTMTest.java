@@ -230,4 +230,53 @@ public class GravesLSTMTest {
 			assertEquals(d1,d2,0.0);
 		}
 	}
+
+	@Test
+	public void testBuffersReusedAcrossMinibatches(){
+		//Gate and delta arrays are reused between passes: results for one minibatch must not depend on the previous one,
+		// and time steps one at a time must match the full forward pass
+		Nd4j.getRandom().setSeed(12345);
+		int nIn = 5;
+		int layerSize = 7;
+
+		NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+				.layer(new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder()
+						.nIn(nIn).nOut(layerSize)
+						.weightInit(WeightInit.DISTRIBUTION).dist(new UniformDistribution(-0.5, 0.5))
+						.activation("tanh")
+						.build())
+				.build();
+		int numParams = conf.getLayer().initializer().numParams(conf,true);
+		INDArray params = Nd4j.create(1, numParams);
+		GravesLSTM lstm = (GravesLSTM)conf.getLayer().instantiate(conf,null,0,params,true);
+		lstm.setBackpropGradientsViewArray(Nd4j.create(1, numParams));
+
+		INDArray inputA = Nd4j.rand(new int[]{3, nIn, 6});
+		INDArray inputB = Nd4j.rand(new int[]{3, nIn, 6});
+		INDArray epsilon = Nd4j.rand(new int[]{3, layerSize, 6});
+
+		INDArray outA = lstm.activate(inputA, false);
+		lstm.setInput(inputA);
+		Pair<Gradient,INDArray> gradA = lstm.backpropGradient(epsilon);
+		INDArray epsA = gradA.getSecond().dup();
+		INDArray iwA = gradA.getFirst().getGradientFor(GravesLSTMParamInitializer.INPUT_WEIGHT_KEY).dup();
+		INDArray rwA = gradA.getFirst().getGradientFor(GravesLSTMParamInitializer.RECURRENT_WEIGHT_KEY).dup();
+
+		lstm.activate(inputB, false);
+		lstm.setInput(inputB);
+		lstm.backpropGradient(epsilon);
+
+		assertEquals(outA, lstm.activate(inputA, false));
+		lstm.setInput(inputA);
+		Pair<Gradient,INDArray> gradA2 = lstm.backpropGradient(epsilon);
+		assertEquals(epsA, gradA2.getSecond());
+		assertEquals(iwA, gradA2.getFirst().getGradientFor(GravesLSTMParamInitializer.INPUT_WEIGHT_KEY));
+		assertEquals(rwA, gradA2.getFirst().getGradientFor(GravesLSTMParamInitializer.RECURRENT_WEIGHT_KEY));
+
+		lstm.rnnClearPreviousState();
+		for( int i=0; i<6; i++ ){
+			INDArray step = lstm.rnnTimeStep(inputA.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(i)));
+			assertEquals(outA.tensorAlongDimension(i, 1, 0), step.reshape(3, layerSize));
+		}
+	}
 }
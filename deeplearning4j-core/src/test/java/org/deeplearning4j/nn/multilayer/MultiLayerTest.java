@@ -21,10 +21,12 @@ package org.deeplearning4j.nn.multilayer;
 import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.datasets.iterator.impl.CifarDataSetIterator;
 import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
 import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.api.OutputConsumer;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.distribution.NormalDistribution;
@@ -39,6 +41,7 @@ import org.deeplearning4j.nn.params.PretrainParamInitializer;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.deeplearning4j.optimize.api.IterationListener;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
+import org.deeplearning4j.util.PositionalChannelOutputWriter;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -53,10 +56,15 @@ import org.nd4j.linalg.heartbeat.reports.Event;
 import org.nd4j.linalg.heartbeat.reports.Task;
 import org.nd4j.linalg.heartbeat.utils.EnvironmentUtils;
 import org.nd4j.linalg.heartbeat.utils.TaskUtils;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -585,6 +593,58 @@ public class MultiLayerTest {
         }
     }
 
+    @Test
+    public void testStreamingOutput() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .activation("tanh").weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(4).nOut(10).build())
+                .layer(1, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT).activation("softmax").nIn(10).nOut(3).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        DataSetIterator iter = new IrisDataSetIterator(40, 150);
+        INDArray expected = net.output(iter, false);
+        iter.reset();
+        INDArray expectedScores = net.scoreExamples(iter, false);
+        iter.reset();
+
+        File f = File.createTempFile("mlnOutput", ".bin");
+        f.deleteOnExit();
+        long count;
+        try (PositionalChannelOutputWriter writer = new PositionalChannelOutputWriter(f)) {
+            count = net.output(iter, false, writer);
+            assertEquals(3, writer.getRowLength());
+        }
+        assertEquals(150, count);
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            for (int i = 0; i < 150; i++)
+                for (int j = 0; j < 3; j++)
+                    assertEquals(expected.getDouble(i, j), dis.readFloat(), 1e-5);
+        }
+
+        iter.reset();
+        final INDArray scores = Nd4j.create(150, 1);
+        count = net.scoreExamples(iter, false, new OutputConsumer() {
+            @Override
+            public void consume(long exampleOffset, INDArray... outputs) {
+                for (int i = 0; i < outputs[0].length(); i++)
+                    scores.putScalar((int) exampleOffset + i, outputs[0].getDouble(i));
+            }
+        });
+        assertEquals(150, count);
+        assertEquals(expectedScores.reshape(150, 1), scores);
+
+        //A partly consumed iterator is used as passed, not rewound
+        iter.reset();
+        iter.next();
+        assertEquals(110, net.output(iter, false).rows());
+        assertFalse(iter.hasNext());
+    }
+
     @Test
     public void testDataSetScore(){
 
@@ -763,5 +823,61 @@ public class MultiLayerTest {
         assertEquals(Nd4j.ones(1,43).addi(1), actualParams);
     }
 
+    @Test
+    public void testGradientAccumulation() {
+        DataSet ds = new IrisDataSetIterator(30, 30).next();
+        ds.normalizeZeroMeanZeroUnitVariance();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(getGradientAccumulationConf(1, 1));
+        net.init();
+        MultiLayerNetwork netMicro = new MultiLayerNetwork(getGradientAccumulationConf(4, 1));
+        netMicro.init();
+        MultiLayerNetwork netAccum = new MultiLayerNetwork(getGradientAccumulationConf(1, 3));
+        netAccum.init();
+        assertEquals(net.params(), netMicro.params());
+        assertEquals(net.params(), netAccum.params());
+
+        //Same minibatch of 30: as 4 micro-batches, and as 3 iterator minibatches of 10 with one updater step
+        List<DataSet> split = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            split.add(new DataSet(ds.getFeatureMatrix().get(NDArrayIndex.interval(10 * i, 10 * (i + 1)), NDArrayIndex.all()),
+                    ds.getLabels().get(NDArrayIndex.interval(10 * i, 10 * (i + 1)), NDArrayIndex.all())));
+        }
+        DataSetIterator iter = new ListDataSetIterator(split, 1);
+
+        for (int i = 0; i < 3; i++) {
+            net.fit(ds);
+            netMicro.fit(ds);
+            iter.reset();
+            netAccum.fit(iter);
+
+            assertEquals(net.score(), netMicro.score(), 1e-5);
+            assertEquals(net.score(), netAccum.score(), 1e-5);
+        }
+
+        INDArray p = net.params();
+        for (int i = 0; i < p.length(); i++) {
+            assertEquals(p.getDouble(i), netMicro.params().getDouble(i), 1e-5);
+            assertEquals(p.getDouble(i), netAccum.params().getDouble(i), 1e-5);
+        }
+
+        //Input and labels of the whole minibatch are restored after the micro-batches
+        assertEquals(30, netMicro.batchSize());
+    }
 
-}
\ No newline at end of file
+    private static MultiLayerConfiguration getGradientAccumulationConf(int microBatches, int accumulationSteps) {
+        return new NeuralNetConfiguration.Builder()
+                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .iterations(1).seed(12345)
+                .updater(org.deeplearning4j.nn.conf.Updater.NESTEROVS).momentum(0.9).learningRate(0.1)
+                .regularization(true).l2(0.01)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(4).nOut(6).activation("tanh").build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(6).nOut(3)
+                        .activation("softmax").build())
+                .microBatches(microBatches).accumulationSteps(accumulationSteps)
+                .backprop(true).pretrain(false)
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package org.deeplearning4j.optimize.solver;
+
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.optimize.solvers.MixedPrecision;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TestMixedPrecision {
+
+    private static MultiLayerNetwork getNet() {
+        return getNet(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT);
+    }
+
+    private static MultiLayerNetwork getNet(OptimizationAlgorithm algo) {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .optimizationAlgo(algo)
+                .iterations(1).seed(12345)
+                .updater(Updater.NESTEROVS).momentum(0.9).learningRate(0.1)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(4).nOut(10).activation("tanh").build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(10).nOut(3)
+                        .activation("softmax").build())
+                .pretrain(false).backprop(true)
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    private static DataSet getData() {
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+        ds.normalizeZeroMeanZeroUnitVariance();
+        return ds;
+    }
+
+    @Test
+    public void testLossScalingMatchesFullPrecision() {
+        DataSet ds = getData();
+
+        MultiLayerNetwork net = getNet();
+        MultiLayerNetwork netMixed = getNet();
+        //Power of 2 loss scale: scaling and unscaling the gradients is exact
+        netMixed.setMixedPrecision(new MixedPrecision(1024, 5));
+        assertEquals(net.params(), netMixed.params());
+
+        net.computeGradientAndScore();
+        double initialScore = net.score();
+
+        for (int i = 0; i < 20; i++) {
+            net.fit(ds);
+            netMixed.fit(ds);
+        }
+
+        INDArray p = net.params();
+        INDArray pMixed = netMixed.params();
+        for (int i = 0; i < p.length(); i++) {
+            assertEquals(p.getDouble(i), pMixed.getDouble(i), 1e-5);
+        }
+        assertEquals(net.score(), netMixed.score(), 1e-5);
+        assertTrue(netMixed.score() < initialScore);
+
+        MixedPrecision mp = netMixed.getMixedPrecision();
+        assertEquals(0, mp.getSkippedIterations());
+        //Doubled every 5 iterations without overflow
+        assertEquals(1024 * 16, mp.getLossScale(), 0.0);
+    }
+
+    @Test
+    public void testOverflowSkipsIteration() {
+        DataSet ds = getData();
+
+        MultiLayerNetwork net = getNet();
+        net.setMixedPrecision(new MixedPrecision(Double.MAX_VALUE, 1000));
+        INDArray paramsBefore = net.params().dup();
+
+        net.fit(ds);
+
+        assertEquals(paramsBefore, net.params());
+        assertEquals(1, net.getMixedPrecision().getSkippedIterations());
+        assertEquals(Double.MAX_VALUE / 2, net.getMixedPrecision().getLossScale(), 0.0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testLineSearchAlgorithmsRejected() {
+        MultiLayerNetwork net = getNet(OptimizationAlgorithm.LBFGS);
+        net.setMixedPrecision(new MixedPrecision(1024, 5));
+        net.fit(getData());
+    }
+
+    @Test
+    public void testModelSerializer() throws Exception {
+        DataSet ds = getData();
+
+        MultiLayerNetwork net = getNet();
+        net.setMixedPrecision(new MixedPrecision(256, 3));
+        for (int i = 0; i < 4; i++) {
+            net.fit(ds);
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ModelSerializer.writeModel(net, baos, true);
+        MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(new ByteArrayInputStream(baos.toByteArray()));
+
+        assertEquals(net.params(), restored.params());
+        assertNotNull(restored.getMixedPrecision());
+        assertEquals(net.getMixedPrecision().getLossScale(), restored.getMixedPrecision().getLossScale(), 0.0);
+
+        //Training continues identically after restoring
+        net.fit(ds);
+        restored.fit(ds);
+        assertEquals(net.params(), restored.params());
+
+        //Without mixed precision, no entry is written
+        MultiLayerNetwork plain = getNet();
+        baos = new ByteArrayOutputStream();
+        ModelSerializer.writeModel(plain, baos, true);
+        assertNull(ModelSerializer.restoreMultiLayerNetwork(new ByteArrayInputStream(baos.toByteArray())).getMixedPrecision());
+    }
+}
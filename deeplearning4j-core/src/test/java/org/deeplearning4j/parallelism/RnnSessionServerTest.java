@@ -0,0 +1,96 @@
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.distribution.NormalDistribution;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class RnnSessionServerTest {
+
+    private static MultiLayerNetwork getNetwork() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(3).nOut(7).weightInit(WeightInit.DISTRIBUTION)
+                        .dist(new NormalDistribution(0, 0.5)).activation("tanh").build())
+                .layer(1, new GravesLSTM.Builder().nIn(7).nOut(5).weightInit(WeightInit.DISTRIBUTION)
+                        .dist(new NormalDistribution(0, 0.5)).activation("tanh").build())
+                .layer(2, new RnnOutputLayer.Builder(LossFunction.MSE).nIn(5).nOut(2).weightInit(WeightInit.DISTRIBUTION)
+                        .dist(new NormalDistribution(0, 0.5)).activation("identity").build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    @Test
+    public void testInterleavedSessionsMatchSeparateTimeSteps() throws Exception {
+        MultiLayerNetwork net = getNetwork();
+        int nSessions = 4;
+        int nSteps = 6;
+
+        Nd4j.getRandom().setSeed(12345);
+        INDArray[] inputs = new INDArray[nSessions];
+        INDArray[] expected = new INDArray[nSessions];
+        for (int s = 0; s < nSessions; s++) {
+            inputs[s] = Nd4j.rand(new int[] {1, 3, nSteps});
+            net.rnnClearPreviousState();
+            expected[s] = Nd4j.create(nSteps, 2);
+            for (int t = 0; t < nSteps; t++)
+                expected[s].putRow(t, net.rnnTimeStep(inputs[s].tensorAlongDimension(t, 1, 0)));
+        }
+        net.rnnClearPreviousState();
+
+        RnnSessionServer<Integer> server = new RnnSessionServer.Builder(net).capacity(8).build();
+
+        //Synchronous steps, with a varying subset of sessions in each minibatch
+        int[] done = new int[nSessions];
+        while (done[0] < nSteps || done[nSessions - 1] < nSteps) {
+            Map<Integer, INDArray> step = new HashMap<>();
+            for (int s = 0; s < nSessions; s++) {
+                if (done[s] < nSteps && (s % 2 == 0 || done[0] >= nSteps || done[0] % 2 == 1))
+                    step.put(s, inputs[s].tensorAlongDimension(done[s], 1, 0));
+            }
+            Map<Integer, INDArray> out = server.step(step);
+            for (Integer s : out.keySet()) {
+                assertEquals(expected[s].getRow(done[s]), out.get(s));
+                done[s]++;
+            }
+        }
+        assertEquals(nSessions, server.numSessions());
+
+        //Asynchronous steps: new sessions after ending the old ones
+        for (int s = 0; s < nSessions; s++)
+            server.endSession(s);
+        assertEquals(0, server.numSessions());
+
+        List<List<Future<INDArray>>> futures = new ArrayList<>();
+        for (int s = 0; s < nSessions; s++)
+            futures.add(new ArrayList<Future<INDArray>>());
+        for (int t = 0; t < nSteps; t++) {
+            for (int s = 0; s < nSessions; s++)
+                futures.get(s).add(server.submit(s, inputs[s].tensorAlongDimension(t, 1, 0)));
+        }
+        for (int s = 0; s < nSessions; s++) {
+            for (int t = 0; t < nSteps; t++)
+                assertEquals(expected[s].getRow(t), futures.get(s).get(t).get(10, TimeUnit.SECONDS));
+        }
+        server.close();
+    }
+}
@@ -0,0 +1,44 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MicroBatchUtilsTest {
+
+    @Test
+    public void testConcatTimeSeriesOfDifferentLengths() {
+        INDArray a = Nd4j.rand(new int[]{2, 3, 4});
+        INDArray b = Nd4j.rand(new int[]{1, 3, 6});
+        INDArray bMask = Nd4j.create(new double[]{1, 1, 1, 1, 1, 0});
+
+        Pair<INDArray, INDArray> out = MicroBatchUtils.concatExamples(Arrays.asList(a, b), Arrays.asList(null, bMask));
+        INDArray arr = out.getFirst();
+        INDArray mask = out.getSecond();
+        assertArrayEquals(new int[]{3, 3, 6}, arr.shape());
+        assertArrayEquals(new int[]{3, 6}, mask.shape());
+
+        //Shorter time series are zero padded at the end, and the padding is masked out
+        assertEquals(a, arr.get(NDArrayIndex.interval(0, 2), NDArrayIndex.all(), NDArrayIndex.interval(0, 4)));
+        assertEquals(0.0, arr.get(NDArrayIndex.interval(0, 2), NDArrayIndex.all(), NDArrayIndex.interval(4, 6))
+                .sumNumber().doubleValue(), 0.0);
+        assertEquals(b, arr.get(NDArrayIndex.interval(2, 3), NDArrayIndex.all(), NDArrayIndex.all()));
+        assertEquals(Nd4j.create(new double[][]{{1, 1, 1, 1, 0, 0}, {1, 1, 1, 1, 0, 0}, {1, 1, 1, 1, 1, 0}}), mask);
+    }
+
+    @Test
+    public void testConcatSameLengthUnchanged() {
+        INDArray a = Nd4j.rand(new int[]{2, 3, 4});
+        INDArray b = Nd4j.rand(new int[]{1, 3, 4});
+
+        Pair<INDArray, INDArray> out = MicroBatchUtils.concatExamples(Arrays.asList(a, b), Arrays.<INDArray>asList(null, null));
+        assertArrayEquals(new int[]{3, 3, 4}, out.getFirst().shape());
+        assertNull(out.getSecond());
+    }
+}
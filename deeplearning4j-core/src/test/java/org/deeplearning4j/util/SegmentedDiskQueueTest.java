@@ -0,0 +1,126 @@
+package org.deeplearning4j.util;
+
+import org.junit.Test;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SegmentedDiskQueueTest {
+
+    @Test
+    public void testFifoAcrossMemoryAndSegments() throws Exception {
+        File dir = Files.createTempDirectory("dl4jqueue").toFile();
+        dir.deleteOnExit();
+
+        SegmentedDiskQueue<String> queue = new SegmentedDiskQueue.Builder<>(dir, QueueSerializers.<String>javaSerialization())
+                .segmentSize(1024)
+                .memoryCapacity(5)
+                .build();
+
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) assertTrue(queue.offer("element-" + next++));
+            assertTrue(queue.sizeOnDisk() > 0);
+            for (int i = 0; i < 30; i++) assertEquals("element-" + expected++, queue.poll());
+        }
+        assertEquals(next - expected, queue.size());
+        assertEquals("element-" + expected, queue.peek());
+        while (!queue.isEmpty()) assertEquals("element-" + expected++, queue.poll());
+        assertEquals(next, expected);
+        assertNull(queue.poll());
+        queue.delete();
+    }
+
+    @Test
+    public void testDataSetsAndRecovery() throws Exception {
+        File dir = Files.createTempDirectory("dl4jqueue").toFile();
+        dir.deleteOnExit();
+
+        SegmentedDiskQueue<DataSet> queue = new SegmentedDiskQueue.Builder<>(dir, QueueSerializers.dataSets())
+                .segmentSize(4096)
+                .syncEvery(3)
+                .build();
+        DataSet[] data = new DataSet[20];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new DataSet(Nd4j.rand(4, 10), Nd4j.rand(4, 3));
+            queue.add(data[i]);
+        }
+        for (int i = 0; i < 5; i++) {
+            DataSet ds = queue.poll();
+            assertEquals(data[i].getFeatures(), ds.getFeatures());
+            assertEquals(data[i].getLabels(), ds.getLabels());
+        }
+        queue.close();
+
+        SegmentedDiskQueue<DataSet> recovered = new SegmentedDiskQueue.Builder<>(dir, QueueSerializers.dataSets())
+                .recover(true)
+                .build();
+        assertEquals(15, recovered.size());
+        for (int i = 5; i < data.length; i++) {
+            DataSet ds = recovered.poll();
+            assertEquals(data[i].getFeatures(), ds.getFeatures());
+        }
+        assertTrue(recovered.isEmpty());
+        recovered.delete();
+    }
+
+    @Test
+    public void testDataSetWithoutLabels() throws Exception {
+        File dir = Files.createTempDirectory("dl4jqueue").toFile();
+        dir.deleteOnExit();
+
+        SegmentedDiskQueue<DataSet> queue = new SegmentedDiskQueue.Builder<>(dir, QueueSerializers.dataSets()).build();
+        DataSet ds = new DataSet(Nd4j.rand(4, 10), null);
+        queue.add(ds);
+        DataSet out = queue.poll();
+        assertEquals(ds.getFeatures(), out.getFeatures());
+        assertNull(out.getLabels());
+        queue.delete();
+    }
+
+    @Test
+    public void testDrainReleasesSegments() throws Exception {
+        File dir = Files.createTempDirectory("dl4jqueue").toFile();
+        dir.deleteOnExit();
+
+        SegmentedDiskQueue<String> queue = new SegmentedDiskQueue.Builder<>(dir, QueueSerializers.<String>javaSerialization())
+                .segmentSize(1024)
+                .maxRecycledSegments(1)
+                .build();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) queue.add("element-" + i);
+            assertTrue(dir.listFiles().length > 1);
+            for (int i = 0; i < 100; i++) assertEquals("element-" + i, queue.poll());
+            assertTrue(queue.isEmpty());
+            //Only the recycled (closed) segment is left
+            assertEquals(1, dir.listFiles().length);
+        }
+        queue.close();
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testDiskBasedQueueSerialization() throws Exception {
+        File dir = Files.createTempDirectory("dl4jqueue").toFile();
+        dir.deleteOnExit();
+
+        DiskBasedQueue<String> queue = new DiskBasedQueue<>(dir);
+        for (int i = 0; i < 10; i++) queue.add("element-" + i);
+        assertEquals("element-0", queue.poll());
+
+        DiskBasedQueue<String> restored = SerializationUtils.readObject(
+                new ByteArrayInputStream(SerializationUtils.toByteArray(queue)));
+        queue.close();
+
+        assertEquals(9, restored.size());
+        for (int i = 1; i < 10; i++) assertEquals("element-" + i, restored.poll());
+        assertTrue(restored.isEmpty());
+        restored.delete();
+    }
+}
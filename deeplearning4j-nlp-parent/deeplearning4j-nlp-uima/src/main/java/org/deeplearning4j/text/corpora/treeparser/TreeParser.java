@@ -19,6 +19,7 @@
 package org.deeplearning4j.text.corpora.treeparser;
 
 import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.util.CasPool;
@@ -39,7 +40,9 @@ import org.deeplearning4j.text.movingwindow.ContextLabelRetriever;
 import org.deeplearning4j.text.sentenceiterator.SentencePreProcessor;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.UimaTokenizerFactory;
+import org.deeplearning4j.text.uima.UimaResource;
 import org.deeplearning4j.util.MultiDimensionalMap;
+import org.deeplearning4j.util.MultiThreadUtils;
 import org.deeplearning4j.util.SetUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,12 +51,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
 
 /**
  * Tree parser for constituency parsing
+ * <p>
+ * Documents are split in to sentences first, and the sentences are then parsed concurrently, each on a cas from
+ * the pool. Sentences only run in parallel when the engines allow simultaneous requests: the default engines
+ * ({@link #getTokenizer(int)}, {@link #getParser(int)}) hold one annotator instance per pooled cas.
  *
  * @author Adam Gibson
  */
@@ -64,6 +75,12 @@ public class TreeParser {
     private CasPool pool;
     private static final Logger log = LoggerFactory.getLogger(TreeParser.class);
     private TokenizerFactory tf;
+    private ExecutorService executor;
+
+    //Builds a tree from a sentence, using the given (empty) cas; returns null to skip the sentence
+    private interface SentenceParser {
+        Tree parse(String sentence,CAS cas) throws Exception;
+    }
 
 
     public TreeParser(AnalysisEngine parser,AnalysisEngine tokenizer,CasPool pool) {
@@ -75,13 +92,14 @@ public class TreeParser {
 
 
     public TreeParser() throws Exception {
+        int poolSize = Runtime.getRuntime().availableProcessors();
         if(parser == null) {
-            parser = getParser();
+            parser = getParser(poolSize);
         }
         if(tokenizer == null)
-            tokenizer = getTokenizer();
+            tokenizer = getTokenizer(poolSize);
         if(pool == null)
-            pool = new CasPool(Runtime.getRuntime().availableProcessors() ,parser);
+            pool = new CasPool(poolSize ,parser);
         tf = new UimaTokenizerFactory(tokenizer,true);
 
     }
@@ -99,45 +117,135 @@ public class TreeParser {
         if(text.isEmpty())
             return new ArrayList<>();
 
-        CAS c = pool.getCas();
         if(preProcessor != null)
             text = preProcessor.preProcess(text);
 
+        List<Tree> ret = parseAll(sentences(text), new SentenceParser() {
+            @Override
+            public Tree parse(String sentence, CAS cas) throws Exception {
+                Pair<String,MultiDimensionalMap<Integer,Integer,String>> p = ContextLabelRetriever.stringWithLabels(sentence,tf);
+                List<TopTreebankNode> nodes = process(cas, p.getFirst());
+                return nodes.isEmpty() ? null : TreeFactory.buildTree(nodes.get(0));
+            }
+        }, true);
 
-        c.setDocumentText(text);
-        tokenizer.process(c);
-        List<Tree> ret = new ArrayList<>();
-        CAS c2 = pool.getCas();
-        List< Pair<String,MultiDimensionalMap<Integer,Integer,String>>> list = new ArrayList<>();
-        for(Sentence sentence : JCasUtil.select(c.getJCas(),Sentence.class)) {
-            List<String> tokens = new ArrayList<>();
-            for(Token t : JCasUtil.selectCovered(Token.class,sentence))
-                tokens.add(t.getCoveredText());
 
-            Pair<String,MultiDimensionalMap<Integer,Integer,String>> p = ContextLabelRetriever.stringWithLabels(sentence.getCoveredText(),tf);
-            c2.setDocumentText(p.getFirst());
-            list.add(p);
-            tokenizer.process(c2);
-            parser.process(c2);
+        for(Tree t : ret) {
+           addPreTerminal(t);
+        }
 
-            //build the tree based on this
-            TopTreebankNode node = JCasUtil.selectSingle(c.getJCas(),TopTreebankNode.class);
-            ret.add(TreeFactory.buildTree(node));
 
+        return ret;
 
-        }
 
-        pool.releaseCas(c2);
+    }
 
+    /**
+     * Gets trees from a batch of documents, parsing the documents concurrently.
+     * See {@link #getTrees(String)}
+     * @param texts the documents
+     * @return the trees of each document, in document order
+     * @throws Exception
+     */
+    public List<List<Tree>> getTrees(List<String> texts) throws Exception {
+        List<Future<List<Tree>>> futures = new ArrayList<>(texts.size());
+        for(final String text : texts) {
+            futures.add(executor().submit(new Callable<List<Tree>>() {
+                @Override
+                public List<Tree> call() throws Exception {
+                    //Sentences are parsed on this thread: waiting on the executor from inside it could deadlock
+                    return parseAll(sentences(text), treeParser, false);
+                }
+            }));
+        }
+        List<List<Tree>> ret = new ArrayList<>(texts.size());
+        for(Future<List<Tree>> f : futures)
+            ret.add(get(f));
+        return ret;
+    }
 
-        for(Tree t : ret) {
-           addPreTerminal(t);
+    //Splits a document in to sentences
+    private List<String> sentences(String text) throws Exception {
+        List<String> ret = new ArrayList<>();
+        if(text.isEmpty())
+            return ret;
+        CAS c = borrowCas();
+        try {
+            c.setDocumentText(text);
+            tokenizer.process(c);
+            for(Sentence sentence : JCasUtil.select(c.getJCas(),Sentence.class))
+                ret.add(sentence.getCoveredText());
+        } finally {
+            pool.releaseCas(c);
         }
+        return ret;
+    }
+
+    //Tokenizes and parses a sentence in the given cas
+    private List<TopTreebankNode> process(CAS cas,String sentence) throws Exception {
+        cas.setDocumentText(sentence);
+        tokenizer.process(cas);
+        parser.process(cas);
+        return new ArrayList<>(JCasUtil.select(cas.getJCas(),TopTreebankNode.class));
+    }
 
+    //Parses the sentences, each on its own cas, keeping the sentence order and dropping null trees
+    private List<Tree> parseAll(List<String> sentences,final SentenceParser sentenceParser,boolean parallel) throws Exception {
+        List<Tree> ret = new ArrayList<>(sentences.size());
+        if(!parallel || sentences.size() < 2) {
+            for(String sentence : sentences) {
+                Tree t = parse(sentence, sentenceParser);
+                if(t != null)
+                    ret.add(t);
+            }
+            return ret;
+        }
 
+        List<Future<Tree>> futures = new ArrayList<>(sentences.size());
+        for(final String sentence : sentences) {
+            futures.add(executor().submit(new Callable<Tree>() {
+                @Override
+                public Tree call() throws Exception {
+                    return parse(sentence, sentenceParser);
+                }
+            }));
+        }
+        for(Future<Tree> f : futures) {
+            Tree t = get(f);
+            if(t != null)
+                ret.add(t);
+        }
         return ret;
+    }
 
+    private Tree parse(String sentence,SentenceParser sentenceParser) throws Exception {
+        CAS cas = borrowCas();
+        try {
+            return sentenceParser.parse(sentence, cas);
+        } finally {
+            pool.releaseCas(cas);
+        }
+    }
 
+    //Blocks until a cas is free: sentences are parsed concurrently, and the pool may be smaller than the executor
+    private CAS borrowCas() {
+        return pool.getCas(0);
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if(executor == null)
+            executor = MultiThreadUtils.newExecutorService();
+        return executor;
     }
 
 
@@ -166,7 +274,7 @@ public class TreeParser {
         if(text.isEmpty())
             return new ArrayList<>();
 
-        CAS c = pool.getCas();
+        CAS c = borrowCas();
         c.setDocumentText(text);
         tokenizer.process(c);
         List<TreebankNode> ret = new ArrayList<>();
@@ -217,62 +325,35 @@ public class TreeParser {
     public List<Tree> getTreesWithLabels(String text,String label,List<String> labels)  throws Exception {
         if(text.isEmpty())
             return new ArrayList<>();
-        CAS c = pool.getCas();
-        c.setDocumentText("<" + label + "> " + text + " </" + label + ">");
-        tokenizer.process(c);
         List<String> lowerCaseLabels = new ArrayList<>();
         for(String s : labels)
             lowerCaseLabels.add(s.toLowerCase());
-        labels = lowerCaseLabels;
-
-        List<Tree> ret = new ArrayList<>();
-        CAS c2 = pool.getCas();
-        for(Sentence sentence : JCasUtil.select(c.getJCas(),Sentence.class)) {
-           if(sentence.getCoveredText().isEmpty())
-               continue;
-
-            List<String> tokens = new ArrayList<>();
-            for(Token t : JCasUtil.selectCovered(Token.class,sentence))
-                tokens.add(t.getCoveredText());
-
-            try {
-                Pair<String, MultiDimensionalMap<Integer, Integer, String>> stringsWithLabels = ContextLabelRetriever.stringWithLabels(sentence.getCoveredText(), tf);
-                c2.setDocumentText(stringsWithLabels.getFirst());
-                tokenizer.process(c2);
-                parser.process(c2);
-
-                //build the tree based on this
-                List<TopTreebankNode> nodes = new ArrayList<>(JCasUtil.select(c2.getJCas(),TopTreebankNode.class));
-                if(nodes.size() > 1) {
-                    log.warn("More than one top level node for a treebank parse. Only accepting first input node.");
-                }
-
-                else if(nodes.isEmpty()) {
-                    c2.reset();
-                    continue;
+        final List<String> finalLabels = lowerCaseLabels;
+
+        return parseAll(sentences("<" + label + "> " + text + " </" + label + ">"), new SentenceParser() {
+            @Override
+            public Tree parse(String sentence, CAS cas) throws Exception {
+                if(sentence.isEmpty())
+                    return null;
+                try {
+                    Pair<String, MultiDimensionalMap<Integer, Integer, String>> stringsWithLabels = ContextLabelRetriever.stringWithLabels(sentence, tf);
+                    //build the tree based on this
+                    List<TopTreebankNode> nodes = process(cas, stringsWithLabels.getFirst());
+                    if(nodes.size() > 1) {
+                        log.warn("More than one top level node for a treebank parse. Only accepting first input node.");
+                    }
+
+                    else if(nodes.isEmpty()) {
+                        return null;
+                    }
+
+                    return TreeFactory.buildTree(nodes.get(0),stringsWithLabels,finalLabels);
+                }catch(Exception e) {
+                    log.warn("Unable to parse " + sentence);
+                    return null;
                 }
-
-
-
-
-                TopTreebankNode node = nodes.get(0);
-                ret.add(TreeFactory.buildTree(node,stringsWithLabels,labels));
-                c2.reset();
-
-            }catch(Exception e) {
-                log.warn("Unable to parse " + sentence.getCoveredText());
-                c2.reset();
-                continue;
             }
-
-
-
-        }
-
-        pool.releaseCas(c);
-        pool.releaseCas(c2);
-
-        return ret;
+        }, true);
 
 
     }
@@ -294,61 +375,38 @@ public class TreeParser {
      * @throws Exception
      */
     public List<Tree> getTreesWithLabels(String text,List<String> labels)  throws Exception {
-        CAS c = pool.getCas();
-        c.setDocumentText(text);
-        tokenizer.process(c);
         List<String> lowerCaseLabels = new ArrayList<>();
         for(String s : labels)
             lowerCaseLabels.add(s.toLowerCase());
-        labels = lowerCaseLabels;
+        final List<String> finalLabels = lowerCaseLabels;
 
-        List<Tree> ret = new ArrayList<>();
-        CAS c2 = pool.getCas();
-        for(Sentence sentence : JCasUtil.select(c.getJCas(),Sentence.class)) {
-            List<String> tokens = new ArrayList<>();
-            for(Token t : JCasUtil.selectCovered(Token.class,sentence))
-                tokens.add(t.getCoveredText());
+        return parseAll(sentences(text), new SentenceParser() {
+            @Override
+            public Tree parse(String sentence, CAS cas) throws Exception {
+                Pair<String,MultiDimensionalMap<Integer,Integer,String>> stringsWithLabels = ContextLabelRetriever.stringWithLabels(sentence,tf);
 
-            Pair<String,MultiDimensionalMap<Integer,Integer,String>> stringsWithLabels = ContextLabelRetriever.stringWithLabels(sentence.getCoveredText(),tf);
-            c2.setDocumentText(stringsWithLabels.getFirst());
-
-
-
-            tokenizer.process(c2);
-            parser.process(c2);
+                //build the tree based on this
+                List<TopTreebankNode> nodes = process(cas, stringsWithLabels.getFirst());
+                if(nodes.size() > 1) {
+                    log.warn("More than one top level node for a treebank parse. Only accepting first input node.");
+                }
 
-            //build the tree based on this
-            //damn it
-            List<TopTreebankNode> nodes = new ArrayList<>(JCasUtil.select(c2.getJCas(),TopTreebankNode.class));
-            if(nodes.size() > 1) {
-                log.warn("More than one top level node for a treebank parse. Only accepting first input node.");
-            }
+                else if(nodes.isEmpty()) {
+                    return null;
+                }
 
-            else if(nodes.isEmpty()) {
-                c2.reset();
-                continue;
-            }
 
+                Collection<String> labels2 = stringsWithLabels.getSecond().values();
+                Set<String> diff = SetUtils.difference(labels2,finalLabels);
+                if(!diff.isEmpty()) {
+                    log.warn("Found invalid sentence. Skipping");
+                    return null;
 
-            Collection<String> labels2 = stringsWithLabels.getSecond().values();
-            Set<String> diff = SetUtils.difference(labels2,labels);
-            if(!diff.isEmpty()) {
-                log.warn("Found invalid sentence. Skipping");
-                c2.reset();
-                continue;
+                }
 
+                return TreeFactory.buildTree(nodes.get(0),stringsWithLabels,finalLabels);
             }
-
-            TopTreebankNode node = nodes.get(0);
-            ret.add(TreeFactory.buildTree(node,stringsWithLabels,labels));
-            c2.reset();
-
-        }
-
-        pool.releaseCas(c);
-        pool.releaseCas(c2);
-
-        return ret;
+        }, true);
 
 
     }
@@ -362,57 +420,65 @@ public class TreeParser {
      * @throws Exception
      */
     public List<Tree> getTrees(String text)  throws Exception {
-        CAS c = pool.getCas();
-        c.setDocumentText(text);
-        tokenizer.process(c);
-        List<Tree> ret = new ArrayList<>();
-        CAS c2 = pool.getCas();
-        for(Sentence sentence : JCasUtil.select(c.getJCas(),Sentence.class)) {
-            List<String> tokens = new ArrayList<>();
-            for(Token t : JCasUtil.selectCovered(Token.class,sentence))
-                tokens.add(t.getCoveredText());
-
-
-            c2.setDocumentText(sentence.getCoveredText());
-            tokenizer.process(c2);
-            parser.process(c2);
+        return parseAll(sentences(text), treeParser, true);
+    }
 
+    private final SentenceParser treeParser = new SentenceParser() {
+        @Override
+        public Tree parse(String sentence, CAS cas) throws Exception {
             //build the tree based on this
-            TopTreebankNode node = JCasUtil.selectSingle(c2.getJCas(),TopTreebankNode.class);
-            log.info("Tree bank parse " + node.getTreebankParse());
-            for(TreebankNode node2 : JCasUtil.select(c2.getJCas(),TreebankNode.class)) {
-                log.info("Node val " + node2.getNodeValue() + " and label " + node2.getNodeType() + " and tags was " + node2.getNodeTags());
+            List<TopTreebankNode> nodes = process(cas, sentence);
+            if(nodes.isEmpty())
+                return null;
+            TopTreebankNode node = nodes.get(0);
+            if(log.isDebugEnabled()) {
+                log.debug("Tree bank parse " + node.getTreebankParse());
+                for(TreebankNode node2 : JCasUtil.select(cas.getJCas(),TreebankNode.class)) {
+                    log.debug("Node val " + node2.getNodeValue() + " and label " + node2.getNodeType() + " and tags was " + node2.getNodeTags());
+                }
             }
 
-            ret.add(TreeFactory.buildTree(node));
-            c2.reset();
-
+            return TreeFactory.buildTree(node);
         }
+    };
 
-        pool.releaseCas(c);
-        pool.releaseCas(c2);
 
-        return ret;
+    public static AnalysisEngine getTokenizer() throws Exception {
+        return createEngine(tokenizerDescription());
+    }
 
+    /**
+     * @param poolSize the number of annotator instances, for concurrent processing
+     * @return the sentence/tokenization/part of speech/stemming pipeline
+     */
+    public static AnalysisEngine getTokenizer(int poolSize) throws Exception {
+        return UimaResource.createPooledEngine(tokenizerDescription(), poolSize);
+    }
 
+    public static AnalysisEngine getParser() throws Exception {
+        return createEngine(parserDescription());
     }
 
+    /**
+     * @param poolSize the number of parser instances, for concurrent processing
+     * @return the constituency parser
+     */
+    public static AnalysisEngine getParser(int poolSize) throws Exception {
+        return UimaResource.createPooledEngine(parserDescription(), poolSize);
+    }
 
-    public static AnalysisEngine getTokenizer() throws Exception {
-        return createEngine(
-                createEngineDescription(
+    private static AnalysisEngineDescription tokenizerDescription() throws Exception {
+        return createEngineDescription(
                         SentenceAnnotator.getDescription(),
                         TokenizerAnnotator.getDescription(),
                         PoStagger.getDescription("en"),
                         StemmerAnnotator.getDescription("English")
 
-                )
-        );
+                );
     }
 
-    public static AnalysisEngine getParser() throws Exception {
-        return createEngine(
-                createEngineDescription(
+    private static AnalysisEngineDescription parserDescription() throws Exception {
+        return createEngineDescription(
                         createEngineDescription(
                                 ParserAnnotator.class,
                                 ParserAnnotator.PARAM_USE_TAGS_FROM_CAS,
@@ -420,7 +486,7 @@ public class TreeParser {
                                 ParserAnnotator.PARAM_PARSER_MODEL_PATH,
                                 ParamUtil.getParameterValue(ParserAnnotator.PARAM_PARSER_MODEL_PATH, "/models/en-parser-chunking.bin"),
                                 ParserAnnotator.PARAM_OUTPUT_TYPES_HELPER_CLASS_NAME,
-                                DefaultOutputTypesHelper.class.getName())));
+                                DefaultOutputTypesHelper.class.getName()));
 
 
     }
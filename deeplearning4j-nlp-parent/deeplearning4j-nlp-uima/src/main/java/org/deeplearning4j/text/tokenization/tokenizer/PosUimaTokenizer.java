@@ -23,14 +23,17 @@ import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
 import org.deeplearning4j.text.annotator.PoStagger;
 import org.deeplearning4j.text.annotator.SentenceAnnotator;
 import org.deeplearning4j.text.annotator.StemmerAnnotator;
 import org.deeplearning4j.text.annotator.TokenizerAnnotator;
+import org.deeplearning4j.text.uima.UimaResource;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -43,11 +46,8 @@ import java.util.List;
  */
 public class PosUimaTokenizer  implements Tokenizer {
 
-    private static AnalysisEngine engine;
     private List<String> tokens;
-    private Collection<String> allowedPosTags;
     private int index;
-    private static CAS cas;
     private TokenPreProcess preProcessor;
     private boolean stripNones = false;
 
@@ -56,46 +56,73 @@ public class PosUimaTokenizer  implements Tokenizer {
     }
 
     public PosUimaTokenizer(String tokens,AnalysisEngine engine,Collection<String> allowedPosTags, boolean stripNones) {
-        if(PosUimaTokenizer.engine == null)
-            PosUimaTokenizer.engine = engine;
-        this.allowedPosTags = allowedPosTags;
-        this.tokens = new ArrayList<>();
+        this(tokens, resourceFor(engine), allowedPosTags, stripNones);
+    }
+
+    public PosUimaTokenizer(String tokens,UimaResource resource,Collection<String> allowedPosTags, boolean stripNones) {
         this.stripNones = stripNones;
         try {
-            if(cas == null)
-                cas = engine.newCAS();
-
-            cas.reset();
-            cas.setDocumentText(tokens);
-            PosUimaTokenizer.engine.process(cas);
-            for(Sentence s : JCasUtil.select(cas.getJCas(), Sentence.class)) {
-                for(Token t : JCasUtil.selectCovered(Token.class,s)) {
-                    //add NONE for each invalid token
-                    if(valid(t))
-                        if(t.getLemma() != null)
-                            this.tokens.add(t.getLemma());
-                        else if(t.getStem() != null)
-                            this.tokens.add(t.getStem());
-                        else
-                            this.tokens.add(t.getCoveredText());
-                    else
-                        this.tokens.add("NONE");
-                }
-            }
+            this.tokens = new ArrayList<>(Arrays.asList(resource.process(tokens, taggedTokenExtractor(allowedPosTags))[0]));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
 
+    }
 
+    /**
+     * Creates a tokenizer over already extracted tokens (with NONE for filtered tokens),
+     * for example from {@link #taggedTokenExtractor(Collection)}
+     */
+    public PosUimaTokenizer(List<String> tokens, boolean stripNones) {
+        this.tokens = tokens;
+        this.stripNones = stripNones;
+    }
 
+    /**
+     * Extracts the tokens and part of speech tags of a processed cas, as two arrays of equal length: the tokens
+     * (lemma, stem or text, or NONE if the tag isn't allowed), and the tags (null if the token wasn't tagged)
+     * @param allowedPosTags the allowed part of speech tags
+     * @return the extractor
+     */
+    public static UimaResource.CasFunction<String[][]> taggedTokenExtractor(final Collection<String> allowedPosTags) {
+        return new UimaResource.CasFunction<String[][]>() {
+            @Override
+            public String[][] apply(CAS cas) throws Exception {
+                List<String> tokens = new ArrayList<>();
+                List<String> tags = new ArrayList<>();
+                for(Sentence s : JCasUtil.select(cas.getJCas(), Sentence.class)) {
+                    for(Token t : JCasUtil.selectCovered(Token.class,s)) {
+                        //add NONE for each invalid token
+                        if(valid(t, allowedPosTags))
+                            if(t.getLemma() != null)
+                                tokens.add(t.getLemma());
+                            else if(t.getStem() != null)
+                                tokens.add(t.getStem());
+                            else
+                                tokens.add(t.getCoveredText());
+                        else
+                            tokens.add("NONE");
+                        tags.add(t.getPos());
+                    }
+                }
+                return new String[][] {tokens.toArray(new String[tokens.size()]), tags.toArray(new String[tags.size()])};
+            }
+        };
+    }
 
-        } catch (Exception e) {
+    //Tokenizers created from a bare engine use a single cas of their own; PosUimaTokenizerFactory shares a pool
+    private static UimaResource resourceFor(AnalysisEngine engine) {
+        try {
+            return new UimaResource(engine, 1);
+        } catch (ResourceInitializationException e) {
             throw new RuntimeException(e);
         }
-
     }
 
-    private boolean valid(Token token) {
+    private static boolean valid(Token token,Collection<String> allowedPosTags) {
         String check = token.getCoveredText();
         if(check.matches("<[A-Z]+>") || check.matches("</[A-Z]+>")
-                || (token.getPos() != null && !this.allowedPosTags.contains(token.getPos())))
+                || (token.getPos() != null && !allowedPosTags.contains(token.getPos())))
             return false;
         return true;
     }
@@ -133,7 +160,7 @@ public class PosUimaTokenizer  implements Tokenizer {
 
     public static AnalysisEngine defaultAnalysisEngine()  {
         try {
-            return AnalysisEngineFactory.createEngine(AnalysisEngineFactory.createEngineDescription(SentenceAnnotator.getDescription(), TokenizerAnnotator.getDescription(), PoStagger.getDescription("en"), StemmerAnnotator.getDescription("English")));
+            return UimaResource.createPooledEngine(AnalysisEngineFactory.createEngineDescription(SentenceAnnotator.getDescription(), TokenizerAnnotator.getDescription(), PoStagger.getDescription("en"), StemmerAnnotator.getDescription("English")), Runtime.getRuntime().availableProcessors());
         }catch(Exception e) {
             throw new RuntimeException(e);
         }
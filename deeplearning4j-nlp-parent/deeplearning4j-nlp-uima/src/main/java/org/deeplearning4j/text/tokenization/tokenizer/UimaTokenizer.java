@@ -46,35 +46,50 @@ public class UimaTokenizer implements Tokenizer {
     public UimaTokenizer(String tokens,UimaResource resource,boolean checkForLabel) {
     
         this.checkForLabel = checkForLabel;
-        this.tokens = new ArrayList<>();
         try {
-            CAS cas = resource.process(tokens);
-
-            Collection<Token> tokenList = JCasUtil.select(cas.getJCas(), Token.class);
-
-            for(Token t : tokenList) {
-
-                if(!checkForLabel || valid(t.getCoveredText()))
-                    if(t.getLemma() != null)
-                        this.tokens.add(t.getLemma());
-                    else if(t.getStem() != null)
-                        this.tokens.add(t.getStem());
-                    else
-                        this.tokens.add(t.getCoveredText());
-            }
-
-
-           resource.release(cas);
-
-
+            this.tokens = resource.process(tokens, tokenExtractor(checkForLabel));
         } catch (Exception e) {
-        	e.printStackTrace();
+            log.error("Unable to tokenize text",e);
             throw new RuntimeException(e);
         }
 
     }
 
-    private boolean valid(String check) {
+    /**
+     * Creates a tokenizer over already extracted tokens,
+     * for example from {@link UimaResource#processAll(List, UimaResource.CasFunction)}
+     * @param tokens the tokens
+     */
+    public UimaTokenizer(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Extracts the lemma, stem or text of each token of a processed cas
+     * @param checkForLabel whether to drop label tokens of the form &lt;LABEL&gt; and &lt;/LABEL&gt;
+     * @return the token extractor
+     */
+    public static UimaResource.CasFunction<List<String>> tokenExtractor(final boolean checkForLabel) {
+        return new UimaResource.CasFunction<List<String>>() {
+            @Override
+            public List<String> apply(CAS cas) throws Exception {
+                Collection<Token> tokenList = JCasUtil.select(cas.getJCas(), Token.class);
+                List<String> ret = new ArrayList<>(tokenList.size());
+                for(Token t : tokenList) {
+                    if(!checkForLabel || valid(t.getCoveredText()))
+                        if(t.getLemma() != null)
+                            ret.add(t.getLemma());
+                        else if(t.getStem() != null)
+                            ret.add(t.getStem());
+                        else
+                            ret.add(t.getCoveredText());
+                }
+                return ret;
+            }
+        };
+    }
+
+    private static boolean valid(String check) {
         return !(check.matches("<[A-Z]+>") || check.matches("</[A-Z]+>"));
     }
 
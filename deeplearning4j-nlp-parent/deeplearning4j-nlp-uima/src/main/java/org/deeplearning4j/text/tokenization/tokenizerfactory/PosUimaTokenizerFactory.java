@@ -27,11 +27,15 @@ import org.deeplearning4j.text.annotator.TokenizerAnnotator;
 import org.deeplearning4j.text.tokenization.tokenizer.PosUimaTokenizer;
 import org.deeplearning4j.text.tokenization.tokenizer.TokenPreProcess;
 import org.deeplearning4j.text.tokenization.tokenizer.Tokenizer;
+import org.deeplearning4j.text.uima.UimaResource;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
-import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
 
 /**
@@ -43,7 +47,8 @@ import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDesc
  */
 public class PosUimaTokenizerFactory implements TokenizerFactory {
 
-    private AnalysisEngine tokenizer;
+    private static AnalysisEngine defaultAnalysisEngine;
+    private UimaResource resource;
     private Collection<String> allowedPoSTags;
     private TokenPreProcess tokenPreProcess;
     private boolean stripNones = false;
@@ -58,18 +63,36 @@ public class PosUimaTokenizerFactory implements TokenizerFactory {
     }
 
     public PosUimaTokenizerFactory(AnalysisEngine tokenizer,Collection<String> allowedPosTags) {
-        this.tokenizer = tokenizer;
+        try {
+            this.resource = new UimaResource(tokenizer);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
         this.allowedPoSTags = allowedPosTags;
     }
 
+    public PosUimaTokenizerFactory(UimaResource resource,Collection<String> allowedPosTags, boolean stripNones) {
+        this.resource = resource;
+        this.allowedPoSTags = allowedPosTags;
+        this.stripNones = stripNones;
+    }
+
 
-    public static AnalysisEngine defaultAnalysisEngine()  {
+    /**
+     * Creates a sentence/tokenization/part of speech/stemming pipeline.
+     * The engine is shared, and holds one instance of the pipeline per available processor
+     * @return the pipeline
+     */
+    public static synchronized AnalysisEngine defaultAnalysisEngine()  {
         try {
-            return createEngine(
-                    createEngineDescription(SentenceAnnotator.getDescription(),
-                            TokenizerAnnotator.getDescription(),
-                            PoStagger.getDescription("en"),
-                            StemmerAnnotator.getDescription("English")));
+            if(defaultAnalysisEngine == null)
+                defaultAnalysisEngine = UimaResource.createPooledEngine(
+                        createEngineDescription(SentenceAnnotator.getDescription(),
+                                TokenizerAnnotator.getDescription(),
+                                PoStagger.getDescription("en"),
+                                StemmerAnnotator.getDescription("English")),
+                        Runtime.getRuntime().availableProcessors());
+            return defaultAnalysisEngine;
         }catch(Exception e) {
             throw new RuntimeException(e);
         }
@@ -78,11 +101,62 @@ public class PosUimaTokenizerFactory implements TokenizerFactory {
 
     @Override
     public Tokenizer create(String toTokenize) {
-        PosUimaTokenizer t =  new PosUimaTokenizer(toTokenize,tokenizer,allowedPoSTags, stripNones);
+        PosUimaTokenizer t =  new PosUimaTokenizer(toTokenize,resource,allowedPoSTags, stripNones);
         if (tokenPreProcess!= null) t.setTokenPreProcessor(tokenPreProcess);
         return t;
     }
 
+    /**
+     * Tokenize a batch of documents concurrently
+     * @param texts the documents
+     * @return the tokens of each document, as {@link #create(String)} would return them, in document order
+     */
+    public List<List<String>> tokenize(List<String> texts) {
+        List<String[][]> tagged = resource.processAll(texts, PosUimaTokenizer.taggedTokenExtractor(allowedPoSTags));
+        List<List<String>> ret = new ArrayList<>(tagged.size());
+        for(String[][] t : tagged)
+            ret.add(tokens(t));
+        return ret;
+    }
+
+    /**
+     * Tokenize a stream of documents concurrently, handing the tokens of each document to the handler
+     * in document order
+     * @param texts the documents
+     * @param handler receives the tokens of each document, as {@link #create(String)} would return them
+     */
+    public void tokenize(Iterator<String> texts,final UimaResource.ResultHandler<String[]> handler) {
+        tag(texts, new UimaResource.ResultHandler<String[][]>() {
+            @Override
+            public void onResult(int documentIndex, String[][] result) {
+                List<String> tokens = tokens(result);
+                handler.onResult(documentIndex, tokens.toArray(new String[tokens.size()]));
+            }
+        });
+    }
+
+    /**
+     * Tag a stream of documents concurrently, handing the tokens and part of speech tags of each document to the
+     * handler in document order, as two arrays of equal length (see
+     * {@link PosUimaTokenizer#taggedTokenExtractor(Collection)}). The token pre processor is not applied, and
+     * NONE tokens are kept
+     * @param texts the documents
+     * @param handler receives {tokens, tags} for each document
+     */
+    public void tag(Iterator<String> texts,UimaResource.ResultHandler<String[][]> handler) {
+        resource.processAll(texts, PosUimaTokenizer.taggedTokenExtractor(allowedPoSTags), handler);
+    }
+
+    private List<String> tokens(String[][] tagged) {
+        PosUimaTokenizer t = new PosUimaTokenizer(new ArrayList<>(Arrays.asList(tagged[0])), stripNones);
+        if (tokenPreProcess!= null) t.setTokenPreProcessor(tokenPreProcess);
+        return t.getTokens();
+    }
+
+    public UimaResource getUimaResource() {
+        return resource;
+    }
+
     @Override
     public Tokenizer create(InputStream toTokenize) {
         throw new UnsupportedOperationException();
@@ -29,6 +29,8 @@ import org.deeplearning4j.text.tokenization.tokenizer.UimaTokenizer;
 import org.deeplearning4j.text.uima.UimaResource;
 
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
 
 
 /**
@@ -92,16 +94,55 @@ public class UimaTokenizerFactory implements TokenizerFactory {
 
 
 	/**
-	 * Creates a tokenization,/stemming pipeline
+	 * Tokenize a batch of documents concurrently, one pooled engine instance per thread
+	 * @param texts the documents
+	 * @return the tokens of each document (with the token pre processor applied), in document order
+	 */
+	public List<List<String>> tokenize(List<String> texts) {
+		List<List<String>> ret = uimaResource.processAll(texts, UimaTokenizer.tokenExtractor(checkForLabel));
+		for(List<String> tokens : ret)
+			preProcess(tokens);
+		return ret;
+	}
+
+	/**
+	 * Tokenize a stream of documents concurrently, handing the tokens of each document to the handler
+	 * in document order. See {@link UimaResource#processAll(Iterator, UimaResource.CasFunction, UimaResource.ResultHandler)}
+	 * @param texts the documents
+	 * @param handler receives the tokens of each document, with the token pre processor applied
+	 */
+	public void tokenize(Iterator<String> texts,final UimaResource.ResultHandler<String[]> handler) {
+		uimaResource.processAll(texts, UimaTokenizer.tokenExtractor(checkForLabel), new UimaResource.ResultHandler<List<String>>() {
+			@Override
+			public void onResult(int documentIndex, List<String> tokens) {
+				preProcess(tokens);
+				handler.onResult(documentIndex, tokens.toArray(new String[tokens.size()]));
+			}
+		});
+	}
+
+	private void preProcess(List<String> tokens) {
+		if(preProcess == null)
+			return;
+		for(int i = 0; i < tokens.size(); i++)
+			tokens.set(i, preProcess.preProcess(tokens.get(i)));
+	}
+
+
+	/**
+	 * Creates a tokenization,/stemming pipeline.
+	 * The engine is shared, and holds one instance of the pipeline per available processor,
+	 * so that tokenizers on different threads don't wait on each other
 	 * @return a tokenization/stemming pipeline
 	 */
-	public static AnalysisEngine defaultAnalysisEngine()  {
+	public static synchronized AnalysisEngine defaultAnalysisEngine()  {
 		try {
 			if(defaultAnalysisEngine == null)
-				defaultAnalysisEngine =  AnalysisEngineFactory.createEngine(
+				defaultAnalysisEngine =  UimaResource.createPooledEngine(
 						AnalysisEngineFactory.createEngineDescription(
 								SentenceAnnotator.getDescription(),
-								TokenizerAnnotator.getDescription()));
+								TokenizerAnnotator.getDescription()),
+						Runtime.getRuntime().availableProcessors());
 
 			return defaultAnalysisEngine;
 		}catch(Exception e) {
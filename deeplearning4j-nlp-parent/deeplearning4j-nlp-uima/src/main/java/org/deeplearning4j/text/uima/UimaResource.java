@@ -18,16 +18,37 @@
 
 package org.deeplearning4j.text.uima;
 
+import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.CasPool;
+import org.deeplearning4j.util.MultiThreadUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 /**
  * Resource holder for uima
+ * <p>
+ * Holds an analysis engine and a pool of CASes. An engine created with
+ * {@link #createPooledEngine(AnalysisEngineDescription, int)} holds one instance of each annotator per pool slot,
+ * so that up to that many documents are analysed concurrently; engines created with uimaFIT's createEngine
+ * serialize calls to process. {@link #processAll(List, CasFunction)} and
+ * {@link #processAll(Iterator, CasFunction, ResultHandler)} analyse batches of documents on a thread pool, one CAS
+ * per document, borrowed from the CAS pool.
+ *
  * @author Adam Gibson
  *
  */
@@ -35,18 +56,64 @@ public class UimaResource {
 
 	private AnalysisEngine analysisEngine;
 	private CasPool casPool;
+	private int poolSize;
+	private ExecutorService executor;
     private static final Logger log = LoggerFactory.getLogger(UimaResource.class);
 
+    /**
+     * Extracts a result from a processed CAS. The CAS is released after the call,
+     * so the result must not reference feature structures in it
+     */
+    public interface CasFunction<T> {
+        T apply(CAS cas) throws Exception;
+    }
+
+    /**
+     * Receives the results of a streamed batch, in document order
+     */
+    public interface ResultHandler<T> {
+        void onResult(int documentIndex, T result);
+    }
+
     public UimaResource(AnalysisEngine analysisEngine) throws ResourceInitializationException {
+		this(analysisEngine, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param analysisEngine the engine; should allow at least poolSize simultaneous requests
+	 * @param poolSize the number of CASes, and so the number of documents processed concurrently
+	 */
+	public UimaResource(AnalysisEngine analysisEngine,int poolSize) throws ResourceInitializationException {
 		this.analysisEngine = analysisEngine;
-		this.casPool = new CasPool(Runtime.getRuntime().availableProcessors(),analysisEngine);
+		this.poolSize = poolSize;
+		this.casPool = new CasPool(poolSize,analysisEngine);
+	}
 
+	/**
+	 * Creates a pooled engine (see {@link #createPooledEngine(AnalysisEngineDescription, int)}) and a CAS pool
+	 * of the same size
+	 * @param description the aggregate engine description
+	 * @param poolSize the number of engine instances and CASes
+	 */
+	public UimaResource(AnalysisEngineDescription description,int poolSize) throws ResourceInitializationException {
+		this(createPooledEngine(description, poolSize), poolSize);
 	}
 
 	public UimaResource(AnalysisEngine analysisEngine,CasPool casPool) {
 		this.analysisEngine = analysisEngine;
 		this.casPool = casPool;
+		this.poolSize = casPool.getSize();
+	}
 
+	/**
+	 * Creates an analysis engine backed by poolSize instances of the described pipeline.
+	 * Calls to process from different threads run concurrently on different instances
+	 * @param description the engine description
+	 * @param poolSize the number of instances
+	 * @return the pooled engine
+	 */
+	public static AnalysisEngine createPooledEngine(AnalysisEngineDescription description,int poolSize) throws ResourceInitializationException {
+		return UIMAFramework.produceAnalysisEngine(description, Math.max(1, poolSize), 0);
 	}
 
 
@@ -69,6 +136,10 @@ public class UimaResource {
 		this.casPool = casPool;
 	}
 
+	public int getPoolSize() {
+		return poolSize;
+	}
+
 	
 	/**
 	 * Use the given analysis engine and process the given text
@@ -92,6 +163,94 @@ public class UimaResource {
 		
 		
 	}
+
+	/**
+	 * Process the given text and extract a result from the processed cas.
+	 * The cas is returned to the pool before this method returns
+	 * @param text the text to process
+	 * @param function the function to extract the result with
+	 * @return the extracted result
+	 */
+	public <T> T process(String text,CasFunction<T> function) throws Exception {
+		CAS cas = retrieve();
+		try {
+			cas.setDocumentText(text);
+			analysisEngine.process(cas);
+			return function.apply(cas);
+		} finally {
+			release(cas);
+		}
+	}
+
+	/**
+	 * Process a batch of documents concurrently, up to the pool size at a time
+	 * @param texts the documents
+	 * @param function the function to extract a result from each processed document
+	 * @return the results, in the order of the documents
+	 */
+	public <T> List<T> processAll(List<String> texts,final CasFunction<T> function) {
+		final List<T> ret = new ArrayList<>(texts.size());
+		for(int i = 0; i < texts.size(); i++)
+			ret.add(null);
+		processAll(texts.iterator(), function, new ResultHandler<T>() {
+			@Override
+			public void onResult(int documentIndex, T result) {
+				ret.set(documentIndex, result);
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * Process a stream of documents concurrently. At most twice the pool size documents are pending at a time, so
+	 * the iterator can be backed by a lazily read corpus. Results are handed to the handler in document order, on the
+	 * calling thread
+	 * @param texts the documents
+	 * @param function the function to extract a result from each processed document
+	 * @param handler receives the results
+	 */
+	public <T> void processAll(Iterator<String> texts,final CasFunction<T> function,ResultHandler<T> handler) {
+		int maxInFlight = 2 * Math.max(1, poolSize);
+		Deque<Future<T>> pending = new ArrayDeque<>();
+		ExecutorService exec = executor();
+		int next = 0;
+		try {
+			while(texts.hasNext()) {
+				final String text = texts.next();
+				//Hand out finished results; block on the oldest document only when the window is full
+				while(!pending.isEmpty() && (pending.size() >= maxInFlight || pending.peek().isDone()))
+					handler.onResult(next++, get(pending.poll()));
+				pending.add(exec.submit(new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						return process(text, function);
+					}
+				}));
+			}
+			while(!pending.isEmpty())
+				handler.onResult(next++, get(pending.poll()));
+		} finally {
+			for(Future<T> f : pending)
+				f.cancel(false);
+		}
+	}
+
+	private static <T> T get(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to process document",e.getCause());
+		}
+	}
+
+	private synchronized ExecutorService executor() {
+		if(executor == null)
+			executor = MultiThreadUtils.newExecutorService();
+		return executor;
+	}
 	
 	
 	public  CAS retrieve() {
@@ -107,11 +266,15 @@ public class UimaResource {
 	public void release(CAS cas) {
 		casPool.releaseCas(cas);
 	}
-	
-	
-	
-	
-
 
+	/**
+	 * Shuts down the batch processing threads. The resource can still be used afterwards
+	 */
+	public synchronized void close() {
+		if(executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
 
 }
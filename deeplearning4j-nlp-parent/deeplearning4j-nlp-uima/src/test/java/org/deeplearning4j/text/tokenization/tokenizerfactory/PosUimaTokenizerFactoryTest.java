@@ -1,10 +1,12 @@
 package org.deeplearning4j.text.tokenization.tokenizerfactory;
 
 import org.deeplearning4j.text.tokenization.tokenizer.Tokenizer;
+import org.deeplearning4j.text.uima.UimaResource;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -45,4 +47,31 @@ public class PosUimaTokenizerFactoryTest {
         Assert.assertEquals("test", tokens.get(0));
         Assert.assertEquals("string", tokens.get(1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBatchTokenizeMatchesCreate() throws Exception {
+        String[] posTags = new String[] {"NN"};
+        PosUimaTokenizerFactory factory = new PosUimaTokenizerFactory(Arrays.asList(posTags), true);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            texts.add("some test string number " + i + ". Another sentence follows the first one.");
+
+        List<List<String>> batch = factory.tokenize(texts);
+        Assert.assertEquals(texts.size(), batch.size());
+
+        final List<String[]> streamed = new ArrayList<>();
+        factory.tokenize(texts.iterator(), new UimaResource.ResultHandler<String[]>() {
+            @Override
+            public void onResult(int documentIndex, String[] result) {
+                Assert.assertEquals(streamed.size(), documentIndex);
+                streamed.add(result);
+            }
+        });
+
+        for (int i = 0; i < texts.size(); i++) {
+            List<String> expected = factory.create(texts.get(i)).getTokens();
+            Assert.assertEquals(expected, batch.get(i));
+            Assert.assertEquals(expected, Arrays.asList(streamed.get(i)));
+        }
+    }
+}
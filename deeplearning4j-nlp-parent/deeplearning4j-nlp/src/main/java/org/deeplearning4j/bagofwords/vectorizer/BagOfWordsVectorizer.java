@@ -15,7 +15,6 @@ import org.deeplearning4j.text.tokenization.tokenizer.Tokenizer;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.util.FeatureUtil;
 
 import java.io.BufferedReader;
@@ -65,17 +64,24 @@ public class BagOfWordsVectorizer extends  BaseTextVectorizer {
         return new DataSet(input, labelMatrix);
     }
 
+    /**
+     * Sparse bag of words vector: for each vocabulary word in the text, its frequency in the vocabulary.
+     * With feature hashing, the number of times each hashed feature occurs in the text
+     *
+     * @param text text to transform
+     * @return the sparse document vector
+     */
     @Override
-    public INDArray transform(String text) {
+    public SparseVector transformSparse(String text) {
         Tokenizer tokenizer = tokenizerFactory.create(text);
-        List<String> tokens = tokenizer.getTokens();
-        INDArray input = Nd4j.create(1, vocabCache.numWords());
-        for (String token: tokens) {
-            int idx = vocabCache.indexOf(token);
-            if (vocabCache.indexOf(token) >= 0)
-                input.putScalar(idx, vocabCache.wordFrequency(token));
+        SparseVector counts = countFeatures(tokenizer.getTokens());
+        if (hashingDimension <= 0) {
+            int[] indices = counts.getIndices();
+            double[] values = counts.getValues();
+            for (int i = 0; i < indices.length; i++)
+                values[i] = vocabCache.wordFrequency(vocabCache.wordAtIndex(indices[i]));
         }
-        return input;
+        return counts;
     }
 
 
@@ -112,6 +118,7 @@ public class BagOfWordsVectorizer extends  BaseTextVectorizer {
         protected VocabCache<VocabWord> vocabCache;
         protected LabelsSource labelsSource = new LabelsSource();
         protected List<String> stopWords = new ArrayList<>();
+        protected int hashingDimension = 0;
 
         public Builder() {
         }
@@ -151,6 +158,17 @@ public class BagOfWordsVectorizer extends  BaseTextVectorizer {
             return this;
         }
 
+        /**
+         * Use feature hashing: terms are mapped to one of hashingDimension features by hash, and no vocabulary
+         * is needed to transform text
+         *
+         * @param hashingDimension number of features, or 0 to use the vocabulary (default)
+         */
+        public Builder setHashingDimension(int hashingDimension) {
+            this.hashingDimension = hashingDimension;
+            return this;
+        }
+
         public BagOfWordsVectorizer build() {
             BagOfWordsVectorizer vectorizer = new BagOfWordsVectorizer();
 
@@ -158,6 +176,7 @@ public class BagOfWordsVectorizer extends  BaseTextVectorizer {
             vectorizer.iterator = this.iterator;
             vectorizer.minWordFrequency = this.minWordFrequency;
             vectorizer.labelsSource = this.labelsSource;
+            vectorizer.hashingDimension = this.hashingDimension;
 
             if (this.vocabCache == null) {
                 this.vocabCache = new AbstractCache.Builder<VocabWord>().build();
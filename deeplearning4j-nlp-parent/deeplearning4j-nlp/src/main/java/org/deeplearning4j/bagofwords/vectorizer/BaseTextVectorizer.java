@@ -12,8 +12,10 @@ import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
 import org.deeplearning4j.text.documentiterator.LabelsSource;
 import org.deeplearning4j.text.invertedindex.InvertedIndex;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -27,6 +29,11 @@ public abstract class BaseTextVectorizer implements TextVectorizer {
     protected LabelsSource labelsSource;
     protected List<String> stopWords = new ArrayList<>();
     @Getter protected transient InvertedIndex<VocabWord> index;
+    /**
+     * Number of hashed features, or 0 to index terms by the vocabulary.
+     * With feature hashing, a term's index is a hash of the term modulo this dimension, so no vocabulary is needed
+     */
+    @Getter protected int hashingDimension = 0;
 
     protected LabelsSource getLabelsSource() {
         return labelsSource;
@@ -57,6 +64,84 @@ public abstract class BaseTextVectorizer implements TextVectorizer {
         buildVocab();
     }
 
+    /**
+     * Transforms the text in to a sparse vector of width {@link #numFeatures()}
+     *
+     * @param text text to transform
+     * @return the sparse document vector
+     */
+    public abstract SparseVector transformSparse(String text);
+
+    /**
+     * Transforms the matrix
+     *
+     * @param text text to transform
+     * @return {@link INDArray}, a dense row vector of width {@link #numFeatures()}
+     */
+    @Override
+    public INDArray transform(String text) {
+        return transformSparse(text).toDense();
+    }
+
+    /**
+     * @return the width of the document vectors: the hashing dimension, or the vocabulary size
+     */
+    public int numFeatures() {
+        return hashingDimension > 0 ? hashingDimension : vocabCache.numWords();
+    }
+
+    /**
+     * Feature index of a term
+     *
+     * @param term the term
+     * @return the index: the vocabulary index, or the hashed index, or -1 for a term that isn't in the vocabulary
+     */
+    public int featureIndex(String term) {
+        if (hashingDimension <= 0)
+            return vocabCache.indexOf(term);
+        //Mix the bits of the (specified, so stable) String hash code, so that similar strings spread out
+        int h = term.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % hashingDimension;
+    }
+
+    /**
+     * Counts the occurrences of each feature among the tokens.
+     * Tokens are mapped to their feature indexes, sorted, and run-length counted, so no map per document is built
+     *
+     * @param tokens the tokens of one document
+     * @return a sparse vector of counts, of width {@link #numFeatures()}
+     */
+    protected SparseVector countFeatures(List<String> tokens) {
+        int[] idx = new int[tokens.size()];
+        int n = 0;
+        for (String token : tokens) {
+            int i = featureIndex(token);
+            if (i >= 0)
+                idx[n++] = i;
+        }
+        Arrays.sort(idx, 0, n);
+
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || idx[i] != idx[i - 1])
+                distinct++;
+        }
+        int[] indices = new int[distinct];
+        double[] counts = new double[distinct];
+        int pos = -1;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || idx[i] != idx[i - 1])
+                indices[++pos] = idx[i];
+            counts[pos]++;
+        }
+        return new SparseVector(numFeatures(), indices, counts);
+    }
+
     /**
      * Returns the number of words encountered so far
      *
@@ -0,0 +1,105 @@
+package org.deeplearning4j.bagofwords.vectorizer;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Sparse document vector: the non-zero entries of a vector of the given length, as parallel arrays of
+ * (strictly increasing) indices and values.
+ * <p>
+ * A document vector only has as many entries as the document has distinct terms, regardless of the size of the
+ * vocabulary. {@link #write(DataOutput)} and {@link #read(DataInput)} give a compact binary format for streaming
+ * vectorized corpora to disk.
+ */
+@Getter
+@EqualsAndHashCode
+public class SparseVector implements Serializable {
+    private final int length;
+    private final int[] indices;
+    private final double[] values;
+
+    /**
+     * @param length  the length of the (dense) vector
+     * @param indices indices of the non-zero entries, in increasing order
+     * @param values  values of the non-zero entries
+     */
+    public SparseVector(int length, int[] indices, double[] values) {
+        if (indices.length != values.length)
+            throw new IllegalArgumentException("Indices and values must have the same length: " + indices.length
+                            + " != " + values.length);
+        this.length = length;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * @return the number of non-zero entries
+     */
+    public int nnz() {
+        return indices.length;
+    }
+
+    /**
+     * @param index index in the (dense) vector
+     * @return the value at the given index
+     */
+    public double get(int index) {
+        int pos = Arrays.binarySearch(indices, index);
+        return pos >= 0 ? values[pos] : 0.0;
+    }
+
+    /**
+     * @return this vector as a dense row vector
+     */
+    public INDArray toDense() {
+        INDArray ret = Nd4j.create(1, length);
+        putRow(ret, 0);
+        return ret;
+    }
+
+    /**
+     * Writes the non-zero entries in to a row of a (zero-initialized) matrix
+     *
+     * @param matrix the matrix, with this vector's length as number of columns
+     * @param row    the row to write to
+     */
+    public void putRow(INDArray matrix, int row) {
+        for (int i = 0; i < indices.length; i++)
+            matrix.putScalar(row, indices[i], values[i]);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(length);
+        out.writeInt(indices.length);
+        for (int i = 0; i < indices.length; i++)
+            out.writeInt(indices[i]);
+        for (int i = 0; i < values.length; i++)
+            out.writeDouble(values[i]);
+    }
+
+    public static SparseVector read(DataInput in) throws IOException {
+        int length = in.readInt();
+        int nnz = in.readInt();
+        int[] indices = new int[nnz];
+        double[] values = new double[nnz];
+        for (int i = 0; i < nnz; i++)
+            indices[i] = in.readInt();
+        for (int i = 0; i < nnz; i++)
+            values[i] = in.readDouble();
+        return new SparseVector(length, indices, values);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector(length=" + length + ", indices=" + Arrays.toString(indices) + ", values="
+                        + Arrays.toString(values) + ")";
+    }
+}
@@ -0,0 +1,321 @@
+package org.deeplearning4j.bagofwords.vectorizer;
+
+import lombok.NonNull;
+import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
+import org.deeplearning4j.text.documentiterator.LabelledDocument;
+import org.deeplearning4j.text.documentiterator.LabelsSource;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Vectorizes the documents of a {@link LabelAwareIterator} in to fixed size minibatches, on a pool of worker threads.
+ * <p>
+ * Documents are read on the calling thread, grouped in to minibatches, and each minibatch is tokenized and
+ * vectorized (see {@link BaseTextVectorizer#transformSparse(String)}) by a worker. Up to {@code prefetch} minibatches
+ * are in flight at a time, and minibatches are returned in document order. Documents are held as
+ * {@link SparseVector}s until a minibatch is returned by {@link #next()}, so only one minibatch at a time is dense;
+ * {@link #nextSparse()} and {@link #write(DataOutput)} never densify.
+ * <p>
+ * The vectorizer must be fitted first, unless it uses feature hashing and doesn't need document frequencies
+ * (a {@link BagOfWordsVectorizer}).
+ */
+public class TextVectorizerDataSetIterator implements DataSetIterator {
+    private final BaseTextVectorizer vectorizer;
+    private final LabelAwareIterator iterator;
+    private final List<String> labels;
+    private final int batchSize;
+    private final int prefetch;
+    private final ExecutorService executor;
+    private final Deque<Future<SparseBatch>> pending = new ArrayDeque<>();
+    private DataSetPreProcessor preProcessor;
+    private int cursor = 0;
+
+    /**
+     * A vectorized minibatch: one sparse vector and one label index per document
+     */
+    public static class SparseBatch {
+        private final SparseVector[] features;
+        private final int[] labels;
+
+        public SparseBatch(SparseVector[] features, int[] labels) {
+            this.features = features;
+            this.labels = labels;
+        }
+
+        public SparseVector[] getFeatures() {
+            return features;
+        }
+
+        public int[] getLabels() {
+            return labels;
+        }
+
+        public int size() {
+            return features.length;
+        }
+    }
+
+    protected TextVectorizerDataSetIterator(Builder builder) {
+        this.vectorizer = builder.vectorizer;
+        this.iterator = builder.iterator;
+        this.batchSize = builder.batchSize;
+        this.prefetch = Math.max(1, builder.prefetch);
+        if (builder.labels != null) {
+            this.labels = builder.labels;
+        } else {
+            LabelsSource source = vectorizer.getLabelsSource();
+            if (source == null || source.getLabels().isEmpty())
+                source = iterator.getLabelsSource();
+            //Copy: the iterator keeps adding to its labels while documents are read
+            this.labels = (source == null ? new ArrayList<String>() : new ArrayList<>(source.getLabels()));
+        }
+        if (labels.isEmpty())
+            throw new IllegalStateException("No labels known: fit the vectorizer first, or provide the labels");
+
+        this.executor = Executors.newFixedThreadPool(Math.max(1, builder.workers), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setDaemon(true);
+                t.setName("TextVectorizer worker " + t.getId());
+                return t;
+            }
+        });
+        iterator.reset();
+    }
+
+    //Reads documents for up to prefetch minibatches and submits them for vectorization
+    private void fill() {
+        while (pending.size() < prefetch && iterator.hasNextDocument()) {
+            final List<LabelledDocument> documents = new ArrayList<>(batchSize);
+            while (documents.size() < batchSize && iterator.hasNextDocument())
+                documents.add(iterator.nextDocument());
+            pending.add(executor.submit(new Callable<SparseBatch>() {
+                @Override
+                public SparseBatch call() throws Exception {
+                    return vectorize(documents);
+                }
+            }));
+        }
+    }
+
+    private SparseBatch vectorize(List<LabelledDocument> documents) {
+        SparseVector[] features = new SparseVector[documents.size()];
+        int[] labelIndexes = new int[documents.size()];
+        for (int i = 0; i < features.length; i++) {
+            LabelledDocument document = documents.get(i);
+            features[i] = vectorizer.transformSparse(document.getContent());
+            labelIndexes[i] = labels.indexOf(document.getLabel());
+            if (labelIndexes[i] < 0)
+                throw new IllegalStateException("Unknown label: " + document.getLabel());
+        }
+        return new SparseBatch(features, labelIndexes);
+    }
+
+    /**
+     * @return the next minibatch, as sparse vectors
+     */
+    public SparseBatch nextSparse() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        SparseBatch batch;
+        try {
+            batch = pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to vectorize documents", e.getCause());
+        }
+        cursor += batch.size();
+        fill();
+        return batch;
+    }
+
+    /**
+     * Writes all remaining documents to the output, one record per document: the label index (int), then the
+     * sparse vector (see {@link SparseVector#write(DataOutput)})
+     *
+     * @param out the output
+     * @return the number of documents written
+     */
+    public int write(DataOutput out) throws IOException {
+        int count = 0;
+        while (hasNext()) {
+            SparseBatch batch = nextSparse();
+            for (int i = 0; i < batch.size(); i++) {
+                out.writeInt(batch.getLabels()[i]);
+                batch.getFeatures()[i].write(out);
+            }
+            count += batch.size();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public DataSet next() {
+        SparseBatch batch = nextSparse();
+        INDArray features = Nd4j.create(batch.size(), vectorizer.numFeatures());
+        INDArray labelMatrix = Nd4j.create(batch.size(), labels.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.getFeatures()[i].putRow(features, i);
+            labelMatrix.putScalar(i, batch.getLabels()[i], 1.0);
+        }
+        DataSet ret = new DataSet(features, labelMatrix);
+        if (preProcessor != null)
+            preProcessor.preProcess(ret);
+        return ret;
+    }
+
+    /**
+     * Minibatches have a fixed size, so the requested number is ignored
+     */
+    @Override
+    public DataSet next(int num) {
+        return next();
+    }
+
+    @Override
+    public int totalExamples() {
+        throw new UnsupportedOperationException("Number of documents is not known in advance");
+    }
+
+    @Override
+    public int inputColumns() {
+        return vectorizer.numFeatures();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return labels.size();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        //Minibatches are already prepared in the background
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        for (Future<SparseBatch> f : pending)
+            f.cancel(true);
+        pending.clear();
+        cursor = 0;
+        iterator.reset();
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public int cursor() {
+        return cursor;
+    }
+
+    @Override
+    public int numExamples() {
+        throw new UnsupportedOperationException("Number of documents is not known in advance");
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the worker threads. The iterator can't be used afterwards
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static class Builder {
+        protected BaseTextVectorizer vectorizer;
+        protected LabelAwareIterator iterator;
+        protected List<String> labels;
+        protected int batchSize = 32;
+        protected int workers = Runtime.getRuntime().availableProcessors();
+        protected int prefetch = 2 * Runtime.getRuntime().availableProcessors();
+
+        public Builder(@NonNull BaseTextVectorizer vectorizer, @NonNull LabelAwareIterator iterator) {
+            this.vectorizer = vectorizer;
+            this.iterator = iterator;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param workers number of threads vectorizing documents
+         */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * @param prefetch maximum number of minibatches being vectorized, or waiting to be returned
+         */
+        public Builder prefetch(int prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * @param labels the labels, in the order of the label columns. By default, the labels of the vectorizer
+         */
+        public Builder labels(@NonNull List<String> labels) {
+            this.labels = labels;
+            return this;
+        }
+
+        public TextVectorizerDataSetIterator build() {
+            if (batchSize < 1)
+                throw new IllegalArgumentException("Batch size must be positive");
+            return new TextVectorizerDataSetIterator(this);
+        }
+    }
+}
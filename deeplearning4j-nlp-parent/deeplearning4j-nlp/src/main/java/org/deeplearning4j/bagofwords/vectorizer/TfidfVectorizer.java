@@ -7,6 +7,7 @@ import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
 import org.deeplearning4j.text.documentiterator.DocumentIterator;
 import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
+import org.deeplearning4j.text.documentiterator.LabelledDocument;
 import org.deeplearning4j.text.documentiterator.LabelsSource;
 import org.deeplearning4j.text.documentiterator.interoperability.DocumentIteratorConverter;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
@@ -16,7 +17,6 @@ import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 import org.deeplearning4j.util.MathUtils;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.util.FeatureUtil;
 
 import java.io.BufferedReader;
@@ -24,13 +24,15 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author raver119@gmail.com
  */
 public class TfidfVectorizer extends BaseTextVectorizer {
+    //Number of documents each hashed feature appeared in, when using feature hashing
+    protected int[] hashedDocFrequencies;
+    protected int hashedDocCount;
+
     /**
      * Text coming from an input stream considered as one document
      *
@@ -85,42 +87,59 @@ public class TfidfVectorizer extends BaseTextVectorizer {
     }
 
     /**
-     * Transforms the matrix
+     * Sparse TF-IDF vector of the text.
+     * With feature hashing, document frequencies are those of the hashed features, counted by {@link #fit()}
      *
      * @param text text to transform
-     * @return {@link INDArray}
+     * @return the sparse document vector
      */
     @Override
-    public INDArray transform(String text) {
-        INDArray ret = Nd4j.create(1, vocabCache.numWords());
+    public SparseVector transformSparse(String text) {
         Tokenizer tokenizer = tokenizerFactory.create(text);
         List<String> tokens = tokenizer.getTokens();
+        SparseVector counts = countFeatures(tokens);
+        int[] indices = counts.getIndices();
+        double[] values = counts.getValues();
+        for (int i = 0; i < indices.length; i++) {
+            double idf;
+            if (hashingDimension > 0) {
+                if (hashedDocFrequencies == null)
+                    throw new IllegalStateException("Document frequencies of hashed features are unknown: call fit() first");
+                idf = MathUtils.idf(hashedDocCount, hashedDocFrequencies[indices[i]]);
+            } else {
+                idf = idfForWord(vocabCache.wordAtIndex(indices[i]));
+            }
+            values[i] = MathUtils.tfidf(tfForWord((long) values[i], tokens.size()), idf);
+        }
+        return counts;
+    }
 
-        // build document words count
-        Map<String, AtomicLong> counts = new HashMap<>();
-        for (String token: tokens) {
-            if (!counts.containsKey(token))
-                counts.put(token, new AtomicLong(0));
-
-            counts.get(token).incrementAndGet();
+    /**
+     * Builds the vocabulary or, with feature hashing, counts the number of documents each hashed feature appears in
+     */
+    @Override
+    public void fit() {
+        if (hashingDimension <= 0) {
+            super.fit();
+            return;
         }
 
-        for(int i = 0;i < tokens.size(); i++) {
-            int idx = vocabCache.indexOf(tokens.get(i));
-            if(idx >= 0) {
-                //System.out.println("TF-IDF for word: " + tokens.get(i));
-                ret.putScalar(idx, tfidfWord(tokens.get(i), counts.get(tokens.get(i)).longValue(), tokens.size()));
-            }
+        int[] docFrequencies = new int[hashingDimension];
+        int docs = 0;
+        iterator.reset();
+        while (iterator.hasNextDocument()) {
+            LabelledDocument document = iterator.nextDocument();
+            SparseVector counts = countFeatures(tokenizerFactory.create(document.getContent()).getTokens());
+            for (int idx : counts.getIndices())
+                docFrequencies[idx]++;
+            docs++;
         }
-        return ret;
+        this.hashedDocFrequencies = docFrequencies;
+        this.hashedDocCount = docs;
     }
 
 
 
-    private double tfidfWord(String word, long wordCount, long documentLength) {
-        return MathUtils.tfidf(tfForWord(wordCount, documentLength),idfForWord(word));
-    }
-
     private double tfForWord(long wordCount, long documentLength) {
         return (double) wordCount / (double) documentLength;
     }
@@ -147,6 +166,7 @@ public class TfidfVectorizer extends BaseTextVectorizer {
         protected VocabCache<VocabWord> vocabCache;
         protected LabelsSource labelsSource = new LabelsSource();
         protected List<String> stopWords = new ArrayList<>();
+        protected int hashingDimension = 0;
 
         public Builder() {
         }
@@ -186,6 +206,17 @@ public class TfidfVectorizer extends BaseTextVectorizer {
             return this;
         }
 
+        /**
+         * Use feature hashing: terms are mapped to one of hashingDimension features by hash, and no vocabulary
+         * is built. {@link TfidfVectorizer#fit()} then only counts the document frequencies of the features
+         *
+         * @param hashingDimension number of features, or 0 to use the vocabulary (default)
+         */
+        public Builder setHashingDimension(int hashingDimension) {
+            this.hashingDimension = hashingDimension;
+            return this;
+        }
+
         public TfidfVectorizer build() {
             TfidfVectorizer vectorizer = new TfidfVectorizer();
 
@@ -193,6 +224,7 @@ public class TfidfVectorizer extends BaseTextVectorizer {
             vectorizer.iterator = this.iterator;
             vectorizer.minWordFrequency = this.minWordFrequency;
             vectorizer.labelsSource = this.labelsSource;
+            vectorizer.hashingDimension = this.hashingDimension;
 
             if (this.vocabCache == null) {
                 this.vocabCache = new AbstractCache.Builder<VocabWord>().build();
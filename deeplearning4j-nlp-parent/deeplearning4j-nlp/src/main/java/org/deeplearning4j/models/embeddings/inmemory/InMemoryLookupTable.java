@@ -77,6 +77,41 @@ public class InMemoryLookupTable<T extends SequenceElement> implements WeightLoo
     protected VocabCache<T> vocab;
     protected Map<Integer,INDArray> codes = new ConcurrentHashMap<>();
 
+    //Number of words a thread processes before adding them to the shared counter
+    protected static final int WORD_COUNT_BATCH = 10000;
+    //Words processed so far, for learning rate decay
+    protected AtomicLong wordsProcessed = new AtomicLong(0);
+    //Total number of words to train on, for learning rate decay; <= 0 for the number of words in the vocabulary
+    protected long totalTrainingWords = -1;
+
+    //Training state that is derived from the fields above, and rebuilt on demand
+    protected transient volatile float[] sigmoidTable;
+    protected transient volatile HuffmanArrays huffman;
+    protected transient volatile int[] negativeTable;
+    protected transient volatile ThreadLocal<TrainingState> trainingState;
+
+    //Huffman codes and points of each word, indexed by word index
+    protected static class HuffmanArrays {
+        protected final int[][] points;
+        protected final byte[][] codes;
+
+        protected HuffmanArrays(int[][] points, byte[][] codes) {
+            this.points = points;
+            this.codes = codes;
+        }
+    }
+
+    //Per-thread sampling and scratch state: nothing is shared between threads but the weights and the word counter
+    protected static class TrainingState {
+        protected final XorShiftRandom random;
+        protected double[] neu1e = new double[0];
+        protected long localWords;
+
+        protected TrainingState(long seed) {
+            this.random = new XorShiftRandom(seed);
+        }
+    }
+
 
 
     protected AdaGrad adaGrad;
@@ -139,6 +174,13 @@ public class InMemoryLookupTable<T extends SequenceElement> implements WeightLoo
             syn1 = Nd4j.create(syn0.shape());
         initNegative();
 
+        huffman = null;
+        negativeTable = null;
+        if (reset) {
+            wordsProcessed.set(0);
+            trainingState = null;
+        }
+
 
     }
 
@@ -255,6 +297,147 @@ public class InMemoryLookupTable<T extends SequenceElement> implements WeightLoo
             double tmp =   FastMath.exp((i / (double) expTable.length * 2 - 1) * MAX_EXP);
             expTable[i]  = tmp / (tmp + 1.0);
         }
+        sigmoidTable = null;
+    }
+
+    /**
+     * @return single precision copy of the exp table, for training
+     */
+    protected float[] sigmoidTable() {
+        float[] ret = sigmoidTable;
+        if (ret == null || ret.length != expTable.length) {
+            ret = new float[expTable.length];
+            for (int i = 0; i < ret.length; i++)
+                ret[i] = (float) expTable[i];
+            sigmoidTable = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * @return Huffman codes and points of all words, as primitive arrays indexed by word index
+     */
+    protected HuffmanArrays huffmanArrays() {
+        HuffmanArrays ret = huffman;
+        if (ret == null || ret.points.length != vocab.numWords()) {
+            synchronized (this) {
+                ret = huffman;
+                if (ret == null || ret.points.length != vocab.numWords()) {
+                    int numWords = vocab.numWords();
+                    int[][] points = new int[numWords][];
+                    byte[][] codes = new byte[numWords][];
+                    for (T element : vocab.vocabWords()) {
+                        int idx = element.getIndex();
+                        if (idx < 0 || idx >= numWords)
+                            continue;
+                        List<Integer> elementPoints = element.getPoints();
+                        List<Integer> elementCodes = element.getCodes();
+                        int length = Math.min(element.getCodeLength(), Math.min(elementPoints.size(), elementCodes.size()));
+                        points[idx] = new int[length];
+                        codes[idx] = new byte[length];
+                        for (int i = 0; i < length; i++) {
+                            points[idx][i] = elementPoints.get(i);
+                            codes[idx][i] = (byte) (int) elementCodes.get(i);
+                        }
+                    }
+                    for (int i = 0; i < numWords; i++) {
+                        if (points[i] == null) {
+                            points[i] = new int[0];
+                            codes[i] = new byte[0];
+                        }
+                    }
+                    ret = new HuffmanArrays(points, codes);
+                    huffman = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the negative sampling table as a primitive array
+     */
+    protected int[] negativeTable() {
+        int[] ret = negativeTable;
+        if (ret == null || ret.length != table.length()) {
+            ret = new int[table.length()];
+            for (int i = 0; i < ret.length; i++)
+                ret[i] = table.getInt(i);
+            negativeTable = ret;
+        }
+        return ret;
+    }
+
+    protected TrainingState trainingState() {
+        ThreadLocal<TrainingState> local = trainingState;
+        if (local == null) {
+            synchronized (this) {
+                local = trainingState;
+                if (local == null) {
+                    //Threads are seeded in the order they first train (not by thread id), so runs are reproducible
+                    final AtomicLong threadCount = new AtomicLong(0);
+                    local = new ThreadLocal<TrainingState>() {
+                        @Override
+                        protected TrainingState initialValue() {
+                            return new TrainingState(seed * 31 + threadCount.getAndIncrement());
+                        }
+                    };
+                    trainingState = local;
+                }
+            }
+        }
+        return local.get();
+    }
+
+    /**
+     * @return the random number generator of the calling thread
+     */
+    public XorShiftRandom threadRandom() {
+        return trainingState().random;
+    }
+
+    /**
+     * Sets the total number of words the learning rate decays over (epochs times words per epoch).
+     * By default, the number of word occurrences in the vocabulary
+     *
+     * @param totalTrainingWords total number of words, or 0 for the default
+     */
+    public void setTotalTrainingWords(long totalTrainingWords) {
+        this.totalTrainingWords = totalTrainingWords;
+    }
+
+    /**
+     * Counts words processed by the calling thread, for learning rate decay. Counts are kept per thread and added to
+     * the shared counter in batches, so threads don't contend on it
+     *
+     * @param words number of words processed
+     */
+    public void incrementWordsProcessed(int words) {
+        TrainingState state = trainingState();
+        state.localWords += words;
+        if (state.localWords >= WORD_COUNT_BATCH) {
+            wordsProcessed.addAndGet(state.localWords);
+            state.localWords = 0;
+        }
+    }
+
+    /**
+     * @return the number of processed words, as of the last batch of each thread
+     */
+    public long getWordsProcessed() {
+        return wordsProcessed.get();
+    }
+
+    /**
+     * Current learning rate: the initial learning rate, decayed linearly with the number of processed words,
+     * down to 1e-4 of the initial rate
+     */
+    public double currentLearningRate() {
+        double start = lr.get();
+        long total = totalTrainingWords > 0 ? totalTrainingWords : vocab.totalWordOccurrences();
+        if (total <= 0)
+            return start;
+        return Math.max(start * (1.0 - wordsProcessed.get() / (double) (total + 1)), start * 1e-4);
     }
 
 
@@ -266,102 +449,134 @@ public class InMemoryLookupTable<T extends SequenceElement> implements WeightLoo
      *
      * @param w1 the first word to iterate on
      * @param w2 the second word to iterate on
-     * @param nextRandom next random for sampling
+     * @param nextRandom seed for the negative samples of this call, advanced afterwards (see
+     *                   {@link #iterateSample(SequenceElement, SequenceElement, XorShiftRandom, double)})
      */
     @Override
     @Deprecated
     public  void iterateSample(T w1, T w2,AtomicLong nextRandom,double alpha) {
+        XorShiftRandom random = new XorShiftRandom(nextRandom.get());
+        iterateSample(w1, w2, random, alpha);
+        nextRandom.set(random.nextLong());
+    }
+
+    /**
+     * Skip-gram update for a pair of words (hierarchical softmax, and negative sampling if enabled), written
+     * directly to the weights without locks, and without allocation: the error vector is a per-thread buffer,
+     * sigmoids come from a float table, and Huffman codes and points from primitive arrays.
+     *
+     * @param w1     the word to predict
+     * @param w2     the context word, whose vector is updated
+     * @param random the generator for negative samples, owned by the calling thread
+     * @param alpha  the learning rate
+     */
+    public void iterateSample(T w1, T w2, XorShiftRandom random, double alpha) {
         if(w2 == null || w2.getIndex() < 0 || w1.getIndex() == w2.getIndex() || w1.getLabel().equals("STOP") || w2.getLabel().equals("STOP") || w1.getLabel().equals("UNK") || w2.getLabel().equals("UNK"))
             return;
-        //current word vector
-        INDArray l1 = this.syn0.slice(w2.getIndex());
-
 
+        TrainingState state = trainingState();
+        if (state.neu1e.length != vectorLength)
+            state.neu1e = new double[vectorLength];
         //error for current word and context
-        INDArray neu1e = Nd4j.create(vectorLength);
+        double[] neu1e = state.neu1e;
+        Arrays.fill(neu1e, 0.0);
+
+        float[] sigmoid = sigmoidTable();
+        double expScale = sigmoid.length / MAX_EXP / 2.0;
 
+        //current word vector
+        DataBuffer syn0Buffer = syn0.data();
+        int l1 = syn0.offset() + w2.getIndex() * syn0.stride(0);
+        int stride0 = syn0.stride(1);
 
-        for(int i = 0; i < w1.getCodeLength(); i++) {
-            int code = w1.getCodes().get(i);
-            int point = w1.getPoints().get(i);
+        int target = w1.getIndex();
+        HuffmanArrays huffman = huffmanArrays();
+        int[] points = huffman.points[target];
+        byte[] codes = huffman.codes[target];
+        DataBuffer syn1Buffer = syn1.data();
+        int stride1 = syn1.stride(1);
+        for(int i = 0; i < points.length; i++) {
+            int point = points[i];
             if(point >= syn0.rows() || point < 0)
                 throw new IllegalStateException("Illegal point " + point);
             //other word vector
-
-            INDArray syn1 = this.syn1.slice(point);
-
-
-            double dot = Nd4j.getBlasWrapper().dot(l1,syn1);
+            int l2 = syn1.offset() + point * syn1.stride(0);
+            double dot = dot(syn0Buffer, l1, stride0, syn1Buffer, l2, stride1);
 
             if(dot < -MAX_EXP || dot >= MAX_EXP)
                 continue;
 
-
-            int idx = (int) ((dot + MAX_EXP) * ((double) expTable.length / MAX_EXP / 2.0));
-            if(idx >= expTable.length)
+            int idx = (int) ((dot + MAX_EXP) * expScale);
+            if(idx >= sigmoid.length)
                 continue;
 
             //score
-            double f =  expTable[idx];
+            double f = sigmoid[idx];
             //gradient
-            double g = useAdaGrad ?  w1.getGradient(i, (1 - code - f), lr.get()) : (1 - code - f) * alpha;
-
-            Nd4j.getBlasWrapper().level1().axpy(syn1.length(), g, syn1, neu1e);
-            Nd4j.getBlasWrapper().level1().axpy(syn1.length(), g, l1, syn1);
-
+            double g = useAdaGrad ?  w1.getGradient(i, (1 - codes[i] - f), lr.get()) : (1 - codes[i] - f) * alpha;
+            update(syn0Buffer, l1, stride0, syn1Buffer, l2, stride1, g, neu1e);
         }
 
-
-        int target = w1.getIndex();
-        int label;
         //negative sampling
-        if(negative > 0)
+        if(negative > 0) {
+            int[] table = negativeTable();
+            DataBuffer negBuffer = syn1Neg.data();
+            int strideNeg = syn1Neg.stride(1);
+            int label;
             for (int d = 0; d < negative + 1; d++) {
-                if (d == 0)
+                if (d == 0) {
+                    target = w1.getIndex();
                     label = 1;
-                else {
-                    nextRandom.set(nextRandom.get() * 25214903917L + 11);
-                    int idx = Math.abs((int) (nextRandom.get() >> 16) % table.length());
-
-                    target = table.getInt(idx);
+                } else {
+                    target = table[random.nextInt(table.length)];
                     if (target <= 0)
-                        target = (int) nextRandom.get() % (vocab.numWords() - 1) + 1;
+                        target = random.nextInt(Math.max(1, vocab.numWords() - 1)) + 1;
 
                     if (target == w1.getIndex())
                         continue;
                     label = 0;
                 }
 
-
                 if(target >= syn1Neg.rows() || target < 0)
                     continue;
 
-                double f = Nd4j.getBlasWrapper().dot(l1,syn1Neg.slice(target));
+                int l2 = syn1Neg.offset() + target * syn1Neg.stride(0);
+                double f = dot(syn0Buffer, l1, stride0, negBuffer, l2, strideNeg);
                 double g;
                 if (f > MAX_EXP)
                     g = useAdaGrad ? w1.getGradient(target, (label - 1), alpha) : (label - 1) *  alpha;
                 else if (f < -MAX_EXP)
                     g = label * (useAdaGrad ?  w1.getGradient(target, alpha, alpha) : alpha);
-                else
-                    g = useAdaGrad ? w1.getGradient(target, label - expTable[(int)((f + MAX_EXP) * (expTable.length / MAX_EXP / 2))], alpha) : (label - expTable[(int)((f + MAX_EXP) * (expTable.length / MAX_EXP / 2))]) *   alpha;
-                if(syn0.data().dataType() == DataBuffer.Type.DOUBLE)
-                    Nd4j.getBlasWrapper().axpy(g,syn1Neg.slice(target),neu1e);
-                else
-                    Nd4j.getBlasWrapper().axpy((float) g,syn1Neg.slice(target),neu1e);
-
-                if(syn0.data().dataType() == DataBuffer.Type.DOUBLE)
-                    Nd4j.getBlasWrapper().axpy(g,l1,syn1Neg.slice(target));
-                else
-                    Nd4j.getBlasWrapper().axpy((float) g,l1,syn1Neg.slice(target));
+                else {
+                    double sig = sigmoid[Math.min(sigmoid.length - 1, (int) ((f + MAX_EXP) * expScale))];
+                    g = useAdaGrad ? w1.getGradient(target, label - sig, alpha) : (label - sig) * alpha;
+                }
+                update(syn0Buffer, l1, stride0, negBuffer, l2, strideNeg, g, neu1e);
             }
+        }
 
-        if(syn0.data().dataType() == DataBuffer.Type.DOUBLE)
-            Nd4j.getBlasWrapper().axpy(1.0,neu1e,l1);
-
-        else
-            Nd4j.getBlasWrapper().axpy(1.0f,neu1e,l1);
+        for (int k = 0; k < vectorLength; k++) {
+            int pos = l1 + k * stride0;
+            syn0Buffer.put(pos, syn0Buffer.getDouble(pos) + neu1e[k]);
+        }
+    }
 
+    private double dot(DataBuffer a, int aOffset, int aStride, DataBuffer b, int bOffset, int bStride) {
+        double dot = 0.0;
+        for (int k = 0; k < vectorLength; k++)
+            dot += a.getDouble(aOffset + k * aStride) * b.getDouble(bOffset + k * bStride);
+        return dot;
+    }
 
+    //neu1e += g * out; out += g * in
+    private void update(DataBuffer in, int inOffset, int inStride, DataBuffer out, int outOffset, int outStride,
+                        double g, double[] neu1e) {
+        for (int k = 0; k < vectorLength; k++) {
+            int pos = outOffset + k * outStride;
+            double o = out.getDouble(pos);
+            neu1e[k] += g * o;
+            out.put(pos, o + g * in.getDouble(inOffset + k * inStride));
+        }
     }
 
     public boolean isUseAdaGrad() {
@@ -381,75 +596,14 @@ public class InMemoryLookupTable<T extends SequenceElement> implements WeightLoo
     }
 
     /**
-     * Iterate on the given 2 vocab words
+     * Iterate on the given 2 vocab words, at the current learning rate (see {@link #currentLearningRate()})
      *
      * @param w1 the first word to iterate on
      * @param w2 the second word to iterate on
      */
     @Override
     public  void iterate(T w1, T w2) {
-    /*
-        if(w2.getIndex() < 0)
-            return;
-        //current word vector
-        INDArray l1 = this.syn0.slice(w2.getIndex());
-
-        //error for current word and context
-        INDArray neu1e = Nd4j.create(vectorLength);
-
-
-
-
-        double alpha = this.lr.get();
-
-        for(int i = 0; i < w1.getCodeLength(); i++) {
-            int code = w1.getCodes().get(i);
-            int point = w1.getPoints().get(i);
-            if(point >= syn0.rows() || point < 0)
-                throw new IllegalStateException("Illegal point " + point);
-            //other word vector
-            INDArray syn1 = this.syn1.slice(point);
-
-
-            double dot = Nd4j.getBlasWrapper().dot(l1,syn1);
-
-            if(dot < -MAX_EXP || dot >= MAX_EXP)
-                continue;
-
-
-            int idx = (int) ((dot + MAX_EXP) * ((double) expTable.length / MAX_EXP / 2.0));
-            if(idx >= expTable.length)
-                continue;
-
-            //score
-            double f =  expTable[idx];
-            //gradient
-            double g = (1 - code - f) * (useAdaGrad ?  w1.getGradient(i, alpha) : alpha);
-
-            if(syn0.data().dataType() == DataBuffer.Type.DOUBLE) {
-                Nd4j.getBlasWrapper().axpy(g, syn1, neu1e);
-                Nd4j.getBlasWrapper().axpy(g, l1, syn1);
-            }
-            else {
-                Nd4j.getBlasWrapper().axpy((float) g, syn1, neu1e);
-                Nd4j.getBlasWrapper().axpy((float) g, l1, syn1);
-            }
-        }
-
-
-
-
-
-        if(syn0.data().dataType() == DataBuffer.Type.DOUBLE)
-            Nd4j.getBlasWrapper().level1().axpy(l1.length(), 1.0,neu1e,l1);
-
-        else
-            Nd4j.getBlasWrapper().level1().axpy(l1.length(), 1.0f, neu1e, l1);
-
-
-
-
-        */
+        iterateSample(w1, w2, threadRandom(), currentLearningRate());
     }
 
 
@@ -463,6 +617,7 @@ public class InMemoryLookupTable<T extends SequenceElement> implements WeightLoo
 
 
     protected void makeTable(int tableSize,double power) {
+        negativeTable = null;
         int vocabSize = syn0.rows();
         table = Nd4j.create(new FloatBuffer(tableSize));
         double trainWordsPow = 0.0;
@@ -510,6 +665,7 @@ public class InMemoryLookupTable<T extends SequenceElement> implements WeightLoo
 
     public void setTable(INDArray table) {
         this.table = table;
+        this.negativeTable = null;
     }
 
     public INDArray getSyn1Neg() {
@@ -0,0 +1,46 @@
+package org.deeplearning4j.models.embeddings.inmemory;
+
+/**
+ * Small, fast, non thread safe random number generator (xorshift64*), for per-thread sampling in embedding training.
+ * Unlike a shared {@link java.util.concurrent.atomic.AtomicLong} seed, one instance per thread has no contention.
+ */
+public class XorShiftRandom {
+    private long state;
+
+    public XorShiftRandom(long seed) {
+        setSeed(seed);
+    }
+
+    public void setSeed(long seed) {
+        //Scramble the seed (splitmix64), so that nearby seeds give unrelated sequences; the state must not be 0
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= (z >>> 31);
+        this.state = (z == 0 ? 0x9E3779B97F4A7C15L : z);
+    }
+
+    public long nextLong() {
+        long x = state;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        state = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * @param bound upper bound (exclusive), positive
+     * @return a random int in [0, bound)
+     */
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * @return a random double in [0, 1)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
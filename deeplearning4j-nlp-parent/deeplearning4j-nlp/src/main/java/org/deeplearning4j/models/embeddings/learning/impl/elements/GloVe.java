@@ -2,12 +2,12 @@ package org.deeplearning4j.models.embeddings.learning.impl.elements;
 
 import lombok.NonNull;
 import org.deeplearning4j.berkeley.Counter;
-import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.embeddings.learning.ElementsLearningAlgorithm;
 import org.deeplearning4j.models.embeddings.loader.VectorsConfiguration;
 import org.deeplearning4j.models.glove.AbstractCoOccurrences;
+import org.deeplearning4j.models.glove.count.CoOccurrenceBlockReader;
 import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
 import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
@@ -19,9 +19,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -128,33 +127,38 @@ public  class GloVe<T extends SequenceElement> implements ElementsLearningAlgori
         final AtomicLong pairsCount = new AtomicLong(0);
         final Counter<Integer> errorCounter = new Counter<>();
 
-        //List<Pair<T, T>> coList = coOccurrences.coOccurrenceList();
+        // cooccurrences are streamed from disk block by block, so training doesn't require the whole map in memory
+        CoOccurrenceBlockReader reader = coOccurrences.blockReader(batchSize);
+        Random rng = new Random(configuration.getSeed());
 
-        for (int i = 0; i < configuration.getEpochs(); i++ ) {
-
-            // TODO: shuffle should be built in another way.
-            //if (shuffle)
-                //Collections.shuffle(coList);
-
-            Iterator<Pair<Pair<T,T>, Double>> pairs = coOccurrences.iterator();
-
-            List<GloveCalculationsThread> threads = new ArrayList<>();
-            for (int x = 0; x < workers; x++) {
-                threads.add(x, new GloveCalculationsThread(i, x, pairs, pairsCount, errorCounter));
-                threads.get(x).start();
-            }
+        try {
+            for (int i = 0; i < configuration.getEpochs(); i++) {
 
+                // block order and pairs order within each block are shuffled for every epoch
+                reader.startEpoch(shuffle, rng);
 
+                List<GloveCalculationsThread> threads = new ArrayList<>();
+                for (int x = 0; x < workers; x++) {
+                    threads.add(x, new GloveCalculationsThread(i, x, reader, rng.nextLong(), pairsCount, errorCounter));
+                    threads.get(x).start();
+                }
 
-            for (int x = 0; x < workers; x++) {
-                try {
-                    threads.get(x).join();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                for (int x = 0; x < workers; x++) {
+                    try {
+                        threads.get(x).join();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
                 }
-            }
 
-            log.info("Processed ["+ pairsCount.get()+"] pairs, Error was ["+ errorCounter.getCount(i) +"]");
+                log.info("Processed [" + pairsCount.get() + "] pairs, Error was [" + errorCounter.getCount(i) + "]");
+            }
+        } finally {
+            try {
+                reader.close();
+            } catch (Exception e) {
+                //
+            }
         }
 
         isTerminate.set(true);
@@ -172,25 +176,23 @@ public  class GloVe<T extends SequenceElement> implements ElementsLearningAlgori
         return isTerminate.get();
     }
 
-    private double iterateSample(T element1, T element2, double score) {
+    private double iterateSample(int index1, int index2, double score) {
         //prediction: input + bias
-        if(element1.getIndex() < 0 || element1.getIndex() >= syn0.rows())
-            throw new IllegalArgumentException("Illegal index for word " + element1.getLabel());
-        if(element2.getIndex() < 0 || element2.getIndex() >= syn0.rows())
-            throw new IllegalArgumentException("Illegal index for word " + element2.getLabel());
+        if(index1 < 0 || index1 >= syn0.rows())
+            throw new IllegalArgumentException("Illegal index for word " + vocabCache.wordAtIndex(index1));
+        if(index2 < 0 || index2 >= syn0.rows())
+            throw new IllegalArgumentException("Illegal index for word " + vocabCache.wordAtIndex(index2));
 
-        INDArray w1Vector = syn0.slice(element1.getIndex());
-        INDArray w2Vector = syn0.slice(element2.getIndex());
+        INDArray w1Vector = syn0.slice(index1);
+        INDArray w2Vector = syn0.slice(index2);
 
 
         //w1 * w2 + bias
         double prediction = Nd4j.getBlasWrapper().dot(w1Vector,w2Vector);
-        prediction +=  bias.getDouble(element1.getIndex()) + bias.getDouble(element2.getIndex()) - Math.log(score);
+        prediction +=  bias.getDouble(index1) + bias.getDouble(index2) - Math.log(score);
 
         double fDiff = (score > xMax) ? prediction : Math.pow(score / xMax, alpha) * prediction; // Math.pow(Math.min(1.0,(score / maxCount)),xMax);
 
-//        double fDiff = score > xMax ? prediction :  weight * (prediction - Math.log(score));
-
         if(Double.isNaN(fDiff))
             fDiff = Nd4j.EPS_THRESHOLD;
         //amount of change
@@ -200,88 +202,64 @@ public  class GloVe<T extends SequenceElement> implements ElementsLearningAlgori
         //the gradient of the OPPOSITE word
         //for adagrad we will use the index of the word passed in
         //for the gradient calculation we will use the context vector
-        update(element1, w1Vector, w2Vector, gradient);
-        update(element2, w2Vector, w1Vector, gradient);
+        update(index1, w1Vector, w2Vector, gradient);
+        update(index2, w2Vector, w1Vector, gradient);
         return 0.5 * fDiff * prediction;
     }
 
-    private void update(T element1, INDArray wordVector, INDArray contextVector, double gradient) {
+    private void update(int index, INDArray wordVector, INDArray contextVector, double gradient) {
         //gradient for word vectors
         INDArray grad1 =  contextVector.mul(gradient);
-        INDArray update = weightAdaGrad.getGradient(grad1,element1.getIndex(),syn0.shape());
+        INDArray update = weightAdaGrad.getGradient(grad1, index, syn0.shape());
 
         //update vector
         wordVector.subi(update);
 
-        double w1Bias = bias.getDouble(element1.getIndex());
-        double biasGradient = biasAdaGrad.getGradient(gradient,element1.getIndex(),bias.shape());
+        double w1Bias = bias.getDouble(index);
+        double biasGradient = biasAdaGrad.getGradient(gradient, index, bias.shape());
         double update2 = w1Bias - biasGradient;
-        bias.putScalar(element1.getIndex(),update2);
+        bias.putScalar(index, update2);
     }
 
     private class GloveCalculationsThread extends Thread implements Runnable {
         private final int threadId;
         private final int epochId;
-//        private final AbstractCoOccurrences<T> coOccurrences;
-        private final Iterator<Pair<Pair<T, T>, Double>>  coList;
+        private final CoOccurrenceBlockReader reader;
+        private final CoOccurrenceBlockReader.Block block;
 
         private final AtomicLong pairsCounter;
         private final Counter<Integer> errorCounter;
 
-        public GloveCalculationsThread(int epochId, int threadId, @NonNull Iterator<Pair<Pair<T, T>, Double>> pairs, @NonNull AtomicLong pairsCounter, @NonNull Counter<Integer> errorCounter) {
+        public GloveCalculationsThread(int epochId, int threadId, @NonNull CoOccurrenceBlockReader reader, long seed, @NonNull AtomicLong pairsCounter, @NonNull Counter<Integer> errorCounter) {
             this.epochId = epochId;
             this.threadId = threadId;
-          //  this.coOccurrences = coOccurrences;
+            this.reader = reader;
+            this.block = new CoOccurrenceBlockReader.Block(seed);
 
             this.pairsCounter = pairsCounter;
             this.errorCounter = errorCounter;
 
-            coList = pairs;
-
             this.setName("GloVe ELA t." + this.threadId);
         }
 
         @Override
         public void run() {
-//            int startPosition = threadId * (coList.size() / workers);
-//            int stopPosition = (threadId + 1) *  (coList.size() / workers);
-//            log.info("Total size: [" + coList.size() + "], thread start: [" + startPosition + "], thread stop: [" + stopPosition + "]");
-            while (coList.hasNext()){
-
-                // now we fetch pairs into batch
-                List<Pair<Pair<T,T>, Double>> pairs = new ArrayList<>();
-                int cnt = 0;
-                while (coList.hasNext() && cnt < batchSize ) {
-                    pairs.add(coList.next());
-                    cnt ++;
-                }
-
-                if (shuffle)
-                    Collections.shuffle(pairs);
-
-                Iterator<Pair<Pair<T,T>, Double>> iterator = pairs.iterator();
-
-                while (iterator.hasNext()) {
-                    // now for each pair do appropriate training
-                    Pair<Pair<T, T>, Double> pairDoublePair = iterator.next();
-
-                    // That's probably ugly and probably should be improved somehow
-
-                    T element1 = pairDoublePair.getFirst().getFirst();
-                    T element2 = pairDoublePair.getFirst().getSecond();
-                    double weight = pairDoublePair.getSecond();  //coOccurrences.getCoOccurrenceCount(element1, element2);
-                    if (weight <= 0) {
-//                    log.warn("Skipping pair ("+ element1.getLabel()+", " + element2.getLabel()+")");
-                        pairsCounter.incrementAndGet();
-                        continue;
+            while (reader.nextBlock(block)) {
+                double error = 0.0;
+                for (int i = 0; i < block.size(); i++) {
+                    double weight = block.getWeight(i);
+                    if (weight > 0) {
+                        error += iterateSample(block.getElement1(i), block.getElement2(i), weight);
                     }
 
-                    errorCounter.incrementCount(epochId, iterateSample(element1, element2, weight));
                     if (pairsCounter.incrementAndGet() % 1000000 == 0) {
                         log.info("Processed [" + pairsCounter.get() + "] word pairs so far...");
                     }
                 }
 
+                synchronized (errorCounter) {
+                    errorCounter.incrementCount(epochId, error);
+                }
             }
         }
     }
@@ -303,7 +281,7 @@ public  class GloVe<T extends SequenceElement> implements ElementsLearningAlgori
         }
 
         /**
-         * This parameter specifies batch size for each thread. Also, if shuffle == TRUE, this batch will be shuffled before processing. Default value: 1000;
+         * This parameter specifies number of pairs read from disk at once by each thread. Also, if shuffle == TRUE, this batch will be shuffled before processing. Default value: 1000;
          *
          * @param batchSize
          * @return
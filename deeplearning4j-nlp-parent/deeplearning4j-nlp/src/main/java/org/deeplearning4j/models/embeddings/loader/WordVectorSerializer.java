@@ -2001,6 +2001,83 @@ public class WordVectorSerializer {
         return vocabCache;
     }
 
+    /**
+     * This method saves vocab cache to provided OutputStream in compact binary format: number of words and documents,
+     * followed by label, frequency, sequences count, index, flags, Huffman codes and points of each word.
+     * Unlike {@link #writeVocabCache(VocabCache, OutputStream)} it keeps Huffman tree, so it's suitable for SequenceVectors too.
+     *
+     * @param vocabCache
+     * @param stream
+     * @throws IOException
+     */
+    public static void writeVocabCacheBinary(@NonNull VocabCache<VocabWord> vocabCache, @NonNull OutputStream stream) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(stream));
+
+        dos.writeInt(vocabCache.numWords());
+        dos.writeInt(vocabCache.totalNumberOfDocs());
+        for (int x = 0; x < vocabCache.numWords(); x++) {
+            VocabWord word = vocabCache.elementAtIndex(x);
+            dos.writeUTF(word.getLabel());
+            dos.writeLong((long) word.getElementFrequency());
+            dos.writeLong(word.getSequencesCount());
+            dos.writeInt(word.getIndex());
+            dos.writeBoolean(word.isSpecial());
+            dos.writeBoolean(word.isLabel());
+
+            dos.writeInt(word.getCodeLength());
+            dos.writeInt(word.getCodes().size());
+            for (Integer code : word.getCodes())
+                dos.writeByte(code);
+            dos.writeInt(word.getPoints().size());
+            for (Integer point : word.getPoints())
+                dos.writeInt(point);
+        }
+
+        dos.flush();
+        dos.close();
+    }
+
+    /**
+     * This method reads vocab cache saved with {@link #writeVocabCacheBinary(VocabCache, OutputStream)}
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    public static VocabCache<VocabWord> readVocabCacheBinary(@NonNull InputStream stream) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
+        AbstractCache<VocabWord> vocabCache = new AbstractCache.Builder<VocabWord>().build();
+
+        int numWords = dis.readInt();
+        vocabCache.incrementTotalDocCount(dis.readInt());
+        for (int x = 0; x < numWords; x++) {
+            VocabWord word = new VocabWord(1.0, dis.readUTF());
+            word.setElementFrequency(dis.readLong());
+            word.setSequencesCount(dis.readLong());
+            word.setIndex(dis.readInt());
+            word.setSpecial(dis.readBoolean());
+            word.markAsLabel(dis.readBoolean());
+
+            int codeLength = dis.readInt();
+            List<Integer> codes = new ArrayList<>();
+            int numCodes = dis.readInt();
+            for (int i = 0; i < numCodes; i++)
+                codes.add((int) dis.readByte());
+            List<Integer> points = new ArrayList<>();
+            int numPoints = dis.readInt();
+            for (int i = 0; i < numPoints; i++)
+                points.add(dis.readInt());
+            word.setCodes(codes);
+            word.setPoints(points);
+            word.setCodeLength(codeLength);
+
+            vocabCache.addToken(word);
+            vocabCache.addWordToIndex(word.getIndex(), word.getLabel());
+        }
+
+        return vocabCache;
+    }
+
     /**
      * This is utility holder class
      */
@@ -9,10 +9,6 @@ import org.deeplearning4j.models.sequencevectors.iterators.SynchronizedSequenceI
 import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
-import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
-import org.deeplearning4j.text.sentenceiterator.PrefetchingSentenceIterator;
-import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
-import org.deeplearning4j.text.sentenceiterator.SynchronizedSentenceIterator;
 import org.nd4j.linalg.factory.Nd4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,45 +16,50 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class implements building cooccurrence map for abstract training corpus.
- * However it's performance rather low, due to exsessive IO that happens in ShadowCopyThread
  *
- * PLEASE NOTE: Current implementation involves massive IO, and it should be rewritter as soon as ND4j gets sparse arrays support
+ * Each counting thread accumulates weights into its own primitive {@link PairCountMap}, so there's no locking on the hot path.
+ * As soon as a thread's map can't grow without exceeding its share of memory budget, the map is sorted and spilled to disk
+ * as a run, and counting continues with the same (cleared) map. When the corpus is processed, all runs are combined with
+ * a k-way merge into the target file, which contains each pair exactly once, sorted by element indexes.
+ *
+ * Target file is a sequence of 12-byte records (see {@link CoOccurrenceRunWriter}), and can be streamed block-wise with
+ * {@link CoOccurrenceBlockReader}, so neither counting nor training requires the whole cooccurrence matrix to fit into memory.
  *
  * @author raver119@gmail.com
  */
 public class AbstractCoOccurrences<T extends SequenceElement> implements Serializable {
 
+    // max number of runs merged at once
+    protected static final int MERGE_FAN_IN = 64;
+
     protected boolean symmetric;
     protected int windowSize;
     protected VocabCache<T> vocabCache;
     protected SequenceIterator<T> sequenceIterator;
 
-    // please note, we need enough room for ShadowCopy thread, that's why -1 there
-    protected int workers = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+    protected int workers = Runtime.getRuntime().availableProcessors();
 
-    // target file, where text with cooccurrencies should be saved
+    // target file, where cooccurrencies should be saved
     protected File targetFile;
 
-    protected ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // directory for intermediate runs, null means default temp directory
+    protected File tempDirectory;
 
     protected long memory_threshold = 0;
 
-    private ShadowCopyThread shadowThread;
-
-//    private Counter<Integer> sentenceOccurrences = Util.parallelCounter();
-    //private CounterMap<T, T> coOccurrenceCounts = Util.parallelCounterMap();
-    private volatile CountMap<T> coOccurrenceCounts = new CountMap<>();
-    //private Counter<Integer> occurrenceAllocations = Util.parallelCounter();
-    //private List<Pair<T, T>> coOccurrences;
+    private final List<File> runs = Collections.synchronizedList(new ArrayList<File>());
     private AtomicLong processedSequences = new AtomicLong(0);
+    private volatile long numberOfPairs = 0;
+    private transient CoOccurrenceBlockReader lookupReader;
 
 
     protected static final Logger logger = LoggerFactory.getLogger(AbstractCoOccurrences.class);
@@ -68,28 +69,18 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
     }
 
     /**
-     * This method returns cooccurrence distance weights for two SequenceElements
+     * This method returns cooccurrence distance weights for two SequenceElements.
+     * Please note: this method is available only after fit(), and does binary search over the target file.
      *
      * @param element1
      * @param element2
      * @return distance weight
      */
-    public double getCoOccurrenceCount(@NonNull T element1, @NonNull T element2) {
-        return coOccurrenceCounts.getCount(element1, element2);
-    }
+    public synchronized double getCoOccurrenceCount(@NonNull T element1, @NonNull T element2) {
+        if (lookupReader == null)
+            lookupReader = new CoOccurrenceBlockReader(targetFile, 1);
 
-    /**
-     * This method returns estimated memory footrpint, based on current CountMap content
-     * @return
-     */
-    protected long getMemoryFootprint() {
-        // TODO: implement this method. It should return approx. memory used by appropriate CountMap
-        try {
-            lock.readLock().lock();
-            return ((long) coOccurrenceCounts.size()) * 24L * 5L;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return lookupReader.getWeight(element1.getIndex(), element2.getIndex());
     }
 
     /**
@@ -100,16 +91,33 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
         return memory_threshold / 2L;
     }
 
-    public void fit() {
-        shadowThread = new ShadowCopyThread();
-        shadowThread.start();
+    /**
+     * @return memory budget for each counting thread, in bytes
+     */
+    protected long getThreadMemoryBudget() {
+        return Math.max(getMemoryThreshold() / workers, 16 * PairCountMap.BYTES_PER_SLOT * 3);
+    }
 
+    public void fit() {
         // we should reset iterator before counting cooccurrences
         sequenceIterator.reset();
+        runs.clear();
+
+        synchronized (this) {
+            if (lookupReader != null) {
+                try {
+                    lookupReader.close();
+                } catch (Exception e) {
+                    //
+                }
+                lookupReader = null;
+            }
+        }
 
+        AtomicReference<Throwable> exception = new AtomicReference<>();
         List<CoOccurrencesCalculatorThread> threads = new ArrayList<>();
         for (int x = 0; x < workers; x++) {
-            threads.add(x, new CoOccurrencesCalculatorThread(x, new FilteredSequenceIterator<>(new SynchronizedSequenceIterator<>(sequenceIterator), vocabCache), processedSequences));
+            threads.add(x, new CoOccurrencesCalculatorThread(x, new FilteredSequenceIterator<>(new SynchronizedSequenceIterator<>(sequenceIterator), vocabCache), processedSequences, exception));
             threads.get(x).start();
         }
 
@@ -121,47 +129,89 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
             }
         }
 
-        shadowThread.finish();
-        logger.info("CoOccurrences map was built.");
+        if (exception.get() != null) {
+            deleteRuns();
+            throw new RuntimeException("CoOccurrences counting failed", exception.get());
+        }
+
+        logger.info("Merging [" + runs.size() + "] cooccurrence runs...");
+        int bufferSize = (int) Math.max(64 * 1024, Math.min(1024 * 1024, getMemoryThreshold() / MERGE_FAN_IN));
+        CoOccurrenceMerger merger = new CoOccurrenceMerger(MERGE_FAN_IN, bufferSize, tempDirectory);
+        try {
+            numberOfPairs = merger.merge(runs, targetFile);
+        } finally {
+            deleteRuns();
+        }
+
+        logger.info("CoOccurrences map was built: [" + numberOfPairs + "] pairs, [" + processedSequences.get() + "] sequences processed.");
+    }
+
+    private void deleteRuns() {
+        synchronized (runs) {
+            for (File run : runs)
+                run.delete();
+            runs.clear();
+        }
+    }
+
+    /**
+     * @return number of unique pairs found by the last fit() call
+     */
+    public long getNumberOfPairs() {
+        return numberOfPairs;
+    }
+
+    /**
+     * @return file containing sorted cooccurrences, available after fit()
+     */
+    public File getTargetFile() {
+        return targetFile;
+    }
+
+    /**
+     * This method returns block-wise reader over the target file, suitable for multi-threaded training
+     *
+     * @param blockSize number of pairs in each block
+     * @return
+     */
+    public CoOccurrenceBlockReader blockReader(int blockSize) {
+        return new CoOccurrenceBlockReader(targetFile, blockSize);
     }
 
     /**
      *
-     *  This method returns iterator with elements pairs and their weights. Resulting iterator is safe to use in multi-threaded environment.
+     *  This method returns iterator with elements pairs and their weights, in ascending order of element indexes. Resulting iterator is safe to use in multi-threaded environment.
      *
-     * Developer's note: thread safety on received iterator is delegated to PrefetchedSentenceIterator
      * @return
      */
     public Iterator<Pair<Pair<T, T>, Double>> iterator() {
-        final SentenceIterator iterator;
+        final CoOccurrenceRunReader reader = new CoOccurrenceRunReader(targetFile);
 
-        try {
-            iterator = new SynchronizedSentenceIterator(new PrefetchingSentenceIterator.Builder(new BasicLineIterator(targetFile))
-                    .setFetchSize(500000)
-                    .build());
-
-        } catch (Exception e) {
-            logger.error("Target file was not found on last stage!");
-            throw new RuntimeException(e);
-        }
         return new Iterator<Pair<Pair<T, T>, Double>>() {
-            /*
-                    iterator should be built on top of current text file with all pairs
-             */
+            private boolean hasMore = advance();
+
+            private boolean advance() {
+                boolean result = reader.advance();
+                if (!result)
+                    reader.finish();
+                return result;
+            }
 
             @Override
-            public boolean hasNext() {
-                return iterator.hasNext();
+            public synchronized boolean hasNext() {
+                return hasMore;
             }
 
             @Override
-            public Pair<Pair<T, T>, Double> next() {
-                String line = iterator.nextSentence();
-                String[] strings = line.split(" ");
+            public synchronized Pair<Pair<T, T>, Double> next() {
+                if (!hasMore)
+                    throw new NoSuchElementException();
 
-                T element1 = vocabCache.elementAtIndex(Integer.valueOf(strings[0]));
-                T element2 = vocabCache.elementAtIndex(Integer.valueOf(strings[1]));
-                Double weight = Double.valueOf(strings[2]);
+                T element1 = vocabCache.elementAtIndex(reader.getElement1());
+                T element2 = vocabCache.elementAtIndex(reader.getElement2());
+                Double weight = (double) reader.getWeight();
+
+                hasMore = advance();
 
                 return new Pair<>(new Pair<>(element1, element2), weight);
             }
@@ -182,6 +232,7 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
         protected int workers = Runtime.getRuntime().availableProcessors();
         protected File target;
         protected long maxmemory = Runtime.getRuntime().maxMemory();
+        protected File tempDirectory;
 
         public Builder() {
 
@@ -229,6 +280,32 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
             return this;
         }
 
+        /**
+         * This method allows you to specify maximum memory available for CoOccurrence map builder, in bytes.
+         * Half of this value is shared between counting threads; as soon as a thread hits its share, its counts are spilled to disk.
+         *
+         * @param bytes memory available, in bytes
+         * @return
+         */
+        public Builder<T> maxMemoryBytes(long bytes) {
+            if (bytes > 0) {
+                this.maxmemory = bytes;
+            }
+
+            return this;
+        }
+
+        /**
+         * Directory for intermediate sorted runs. If not specified, default temporary directory will be used.
+         *
+         * @param directory
+         * @return
+         */
+        public Builder<T> tempDirectory(@NonNull File directory) {
+            this.tempDirectory = directory;
+            return this;
+        }
+
         /**
          * Path to save cooccurrence map after construction.
          * If targetFile is not specified, temporary file will be used.
@@ -259,7 +336,8 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
             ret.windowSize = this.windowSize;
             ret.vocabCache = this.vocabCache;
             ret.symmetric = this.symmetric;
-            ret.workers = this.workers;
+            ret.workers = Math.max(this.workers, 1);
+            ret.tempDirectory = this.tempDirectory;
 
             if (this.maxmemory < 1) {
                 this.maxmemory = Runtime.getRuntime().maxMemory();
@@ -272,7 +350,7 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
             // use temp file, if no target file was specified
             try {
                 if (this.target == null) {
-                    this.target = File.createTempFile("cooccurrence", "map");
+                    this.target = File.createTempFile("cooccurrence", "map", this.tempDirectory);
                 }
                 this.target.deleteOnExit();
             } catch (Exception e) {
@@ -289,353 +367,100 @@ public class AbstractCoOccurrences<T extends SequenceElement> implements Seriali
 
         private final SequenceIterator<T> iterator;
         private final AtomicLong sequenceCounter;
+        private final AtomicReference<Throwable> exception;
+        private final long memoryBudget;
+        private final PairCountMap countMap;
         private int threadId;
+        private int[] indexes = new int[64];
 
-        public CoOccurrencesCalculatorThread(int threadId, @NonNull SequenceIterator<T> iterator, @NonNull AtomicLong sequenceCounter) {
+        public CoOccurrencesCalculatorThread(int threadId, @NonNull SequenceIterator<T> iterator, @NonNull AtomicLong sequenceCounter, @NonNull AtomicReference<Throwable> exception) {
             this.iterator = iterator;
             this.sequenceCounter = sequenceCounter;
+            this.exception = exception;
             this.threadId = threadId;
+            this.memoryBudget = getThreadMemoryBudget();
+
+            // initial map should be able to grow at least once within budget
+            long initialCapacity = Math.min(1 << 16, memoryBudget / (PairCountMap.BYTES_PER_SLOT * 3));
+            this.countMap = new PairCountMap((int) initialCapacity);
 
             this.setName("CoOccurrencesCalculatorThread " + threadId);
         }
 
         @Override
         public void run() {
-            while (iterator.hasMoreSequences()) {
-                Sequence<T> sequence = iterator.nextSequence();
-
-                List<String> tokens = new ArrayList<>(sequence.asLabels());
-    //            logger.info("Tokens size: " + tokens.size());
-                for (int x = 0; x < sequence.getElements().size(); x++) {
-                    int wordIdx = vocabCache.indexOf(tokens.get(x));
-                    if (wordIdx < 0) {
-                        continue;
+            try {
+                while (iterator.hasMoreSequences() && exception.get() == null) {
+                    Sequence<T> sequence = iterator.nextSequence();
+
+                    List<String> tokens = sequence.asLabels();
+                    int numTokens = tokens.size();
+                    if (indexes.length < numTokens)
+                        indexes = new int[Math.max(numTokens, indexes.length * 2)];
+
+                    // vocab lookups are done once per token, not once per pair
+                    for (int x = 0; x < numTokens; x++) {
+                        String token = tokens.get(x);
+                        indexes[x] = Glove.DEFAULT_UNK.equals(token) ? -1 : vocabCache.indexOf(token);
                     }
-                    String w1 = vocabCache.wordFor(tokens.get(x)).getLabel();
-
-                    // THIS iS SAFE TO REMOVE, NO CHANCE WE'll HAVE UNK WORD INSIDE SEQUENCE
-                    /*if(w1.equals(Glove.UNK))
-                        continue;
-                    */
 
-                    int windowStop = Math.min(x + windowSize + 1,tokens.size());
-                    for(int j = x; j < windowStop; j++) {
-                        int otherWord = vocabCache.indexOf(tokens.get(j));
-                        if (otherWord < 0) {
-                            continue;
-                        }
-                        String w2 = vocabCache.wordFor(tokens.get(j)).getLabel();
-
-                        if(w2.equals(Glove.DEFAULT_UNK) || otherWord == wordIdx) {
+                    for (int x = 0; x < numTokens; x++) {
+                        int wordIdx = indexes[x];
+                        if (wordIdx < 0) {
                             continue;
                         }
 
+                        int windowStop = Math.min(x + windowSize + 1, numTokens);
+                        for (int j = x; j < windowStop; j++) {
+                            int otherWord = indexes[j];
+                            if (otherWord < 0 || otherWord == wordIdx) {
+                                continue;
+                            }
 
-                        T tokenX  = vocabCache.wordFor(tokens.get(x));
-                        T tokenJ = vocabCache.wordFor(tokens.get(j));
-                        double nWeight = 1.0 / (j - x + Nd4j.EPS_THRESHOLD);
-
-                        while (getMemoryFootprint() >= getMemoryThreshold()) {
-                            try {
-                                shadowThread.invoke();
-                                /*lock.readLock().lock();
-                                int size = coOccurrenceCounts.size();
-                                lock.readLock().unlock();
-                                */
-                                if (threadId == 0) {
-                                    logger.debug("Memory consuimption > threshold: {footrpint: ["+ getMemoryFootprint()+"], threshold: [" + getMemoryThreshold() +"] }");
-                                }
-                                Thread.sleep(10000);
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
-                            } finally {
+                            float nWeight = (float) (1.0 / (j - x + Nd4j.EPS_THRESHOLD));
 
+                            if (countMap.isFull() && countMap.getGrowthFootprint() > memoryBudget) {
+                                spill();
                             }
-                        }
-                        /*
-                        if (getMemoryFootprint() == 0) {
-                            logger.info("Zero size!");
-                        }
-                        */
-
-                        try {
-                            lock.readLock().lock();
-                            if (wordIdx < otherWord) {
-                                coOccurrenceCounts.incrementCount(tokenX, tokenJ, nWeight);
-                                if (symmetric) {
-                                    coOccurrenceCounts.incrementCount(tokenJ, tokenX, nWeight);
-                                }
-                            } else {
-                                coOccurrenceCounts.incrementCount(tokenJ, tokenX, nWeight);
-
-                                if (symmetric) {
-                                    coOccurrenceCounts.incrementCount(tokenX, tokenJ, nWeight);
-                                }
+
+                            int lower = Math.min(wordIdx, otherWord);
+                            int upper = Math.max(wordIdx, otherWord);
+                            countMap.incrementCount(lower, upper, nWeight);
+                            if (symmetric) {
+                                countMap.incrementCount(upper, lower, nWeight);
                             }
-                        } finally {
-                            lock.readLock().unlock();
                         }
                     }
-                }
-
-                sequenceCounter.incrementAndGet();
-            }
-        }
-    }
 
-    /**
-     * This class is designed to provide shadow copy functionality for CoOccurence maps, since with proper corpus size you can't fit such a map into memory
-     *
-     */
-    private class ShadowCopyThread extends Thread implements Runnable {
-
-        private AtomicBoolean isFinished = new AtomicBoolean(false);
-        private AtomicBoolean isTerminate = new AtomicBoolean(false);
-        private AtomicBoolean isInvoked = new AtomicBoolean(false);
-        private AtomicBoolean shouldInvoke = new AtomicBoolean(false);
-
-        // file that contains resuts from previous runs
-        private File[] tempFiles;
-        private RoundCount counter;
-
-        public ShadowCopyThread() {
-            try {
-
-                counter = new RoundCount(1);
-                tempFiles = new File[2];
-
-                tempFiles[0] = File.createTempFile("aco", "tmp");
-                tempFiles[1] = File.createTempFile("aco", "tmp");
-
-                tempFiles[0].deleteOnExit();
-                tempFiles[1].deleteOnExit();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-
-            this.setName("ACO ShadowCopy thread");
-        }
-
-        @Override
-        public void run() {
-            /*
-                  Basic idea is pretty simple: run quetly, untill memory gets filled up to some high volume.
-                  As soon as this happens - execute shadow copy.
-            */
-            while (!isFinished.get() && !isTerminate.get()) {
-                // check used memory. if memory use below threshold - sleep for a while. if above threshold - invoke copier
-
-                if (getMemoryFootprint() > getMemoryThreshold()  || (shouldInvoke.get() && !isInvoked.get())) {
-                    // we'll just invoke copier, nothing else
-                    shouldInvoke.compareAndSet(true, false);
-                    invokeBlocking();
-                } else {
-                    try {
-                        /*
-                               commented and left here for future debugging purposes, if needed
-
-                                //lock.readLock().lock();
-                                //int size = coOccurrenceCounts.size();
-                                //lock.readLock().unlock();
-                                //logger.info("Current memory situation: {size: [" +size+ "], footprint: [" + getMemoryFootprint()+"], threshold: ["+ getMemoryThreshold() +"]}");
-                         */
-                        Thread.sleep(1000);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
+                    sequenceCounter.incrementAndGet();
                 }
-            }
-        }
 
-        /**
-         * This methods advises shadow copy process to start
-         */
-        public void invoke() {
-            shouldInvoke.compareAndSet(false, true);
+                if (!countMap.isEmpty())
+                    spill();
+            } catch (Throwable t) {
+                exception.compareAndSet(null, t);
+            }
         }
 
         /**
-         * This methods dumps cooccurrence map into save file.
-         * Please note: this method is synchronized and will block, until complete
+         * This method saves current map content as sorted run, and clears the map
          */
-        public synchronized void invokeBlocking() {
-            if (getMemoryFootprint() < getMemoryThreshold() && !isFinished.get()) {
-                return;
-            }
-
-            int numberOfLinesSaved = 0;
-
-            isInvoked.set(true);
-
-            logger.debug("Memory purge started.");
+        private void spill() throws Exception {
+            File run = File.createTempFile("cooccurrence", "run", tempDirectory);
+            run.deleteOnExit();
+            runs.add(run);
 
-            /*
-                Basic plan:
-                    1. Open temp file
-                    2. Read that file line by line
-                    3. For each read line do synchronization in memory > new file direction
-             */
-
-            counter.tick();
-
-            CountMap<T> localMap;
+            CoOccurrenceRunWriter writer = new CoOccurrenceRunWriter(run);
+            int size = countMap.size();
             try {
-                // in any given moment there's going to be only 1 WriteLock, due to invokeBlocking() being synchronized call
-                lock.writeLock().lock();
-
-
-
-                // obtain local copy of CountMap
-                 localMap = coOccurrenceCounts;
-
-                // set new CountMap, and release write lock
-                coOccurrenceCounts = new CountMap<>();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                countMap.drainSorted(writer);
             } finally {
-                lock.writeLock().unlock();
-            }
-
-            try {
-
-                File file = null;
-                if (!isFinished.get()) {
-                    file = tempFiles[counter.previous()];
-                } else file = targetFile;
-
-
-            //    PrintWriter pw = new PrintWriter(file);
-
-                int linesRead = 0;
-
-                logger.debug("Saving to: ["+ counter.get()+"], Reading from: [" + counter.previous()+"]");
-                CoOccurenceReader<T> reader = new BinaryCoOccurrenceReader<>(tempFiles[counter.previous()], vocabCache, localMap);
-                CoOccurrenceWriter<T> writer = (isFinished.get()) ? new ASCIICoOccurrenceWriter<T>(targetFile): new BinaryCoOccurrenceWriter<T>(tempFiles[counter.get()]);
-                while (reader.hasMoreObjects()) {
-                    CoOccurrenceWeight<T> line = reader.nextObject();
-
-                    if (line != null) {
-                        writer.writeObject(line);
-                        numberOfLinesSaved++;
-                        linesRead++;
-                    }
-                }
-                reader.finish();
-
-                logger.debug("Lines read: [" + linesRead + "]");
-
-                //now, we can dump the rest of elements, which were not presented in existing dump
-                Iterator<Pair<T, T>> iterator = localMap.getPairIterator();
-                while (iterator.hasNext()) {
-                    Pair<T, T> pair = iterator.next();
-                    double mWeight = localMap.getCount(pair);
-                    CoOccurrenceWeight<T> object = new CoOccurrenceWeight<>();
-                    object.setElement1(pair.getFirst());
-                    object.setElement2(pair.getSecond());
-                    object.setWeight(mWeight);
-
-                    writer.writeObject(object);
-
-                    numberOfLinesSaved++;
-                    //      if (numberOfLinesSaved % 100000 == 0) logger.info("Lines saved: [" + numberOfLinesSaved +"]");
-                }
-
                 writer.finish();
-
-            /*
-                SentenceIterator sIterator =  new PrefetchingSentenceIterator.Builder(new BasicLineIterator(tempFiles[counter.get()]))
-                        .setFetchSize(500000)
-                        .build();
-
-
-                int linesRead = 0;
-                while (sIterator.hasNext()) {
-                    //List<Writable> list = new ArrayList<>(reader.next());
-                    String sentence = sIterator.nextSentence();
-                    if (sentence == null || sentence.isEmpty()) continue;
-                    String[] strings = sentence.split(" ");
-
-
-                    // first two elements are integers - vocab indexes
-                    //T element1 = vocabCache.wordFor(vocabCache.wordAtIndex(list.get(0).toInt()));
-                    //T element2 = vocabCache.wordFor(vocabCache.wordAtIndex(list.get(1).toInt()));
-                    T element1 = vocabCache.elementAtIndex(Integer.valueOf(strings[0]));
-                    T element2 = vocabCache.elementAtIndex(Integer.valueOf(strings[1]));
-
-                    // getting third element, previously stored weight
-                    double sWeight = Double.valueOf(strings[2]);  // list.get(2).toDouble();
-
-                    // now, since we have both elements ready, we can check this pair against inmemory map
-                        double mWeight = localMap.getCount(element1, element2);
-                        if (mWeight <= 0) {
-                            // this means we have no such pair in memory, so we'll do nothing to sWeight
-                        } else {
-                            // since we have new weight value in memory, we should update sWeight value before moving it off memory
-                            sWeight += mWeight;
-
-                            // original pair can be safely removed from CountMap
-                            localMap.removePair(element1,element2);
-                        }
-
-                        StringBuilder builder = new StringBuilder().append(element1.getIndex()).append(" ").append(element2.getIndex()).append(" ").append(sWeight);
-                        pw.println(builder.toString());
-                        numberOfLinesSaved++;
-                        linesRead++;
-
-                   // if (numberOfLinesSaved % 100000 == 0) logger.info("Lines saved: [" + numberOfLinesSaved +"]");
-                  //  if (linesRead % 100000 == 0) logger.info("Lines read: [" + linesRead +"]");
-                }
-                */
-/*
-                logger.info("Lines read: [" + linesRead + "]");
-
-                //now, we can dump the rest of elements, which were not presented in existing dump
-                Iterator<Pair<T, T>> iterator = localMap.getPairIterator();
-                while (iterator.hasNext()) {
-                    Pair<T, T> pair = iterator.next();
-                    double mWeight = localMap.getCount(pair);
-
-                    StringBuilder builder = new StringBuilder().append(pair.getFirst().getIndex()).append(" ").append(pair.getFirst().getIndex()).append(" ").append(mWeight);
-                    pw.println(builder.toString());
-                    numberOfLinesSaved++;
-
-              //      if (numberOfLinesSaved % 100000 == 0) logger.info("Lines saved: [" + numberOfLinesSaved +"]");
-                }
-
-                pw.flush();
-                pw.close();
-
-*/
-
-                // just a hint for gc
-                localMap = null;
-                //sIterator.finish();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
             }
 
-            logger.info("Number of word pairs saved so far: [" + numberOfLinesSaved + "]");
-            isInvoked.set(false);
-        }
-
-        /**
-         * This method provides soft finish ability for shadow copy process.
-         * Please note: it's blocking call, since it requires for final merge.
-         */
-        public void finish() {
-            if (this.isFinished.get()) {
-                return;
+            if (threadId == 0) {
+                logger.debug("Thread [" + threadId + "] spilled [" + size + "] pairs to disk, [" + runs.size() + "] runs so far");
             }
-
-            this.isFinished.set(true);
-            invokeBlocking();
-        }
-
-        /**
-         * This method provides hard fiinish ability for shadow copy process
-         */
-        public void terminate() {
-            this.isTerminate.set(true);
         }
     }
-}
\ No newline at end of file
+}
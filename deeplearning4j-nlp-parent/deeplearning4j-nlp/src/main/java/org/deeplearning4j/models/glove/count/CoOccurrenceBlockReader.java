@@ -0,0 +1,236 @@
+package org.deeplearning4j.models.glove.count;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Block-wise reader for merged cooccurrence files, used by GloVe training.
+ *
+ * File is split into blocks of fixed number of records. Within each epoch, blocks are handed out to training threads
+ * exactly once via {@link #nextBlock(Block)}. If shuffling is enabled, block order is permuted for every epoch, and
+ * records within each block are shuffled as well, so training order is randomized without loading the whole
+ * cooccurrence file into memory.
+ *
+ * Blocks are read with positional reads, so multiple threads can read concurrently.
+ */
+public class CoOccurrenceBlockReader implements Closeable {
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long numberOfRecords;
+    private final int blockSize;
+    private final int numberOfBlocks;
+
+    private final AtomicInteger position = new AtomicInteger(0);
+    private volatile int[] order;
+    private volatile boolean shuffle;
+
+    public CoOccurrenceBlockReader(@NonNull File file, int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("Block size should be positive");
+
+        this.file = file;
+        this.blockSize = blockSize;
+        try {
+            this.raf = new RandomAccessFile(file, "r");
+            this.channel = raf.getChannel();
+            long size = channel.size();
+            if (size % CoOccurrenceRunWriter.RECORD_LENGTH != 0) {
+                raf.close();
+                throw new IllegalStateException("File [" + file + "] isn't a valid cooccurrence file: length " + size);
+            }
+            this.numberOfRecords = size / CoOccurrenceRunWriter.RECORD_LENGTH;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        long blocks = (numberOfRecords + blockSize - 1) / blockSize;
+        if (blocks > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many blocks: [" + blocks + "], please use bigger block size");
+        this.numberOfBlocks = (int) blocks;
+
+        this.order = new int[numberOfBlocks];
+        for (int i = 0; i < numberOfBlocks; i++)
+            order[i] = i;
+    }
+
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    public int getNumberOfBlocks() {
+        return numberOfBlocks;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Starts new pass over the file. Should not be called while other threads are still reading blocks.
+     *
+     * @param shuffle if true, blocks and records within blocks are returned in random order
+     * @param rng random number generator, used for block order. Ignored if shuffle is false
+     */
+    public void startEpoch(boolean shuffle, Random rng) {
+        int[] newOrder = new int[numberOfBlocks];
+        for (int i = 0; i < numberOfBlocks; i++)
+            newOrder[i] = i;
+
+        if (shuffle) {
+            for (int i = numberOfBlocks - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int tmp = newOrder[i];
+                newOrder[i] = newOrder[j];
+                newOrder[j] = tmp;
+            }
+        }
+
+        this.order = newOrder;
+        this.shuffle = shuffle;
+        this.position.set(0);
+    }
+
+    /**
+     * Reads next block of current epoch into the given holder.
+     *
+     * @param block holder for block data, should not be shared between threads
+     * @return false, if all blocks of current epoch were already handed out
+     */
+    public boolean nextBlock(@NonNull Block block) {
+        int idx = position.getAndIncrement();
+        if (idx >= numberOfBlocks)
+            return false;
+
+        long first = (long) order[idx] * blockSize;
+        int count = (int) Math.min(blockSize, numberOfRecords - first);
+        block.ensureCapacity(count);
+
+        ByteBuffer buffer = block.buffer;
+        buffer.clear();
+        buffer.limit(count * CoOccurrenceRunWriter.RECORD_LENGTH);
+        long offset = first * CoOccurrenceRunWriter.RECORD_LENGTH;
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0)
+                    throw new IOException("Unexpected end of file: " + file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.flip();
+
+        for (int i = 0; i < count; i++) {
+            block.elements1[i] = buffer.getInt();
+            block.elements2[i] = buffer.getInt();
+            block.weights[i] = buffer.getFloat();
+        }
+        block.size = count;
+
+        if (shuffle)
+            block.shuffle();
+
+        return true;
+    }
+
+    /**
+     * Looks up weight of specific pair with binary search over the file
+     *
+     * @return pair weight, or 0.0 if pair isn't present
+     */
+    public float getWeight(int element1, int element2) {
+        long key = PairCountMap.key(element1, element2);
+        long lo = 0;
+        long hi = numberOfRecords - 1;
+        ByteBuffer buffer = ByteBuffer.allocate(CoOccurrenceRunWriter.RECORD_LENGTH);
+        try {
+            while (lo <= hi) {
+                long mid = (lo + hi) >>> 1;
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, mid * CoOccurrenceRunWriter.RECORD_LENGTH + buffer.position()) < 0)
+                        throw new IOException("Unexpected end of file: " + file);
+                }
+                long midKey = buffer.getLong(0);
+                if (midKey < key) {
+                    lo = mid + 1;
+                } else if (midKey > key) {
+                    hi = mid - 1;
+                } else
+                    return buffer.getFloat(8);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return 0.0f;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    /**
+     * Holder for one block of records. Arrays are reused between blocks
+     */
+    public static class Block {
+        private int[] elements1 = new int[0];
+        private int[] elements2 = new int[0];
+        private float[] weights = new float[0];
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+        private int size;
+        private final Random rng;
+
+        public Block(long seed) {
+            this.rng = new Random(seed);
+        }
+
+        private void ensureCapacity(int count) {
+            if (elements1.length < count) {
+                elements1 = new int[count];
+                elements2 = new int[count];
+                weights = new float[count];
+                buffer = ByteBuffer.allocate(count * CoOccurrenceRunWriter.RECORD_LENGTH);
+            }
+        }
+
+        private void shuffle() {
+            for (int i = size - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int e1 = elements1[i];
+                int e2 = elements2[i];
+                float w = weights[i];
+                elements1[i] = elements1[j];
+                elements2[i] = elements2[j];
+                weights[i] = weights[j];
+                elements1[j] = e1;
+                elements2[j] = e2;
+                weights[j] = w;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getElement1(int i) {
+            return elements1[i];
+        }
+
+        public int getElement2(int i) {
+            return elements2[i];
+        }
+
+        public float getWeight(int i) {
+            return weights[i];
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.deeplearning4j.models.glove.count;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of sorted cooccurrence runs. Weights of equal pairs found in different runs are summed up,
+ * so resulting file contains each pair exactly once, in ascending key order.
+ *
+ * If number of runs exceeds merge fan-in, runs are merged in several passes via intermediate runs,
+ * to keep number of open files and read buffers bounded.
+ */
+public class CoOccurrenceMerger {
+    private static final Logger logger = LoggerFactory.getLogger(CoOccurrenceMerger.class);
+
+    private final int maxFanIn;
+    private final int bufferSize;
+    private final File tempDirectory;
+
+    public CoOccurrenceMerger(int maxFanIn, int bufferSize, File tempDirectory) {
+        if (maxFanIn < 2)
+            throw new IllegalArgumentException("Merge fan-in should be at least 2");
+
+        this.maxFanIn = maxFanIn;
+        this.bufferSize = bufferSize;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Merges all runs into target file. Source runs are deleted once merged.
+     *
+     * @param runs sorted runs
+     * @param target resulting file
+     * @return number of unique pairs written
+     */
+    public long merge(@NonNull List<File> runs, @NonNull File target) {
+        List<File> current = new ArrayList<>(runs);
+        int pass = 0;
+        while (current.size() > maxFanIn) {
+            List<File> next = new ArrayList<>();
+            for (int i = 0; i < current.size(); i += maxFanIn) {
+                List<File> group = current.subList(i, Math.min(i + maxFanIn, current.size()));
+                if (group.size() == 1) {
+                    next.add(group.get(0));
+                    continue;
+                }
+                try {
+                    File intermediate = File.createTempFile("cooccurrence", "run", tempDirectory);
+                    intermediate.deleteOnExit();
+                    mergeGroup(group, intermediate);
+                    next.add(intermediate);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            pass++;
+            logger.debug("Merge pass [" + pass + "]: " + current.size() + " runs -> " + next.size() + " runs");
+            current = next;
+        }
+
+        return mergeGroup(current, target);
+    }
+
+    private long mergeGroup(List<File> runs, File target) {
+        PriorityQueue<CoOccurrenceRunReader> queue = new PriorityQueue<>(Math.max(runs.size(), 1), new Comparator<CoOccurrenceRunReader>() {
+            @Override
+            public int compare(CoOccurrenceRunReader o1, CoOccurrenceRunReader o2) {
+                return Long.compare(o1.getKey(), o2.getKey());
+            }
+        });
+
+        for (File run : runs) {
+            CoOccurrenceRunReader reader = new CoOccurrenceRunReader(run, bufferSize);
+            if (reader.advance()) {
+                queue.add(reader);
+            } else {
+                reader.finish();
+            }
+        }
+
+        CoOccurrenceRunWriter writer = new CoOccurrenceRunWriter(target);
+        try {
+            while (!queue.isEmpty()) {
+                CoOccurrenceRunReader reader = queue.poll();
+                long key = reader.getKey();
+                float weight = reader.getWeight();
+                advance(queue, reader);
+
+                // all other occurrences of this key are at the head of the queue now
+                while (!queue.isEmpty() && queue.peek().getKey() == key) {
+                    CoOccurrenceRunReader other = queue.poll();
+                    weight += other.getWeight();
+                    advance(queue, other);
+                }
+
+                writer.writeRecord(key, weight);
+            }
+        } finally {
+            writer.finish();
+            for (CoOccurrenceRunReader reader : queue)
+                reader.finish();
+        }
+
+        for (File run : runs) {
+            if (!run.equals(target))
+                run.delete();
+        }
+
+        return writer.getNumberOfRecords();
+    }
+
+    private static void advance(PriorityQueue<CoOccurrenceRunReader> queue, CoOccurrenceRunReader reader) {
+        if (reader.advance()) {
+            queue.add(reader);
+        } else {
+            reader.finish();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.deeplearning4j.models.glove.count;
+
+import lombok.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+
+/**
+ * Sequential cursor over a run written by {@link CoOccurrenceRunWriter}.
+ *
+ * Usage: call {@link #advance()}, and if it returns true, the current record is available via {@link #getKey()} and {@link #getWeight()}
+ */
+public class CoOccurrenceRunReader {
+    private final File file;
+    private final DataInputStream inputStream;
+    private long key;
+    private float weight;
+
+    public CoOccurrenceRunReader(@NonNull File file) {
+        this(file, 1024 * 1024);
+    }
+
+    public CoOccurrenceRunReader(@NonNull File file, int bufferSize) {
+        this.file = file;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file), bufferSize));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Moves to the next record
+     *
+     * @return false, if end of run was reached
+     */
+    public boolean advance() {
+        try {
+            key = inputStream.readLong();
+            weight = inputStream.readFloat();
+            return true;
+        } catch (EOFException e) {
+            return false;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public int getElement1() {
+        return PairCountMap.first(key);
+    }
+
+    public int getElement2() {
+        return PairCountMap.second(key);
+    }
+
+    public float getWeight() {
+        return weight;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void finish() {
+        try {
+            inputStream.close();
+        } catch (Exception e) {
+            //
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.deeplearning4j.models.glove.count;
+
+import lombok.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+/**
+ * Writer for sorted cooccurrence runs. Each record is 12 bytes: element1 index (int), element2 index (int) and
+ * weight (float), big-endian. Records are expected to be written in ascending {@link PairCountMap#key(int, int)} order,
+ * which is what {@link CoOccurrenceMerger} relies on.
+ */
+public class CoOccurrenceRunWriter {
+    public static final int RECORD_LENGTH = 12;
+
+    private final File file;
+    private final DataOutputStream outputStream;
+    private long numberOfRecords;
+
+    public CoOccurrenceRunWriter(@NonNull File file) {
+        this.file = file;
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void writeRecord(long key, float weight) {
+        try {
+            outputStream.writeLong(key);
+            outputStream.writeFloat(weight);
+            numberOfRecords++;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void finish() {
+        try {
+            outputStream.close();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
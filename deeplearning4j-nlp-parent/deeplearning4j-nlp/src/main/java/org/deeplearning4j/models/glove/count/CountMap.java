@@ -13,8 +13,10 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * WORK IN PROGRESS, PLEASE DO NOT USE
  *
+ * @deprecated cooccurrences are counted with {@link PairCountMap} now
  * @author raver119@gmail.com
  */
+@Deprecated
 public class CountMap<T extends SequenceElement> {
     private volatile Map<Pair<T, T>, AtomicDouble> backingMap = new ConcurrentHashMap<>();
 
@@ -0,0 +1,229 @@
+package org.deeplearning4j.models.glove.count;
+
+import java.util.Arrays;
+
+/**
+ * Primitive open-addressing hash map from element pair to float weight, used for cooccurrence counting.
+ * Pairs are packed into a single long key: element1 index in the upper 32 bits, element2 index in the lower 32 bits,
+ * so sorting keys gives (element1, element2) order.
+ *
+ * This map is NOT thread safe: each counting thread is expected to use its own instance.
+ */
+public class PairCountMap {
+    private static final long EMPTY = -1L;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    // bytes used per slot: one long key and one float value
+    public static final int BYTES_PER_SLOT = 12;
+
+    private long[] keys;
+    private float[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public PairCountMap() {
+        this(1 << 16);
+    }
+
+    public PairCountMap(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new float[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        size = 0;
+    }
+
+    public static long key(int element1, int element2) {
+        return ((long) element1 << 32) | (element2 & 0xFFFFFFFFL);
+    }
+
+    public static int first(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int second(long key) {
+        return (int) key;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public void incrementCount(int element1, int element2, float weight) {
+        incrementCount(key(element1, element2), weight);
+    }
+
+    public void incrementCount(long key, float weight) {
+        if (key < 0)
+            throw new IllegalArgumentException("Element indexes should be non-negative");
+
+        int slot = hash(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                values[slot] += weight;
+                return;
+            }
+            if (k == EMPTY) {
+                keys[slot] = key;
+                values[slot] = weight;
+                if (++size > resizeThreshold)
+                    rehash(keys.length << 1);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public float getCount(int element1, int element2) {
+        long key = key(element1, element2);
+        int slot = hash(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key)
+                return values[slot];
+            if (k == EMPTY)
+                return 0.0f;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        float[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY)
+                    slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return true, if the next insertion of a new pair will trigger a resize
+     */
+    public boolean isFull() {
+        return size + 1 > resizeThreshold;
+    }
+
+    /**
+     * @return bytes currently used by the backing arrays
+     */
+    public long getMemoryFootprint() {
+        return (long) keys.length * BYTES_PER_SLOT;
+    }
+
+    /**
+     * @return peak bytes used while growing the map: old and new backing arrays are both alive during rehash
+     */
+    public long getGrowthFootprint() {
+        return getMemoryFootprint() * 3;
+    }
+
+    /**
+     * This method moves all entries to the head of the backing arrays, sorted by key, and passes them to the writer.
+     * Map is cleared afterwards, but keeps its capacity, so no reallocation is needed for the next round.
+     *
+     * @param writer
+     */
+    public void drainSorted(CoOccurrenceRunWriter writer) {
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                keys[n] = keys[i];
+                values[n] = values[i];
+                n++;
+            }
+        }
+
+        sort(keys, values, 0, n - 1);
+
+        for (int i = 0; i < n; i++)
+            writer.writeRecord(keys[i], values[i]);
+
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // quicksort over parallel key/value arrays, to avoid boxing or index arrays
+    private static void sort(long[] keys, float[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pivot = median(keys[lo], keys[mid], keys[hi]);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot)
+                    i++;
+                while (keys[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    swap(keys, values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller part, iterate over the larger one
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j);
+                lo = i;
+            } else {
+                sort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            long k = keys[i];
+            float v = values[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > k) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = k;
+            values[j + 1] = v;
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        if (a < b)
+            return b < c ? b : (a < c ? c : a);
+        return a < c ? a : (b < c ? c : b);
+    }
+
+    private static void swap(long[] keys, float[] values, int i, int j) {
+        long k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        float v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+}
@@ -79,6 +79,7 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 .setTargetVocabCache(vocab)
                 .fetchLabels(trainSequenceVectors)
                 .setStopWords(stopWords)
+                .setWorkers(workers)
                 .build();
 
         if (existingModel != null && lookupTable instanceof InMemoryLookupTable && existingModel.lookupTable() instanceof InMemoryLookupTable) {
@@ -55,7 +55,9 @@ public class Huffman {
         Collections.sort(this.words, new Comparator<SequenceElement>() {
             @Override
             public int compare(SequenceElement o1, SequenceElement o2) {
-                return Double.compare(o2.getElementFrequency(), o1.getElementFrequency());
+                int res = Double.compare(o2.getElementFrequency(), o1.getElementFrequency());
+                // ties are broken by label, so indexes don't depend on the order elements were counted in
+                return res != 0 ? res : o1.getLabel().compareTo(o2.getLabel());
             }
 
         });
@@ -80,7 +82,8 @@ public class Huffman {
         a = words.size();
 
         while(a < words.size() * 2) {
-            count[a] = Integer.MAX_VALUE;
+            // sentinel for not yet created nodes: must exceed any sum of frequencies, which may not fit in to int
+            count[a] = Long.MAX_VALUE;
             a++;
         }
 
@@ -137,7 +140,7 @@ public class Huffman {
                 i++;
                 b = parentNode[b];
 
-            } while(b != words.size() * 2 - 2 && i < 39);
+            } while(b != words.size() * 2 - 2 && i < MAX_CODE_LENGTH - 1);
 
 
             words.get(a).setCodeLength(i);
@@ -0,0 +1,177 @@
+package org.deeplearning4j.models.word2vec.wordstore;
+
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open addressing hash table of element counts, used by {@link VocabConstructor} while scanning sources in parallel.
+ * Counts are kept in primitive arrays, so counting a token allocates nothing.
+ * <p>
+ * Not thread safe: each worker counts in to its own instance, which is then merged in to a shared one.
+ *
+ * @param <T> element type
+ */
+class ElementCounter<T extends SequenceElement> {
+    private String[] keys;
+    private long[] frequencies;
+    private long[] sequences;
+    private int[] lastSequence;
+    private boolean[] labels;
+    private Object[] elements;
+    private int size;
+    private int mask;
+
+    ElementCounter(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        frequencies = new long[capacity];
+        sequences = new long[capacity];
+        lastSequence = new int[capacity];
+        labels = new boolean[capacity];
+        elements = new Object[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    //Returns the slot of the given key, inserting it if it isn't there yet
+    private int slot(String key, Object element) {
+        int h = key.hashCode() * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != null) {
+            if (keys[i].equals(key))
+                return i;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        elements[i] = element;
+        lastSequence[i] = -1;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+            return slot(key, element);
+        }
+        return i;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        long[] oldFrequencies = frequencies;
+        long[] oldSequences = sequences;
+        int[] oldLastSequence = lastSequence;
+        boolean[] oldLabels = labels;
+        Object[] oldElements = elements;
+
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null)
+                continue;
+            int i = slot(oldKeys[j], oldElements[j]);
+            frequencies[i] = oldFrequencies[j];
+            sequences[i] = oldSequences[j];
+            lastSequence[i] = oldLastSequence[j];
+            labels[i] = oldLabels[j];
+        }
+    }
+
+    /**
+     * Counts one occurrence of an element
+     *
+     * @param key      element label
+     * @param element  element to use if the label is new
+     * @param sequence id of the current sequence: the sequence count is incremented once per sequence id
+     */
+    void count(String key, T element, int sequence) {
+        int i = slot(key, element);
+        frequencies[i]++;
+        if (lastSequence[i] != sequence) {
+            lastSequence[i] = sequence;
+            sequences[i]++;
+        }
+    }
+
+    /**
+     * Counts one occurrence of a sequence label. Labels are never pruned
+     */
+    void countLabel(T label, int sequence) {
+        int i = slot(label.getLabel(), label);
+        labels[i] = true;
+        frequencies[i]++;
+        if (lastSequence[i] != sequence) {
+            lastSequence[i] = sequence;
+            sequences[i]++;
+        }
+    }
+
+    /**
+     * Adds all counts of the other counter to this one
+     */
+    void merge(ElementCounter<T> other) {
+        for (int j = 0; j < other.keys.length; j++) {
+            if (other.keys[j] == null)
+                continue;
+            int i = slot(other.keys[j], other.elements[j]);
+            frequencies[i] += other.frequencies[j];
+            sequences[i] += other.sequences[j];
+            labels[i] |= other.labels[j];
+        }
+    }
+
+    /**
+     * Removes all elements, except labels, seen at most minFrequency times
+     *
+     * @return number of elements left, that aren't labels
+     */
+    int prune(long minFrequency) {
+        String[] oldKeys = keys;
+        long[] oldFrequencies = frequencies;
+        long[] oldSequences = sequences;
+        boolean[] oldLabels = labels;
+        Object[] oldElements = elements;
+
+        allocate(oldKeys.length);
+        int left = 0;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null || (!oldLabels[j] && oldFrequencies[j] <= minFrequency))
+                continue;
+            int i = slot(oldKeys[j], oldElements[j]);
+            frequencies[i] = oldFrequencies[j];
+            sequences[i] = oldSequences[j];
+            labels[i] = oldLabels[j];
+            if (!oldLabels[j])
+                left++;
+        }
+        return left;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the counted elements, with their frequency and sequences count set to the counted values
+     */
+    @SuppressWarnings("unchecked")
+    List<T> elements() {
+        List<T> ret = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null)
+                continue;
+            T element = (T) elements[i];
+            element.setElementFrequency(frequencies[i]);
+            element.setSequencesCount(sequences[i]);
+            if (labels[i]) {
+                element.setSpecial(true);
+                element.markAsLabel(true);
+            }
+            ret.add(element);
+        }
+        return ret;
+    }
+}
@@ -13,11 +13,22 @@ import org.deeplearning4j.text.invertedindex.InvertedIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -28,20 +39,29 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * It also can be used to simply build vocabulary out of arbitrary number of Sequences derived from arbitrary number of SequenceIterators
  *
+ * With more than one worker, sequences are read in batches and counted in parallel, in to primitive hash tables
+ * which are merged per source. If the number of distinct elements exceeds maxScanEntries, the rarest elements are
+ * pruned during the scan (as in the original word2vec ReduceVocab), so memory stays bounded on huge corpora.
+ *
  * @author raver119@gmail.com
  */
 public class VocabConstructor<T extends SequenceElement> {
     private List<VocabSource<T>> sources = new ArrayList<>();
     private VocabCache<T> cache;
-    private List<String> stopWords;
+    private Set<String> stopWords;
     private boolean useAdaGrad = false;
     private boolean fetchLabels = false;
     private int limit;
+    private int workers = 1;
+    private int maxScanEntries;
     private AtomicLong seqCount = new AtomicLong(0);
     private InvertedIndex<T> index;
 
     protected static final Logger log = LoggerFactory.getLogger(VocabConstructor.class);
 
+    // number of sequences counted by a worker at once
+    private static final int SCAN_BATCH_SIZE = 1024;
+
     private VocabConstructor() {
 
     }
@@ -183,6 +203,13 @@ public class VocabConstructor<T extends SequenceElement> {
 
             int sequences = 0;
             long counter = 0;
+            // InvertedIndex is filled in sequence order, so it's only supported by the serial scan
+            if (workers > 1 && index == null) {
+                counter = scanParallel(iterator, tempHolder);
+                sequences = tempHolder.totalNumberOfDocs();
+                elementsCounter.addAndGet(tempHolder.numWords());
+            }
+            // the parallel scan consumes the iterator, so this loop only runs for the serial scan
             while (iterator.hasMoreSequences()) {
                 Sequence<T> document = iterator.nextSequence();
                 seqCount.incrementAndGet();
@@ -298,14 +325,115 @@ public class VocabConstructor<T extends SequenceElement> {
         return cache;
     }
 
+    /**
+     * Counts all elements of the source on the worker threads, and puts them in to the holder
+     *
+     * @return total number of counted elements
+     */
+    private long scanParallel(SequenceIterator<T> iterator, AbstractCache<T> holder) {
+        final ElementCounter<T> shared = new ElementCounter<>(1024);
+        final long[] minReduce = new long[] {1};
+        final AtomicLong counter = new AtomicLong(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setDaemon(true);
+                t.setName("VocabConstructor worker " + t.getId());
+                return t;
+            }
+        });
+
+        Deque<Future<?>> pending = new ArrayDeque<>();
+        int documents = 0;
+        try {
+            while (iterator.hasMoreSequences()) {
+                final List<Sequence<T>> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+                while (batch.size() < SCAN_BATCH_SIZE && iterator.hasMoreSequences()) {
+                    batch.add(iterator.nextSequence());
+                    if (seqCount.incrementAndGet() % 100000 == 0)
+                        log.info("Sequences checked: [" + seqCount.get() + "], Current vocabulary size: [" + shared.size() + "]");
+                }
+                documents += batch.size();
+
+                // bounded number of batches in flight, so that reading doesn't outrun counting
+                if (pending.size() >= 2 * workers)
+                    get(pending.poll());
+
+                pending.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        ElementCounter<T> local = new ElementCounter<>(4096);
+                        counter.addAndGet(count(batch, local));
+
+                        synchronized (shared) {
+                            shared.merge(local);
+                            if (maxScanEntries > 0 && shared.size() > maxScanEntries) {
+                                int before = shared.size();
+                                while (shared.size() > maxScanEntries && shared.prune(minReduce[0]) > 0)
+                                    minReduce[0]++;
+                                log.info("Vocabulary pruned during scan: [" + before + "] -> [" + shared.size() + "] elements, min frequency: [" + minReduce[0] + "]");
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            while (!pending.isEmpty())
+                get(pending.poll());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        holder.incrementTotalDocCount(documents);
+        for (T element : shared.elements())
+            holder.addToken(element);
+
+        return counter.get();
+    }
+
+    private long count(List<Sequence<T>> batch, ElementCounter<T> counter) {
+        long count = 0;
+        for (int s = 0; s < batch.size(); s++) {
+            Sequence<T> document = batch.get(s);
+
+            if (fetchLabels && document.getSequenceLabel() != null)
+                counter.countLabel(document.getSequenceLabel(), s);
+
+            for (String token : document.asLabels()) {
+                if (token == null || token.isEmpty()) continue;
+                if (stopWords != null && stopWords.contains(token)) continue;
+
+                counter.count(token, document.getElementByLabel(token), s);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void get(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to build vocabulary", e.getCause());
+        }
+    }
+
     public static class Builder<T extends SequenceElement> {
         private List<VocabSource<T>> sources = new ArrayList<>();
         private VocabCache<T> cache;
-        private List<String> stopWords = new ArrayList<>();
+        private Collection<String> stopWords = new ArrayList<>();
         private boolean useAdaGrad = false;
         private boolean fetchLabels = false;
         private InvertedIndex<T> index;
         private int limit;
+        private int workers = 1;
+        private int maxScanEntries;
 
         public Builder() {
 
@@ -396,15 +524,44 @@ public class VocabConstructor<T extends SequenceElement> {
             return this;
         }
 
+        /**
+         * Sets the number of threads counting elements. Default value: 1
+         *
+         * PLEASE NOTE: if InvertedIndex is set, sources are always scanned with one thread
+         *
+         * @param workers
+         * @return
+         */
+        public Builder<T> setWorkers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of distinct elements kept per source during the parallel scan. When exceeded,
+         * elements with the lowest frequencies are removed, and the threshold grows, until the vocabulary fits again.
+         * Frequencies of rare elements become approximate, so this should be well above the expected vocabulary size.
+         * Default value: 0, no limit
+         *
+         * @param maxScanEntries
+         * @return
+         */
+        public Builder<T> setMaxScanEntries(int maxScanEntries) {
+            this.maxScanEntries = maxScanEntries;
+            return this;
+        }
+
         public VocabConstructor<T> build() {
             VocabConstructor<T> constructor = new VocabConstructor<>();
             constructor.sources = this.sources;
             constructor.cache = this.cache;
-            constructor.stopWords = this.stopWords;
+            constructor.stopWords = new HashSet<>(this.stopWords);
             constructor.useAdaGrad = this.useAdaGrad;
             constructor.fetchLabels = this.fetchLabels;
             constructor.limit = this.limit;
             constructor.index = this.index;
+            constructor.workers = Math.max(1, this.workers);
+            constructor.maxScanEntries = this.maxScanEntries;
 
             return constructor;
         }
@@ -21,6 +21,7 @@ package org.deeplearning4j.bagofwords.vectorizer;
 
 import org.datavec.api.util.ClassPathResource;
 import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.text.sentenceiterator.interoperability.SentenceIteratorConverter;
 import org.deeplearning4j.text.sentenceiterator.labelaware.LabelAwareFileSentenceIterator;
 import org.deeplearning4j.text.sentenceiterator.labelaware.LabelAwareSentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
@@ -35,6 +36,10 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -137,5 +142,55 @@ public class BagOfWordsVectorizerTest {
         assertEquals(array, dataSet.getFeatureMatrix());
     }
 
+    @Test
+    public void testSparseAndHashedVectorization() throws Exception {
+        File rootDir = new ClassPathResource("rootdir").getFile();
+        TokenizerFactory tokenizerFactory = new DefaultTokenizerFactory();
+
+        BagOfWordsVectorizer vectorizer = new BagOfWordsVectorizer.Builder()
+                .setMinWordFrequency(1)
+                .setTokenizerFactory(tokenizerFactory)
+                .setIterator(new LabelAwareFileSentenceIterator(rootDir))
+                .build();
+        vectorizer.fit();
 
+        SparseVector sparse = vectorizer.transformSparse("This is 2 file.");
+        assertEquals(vectorizer.transform("This is 2 file."), sparse.toDense());
+        assertEquals(4, sparse.nnz());
+
+        //Hashed counts need no vocabulary
+        BagOfWordsVectorizer hashed = new BagOfWordsVectorizer.Builder()
+                .setTokenizerFactory(tokenizerFactory)
+                .setIterator(new LabelAwareFileSentenceIterator(rootDir))
+                .setHashingDimension(1 << 20)
+                .build();
+        SparseVector hashedVector = hashed.transformSparse("file. file. This");
+        assertEquals(1 << 20, hashedVector.getLength());
+        assertEquals(2.0, hashedVector.get(hashed.featureIndex("file.")), 0.0);
+        assertEquals(1.0, hashedVector.get(hashed.featureIndex("This")), 0.0);
+
+        TextVectorizerDataSetIterator iterator = new TextVectorizerDataSetIterator.Builder(vectorizer,
+                        new SentenceIteratorConverter(new LabelAwareFileSentenceIterator(rootDir)))
+                .labels(vectorizer.getLabelsSource().getLabels())
+                .batchSize(1)
+                .workers(2)
+                .build();
+        int count = 0;
+        while (iterator.hasNext()) {
+            DataSet ds = iterator.next();
+            assertEquals(1, ds.numExamples());
+            assertEquals(vectorizer.numFeatures(), ds.getFeatureMatrix().columns());
+            assertEquals(1.0, ds.getLabels().sumNumber().doubleValue(), 0.0);
+            count++;
+        }
+        assertEquals(2, count);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        iterator.reset();
+        assertEquals(2, iterator.write(new DataOutputStream(bytes)));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        in.readInt();
+        assertEquals(vectorizer.numFeatures(), SparseVector.read(in).getLength());
+        iterator.shutdown();
+    }
 }
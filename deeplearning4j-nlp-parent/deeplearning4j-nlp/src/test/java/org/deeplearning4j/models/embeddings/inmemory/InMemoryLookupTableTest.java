@@ -12,8 +12,12 @@ import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreproc
 import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 import org.junit.Before;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.Assert.*;
 
 /**
@@ -167,4 +171,149 @@ public class InMemoryLookupTableTest {
 
         assertEquals(mem1.syn0.rows() + 3, mem2.syn0.rows());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIterateSampleMatchesReference() throws Exception {
+        TokenizerFactory t = new DefaultTokenizerFactory();
+        t.setTokenPreProcessor(new CommonPreprocessor());
+
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        SentenceTransformer transformer = new SentenceTransformer.Builder()
+                .iterator(new BasicLineIterator(new ClassPathResource("big/raw_sentences.txt").getFile()))
+                .tokenizerFactory(t)
+                .build();
+        VocabConstructor<VocabWord> vocabConstructor = new VocabConstructor.Builder<VocabWord>()
+                .addSource(new AbstractSequenceIterator.Builder<>(transformer).build(), 1)
+                .setTargetVocabCache(cache)
+                .build();
+        vocabConstructor.buildJointVocabulary(false, true);
+
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(50)
+                .cache(cache)
+                .seed(17)
+                .build();
+        table.resetWeights(true);
+
+        VocabWord w1 = cache.wordFor("day");
+        VocabWord w2 = cache.wordFor("night");
+        double alpha = 0.025;
+
+        //Reference hierarchical softmax update, on copies of the weights
+        INDArray syn0 = table.getSyn0().dup();
+        INDArray syn1 = table.getSyn1().dup();
+        INDArray l1 = syn0.getRow(w2.getIndex());
+        INDArray neu1e = Nd4j.create(1, 50);
+        double[] expTable = table.getExpTable();
+        for (int i = 0; i < w1.getCodeLength(); i++) {
+            INDArray s1 = syn1.getRow(w1.getPoints().get(i));
+            double dot = Nd4j.getBlasWrapper().dot(l1, s1);
+            if (dot < -6 || dot >= 6)
+                continue;
+            double f = (float) expTable[(int) ((dot + 6) * (expTable.length / 6.0 / 2.0))];
+            double g = (1 - w1.getCodes().get(i) - f) * alpha;
+            neu1e.addi(s1.mul(g));
+            s1.addi(l1.mul(g));
+        }
+        l1.addi(neu1e);
+
+        table.iterateSample(w1, w2, table.threadRandom(), alpha);
+
+        assertEquals(syn0.getRow(w2.getIndex()).sub(table.getSyn0().getRow(w2.getIndex())).norm2Number().doubleValue(), 0.0, 1e-5);
+        assertEquals(syn1.sub(table.getSyn1()).norm2Number().doubleValue(), 0.0, 1e-5);
+
+        //Learning rate decays with the shared word count, once a thread's batch is added to it
+        double start = table.currentLearningRate();
+        table.setTotalTrainingWords(100000);
+        table.incrementWordsProcessed(50000);
+        assertEquals(50000, table.getWordsProcessed());
+        assertEquals(start * 0.5, table.currentLearningRate(), 1e-6);
+    }
+
+    @Test
+    public void testIterateUsesCurrentLearningRate() throws Exception {
+        AbstractCache<VocabWord> cache = buildCache();
+        InMemoryLookupTable<VocabWord> table = buildTable(cache, 0);
+        InMemoryLookupTable<VocabWord> reference = buildTable(cache, 0);
+        INDArray initial = table.getSyn0().dup();
+
+        table.setTotalTrainingWords(100000);
+        table.incrementWordsProcessed(50000);
+        reference.setTotalTrainingWords(100000);
+        reference.incrementWordsProcessed(50000);
+
+        VocabWord w1 = cache.wordFor("day");
+        VocabWord w2 = cache.wordFor("night");
+        table.iterate(w1, w2);
+        reference.iterateSample(w1, w2, reference.threadRandom(), reference.currentLearningRate());
+
+        assertNotEquals(initial, table.getSyn0());
+        assertEquals(reference.getSyn0(), table.getSyn0());
+        assertEquals(reference.getSyn1(), table.getSyn1());
+    }
+
+    @Test
+    public void testDeprecatedIterateSampleUsesNextRandom() throws Exception {
+        AbstractCache<VocabWord> cache = buildCache();
+        InMemoryLookupTable<VocabWord> table1 = buildTable(cache, 5);
+        InMemoryLookupTable<VocabWord> table2 = buildTable(cache, 5);
+
+        VocabWord w1 = cache.wordFor("day");
+        VocabWord w2 = cache.wordFor("night");
+        AtomicLong nextRandom1 = new AtomicLong(7);
+        AtomicLong nextRandom2 = new AtomicLong(7);
+        for (int i = 0; i < 3; i++) {
+            table1.iterateSample(w1, w2, nextRandom1, 0.025);
+            table2.iterateSample(w1, w2, nextRandom2, 0.025);
+        }
+
+        assertNotEquals(7, nextRandom1.get());
+        assertEquals(nextRandom1.get(), nextRandom2.get());
+        assertEquals(table1.getSyn0(), table2.getSyn0());
+        assertEquals(table1.getSyn1Neg(), table2.getSyn1Neg());
+    }
+
+    private static AbstractCache<VocabWord> buildCache() throws Exception {
+        TokenizerFactory t = new DefaultTokenizerFactory();
+        t.setTokenPreProcessor(new CommonPreprocessor());
+
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        SentenceTransformer transformer = new SentenceTransformer.Builder()
+                .iterator(new BasicLineIterator(new ClassPathResource("big/raw_sentences.txt").getFile()))
+                .tokenizerFactory(t)
+                .build();
+        VocabConstructor<VocabWord> vocabConstructor = new VocabConstructor.Builder<VocabWord>()
+                .addSource(new AbstractSequenceIterator.Builder<>(transformer).build(), 1)
+                .setTargetVocabCache(cache)
+                .build();
+        vocabConstructor.buildJointVocabulary(false, true);
+        return cache;
+    }
+
+    private static InMemoryLookupTable<VocabWord> buildTable(AbstractCache<VocabWord> cache, double negative) {
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(50)
+                .cache(cache)
+                .negative(negative)
+                .seed(17)
+                .build();
+        table.resetWeights(true);
+        return table;
+    }
+
+    @Test
+    public void testXorShiftRandom() {
+        XorShiftRandom r1 = new XorShiftRandom(42);
+        XorShiftRandom r2 = new XorShiftRandom(42);
+        int[] counts = new int[10];
+        for (int i = 0; i < 100000; i++) {
+            int v = r1.nextInt(10);
+            assertEquals(v, r2.nextInt(10));
+            counts[v]++;
+        }
+        for (int c : counts)
+            assertTrue(c > 9000 && c < 11000);
+        double d = new XorShiftRandom(1).nextDouble();
+        assertTrue(d >= 0.0 && d < 1.0);
+    }
+}
@@ -8,6 +8,7 @@ import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.wordstore.VocabConstructor;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
 import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreprocessor;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
@@ -22,7 +23,9 @@ import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author raver119@gmail.com
@@ -89,4 +92,65 @@ public class AbstractCoOccurrencesTest {
         assertEquals(16, list.size());
         assertEquals(16, cnt);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSpillAndMerge1() throws Exception {
+        List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sentences.add("the quick brown fox jumps over the lazy dog number " + (i % 7));
+            sentences.add("a lazy dog sleeps while the fox runs " + (i % 5));
+        }
+
+        AbstractCache<VocabWord> vocabCache = new AbstractCache.Builder<VocabWord>().build();
+        AbstractSequenceIterator<VocabWord> sequenceIterator = new AbstractSequenceIterator.Builder<>(new SentenceTransformer.Builder()
+                .iterator(new CollectionSentenceIterator(sentences))
+                .tokenizerFactory(new DefaultTokenizerFactory())
+                .build())
+                .build();
+
+        VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
+                .addSource(sequenceIterator, 1)
+                .setTargetVocabCache(vocabCache)
+                .build();
+
+        constructor.buildJointVocabulary(false, true);
+
+        // default memory budget: everything fits into single run per thread
+        AbstractCoOccurrences<VocabWord> inMemory = new AbstractCoOccurrences.Builder<VocabWord>()
+                .iterate(sequenceIterator)
+                .vocabCache(vocabCache)
+                .symmetric(true)
+                .windowSize(5)
+                .workers(1)
+                .build();
+        inMemory.fit();
+
+        // tiny memory budget: lots of runs spilled by several threads, followed by multi-way merge
+        AbstractCoOccurrences<VocabWord> spilled = new AbstractCoOccurrences.Builder<VocabWord>()
+                .iterate(sequenceIterator)
+                .vocabCache(vocabCache)
+                .symmetric(true)
+                .windowSize(5)
+                .workers(3)
+                .maxMemoryBytes(1000)
+                .build();
+        spilled.fit();
+
+        assertTrue(inMemory.getNumberOfPairs() > 0);
+        assertEquals(inMemory.getNumberOfPairs(), spilled.getNumberOfPairs());
+
+        Iterator<Pair<Pair<VocabWord, VocabWord>, Double>> expected = inMemory.iterator();
+        Iterator<Pair<Pair<VocabWord, VocabWord>, Double>> actual = spilled.iterator();
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            Pair<Pair<VocabWord, VocabWord>, Double> e = expected.next();
+            Pair<Pair<VocabWord, VocabWord>, Double> a = actual.next();
+
+            assertEquals(e.getFirst().getFirst().getIndex(), a.getFirst().getFirst().getIndex());
+            assertEquals(e.getFirst().getSecond().getIndex(), a.getFirst().getSecond().getIndex());
+            assertEquals(e.getSecond(), a.getSecond(), 1e-3);
+            assertEquals(e.getSecond(), spilled.getCoOccurrenceCount(e.getFirst().getFirst(), e.getFirst().getSecond()), 1e-3);
+        }
+        assertFalse(actual.hasNext());
+    }
+}
@@ -1,6 +1,7 @@
 package org.deeplearning4j.models.word2vec.wordstore;
 
 import org.datavec.api.util.ClassPathResource;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
 import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
 import org.deeplearning4j.models.sequencevectors.iterators.AbstractSequenceIterator;
 import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
@@ -19,6 +20,8 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -348,4 +351,53 @@ public class VocabConstructorTest {
         assertTrue(cacheTarget.indexOf("Zscience") > sourceSize - 1);
         assertTrue(cacheTarget.indexOf("Zhealth") > sourceSize - 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParallelVocabularyMatchesSerial() throws Exception {
+        VocabCache<VocabWord> serial = new AbstractCache.Builder<VocabWord>().build();
+        VocabCache<VocabWord> parallel = new AbstractCache.Builder<VocabWord>().build();
+
+        for (VocabCache<VocabWord> cache : Arrays.asList(serial, parallel)) {
+            SentenceTransformer transformer = new SentenceTransformer.Builder()
+                    .iterator(new BasicLineIterator(new ClassPathResource("big/raw_sentences.txt").getFile()))
+                    .tokenizerFactory(t)
+                    .build();
+
+            AbstractSequenceIterator<VocabWord> sequenceIterator = new AbstractSequenceIterator.Builder<>(transformer)
+                    .build();
+
+            VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
+                    .addSource(sequenceIterator, 5)
+                    .setTargetVocabCache(cache)
+                    .setWorkers(cache == serial ? 1 : 4)
+                    .build();
+
+            constructor.buildJointVocabulary(false, true);
+        }
+
+        assertEquals(serial.numWords(), parallel.numWords());
+        assertEquals(serial.totalWordOccurrences(), parallel.totalWordOccurrences());
+        assertEquals(serial.totalNumberOfDocs(), parallel.totalNumberOfDocs());
+        for (VocabWord word : serial.vocabWords()) {
+            VocabWord other = parallel.wordFor(word.getLabel());
+            assertEquals(word.getElementFrequency(), other.getElementFrequency(), 0.0);
+            assertEquals(word.getSequencesCount(), other.getSequencesCount());
+            // indexes are ordered by frequency, then label: the same whatever order elements were counted in
+            assertEquals(word.getIndex(), other.getIndex());
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        WordVectorSerializer.writeVocabCacheBinary(parallel, bos);
+        VocabCache<VocabWord> restored = WordVectorSerializer.readVocabCacheBinary(new ByteArrayInputStream(bos.toByteArray()));
+
+        assertEquals(parallel.numWords(), restored.numWords());
+        for (int i = 0; i < parallel.numWords(); i++) {
+            VocabWord word = parallel.elementAtIndex(i);
+            VocabWord other = restored.elementAtIndex(i);
+            assertEquals(word.getLabel(), other.getLabel());
+            assertEquals(word.getElementFrequency(), other.getElementFrequency(), 0.0);
+            assertEquals(word.getCodes(), other.getCodes());
+            assertEquals(word.getPoints(), other.getPoints());
+        }
+    }
+}
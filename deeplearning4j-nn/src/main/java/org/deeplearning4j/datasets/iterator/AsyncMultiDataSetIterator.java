@@ -21,7 +21,10 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  *
  * @author Alex Black
  * @author raver119@gmail.com
+ * @deprecated Use {@link org.deeplearning4j.datasets.iterator.parallel.ParallelPrefetchMultiDataSetIterator},
+ * which supports multiple worker threads. With a single worker it is equivalent to this class.
  */
+@Deprecated
 public class AsyncMultiDataSetIterator implements MultiDataSetIterator {
 
     private final MultiDataSetIterator iterator;
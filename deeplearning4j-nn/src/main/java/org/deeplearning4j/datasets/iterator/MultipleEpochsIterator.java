@@ -21,12 +21,14 @@ package org.deeplearning4j.datasets.iterator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import lombok.Getter;
+import org.deeplearning4j.datasets.iterator.cache.DiskCachingDataSetIterator;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -79,6 +81,20 @@ public class MultipleEpochsIterator implements DataSetIterator {
         this.totalIterations = totalIterations;
     }
 
+    /**
+     * Iterate over the data for the specified number of epochs, caching the minibatches of the first epoch in a
+     * binary file on disk (see {@link DiskCachingDataSetIterator}). Later epochs are read from the memory-mapped
+     * cache, so the ETL of the underlying iterator is only done once, without holding the data set on heap.
+     *
+     * @param numEpochs number of epochs
+     * @param iter      underlying iterator
+     * @param cacheFile location of the cache file. An existing, complete cache file at this location is reused
+     */
+    public MultipleEpochsIterator(int numEpochs, DataSetIterator iter, File cacheFile) {
+        this.numEpochs = numEpochs;
+        this.iter = new DiskCachingDataSetIterator.Builder(iter, cacheFile).readahead(1, 4).build();
+    }
+
     public MultipleEpochsIterator(int numEpochs,DataSet ds) {
         this.numEpochs = numEpochs;
         this.ds = ds;
@@ -0,0 +1,178 @@
+package org.deeplearning4j.datasets.iterator.cache;
+
+import org.deeplearning4j.datasets.iterator.parallel.IndexedBatchSource;
+import org.deeplearning4j.util.DataSetBinaryCodec;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Memory-mapped reader for cache files written by {@link DataSetCacheWriter}.<br>
+ * The file is mapped in chunks of at most {@link #MAX_CHUNK_BYTES}, split on minibatch boundaries so that
+ * each minibatch can be decoded from a single mapping. Batches can be read concurrently from multiple threads,
+ * which allows this class to be used directly as an {@link IndexedBatchSource} for
+ * {@link org.deeplearning4j.datasets.iterator.parallel.ParallelPrefetchDataSetIterator}.
+ * <p>
+ * If shuffling is enabled, batch indexes are mapped through a random permutation that is regenerated on each
+ * {@link #reset()}. Shuffling is at minibatch granularity only: the examples within a minibatch are not shuffled.
+ */
+public class DataSetCacheReader implements IndexedBatchSource<DataSet>, Closeable {
+
+    public static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final int numBatches;
+    private final int numExamples;
+    private final long[] offsets;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final List<Long> chunkStarts = new ArrayList<>();
+    private final int[] batchChunk;
+    private final boolean shuffle;
+    private final Random rng;
+    private volatile int[] order;
+
+    public DataSetCacheReader(File file) throws IOException {
+        this(file, false, 0);
+    }
+
+    public DataSetCacheReader(File file, boolean shuffle, long seed) throws IOException {
+        this.file = file;
+        this.shuffle = shuffle;
+        this.rng = new Random(seed);
+        this.raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+        long size = channel.size();
+        if (!isValid(channel)) {
+            raf.close();
+            throw new IOException("Not a complete DataSet cache file: " + file);
+        }
+
+        ByteBuffer footer = readAt(channel, size - DataSetCacheWriter.FOOTER_LENGTH, DataSetCacheWriter.FOOTER_LENGTH);
+        long indexOffset = footer.getLong();
+        ByteBuffer indexHeader = readAt(channel, indexOffset, 8);
+        numBatches = indexHeader.getInt();
+        numExamples = indexHeader.getInt();
+        ByteBuffer index = readAt(channel, indexOffset + 8, 8 * (numBatches + 1));
+        offsets = new long[numBatches + 1];
+        for (int i = 0; i <= numBatches; i++) offsets[i] = index.getLong();
+
+        //Map chunks on batch boundaries
+        batchChunk = new int[numBatches];
+        int b = 0;
+        while (b < numBatches) {
+            long start = offsets[b];
+            int end = b + 1;
+            while (end < numBatches && offsets[end + 1] - start <= MAX_CHUNK_BYTES) end++;
+            long length = offsets[end] - start;
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Minibatch " + b + " is too large to map: " + length + " bytes");
+            chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+            chunkStarts.add(start);
+            for (int i = b; i < end; i++) batchChunk[i] = chunks.size() - 1;
+            b = end;
+        }
+
+        order = identity(numBatches);
+        if (shuffle) shuffleOrder();
+    }
+
+    /**
+     * @return True if the file exists and is a complete cache file (valid header and footer)
+     */
+    public static boolean isValid(File file) {
+        if (!file.isFile()) return false;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return isValid(raf.getChannel());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isValid(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < DataSetCacheWriter.HEADER_LENGTH + 8 + DataSetCacheWriter.FOOTER_LENGTH) return false;
+        ByteBuffer header = readAt(channel, 0, DataSetCacheWriter.HEADER_LENGTH);
+        if (header.getInt() != DataSetCacheWriter.MAGIC || header.getInt() != DataSetCacheWriter.VERSION) return false;
+        ByteBuffer footer = readAt(channel, size - DataSetCacheWriter.FOOTER_LENGTH, DataSetCacheWriter.FOOTER_LENGTH);
+        long indexOffset = footer.getLong();
+        return footer.getInt() == DataSetCacheWriter.MAGIC && indexOffset >= DataSetCacheWriter.HEADER_LENGTH
+                && indexOffset < size - DataSetCacheWriter.FOOTER_LENGTH;
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, position + bb.position()) < 0)
+                throw new IOException("Unexpected end of file");
+        }
+        bb.flip();
+        return bb;
+    }
+
+    @Override
+    public int numBatches() {
+        return numBatches;
+    }
+
+    public int numExamples() {
+        return numExamples;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public DataSet getBatch(int batchIndex, DataSet reuse) {
+        if (batchIndex < 0 || batchIndex >= numBatches)
+            throw new IndexOutOfBoundsException("Invalid batch index " + batchIndex + ", numBatches=" + numBatches);
+        int idx = order[batchIndex];
+        int c = batchChunk[idx];
+        //duplicate(): independent position per call, so concurrent reads are safe
+        ByteBuffer bb = chunks.get(c).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        bb.position((int) (offsets[idx] - chunkStarts.get(c)));
+        return DataSetBinaryCodec.read(bb, reuse);
+    }
+
+    /**
+     * Start a new pass over the data. If shuffling is enabled, a new batch order is generated
+     */
+    @Override
+    public void reset() {
+        if (shuffle) shuffleOrder();
+    }
+
+    private void shuffleOrder() {
+        int[] newOrder = identity(numBatches);
+        for (int i = numBatches - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int tmp = newOrder[i];
+            newOrder[i] = newOrder[j];
+            newOrder[j] = tmp;
+        }
+        order = newOrder;
+    }
+
+    private static int[] identity(int n) {
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) out[i] = i;
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunks.clear();
+        raf.close();
+    }
+}
@@ -0,0 +1,129 @@
+package org.deeplearning4j.datasets.iterator.cache;
+
+import org.deeplearning4j.util.DataSetBinaryCodec;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Writes DataSets to a binary cache file, readable with {@link DataSetCacheReader}.<br>
+ * Layout (all values little-endian):
+ * <pre>
+ * header:  int MAGIC, int VERSION
+ * records: one {@link DataSetBinaryCodec} encoded DataSet per minibatch
+ * index:   int numBatches, int numExamples, long[numBatches + 1] record offsets
+ * footer:  long indexOffset, int MAGIC
+ * </pre>
+ * Data is written to a temporary file next to the target, which is only renamed to the target file once
+ * {@link #close()} has written the index. A crash during writing therefore never leaves a cache file that
+ * looks valid.
+ */
+public class DataSetCacheWriter implements Closeable {
+
+    public static final int MAGIC = 0x444C3443;    //"DL4C"
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 8;
+    public static final int FOOTER_LENGTH = 12;
+
+    private final File file;
+    private final File tempFile;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private long[] offsets = new long[64];
+    private int numBatches = 0;
+    private int numExamples = 0;
+    private long position;
+    private boolean closed = false;
+
+    public DataSetCacheWriter(File file) throws IOException {
+        this.file = file;
+        this.tempFile = new File(file.getAbsolutePath() + ".tmp");
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        if (tempFile.exists() && !tempFile.delete())
+            throw new IOException("Could not delete stale temporary cache file " + tempFile);
+
+        this.raf = new RandomAccessFile(tempFile, "rw");
+        this.channel = raf.getChannel();
+        this.buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(header);
+        position = HEADER_LENGTH;
+    }
+
+    /**
+     * Append one minibatch to the cache
+     */
+    public void write(DataSet ds) throws IOException {
+        if (closed) throw new IllegalStateException("Cache writer has been closed");
+        int length = DataSetBinaryCodec.encodedLength(ds);
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(Math.max(length, 2 * buffer.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        DataSetBinaryCodec.write(ds, buffer);
+        buffer.flip();
+
+        if (numBatches + 1 >= offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        offsets[numBatches++] = position;
+        numExamples += ds.numExamples();
+        writeFully(buffer);
+        position += length;
+    }
+
+    public int numBatches() {
+        return numBatches;
+    }
+
+    /**
+     * Write the index and footer, and move the completed cache file into place
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        offsets[numBatches] = position;
+        long indexOffset = position;
+
+        ByteBuffer index = ByteBuffer.allocate(8 + 8 * (numBatches + 1) + FOOTER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(numBatches).putInt(numExamples);
+        for (int i = 0; i <= numBatches; i++) index.putLong(offsets[i]);
+        index.putLong(indexOffset).putInt(MAGIC);
+        index.flip();
+        writeFully(index);
+
+        channel.force(true);
+        raf.close();
+
+        if (file.exists() && !file.delete()) throw new IOException("Could not replace existing cache file " + file);
+        if (!tempFile.renameTo(file)) throw new IOException("Could not rename " + tempFile + " to " + file);
+    }
+
+    /**
+     * Close the underlying file without completing the cache. The partial file is deleted
+     */
+    public void abort() {
+        if (closed) return;
+        closed = true;
+        try {
+            raf.close();
+        } catch (IOException e) {
+            //No op
+        }
+        tempFile.delete();
+    }
+
+    private void writeFully(ByteBuffer bb) throws IOException {
+        while (bb.hasRemaining()) channel.write(bb);
+    }
+}
@@ -0,0 +1,309 @@
+package org.deeplearning4j.datasets.iterator.cache;
+
+import org.deeplearning4j.datasets.iterator.parallel.ParallelPrefetchDataSetIterator;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A DataSetIterator that caches the minibatches of an underlying iterator in a binary file on disk.<br>
+ * On the first pass, DataSets are returned from the underlying iterator and appended to the cache file (see
+ * {@link DataSetCacheWriter} for the format). All later passes are served from the memory-mapped cache file,
+ * so expensive ETL is only run once, while heap usage stays bounded by the minibatch size (unlike keeping
+ * all minibatches of the first epoch in memory).
+ * <p>
+ * Options:
+ * <ul>
+ *     <li>Shuffling of the minibatch order on each epoch (examples within a minibatch are not shuffled)</li>
+ *     <li>Asynchronous readahead of cached minibatches using one or more threads</li>
+ *     <li>Reuse of a complete cache file written in an earlier run: if enabled (default) and the cache file is valid,
+ *     the underlying iterator is not used at all. The caller is responsible for deleting the cache when the
+ *     underlying data or ETL changes</li>
+ * </ul>
+ * Note that the cache stores whatever the underlying iterator returns (i.e., after any preprocessor set on the
+ * underlying iterator). A preprocessor set on this iterator is applied every epoch. Values are cached in single precision.
+ */
+public class DiskCachingDataSetIterator implements DataSetIterator {
+    private static final Logger log = LoggerFactory.getLogger(DiskCachingDataSetIterator.class);
+
+    private final DataSetIterator underlying;
+    private final File cacheFile;
+    private final boolean shuffle;
+    private final long seed;
+    private final int readaheadThreads;
+    private final int readaheadQueueSize;
+
+    private DataSetCacheWriter writer;
+    private boolean cacheComplete;
+    private DataSetCacheReader reader;
+    private ParallelPrefetchDataSetIterator readahead;
+    private int readCursor;
+    private int cursor;
+    private DataSetPreProcessor preProcessor;
+
+    private DiskCachingDataSetIterator(Builder builder) {
+        this.underlying = builder.underlying;
+        this.cacheFile = builder.cacheFile;
+        this.shuffle = builder.shuffle;
+        this.seed = builder.seed;
+        this.readaheadThreads = builder.readaheadThreads;
+        this.readaheadQueueSize = builder.readaheadQueueSize;
+
+        try {
+            if (builder.reuseExisting && DataSetCacheReader.isValid(cacheFile)) {
+                log.info("Using existing DataSet cache file: {}", cacheFile);
+                openReader();
+            } else {
+                writer = new DataSetCacheWriter(cacheFile);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error initializing DataSet cache at " + cacheFile, e);
+        }
+    }
+
+    /**
+     * @return True if the cache is complete, and all data is being served from the cache file
+     */
+    public boolean isCached() {
+        return reader != null;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (reader == null) {
+            if (underlying.hasNext()) return true;
+            //First pass is done: complete the cache, but don't switch over until reset()
+            completeCache();
+            return false;
+        }
+        if (readahead != null) return readahead.hasNext();
+        return readCursor < reader.numBatches();
+    }
+
+    @Override
+    public DataSet next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        DataSet ds;
+        if (reader == null) {
+            ds = underlying.next();
+            try {
+                writer.write(ds);
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing to DataSet cache " + cacheFile, e);
+            }
+            if (preProcessor != null) preProcessor.preProcess(ds);
+        } else if (readahead != null) {
+            //Preprocessor is applied by the readahead threads
+            ds = readahead.next();
+        } else {
+            ds = reader.getBatch(readCursor++, null);
+            if (preProcessor != null) preProcessor.preProcess(ds);
+        }
+        cursor += ds.numExamples();
+        return ds;
+    }
+
+    @Override
+    public DataSet next(int num) {
+        throw new UnsupportedOperationException("next(int) not supported: minibatches are cached as returned by the underlying iterator");
+    }
+
+    @Override
+    public void reset() {
+        if (reader == null && !cacheComplete) {
+            //Reset during the first pass: the remaining data still needs to go into the cache
+            try {
+                while (underlying.hasNext()) writer.write(underlying.next());
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing to DataSet cache " + cacheFile, e);
+            }
+            completeCache();
+        }
+        if (reader == null) {
+            try {
+                openReader();
+            } catch (IOException e) {
+                throw new RuntimeException("Error opening DataSet cache " + cacheFile, e);
+            }
+        } else if (readahead != null) {
+            readahead.reset();
+        } else {
+            reader.reset();
+        }
+        readCursor = 0;
+        cursor = 0;
+    }
+
+    /**
+     * Hand back a DataSet previously returned by this iterator, so that its arrays can be reused when reading from
+     * the cache. Only has an effect when readahead is enabled
+     */
+    public void recycle(DataSet ds) {
+        if (readahead != null) readahead.recycle(ds);
+    }
+
+    /**
+     * Stop any readahead threads and release the cache file. The cache file itself is retained
+     */
+    public void shutdown() {
+        if (readahead != null) readahead.shutdown();
+        if (writer != null) writer.abort();
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Error closing DataSet cache file {}", cacheFile, e);
+            }
+        }
+    }
+
+    private void completeCache() {
+        if (writer == null || cacheComplete) return;
+        try {
+            writer.close();
+            cacheComplete = true;
+            log.info("DataSet cache complete: {} minibatches written to {}", writer.numBatches(), cacheFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Error completing DataSet cache " + cacheFile, e);
+        }
+    }
+
+    private void openReader() throws IOException {
+        writer = null;
+        reader = new DataSetCacheReader(cacheFile, shuffle, seed);
+        if (readaheadThreads > 0) {
+            readahead = new ParallelPrefetchDataSetIterator.Builder(reader)
+                    .workers(readaheadThreads)
+                    .queueSize(readaheadQueueSize)
+                    .recycleCapacity(readaheadQueueSize)
+                    .preProcessor(preProcessor)
+                    .metadata(underlying.batch(), reader.numExamples(), underlying.inputColumns(),
+                            underlying.totalOutcomes(), underlying.getLabels())
+                    .build();
+        }
+    }
+
+    @Override
+    public int totalExamples() {
+        return reader != null ? reader.numExamples() : underlying.totalExamples();
+    }
+
+    @Override
+    public int inputColumns() {
+        return underlying.inputColumns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return underlying.totalOutcomes();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        //Readahead is handled internally
+        return readaheadThreads <= 0;
+    }
+
+    @Override
+    public int batch() {
+        return underlying.batch();
+    }
+
+    @Override
+    public int cursor() {
+        return cursor;
+    }
+
+    @Override
+    public int numExamples() {
+        return totalExamples();
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+        if (readahead != null) readahead.setPreProcessor(preProcessor);
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return underlying.getLabels();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+
+    public static class Builder {
+        private DataSetIterator underlying;
+        private File cacheFile;
+        private boolean shuffle = false;
+        private long seed = System.currentTimeMillis();
+        private boolean reuseExisting = true;
+        private int readaheadThreads = 0;
+        private int readaheadQueueSize = 4;
+
+        /**
+         * @param underlying Iterator to cache. Only used for the first pass (or not at all, if a valid cache exists)
+         * @param cacheFile  Location of the cache file
+         */
+        public Builder(DataSetIterator underlying, File cacheFile) {
+            this.underlying = underlying;
+            this.cacheFile = cacheFile;
+        }
+
+        /**
+         * Shuffle the order of the cached minibatches on each epoch (default: false)
+         */
+        public Builder shuffle(boolean shuffle, long seed) {
+            this.shuffle = shuffle;
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * If true (default): use the cache file, if it already exists and is complete, without iterating over the
+         * underlying iterator. If false: always rebuild the cache
+         */
+        public Builder reuseExisting(boolean reuseExisting) {
+            this.reuseExisting = reuseExisting;
+            return this;
+        }
+
+        /**
+         * Read cached minibatches ahead of time using the specified number of threads (default: 0, no readahead)
+         */
+        public Builder readahead(int numThreads, int queueSize) {
+            this.readaheadThreads = numThreads;
+            this.readaheadQueueSize = queueSize;
+            return this;
+        }
+
+        public DiskCachingDataSetIterator build() {
+            return new DiskCachingDataSetIterator(this);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+/**
+ * A source of minibatches that can be accessed by index, in any order and from several threads at once.
+ * This is the preferred source for {@link ParallelPrefetchDataSetIterator} and
+ * {@link ParallelPrefetchMultiDataSetIterator}: each worker thread claims the next batch index and builds
+ * that batch independently of the other workers.
+ * <p>
+ * Implementations may fill the provided (recycled) instance instead of allocating a new one. Recycled
+ * instances are those previously handed back via {@code recycle(...)} on the prefetching iterator, so
+ * their arrays usually already have the right shape.
+ *
+ * @param <T> DataSet or MultiDataSet
+ */
+public interface IndexedBatchSource<T> {
+
+    /**
+     * @return Total number of batches available from this source
+     */
+    int numBatches();
+
+    /**
+     * Build the batch with the given index. Must be safe to call concurrently for different indexes.
+     *
+     * @param batchIndex Index of the batch, in the range 0 to {@link #numBatches()}-1
+     * @param reuse      A recycled instance whose arrays may be overwritten and returned, or null if none is available
+     * @return The batch
+     */
+    T getBatch(int batchIndex, T reuse);
+
+    /**
+     * Called before each new pass over the data (i.e., on reset). Sources that shuffle or reload
+     * between epochs should do so here.
+     */
+    void reset();
+}
@@ -0,0 +1,319 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.SplitTestAndTrain;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * ParallelPrefetchDataSetIterator loads DataSet objects in the background using multiple worker threads.<br>
+ * Unlike {@link org.deeplearning4j.datasets.iterator.AsyncDataSetIterator}, which uses a single thread, this
+ * iterator is intended for cases where building a minibatch is CPU bound (image decoding, parsing, preprocessing)
+ * and one thread cannot keep up with training.
+ * <p>
+ * Work can come from (see {@link PrefetchSources}):
+ * <ul>
+ *     <li>An {@link IndexedBatchSource}: all batch construction happens in parallel</li>
+ *     <li>A list of DataSetIterators (shards), one per worker</li>
+ *     <li>A single DataSetIterator: next() calls are serialized, but the preprocessor set on <i>this</i>
+ *     iterator via {@link #setPreProcessor(DataSetPreProcessor)} is applied in parallel by the workers</li>
+ * </ul>
+ * If ordering is enabled (the default), batches are returned in the same order as they are claimed from the source,
+ * i.e., in index order for indexed sources and in iterator order for a single iterator.
+ * <p>
+ * Batches handed back via {@link #recycle(DataSet)} are passed to {@link IndexedBatchSource#getBatch(int, Object)}
+ * so that their arrays can be overwritten instead of reallocated. Only recycle a DataSet once it (and any view of its
+ * arrays) is no longer used.
+ * <p>
+ * PLEASE NOTE: If used together with CUDA backend, please use it with caution.
+ */
+public class ParallelPrefetchDataSetIterator implements DataSetIterator {
+
+    private final ParallelPrefetcher<DataSet> prefetcher;
+    private final DataSetIterator underlying;
+    private final int batchSize;
+    private final int totalExamples;
+    private final int inputColumns;
+    private final int totalOutcomes;
+    private final List<String> labels;
+    private volatile DataSetPreProcessor preProcessor;
+    private int cursor = 0;
+    private DataSet leftover;
+
+    private ParallelPrefetchDataSetIterator(Builder builder) {
+        this.underlying = builder.iterator;
+        if (underlying != null) {
+            this.batchSize = underlying.batch();
+            this.totalExamples = underlying.totalExamples();
+            this.inputColumns = underlying.inputColumns();
+            this.totalOutcomes = underlying.totalOutcomes();
+            this.labels = underlying.getLabels();
+        } else {
+            this.batchSize = builder.batchSize;
+            this.totalExamples = builder.totalExamples;
+            this.inputColumns = builder.inputColumns;
+            this.totalOutcomes = builder.totalOutcomes;
+            this.labels = builder.labels;
+        }
+        this.preProcessor = builder.preProcessor;
+
+        this.prefetcher = new ParallelPrefetcher<DataSet>(builder.source, builder.numWorkers, builder.queueSize,
+                builder.ordered, builder.recycleCapacity, "ParallelPrefetchDataSetIterator") {
+            @Override
+            protected void postProcess(DataSet batch) {
+                DataSetPreProcessor p = preProcessor;
+                if (p != null) p.preProcess(batch);
+            }
+        };
+        prefetcher.start();
+    }
+
+    /**
+     * Hand a DataSet back to the iterator so that its arrays may be reused for a later batch.
+     * The DataSet must not be used by the caller after this method is called.
+     */
+    public void recycle(DataSet dataSet) {
+        prefetcher.recycle(dataSet);
+    }
+
+    /**
+     * @return Current queue depth, throughput and starvation metrics for this iterator
+     */
+    public PrefetchStats getStats() {
+        return prefetcher.getStats();
+    }
+
+    /**
+     * Shut down the worker threads.
+     * This is not typically necessary (worker threads are daemon threads and so shouldn't block the JVM from exiting).
+     * Behaviour of next(), hasNext() etc methods after shutdown is undefined
+     */
+    public void shutdown() {
+        prefetcher.shutdown();
+    }
+
+    /**
+     * Returns the next num examples. Batches are merged as required; if the batches produced by the source do not
+     * divide num exactly, the remaining examples of the last batch are returned first on the next call.
+     */
+    @Override
+    public synchronized DataSet next(int num) {
+        if (!hasNext()) throw new NoSuchElementException();
+        List<DataSet> list = new ArrayList<>();
+        int count = 0;
+        while (count < num && hasNext()) {
+            DataSet ds = nextBatch();
+            list.add(ds);
+            count += ds.numExamples();
+        }
+        DataSet out = (list.size() == 1 ? list.get(0) : DataSet.merge(list));
+        if (count > num) {
+            SplitTestAndTrain split = out.splitTestAndTrain(num);
+            out = split.getTrain();
+            leftover = split.getTest();
+        }
+        cursor += out.numExamples();
+        return out;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return leftover != null || prefetcher.hasNext();
+    }
+
+    @Override
+    public synchronized DataSet next() {
+        DataSet ds = nextBatch();
+        cursor += ds.numExamples();
+        return ds;
+    }
+
+    private DataSet nextBatch() {
+        if (leftover != null) {
+            DataSet ds = leftover;
+            leftover = null;
+            return ds;
+        }
+        return prefetcher.next();
+    }
+
+    @Override
+    public int totalExamples() {
+        return totalExamples;
+    }
+
+    @Override
+    public int inputColumns() {
+        return inputColumns;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return totalOutcomes;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return prefetcher.resetSupported();
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void reset() {
+        prefetcher.reset();
+        leftover = null;
+        cursor = 0;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public synchronized int cursor() {
+        return cursor;
+    }
+
+    @Override
+    public int numExamples() {
+        return totalExamples;
+    }
+
+    /**
+     * Set the preprocessor. This is applied by the worker threads, in parallel, to each batch.
+     */
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+
+    public static class Builder {
+        private PrefetchSource<DataSet> source;
+        private DataSetIterator iterator;
+        private int numWorkers = Runtime.getRuntime().availableProcessors();
+        private int queueSize = -1;
+        private boolean ordered = true;
+        private int recycleCapacity = 0;
+        private DataSetPreProcessor preProcessor;
+        private int batchSize = -1;
+        private int totalExamples = -1;
+        private int inputColumns = -1;
+        private int totalOutcomes = -1;
+        private List<String> labels;
+
+        /**
+         * Prefetch from a single DataSetIterator. Calls to next() on the iterator are serialized; preprocessing
+         * (via {@link #preProcessor(DataSetPreProcessor)}) is done in parallel.
+         * As with AsyncDataSetIterator, the iterator is reset first if it supports reset.
+         */
+        public Builder(DataSetIterator iterator) {
+            if (iterator.resetSupported()) iterator.reset();
+            this.iterator = iterator;
+            this.source = PrefetchSources.sequential(iterator);
+        }
+
+        /**
+         * Prefetch from an indexed source; batches are built fully in parallel
+         */
+        public Builder(IndexedBatchSource<DataSet> source) {
+            this.source = PrefetchSources.indexed(source);
+        }
+
+        /**
+         * Prefetch from a set of shards, with one worker per shard. Shards that support reset are reset first
+         */
+        public Builder(List<? extends DataSetIterator> shards) {
+            for (DataSetIterator shard : shards) {
+                if (shard.resetSupported()) shard.reset();
+            }
+            this.source = PrefetchSources.sharded(shards);
+            this.numWorkers = shards.size();
+            DataSetIterator first = shards.get(0);
+            this.batchSize = first.batch();
+            this.inputColumns = first.inputColumns();
+            this.totalOutcomes = first.totalOutcomes();
+            this.labels = first.getLabels();
+        }
+
+        /**
+         * Number of worker threads. Defaults to the number of available processors
+         */
+        public Builder workers(int numWorkers) {
+            this.numWorkers = numWorkers;
+            return this;
+        }
+
+        /**
+         * Maximum number of batches loaded ahead of the consumer. Defaults to 2 x the number of workers
+         */
+        public Builder queueSize(int queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * If true (default): batches are returned in source order. If false: batches are returned as soon as
+         * they are ready, which avoids head-of-line blocking on slow batches
+         */
+        public Builder ordered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * Maximum number of recycled DataSets to retain for reuse (see {@link ParallelPrefetchDataSetIterator#recycle(DataSet)}).
+         * Default: 0 (recycling disabled)
+         */
+        public Builder recycleCapacity(int recycleCapacity) {
+            this.recycleCapacity = recycleCapacity;
+            return this;
+        }
+
+        public Builder preProcessor(DataSetPreProcessor preProcessor) {
+            this.preProcessor = preProcessor;
+            return this;
+        }
+
+        /**
+         * Metadata reported by batch(), totalExamples(), etc when not wrapping a single DataSetIterator
+         */
+        public Builder metadata(int batchSize, int totalExamples, int inputColumns, int totalOutcomes, List<String> labels) {
+            this.batchSize = batchSize;
+            this.totalExamples = totalExamples;
+            this.inputColumns = inputColumns;
+            this.totalOutcomes = totalOutcomes;
+            this.labels = labels;
+            return this;
+        }
+
+        public ParallelPrefetchDataSetIterator build() {
+            if (queueSize <= 0) queueSize = 2 * numWorkers;
+            return new ParallelPrefetchDataSetIterator(this);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Multi-threaded prefetching iterator for MultiDataSets. This is the MultiDataSet equivalent of
+ * {@link ParallelPrefetchDataSetIterator}; see that class for details on sources, ordering and recycling.
+ * With a single worker and a single underlying iterator, this behaves like
+ * {@link org.deeplearning4j.datasets.iterator.AsyncMultiDataSetIterator}.
+ * <p>
+ * PLEASE NOTE: If used together with CUDA backend, please use it with caution.
+ */
+public class ParallelPrefetchMultiDataSetIterator implements MultiDataSetIterator {
+
+    private final ParallelPrefetcher<MultiDataSet> prefetcher;
+    private volatile MultiDataSetPreProcessor preProcessor;
+
+    private ParallelPrefetchMultiDataSetIterator(Builder builder) {
+        this.preProcessor = builder.preProcessor;
+        this.prefetcher = new ParallelPrefetcher<MultiDataSet>(builder.source, builder.numWorkers, builder.queueSize,
+                builder.ordered, builder.recycleCapacity, "ParallelPrefetchMultiDataSetIterator") {
+            @Override
+            protected void postProcess(MultiDataSet batch) {
+                MultiDataSetPreProcessor p = preProcessor;
+                if (p != null) p.preProcess(batch);
+            }
+        };
+        prefetcher.start();
+    }
+
+    /**
+     * Hand a MultiDataSet back to the iterator so that its arrays may be reused for a later batch.
+     * The MultiDataSet must not be used by the caller after this method is called.
+     */
+    public void recycle(MultiDataSet multiDataSet) {
+        prefetcher.recycle(multiDataSet);
+    }
+
+    /**
+     * @return Current queue depth, throughput and starvation metrics for this iterator
+     */
+    public PrefetchStats getStats() {
+        return prefetcher.getStats();
+    }
+
+    /**
+     * Shut down the worker threads.
+     * Behaviour of next(), hasNext() etc methods after shutdown is undefined
+     */
+    public void shutdown() {
+        prefetcher.shutdown();
+    }
+
+    /**
+     * Returns whole batches, merged until at least num examples have been collected. Unlike
+     * {@link ParallelPrefetchDataSetIterator#next(int)} batches are not split, so the result may contain more than
+     * num examples.
+     */
+    @Override
+    public MultiDataSet next(int num) {
+        if (!hasNext()) throw new NoSuchElementException();
+        List<MultiDataSet> list = new ArrayList<>();
+        int count = 0;
+        while (count < num && hasNext()) {
+            MultiDataSet mds = next();
+            list.add(mds);
+            count += mds.getFeatures(0).size(0);
+        }
+        if (list.size() == 1) return list.get(0);
+        return org.nd4j.linalg.dataset.MultiDataSet.merge(list);
+    }
+
+    /**
+     * Set the preprocessor. This is applied by the worker threads, in parallel, to each batch.
+     */
+    @Override
+    public void setPreProcessor(MultiDataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return prefetcher.resetSupported();
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        prefetcher.reset();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return prefetcher.hasNext();
+    }
+
+    @Override
+    public MultiDataSet next() {
+        return prefetcher.next();
+    }
+
+    @Override
+    public void remove() {
+        // no-op
+    }
+
+
+    public static class Builder {
+        private PrefetchSource<MultiDataSet> source;
+        private int numWorkers = Runtime.getRuntime().availableProcessors();
+        private int queueSize = -1;
+        private boolean ordered = true;
+        private int recycleCapacity = 0;
+        private MultiDataSetPreProcessor preProcessor;
+
+        /**
+         * Prefetch from a single MultiDataSetIterator. Calls to next() on the iterator are serialized;
+         * preprocessing (via {@link #preProcessor(MultiDataSetPreProcessor)}) is done in parallel.
+         * As with AsyncMultiDataSetIterator, the iterator is reset first if it supports reset.
+         */
+        public Builder(MultiDataSetIterator iterator) {
+            if (iterator.resetSupported()) iterator.reset();
+            this.source = PrefetchSources.sequential(iterator);
+        }
+
+        /**
+         * Prefetch from an indexed source; batches are built fully in parallel
+         */
+        public Builder(IndexedBatchSource<MultiDataSet> source) {
+            this.source = PrefetchSources.indexed(source);
+        }
+
+        /**
+         * Prefetch from a set of shards, with one worker per shard. Shards that support reset are reset first
+         */
+        public Builder(List<? extends MultiDataSetIterator> shards) {
+            for (MultiDataSetIterator shard : shards) {
+                if (shard.resetSupported()) shard.reset();
+            }
+            this.source = PrefetchSources.shardedMulti(shards);
+            this.numWorkers = shards.size();
+        }
+
+        /**
+         * Number of worker threads. Defaults to the number of available processors
+         */
+        public Builder workers(int numWorkers) {
+            this.numWorkers = numWorkers;
+            return this;
+        }
+
+        /**
+         * Maximum number of batches loaded ahead of the consumer. Defaults to 2 x the number of workers
+         */
+        public Builder queueSize(int queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * If true (default): batches are returned in source order. If false: batches are returned as soon as they are ready
+         */
+        public Builder ordered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * Maximum number of recycled MultiDataSets to retain for reuse. Default: 0 (recycling disabled)
+         */
+        public Builder recycleCapacity(int recycleCapacity) {
+            this.recycleCapacity = recycleCapacity;
+            return this;
+        }
+
+        public Builder preProcessor(MultiDataSetPreProcessor preProcessor) {
+            this.preProcessor = preProcessor;
+            return this;
+        }
+
+        public ParallelPrefetchMultiDataSetIterator build() {
+            if (queueSize <= 0) queueSize = 2 * numWorkers;
+            return new ParallelPrefetchMultiDataSetIterator(this);
+        }
+    }
+}
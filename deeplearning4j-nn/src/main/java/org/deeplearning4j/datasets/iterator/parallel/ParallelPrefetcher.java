@@ -0,0 +1,313 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Worker pool shared by {@link ParallelPrefetchDataSetIterator} and {@link ParallelPrefetchMultiDataSetIterator}.
+ * <p>
+ * At most {@code capacity} batches are in flight (claimed but not yet consumed) at any time; this is enforced
+ * with a semaphore acquired by a worker before claiming and released by the consumer after taking a batch.
+ * In ordered mode, completed batches are placed into a ring of {@code capacity} slots indexed by sequence
+ * number, and the consumer always waits for the next sequence number. As the number of batches in flight
+ * never exceeds the ring size, two in-flight batches can never map to the same slot.
+ *
+ * @param <T> DataSet or MultiDataSet
+ */
+abstract class ParallelPrefetcher<T> {
+    private static final Logger log = LoggerFactory.getLogger(ParallelPrefetcher.class);
+
+    private final PrefetchSource<T> source;
+    private final int numWorkers;
+    private final int capacity;
+    private final boolean ordered;
+    private final int poolCapacity;
+    private final String threadName;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ConcurrentLinkedQueue<T> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger poolSize = new AtomicInteger(0);
+
+    //All of the following are guarded by lock
+    private final Object[] slots;
+    private final ArrayDeque<T> completed;
+    private long nextSequence;
+    private int available;
+    private int liveWorkers;
+
+    private Semaphore permits;
+    private Thread[] threads;
+    private volatile boolean killed;
+    private volatile Throwable exception;
+
+    private final AtomicLong batchesProduced = new AtomicLong(0);
+    private final AtomicLong batchesRecycled = new AtomicLong(0);
+    private final AtomicLong produceNanos = new AtomicLong(0);
+    private final AtomicLong starvationEvents = new AtomicLong(0);
+    private final AtomicLong starvationNanos = new AtomicLong(0);
+
+    ParallelPrefetcher(PrefetchSource<T> source, int numWorkers, int capacity, boolean ordered, int poolCapacity,
+                       String threadName) {
+        if (numWorkers <= 0) throw new IllegalArgumentException("Number of workers must be > 0");
+        if (capacity <= 0) throw new IllegalArgumentException("Queue size must be > 0");
+        if (source.maxWorkers() > 0) numWorkers = Math.min(numWorkers, source.maxWorkers());
+        //Each worker needs at least one permit to be useful
+        capacity = Math.max(capacity, numWorkers);
+
+        this.source = source;
+        this.numWorkers = numWorkers;
+        this.capacity = capacity;
+        this.ordered = ordered;
+        this.poolCapacity = poolCapacity;
+        this.threadName = threadName;
+        this.slots = ordered ? new Object[capacity] : null;
+        this.completed = ordered ? null : new ArrayDeque<T>(capacity);
+    }
+
+    /**
+     * Applied by the worker thread to each batch after it has been produced (for example: preprocessing)
+     */
+    protected abstract void postProcess(T batch);
+
+    void start() {
+        killed = false;
+        exception = null;
+        nextSequence = 0;
+        available = 0;
+        liveWorkers = numWorkers;
+        permits = new Semaphore(capacity);
+        threads = new Thread[numWorkers];
+
+        /**
+         * We want to ensure, that background threads will have the same thread->device affinity, as master thread
+         */
+        Integer deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+        for (int i = 0; i < numWorkers; i++) {
+            threads[i] = new Thread(new Worker(i), threadName + "-" + i);
+            Nd4j.getAffinityManager().attachThreadToDevice(threads[i], deviceId);
+            threads[i].setDaemon(true);
+        }
+        for (Thread t : threads) t.start();
+    }
+
+    /**
+     * Stop all workers, waiting (briefly) for them to exit. Batches that were completed but not consumed are discarded.
+     */
+    void shutdown() {
+        killed = true;
+        if (threads == null) return;
+        for (Thread t : threads) t.interrupt();
+        for (Thread t : threads) {
+            try {
+                t.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        lock.lock();
+        try {
+            if (ordered) {
+                for (int i = 0; i < slots.length; i++) slots[i] = null;
+            } else {
+                completed.clear();
+            }
+            available = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void reset() {
+        if (!source.resetSupported())
+            throw new UnsupportedOperationException("Cannot reset prefetching iterator: source does not support reset");
+        shutdown();
+        source.reset();
+        start();
+    }
+
+    boolean resetSupported() {
+        return source.resetSupported();
+    }
+
+    boolean hasNext() {
+        lock.lock();
+        try {
+            return awaitNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T next() {
+        lock.lock();
+        try {
+            if (!awaitNext()) throw new NoSuchElementException();
+            T out;
+            if (ordered) {
+                int idx = (int) (nextSequence % capacity);
+                out = (T) slots[idx];
+                slots[idx] = null;
+            } else {
+                out = completed.poll();
+            }
+            nextSequence++;
+            available--;
+            permits.release();
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand a batch back so that its arrays can be reused by a worker. The caller must not access the batch afterwards.
+     */
+    void recycle(T batch) {
+        if (batch == null) return;
+        if (poolSize.incrementAndGet() > poolCapacity) {
+            poolSize.decrementAndGet();
+            return;
+        }
+        pool.offer(batch);
+    }
+
+    PrefetchStats getStats() {
+        int depth;
+        lock.lock();
+        try {
+            depth = available;
+        } finally {
+            lock.unlock();
+        }
+        long produced = batchesProduced.get();
+        double avgMs = (produced == 0 ? 0.0 : produceNanos.get() / (1e6 * produced));
+        return new PrefetchStats(numWorkers, depth, produced, avgMs, starvationEvents.get(),
+                TimeUnit.NANOSECONDS.toMillis(starvationNanos.get()), batchesRecycled.get());
+    }
+
+    int getNumWorkers() {
+        return numWorkers;
+    }
+
+    //Must be called with lock held
+    private boolean awaitNext() {
+        long waitStart = -1;
+        try {
+            while (true) {
+                if (exception != null) rethrow(exception);
+                if (isNextAvailable()) return true;
+                if (liveWorkers == 0) return false;
+
+                if (waitStart < 0) {
+                    waitStart = System.nanoTime();
+                    starvationEvents.incrementAndGet();
+                }
+                try {
+                    changed.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for next batch", e);
+                }
+            }
+        } finally {
+            if (waitStart >= 0) starvationNanos.addAndGet(System.nanoTime() - waitStart);
+        }
+    }
+
+    //Errors (out of memory etc.) are rethrown as-is, so that the consumer does not see them as the end of the data
+    private static void rethrow(Throwable t) {
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        throw new RuntimeException("Prefetch worker failed", t);
+    }
+
+    private boolean isNextAvailable() {
+        if (ordered) return slots[(int) (nextSequence % capacity)] != null;
+        return !completed.isEmpty();
+    }
+
+    private void publish(long sequence, T batch) {
+        lock.lock();
+        try {
+            if (ordered) {
+                slots[(int) (sequence % capacity)] = batch;
+            } else {
+                completed.add(batch);
+            }
+            available++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final int idx;
+
+        private Worker(int idx) {
+            this.idx = idx;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!killed) {
+                    permits.acquire();
+                    long sequence = source.claim(idx);
+                    if (sequence < 0) {
+                        permits.release();
+                        break;
+                    }
+
+                    T reuse = pool.poll();
+                    if (reuse != null) poolSize.decrementAndGet();
+
+                    long start = System.nanoTime();
+                    T batch = source.produce(idx, sequence, reuse);
+                    if (batch == null)
+                        throw new IllegalStateException("Source returned null batch for sequence number " + sequence);
+                    postProcess(batch);
+
+                    if (Nd4j.getExecutioner() instanceof GridExecutioner)
+                        ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+
+                    produceNanos.addAndGet(System.nanoTime() - start);
+                    batchesProduced.incrementAndGet();
+                    if (reuse != null && batch == reuse) batchesRecycled.incrementAndGet();
+
+                    publish(sequence, batch);
+                }
+            } catch (InterruptedException e) {
+                if (!killed) exception = new RuntimeException("Prefetch worker interrupted unexpectedly", e);
+            } catch (Throwable e) {
+                if (!killed) {
+                    log.warn("Prefetch worker {} failed", idx, e);
+                    exception = e;
+                }
+            } finally {
+                lock.lock();
+                try {
+                    liveWorkers--;
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
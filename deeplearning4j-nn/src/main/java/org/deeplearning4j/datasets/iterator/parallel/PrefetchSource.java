@@ -0,0 +1,46 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+/**
+ * Work distribution contract used by the parallel prefetching iterators.<br>
+ * Each worker repeatedly calls {@link #claim(int)} to obtain the sequence number of the next batch it is
+ * responsible for, and then {@link #produce(int, long, Object)} to build that batch. Claiming must be cheap
+ * and thread safe, and must hand out contiguous sequence numbers starting at 0 (these define the output
+ * order when ordering is enabled). Producing is where the expensive work happens, and is executed
+ * concurrently by all workers.
+ *
+ * @param <T> DataSet or MultiDataSet
+ * @see PrefetchSources
+ */
+public interface PrefetchSource<T> {
+
+    /**
+     * Claim the next batch for the given worker
+     *
+     * @param worker Index of the worker thread, 0 to numWorkers-1
+     * @return Sequence number of the claimed batch, or -1 if this worker has no more batches to produce
+     */
+    long claim(int worker);
+
+    /**
+     * Produce the batch previously claimed by this worker
+     *
+     * @param worker   Index of the worker thread
+     * @param sequence Sequence number returned by {@link #claim(int)}
+     * @param reuse    A recycled instance that may be overwritten, or null
+     * @return The batch
+     */
+    T produce(int worker, long sequence, T reuse);
+
+    /**
+     * Maximum number of workers that can usefully pull from this source (for example, the number of shards),
+     * or -1 if there is no limit
+     */
+    int maxWorkers();
+
+    boolean resetSupported();
+
+    /**
+     * Reset the source for another pass. Only called when no workers are running.
+     */
+    void reset();
+}
@@ -0,0 +1,217 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Factory methods for the {@link PrefetchSource} implementations used by the parallel prefetching iterators.
+ * Three kinds of sources are supported:
+ * <ul>
+ *     <li><b>Indexed</b>: an {@link IndexedBatchSource}. Workers claim batch indexes and build batches fully in parallel.</li>
+ *     <li><b>Sharded</b>: one iterator per worker. Each worker pulls exclusively from its own shard.</li>
+ *     <li><b>Sequential</b>: a single iterator. Calls to next() on the underlying iterator are serialized, but any
+ *     preprocessing set on the prefetching iterator is applied in parallel by the workers.</li>
+ * </ul>
+ */
+public class PrefetchSources {
+
+    private PrefetchSources() {
+    }
+
+    public static <T> PrefetchSource<T> indexed(IndexedBatchSource<T> source) {
+        return new IndexedSource<>(source);
+    }
+
+    public static PrefetchSource<DataSet> sequential(final DataSetIterator iterator) {
+        return new SequentialSource<DataSet>(iterator) {
+            @Override
+            public boolean resetSupported() {
+                return iterator.resetSupported();
+            }
+
+            @Override
+            public void reset() {
+                super.reset();
+                iterator.reset();
+            }
+        };
+    }
+
+    public static PrefetchSource<MultiDataSet> sequential(final MultiDataSetIterator iterator) {
+        return new SequentialSource<MultiDataSet>(iterator) {
+            @Override
+            public boolean resetSupported() {
+                return iterator.resetSupported();
+            }
+
+            @Override
+            public void reset() {
+                super.reset();
+                iterator.reset();
+            }
+        };
+    }
+
+    public static PrefetchSource<DataSet> sharded(final List<? extends DataSetIterator> shards) {
+        return new ShardedSource<DataSet>(new ArrayList<Iterator<DataSet>>(shards)) {
+            @Override
+            public boolean resetSupported() {
+                for (DataSetIterator iter : shards) {
+                    if (!iter.resetSupported()) return false;
+                }
+                return true;
+            }
+
+            @Override
+            public void reset() {
+                super.reset();
+                for (DataSetIterator iter : shards) iter.reset();
+            }
+        };
+    }
+
+    public static PrefetchSource<MultiDataSet> shardedMulti(final List<? extends MultiDataSetIterator> shards) {
+        return new ShardedSource<MultiDataSet>(new ArrayList<Iterator<MultiDataSet>>(shards)) {
+            @Override
+            public boolean resetSupported() {
+                for (MultiDataSetIterator iter : shards) {
+                    if (!iter.resetSupported()) return false;
+                }
+                return true;
+            }
+
+            @Override
+            public void reset() {
+                super.reset();
+                for (MultiDataSetIterator iter : shards) iter.reset();
+            }
+        };
+    }
+
+
+    private static class IndexedSource<T> implements PrefetchSource<T> {
+        private final IndexedBatchSource<T> source;
+        private final AtomicInteger nextIndex = new AtomicInteger(0);
+
+        private IndexedSource(IndexedBatchSource<T> source) {
+            this.source = source;
+        }
+
+        @Override
+        public long claim(int worker) {
+            int numBatches = source.numBatches();
+            while (true) {
+                int idx = nextIndex.get();
+                if (idx >= numBatches) return -1;
+                //CAS rather than getAndIncrement: claims past the end must not leave gaps in the sequence
+                if (nextIndex.compareAndSet(idx, idx + 1)) return idx;
+            }
+        }
+
+        @Override
+        public T produce(int worker, long sequence, T reuse) {
+            return source.getBatch((int) sequence, reuse);
+        }
+
+        @Override
+        public int maxWorkers() {
+            return -1;
+        }
+
+        @Override
+        public boolean resetSupported() {
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            source.reset();
+            nextIndex.set(0);
+        }
+    }
+
+    private abstract static class SequentialSource<T> implements PrefetchSource<T> {
+        private final Iterator<T> iterator;
+        private final Object lock = new Object();
+        private long nextSequence = 0;
+        //Batches fetched in claim(), waiting for produce() on the same worker
+        private final List<T> claimed = new ArrayList<>();
+
+        private SequentialSource(Iterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public long claim(int worker) {
+            synchronized (lock) {
+                if (!iterator.hasNext()) return -1;
+                T next = iterator.next();
+                while (claimed.size() <= worker) claimed.add(null);
+                claimed.set(worker, next);
+                return nextSequence++;
+            }
+        }
+
+        @Override
+        public T produce(int worker, long sequence, T reuse) {
+            synchronized (lock) {
+                return claimed.set(worker, null);
+            }
+        }
+
+        @Override
+        public int maxWorkers() {
+            return -1;
+        }
+
+        @Override
+        public void reset() {
+            synchronized (lock) {
+                claimed.clear();
+                nextSequence = 0;
+            }
+        }
+    }
+
+    private abstract static class ShardedSource<T> implements PrefetchSource<T> {
+        private final List<Iterator<T>> shards;
+        private final AtomicLong nextSequence = new AtomicLong(0);
+
+        private ShardedSource(List<Iterator<T>> shards) {
+            if (shards.isEmpty()) throw new IllegalArgumentException("At least one shard is required");
+            this.shards = shards;
+        }
+
+        @Override
+        public long claim(int worker) {
+            if (worker >= shards.size() || !shards.get(worker).hasNext()) return -1;
+            return nextSequence.getAndIncrement();
+        }
+
+        @Override
+        public T produce(int worker, long sequence, T reuse) {
+            Iterator<T> shard = shards.get(worker);
+            if (!shard.hasNext()) throw new NoSuchElementException("Shard " + worker + " exhausted after claim");
+            return shard.next();
+        }
+
+        @Override
+        public int maxWorkers() {
+            return shards.size();
+        }
+
+        @Override
+        public void reset() {
+            nextSequence.set(0);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.deeplearning4j.datasets.iterator.parallel;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of the runtime metrics of a parallel prefetching iterator.
+ * Starvation refers to time the consuming (training) thread spent blocked in hasNext()/next() waiting
+ * for a batch: if this is a significant fraction of wall clock time, more workers are required.
+ */
+@Data
+@AllArgsConstructor
+public class PrefetchStats {
+    /** Number of worker threads */
+    private int numWorkers;
+    /** Number of completed batches currently waiting to be consumed */
+    private int queueDepth;
+    /** Total number of batches produced by the workers since creation */
+    private long batchesProduced;
+    /** Average time taken by a worker to produce one batch, in milliseconds */
+    private double averageProduceTimeMs;
+    /** Number of times the consumer had to wait for a batch */
+    private long starvationEvents;
+    /** Total time the consumer spent waiting for batches, in milliseconds */
+    private long starvationTimeMs;
+    /** Number of batches produced into a recycled instance rather than a newly allocated one */
+    private long batchesRecycled;
+}
@@ -0,0 +1,18 @@
+package org.deeplearning4j.nn.api;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Receives network outputs (or per-example scores) one minibatch at a time, from the streaming output and
+ * scoreExamples methods of {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork} and
+ * {@link org.deeplearning4j.nn.graph.ComputationGraph}.
+ * Minibatches are passed in iterator order, on the thread that called the streaming method.
+ */
+public interface OutputConsumer {
+
+    /**
+     * @param exampleOffset index of the first example of this minibatch, in the whole data set
+     * @param outputs       outputs for this minibatch: one array per network output
+     */
+    void consume(long exampleOffset, INDArray... outputs);
+}
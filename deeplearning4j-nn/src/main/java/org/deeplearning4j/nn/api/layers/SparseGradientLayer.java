@@ -0,0 +1,29 @@
+package org.deeplearning4j.nn.api.layers;
+
+import org.deeplearning4j.nn.api.Layer;
+
+/**
+ * Interface for layers where the gradient of a parameter may be non-zero in only a few of its rows, such as the
+ * weights of an embedding layer. Updaters may then update only those rows of the parameter and of the updater state.
+ */
+public interface SparseGradientLayer extends Layer {
+
+    /**
+     * Get the rows of the given parameter's gradient that may be non-zero, as calculated by the last backprop.
+     * All other rows of the gradient are zero. The updated gradient may be written to these rows in place.
+     *
+     * @param param Parameter name
+     * @return Sorted, distinct row indices, or null if the gradient for the parameter is dense
+     */
+    int[] sparseGradientRows(String param);
+
+    /**
+     * Set the rows reported by {@link #sparseGradientRows(String)}, after the gradient was written by something other
+     * than this layer's backprop, such as when the gradients of several micro-batches are accumulated. Has no effect
+     * if the gradient for the parameter is dense.
+     *
+     * @param param Parameter name
+     * @param rows  Sorted, distinct row indices: all other rows of the gradient must be zero
+     */
+    void setSparseGradientRows(String param, int[] rows);
+}
@@ -74,6 +74,9 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
     protected BackpropType backpropType = BackpropType.Standard;
     protected int tbpttFwdLength = 20;
     protected int tbpttBackLength = 20;
+    //Gradient accumulation: micro-batches per minibatch, and iterator minibatches per updater step
+    protected int microBatches = 1;
+    protected int accumulationSteps = 1;
 
     protected NeuralNetConfiguration defaultConfiguration;
 
@@ -197,6 +200,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         conf.backpropType = backpropType;
         conf.tbpttFwdLength = tbpttFwdLength;
         conf.tbpttBackLength = tbpttBackLength;
+        conf.microBatches = microBatches;
+        conf.accumulationSteps = accumulationSteps;
         conf.defaultConfiguration = defaultConfiguration.clone();
 
         return conf;
@@ -393,6 +398,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         protected BackpropType backpropType = BackpropType.Standard;
         protected int tbpttFwdLength = 20;
         protected int tbpttBackLength = 20;
+        protected int microBatches = 1;
+        protected int accumulationSteps = 1;
 
         protected Map<String, InputPreProcessor> inputPreProcessors = new LinkedHashMap<>();
 
@@ -486,6 +493,33 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        /**
+         * Split each minibatch into this many micro-batches of (nearly) equal size. The gradients of the micro-batches
+         * are accumulated, and a single updater step is done with the gradient of the whole minibatch; activation
+         * memory is then that of one micro-batch. Not applicable with backpropType(BackpropType.TruncatedBPTT).<br>
+         * Note that layers using minibatch statistics (batch normalization) compute them per micro-batch.
+         *
+         * @param microBatches Number of micro-batches per minibatch; default 1 (no splitting)
+         */
+        public GraphBuilder microBatches(int microBatches) {
+            this.microBatches = microBatches;
+            return this;
+        }
+
+        /**
+         * When fitting from an iterator: the number of iterator minibatches to accumulate the gradients of, before
+         * doing a single updater step. Each of the minibatches is fit as one micro-batch (or microBatches micro-batches),
+         * so the effective minibatch size is accumulationSteps times that of the iterator, at the activation memory
+         * of one minibatch. Not applicable with backpropType(BackpropType.TruncatedBPTT). Time series minibatches of
+         * different lengths are padded at the end to the longest one, with mask arrays marking the padding
+         *
+         * @param accumulationSteps Number of iterator minibatches per updater step; default 1
+         */
+        public GraphBuilder accumulationSteps(int accumulationSteps) {
+            this.accumulationSteps = accumulationSteps;
+            return this;
+        }
+
         /**
          * Add a layer, with no {@link InputPreProcessor}, with the specified name and specified inputs.
          *
@@ -585,6 +619,10 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
          * Create the ComputationGraphConfiguration from the Builder pattern
          */
         public ComputationGraphConfiguration build() {
+            if (microBatches < 1 || accumulationSteps < 1) {
+                throw new IllegalStateException("Invalid configuration: microBatches and accumulationSteps must be >= 1, got "
+                        + microBatches + " and " + accumulationSteps);
+            }
 
             ComputationGraphConfiguration conf = new ComputationGraphConfiguration();
             conf.backprop = backprop;
@@ -592,6 +630,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             conf.backpropType = backpropType;
             conf.tbpttBackLength = tbpttBackLength;
             conf.tbpttFwdLength = tbpttFwdLength;
+            conf.microBatches = microBatches;
+            conf.accumulationSteps = accumulationSteps;
 
             conf.networkInputs = networkInputs;
             conf.networkOutputs = networkOutputs;
@@ -67,6 +67,9 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
     protected BackpropType backpropType = BackpropType.Standard;
     protected int tbpttFwdLength = 20;
     protected int tbpttBackLength = 20;
+    //Gradient accumulation: micro-batches per minibatch, and iterator minibatches per updater step
+    protected int microBatches = 1;
+    protected int accumulationSteps = 1;
 
     /**
      *
@@ -257,6 +260,8 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
         protected BackpropType backpropType = BackpropType.Standard;
         protected int tbpttFwdLength = 20;
         protected int tbpttBackLength = 20;
+        protected int microBatches = 1;
+        protected int accumulationSteps = 1;
         protected InputType inputType;
         @Deprecated
         protected int[] cnnInputSize;
@@ -323,6 +328,29 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
         	return this;
         }
 
+        /**Split each minibatch into this many micro-batches of (nearly) equal size. The gradients of the micro-batches
+         * are accumulated, and a single updater step is done with the gradient of the whole minibatch; activation
+         * memory is then that of one micro-batch. Not applicable with backpropType(BackpropType.TruncatedBPTT).<br>
+         * Note that layers using minibatch statistics (batch normalization) compute them per micro-batch.
+         * @param microBatches Number of micro-batches per minibatch; default 1 (no splitting)
+         */
+        public Builder microBatches(int microBatches){
+            this.microBatches = microBatches;
+            return this;
+        }
+
+        /**When fitting from an iterator: the number of iterator minibatches to accumulate the gradients of, before
+         * doing a single updater step. Each of the minibatches is fit as one micro-batch (or microBatches micro-batches),
+         * so the effective minibatch size is accumulationSteps times that of the iterator, at the activation memory
+         * of one minibatch. Not applicable with backpropType(BackpropType.TruncatedBPTT). Time series minibatches of
+         * different lengths are padded at the end to the longest one, with mask arrays marking the padding
+         * @param accumulationSteps Number of iterator minibatches per updater step; default 1
+         */
+        public Builder accumulationSteps(int accumulationSteps){
+            this.accumulationSteps = accumulationSteps;
+            return this;
+        }
+
         /**
          * Whether to do pre train or not
          * @param pretrain whether to do pre train or not
@@ -377,6 +405,10 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
         }
 
         public MultiLayerConfiguration build() {
+            if(microBatches < 1 || accumulationSteps < 1){
+                throw new IllegalStateException("Invalid configuration: microBatches and accumulationSteps must be >= 1, got "
+                        + microBatches + " and " + accumulationSteps);
+            }
             if(cnnInputSize != null){
                 new ConvolutionLayerSetup(this,cnnInputSize[0],cnnInputSize[1],cnnInputSize[2]);
             } else if(inputType == null && inputPreProcessors.get(0) == null){
@@ -442,6 +474,8 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             conf.backpropType = backpropType;
             conf.tbpttFwdLength = tbpttFwdLength;
             conf.tbpttBackLength = tbpttBackLength;
+            conf.microBatches = microBatches;
+            conf.accumulationSteps = accumulationSteps;
             Nd4j.getRandom().setSeed(conf.getConf(0).getSeed());
             return conf;
 
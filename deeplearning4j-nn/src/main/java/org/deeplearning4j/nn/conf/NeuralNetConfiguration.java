@@ -218,6 +218,7 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
             return new MultiLayerConfiguration.Builder().backprop(backprop).inputPreProcessors(inputPreProcessors).
                     pretrain(pretrain).backpropType(backpropType).tBPTTForwardLength(tbpttFwdLength)
                     .tBPTTBackwardLength(tbpttBackLength)
+                    .microBatches(microBatches).accumulationSteps(accumulationSteps)
                     .cnnInputSize(this.cnnInputSize)
                     .setInputType(this.inputType)
                     .confs(list).build();
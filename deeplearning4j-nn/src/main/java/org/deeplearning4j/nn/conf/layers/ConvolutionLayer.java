@@ -30,6 +30,8 @@ public class ConvolutionLayer extends FeedForwardLayer {
 
     /** Defaults to "PREFER_FASTEST", but "NO_WORKSPACE" uses less memory. */
     protected AlgoMode cudnnAlgoMode = AlgoMode.PREFER_FASTEST;
+    /** Use the CPU helper (gemm for 1x1 kernels, Winograd for 3x3 forward) when cuDNN is not available. Defaults to true */
+    protected boolean cpuHelper = true;
 
     /**
     * ConvolutionLayer
@@ -51,6 +53,7 @@ public class ConvolutionLayer extends FeedForwardLayer {
             throw new IllegalArgumentException("Padding should include padding for rows and columns (a 2d array)");
         this.padding = builder.padding;
         this.cudnnAlgoMode = builder.cudnnAlgoMode;
+        this.cpuHelper = builder.cpuHelper;
     }
 
     @Override
@@ -158,6 +161,7 @@ public class ConvolutionLayer extends FeedForwardLayer {
         private int[] stride = new int[] {1,1};
         private int[] padding = new int[] {0, 0};
         private AlgoMode cudnnAlgoMode = AlgoMode.PREFER_FASTEST;
+        private boolean cpuHelper = true;
 
 
         public Builder(int[] kernelSize, int[] stride, int[] padding) {
@@ -210,6 +214,15 @@ public class ConvolutionLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * Use the CPU helper (gemm for 1x1 kernels, Winograd for 3x3 forward) when cuDNN is not available. Defaults
+         * to true; other kernels always use im2col + gemm
+         */
+        public Builder cpuHelper(boolean cpuHelper){
+            this.cpuHelper = cpuHelper;
+            return this;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public ConvolutionLayer build() {
@@ -18,7 +18,8 @@ import java.util.Map;
  * with all but one value being zero).<br>
  * <b>Note</b>: can only be used as the first layer for a network<br>
  * <b>Note 2</b>: For a given example index i, the output is activationFunction(weights.getRow(i) + bias), hence the
- * weight rows can be considered a vector/embedding for each example.
+ * weight rows can be considered a vector/embedding for each example.<br>
+ * <b>Note 3</b>: With {@link Builder#sparseGradients(boolean)}, only the weight rows used in a minibatch are updated
  * @author Alex Black
  */
 @Data
@@ -26,9 +27,11 @@ import java.util.Map;
 @ToString(callSuper = true)
 @EqualsAndHashCode(callSuper = true)
 public class EmbeddingLayer extends FeedForwardLayer {
+    protected boolean sparseGradients = false;
 
     private EmbeddingLayer(Builder builder){
         super(builder);
+        this.sparseGradients = builder.sparseGradients;
     }
 
     @Override
@@ -51,6 +54,24 @@ public class EmbeddingLayer extends FeedForwardLayer {
 
     @AllArgsConstructor
     public static class Builder extends FeedForwardLayer.Builder<Builder> {
+        protected boolean sparseGradients = false;
+
+        public Builder() {
+        }
+
+        /**
+         * If true, the weight gradient is kept for the rows used in the minibatch only, and updaters update only those
+         * rows and their state, instead of the full [nIn, nOut] table. Rows not used in an iteration are left as is:
+         * momentum-type updater state of a row (Adam, Nesterovs, RmsProp, AdaDelta) is decayed for the skipped
+         * iterations the next time the row is used, and l1/l2 regularization is applied to used rows only.<br>
+         * Default: false (dense updates, as for any other layer)
+         *
+         * @param sparseGradients    Whether to update only the weight rows used in each minibatch
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.sparseGradients = sparseGradients;
+            return this;
+        }
 
         @Override
         @SuppressWarnings("unchecked")
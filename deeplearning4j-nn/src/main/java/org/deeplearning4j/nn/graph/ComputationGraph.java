@@ -22,11 +22,13 @@ import lombok.Setter;
 import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.berkeley.Triple;
 import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
-import org.deeplearning4j.datasets.iterator.AsyncMultiDataSetIterator;
+import org.deeplearning4j.datasets.iterator.parallel.ParallelPrefetchMultiDataSetIterator;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.api.OutputConsumer;
 import org.deeplearning4j.nn.api.layers.IOutputLayer;
 import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.BackpropType;
 import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
@@ -42,6 +44,8 @@ import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.solvers.MixedPrecision;
+import org.deeplearning4j.util.MicroBatchUtils;
 import org.deeplearning4j.util.ModelSerializer;
 import org.deeplearning4j.util.TimeSeriesUtils;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -76,6 +80,7 @@ public class ComputationGraph implements Serializable, Model {
     protected ComputationGraphConfiguration configuration;
     protected boolean initCalled = false;
     protected transient Solver solver;    //Used to call optimizers during backprop
+    protected MixedPrecision mixedPrecision;    //Loss scaling and master weights state; null if not used
     protected INDArray flattenedParams;     //Params for all layers are a view/subset of this array
     protected transient INDArray flattenedGradients; //Gradients for all layers are a view/subset of this array
     protected Gradient gradient;
@@ -119,6 +124,10 @@ public class ComputationGraph implements Serializable, Model {
     private transient INDArray[] inputMaskArrays;
     private transient INDArray[] labelMaskArrays;
 
+    //Gradient accumulation: sum of the micro-batch gradients, and number of iterator minibatches in the current one
+    protected transient INDArray accumulatedGradients;
+    protected transient int accumulatedBatches;
+
     private NeuralNetConfiguration defaultConfiguration;
     private Collection<IterationListener> listeners = new ArrayList<>();
 
@@ -633,11 +642,27 @@ public class ComputationGraph implements Serializable, Model {
 
         if (configuration.isBackprop()) {
             update(TaskUtils.buildTask(dataSetIterator));
+            boolean accumulate = configuration.getAccumulationSteps() > 1
+                    && configuration.getBackpropType() != BackpropType.TruncatedBPTT;
             while (dataSetIterator.hasNext()) {
                 DataSet next = dataSetIterator.next();
                 if (next.getFeatures() == null || next.getLabels() == null)
                     break;
 
+                if (accumulate) {
+                    //One updater step for accumulationSteps minibatches: each is fit as its own micro-batch(es)
+                    List<DataSet> minibatches = new ArrayList<>();
+                    minibatches.add(next);
+                    while (minibatches.size() < configuration.getAccumulationSteps() && dataSetIterator.hasNext()) {
+                        DataSet ds = dataSetIterator.next();
+                        if (ds.getFeatures() == null || ds.getLabels() == null)
+                            break;
+                        minibatches.add(ds);
+                    }
+                    next = mergeMinibatches(minibatches);
+                    accumulatedBatches = minibatches.size();
+                }
+
                 boolean hasMaskArrays = next.hasMaskArrays();
                 if (hasMaskArrays) {
                     INDArray[] fMask = (next.getFeaturesMaskArray() != null ? new INDArray[]{next.getFeaturesMaskArray()} : null);
@@ -665,6 +690,7 @@ public class ComputationGraph implements Serializable, Model {
                 if (hasMaskArrays) {
                     clearLayerMaskArrays();
                 }
+                accumulatedBatches = 0;
             }
         }
     }
@@ -687,7 +713,7 @@ public class ComputationGraph implements Serializable, Model {
 
         MultiDataSetIterator multiDataSetIterator;
         if (multi.asyncSupported()) {
-            multiDataSetIterator = new AsyncMultiDataSetIterator(multi, 2);
+            multiDataSetIterator = new ParallelPrefetchMultiDataSetIterator.Builder(multi).workers(1).queueSize(2).build();
         } else multiDataSetIterator = multi;
 
         if (configuration.isPretrain()) {
@@ -695,11 +721,27 @@ public class ComputationGraph implements Serializable, Model {
         }
 
         if (configuration.isBackprop()) {
+            boolean accumulate = configuration.getAccumulationSteps() > 1
+                    && configuration.getBackpropType() != BackpropType.TruncatedBPTT;
             while (multiDataSetIterator.hasNext()) {
                 MultiDataSet next = multiDataSetIterator.next();
                 if (next.getFeatures() == null || next.getLabels() == null)
                     break;
 
+                if (accumulate) {
+                    //One updater step for accumulationSteps minibatches: each is fit as its own micro-batch(es)
+                    List<MultiDataSet> minibatches = new ArrayList<>();
+                    minibatches.add(next);
+                    while (minibatches.size() < configuration.getAccumulationSteps() && multiDataSetIterator.hasNext()) {
+                        MultiDataSet mds = multiDataSetIterator.next();
+                        if (mds.getFeatures() == null || mds.getLabels() == null)
+                            break;
+                        minibatches.add(mds);
+                    }
+                    next = mergeMultiMinibatches(minibatches);
+                    accumulatedBatches = minibatches.size();
+                }
+
                 if (configuration.getBackpropType() == BackpropType.TruncatedBPTT) {
                     doTruncatedBPTT(next.getFeatures(), next.getLabels(), next.getFeaturesMaskArrays(), next.getLabelsMaskArrays());
                 } else {
@@ -722,10 +764,51 @@ public class ComputationGraph implements Serializable, Model {
                         clearLayerMaskArrays();
                     }
                 }
+                accumulatedBatches = 0;
             }
         }
     }
 
+    /**
+     * Concatenate the examples of several minibatches, for gradient accumulation
+     */
+    private static DataSet mergeMinibatches(List<DataSet> minibatches) {
+        if (minibatches.size() == 1) return minibatches.get(0);
+        List<INDArray> features = new ArrayList<>();
+        List<INDArray> labels = new ArrayList<>();
+        List<INDArray> featuresMasks = new ArrayList<>();
+        List<INDArray> labelsMasks = new ArrayList<>();
+        for (DataSet ds : minibatches) {
+            features.add(ds.getFeatures());
+            labels.add(ds.getLabels());
+            featuresMasks.add(ds.getFeaturesMaskArray());
+            labelsMasks.add(ds.getLabelsMaskArray());
+        }
+        Pair<INDArray, INDArray> f = MicroBatchUtils.concatExamples(features, featuresMasks);
+        Pair<INDArray, INDArray> l = MicroBatchUtils.concatExamples(labels, labelsMasks);
+        return new org.nd4j.linalg.dataset.DataSet(f.getFirst(), l.getFirst(), f.getSecond(), l.getSecond());
+    }
+
+    /**
+     * Concatenate the examples of several minibatches, for gradient accumulation
+     */
+    private static MultiDataSet mergeMultiMinibatches(List<MultiDataSet> minibatches) {
+        if (minibatches.size() == 1) return minibatches.get(0);
+        List<INDArray[]> features = new ArrayList<>();
+        List<INDArray[]> labels = new ArrayList<>();
+        List<INDArray[]> featuresMasks = new ArrayList<>();
+        List<INDArray[]> labelsMasks = new ArrayList<>();
+        for (MultiDataSet mds : minibatches) {
+            features.add(mds.getFeatures());
+            labels.add(mds.getLabels());
+            featuresMasks.add(mds.getFeaturesMaskArrays());
+            labelsMasks.add(mds.getLabelsMaskArrays());
+        }
+        Pair<INDArray[], INDArray[]> f = MicroBatchUtils.concatExamplesArrays(features, featuresMasks);
+        Pair<INDArray[], INDArray[]> l = MicroBatchUtils.concatExamplesArrays(labels, labelsMasks);
+        return new org.nd4j.linalg.dataset.MultiDataSet(f.getFirst(), l.getFirst(), f.getSecond(), l.getSecond());
+    }
+
     /**
      * Fit the ComputationGraph given arrays of inputs and labels.
      *
@@ -747,7 +830,9 @@ public class ComputationGraph implements Serializable, Model {
     public void fit(INDArray[] inputs, INDArray[] labels, INDArray[] featureMaskArrays, INDArray[] labelMaskArrays) {
         setInputs(inputs);
         setLabels(labels);
-        setLayerMaskArrays(featureMaskArrays, labelMaskArrays);
+        //Don't overwrite mask arrays already set by fit(DataSet) or fit(MultiDataSet)
+        if (featureMaskArrays != null || labelMaskArrays != null)
+            setLayerMaskArrays(featureMaskArrays, labelMaskArrays);
         update(TaskUtils.buildTask(inputs, labels));
 
         if (configuration.isPretrain()) {
@@ -886,6 +971,11 @@ public class ComputationGraph implements Serializable, Model {
             rnnActivateUsingStoredState(inputs, true, true);
             calcBackpropGradients(true);
         } else {
+            int numMicroBatches = configuration.getMicroBatches() * Math.max(1, accumulatedBatches);
+            if (numMicroBatches > 1 && inputs[0].size(0) > 1) {
+                computeGradientAndScoreMicroBatches(numMicroBatches);
+                return;
+            }
             feedForward(true, true);
             calcBackpropGradients(false);
         }
@@ -906,6 +996,58 @@ public class ComputationGraph implements Serializable, Model {
         }
     }
 
+    /**
+     * Gradient accumulation: compute the gradient and score of the current minibatch as sums over micro-batches, so that
+     * the activations of only one micro-batch are held at a time. The accumulated gradient is left in the gradients view
+     * and the minibatch inputs are restored, so the updater normalizes by the full minibatch size as usual.
+     * Loss functions sum over examples, hence the result matches that of a single pass over the minibatch
+     */
+    protected void computeGradientAndScoreMicroBatches(int numMicroBatches) {
+        if (flattenedGradients == null) initGradientsView();
+        if (accumulatedGradients == null || accumulatedGradients.length() != flattenedGradients.length()) {
+            accumulatedGradients = Nd4j.create(flattenedGradients.shape());
+        } else {
+            accumulatedGradients.assign(0);
+        }
+        INDArray[] fullInputs = inputs;
+        INDArray[] fullLabels = labels;
+        INDArray[] fullInputMasks = inputMaskArrays;
+        INDArray[] fullLabelMasks = labelMaskArrays;
+        boolean hasMaskArrays = fullInputMasks != null || fullLabelMasks != null;
+        Map<SparseGradientLayer, Map<String, int[]>> sparseRows = new IdentityHashMap<>();
+
+        int[] split = MicroBatchUtils.splitPoints(fullInputs[0].size(0), numMicroBatches);
+        double lossSum = 0.0;
+        int numExamples = 0;
+        for (int i = 0; i < split.length - 1; i++) {
+            if (hasMaskArrays) {
+                setLayerMaskArrays(MicroBatchUtils.getExamples(fullInputMasks, split[i], split[i + 1]),
+                        MicroBatchUtils.getExamples(fullLabelMasks, split[i], split[i + 1]));
+            }
+            setInputs(MicroBatchUtils.getExamples(fullInputs, split[i], split[i + 1]));
+            setLabels(MicroBatchUtils.getExamples(fullLabels, split[i], split[i + 1]));
+
+            feedForward(true, true);
+            calcBackpropGradients(false);
+            accumulatedGradients.addi(flattenedGradients);
+            MicroBatchUtils.collectSparseGradientRows(layers, sparseRows);
+
+            //Loss summed over the micro-batch examples, for all outputs; regularization is added once, below
+            for (int j = 0; j < configuration.getNetworkOutputs().size(); j++) {
+                Layer outputLayer = verticesMap.get(configuration.getNetworkOutputs().get(j)).getLayer();
+                lossSum += ((IOutputLayer) outputLayer).computeScore(0.0, 0.0, true) * outputLayer.getInputMiniBatchSize();
+                if (j == 0) numExamples += outputLayer.getInputMiniBatchSize();
+            }
+        }
+        flattenedGradients.assign(accumulatedGradients);
+        MicroBatchUtils.setSparseGradientRows(sparseRows);
+
+        if (hasMaskArrays) setLayerMaskArrays(fullInputMasks, fullLabelMasks);
+        setInputs(fullInputs);
+        setLabels(fullLabels);
+        score = (lossSum + calcL1() + calcL2()) / numExamples;
+    }
+
     /**
      * Conduct forward pass using a single input array. Note that this method can only be used with ComputationGraphs
      * with a single input array.
@@ -1035,6 +1177,7 @@ public class ComputationGraph implements Serializable, Model {
      */
     public INDArray[] output(boolean train, INDArray... input) {
         setInputs(input);
+        if (!train) return silentOutput();
         Map<String, INDArray> activations = feedForward(train);
         INDArray[] outputs = new INDArray[numOutputArrays];
         int i = 0;
@@ -1044,6 +1187,52 @@ public class ComputationGraph implements Serializable, Model {
         return outputs;
     }
 
+    /**
+     * Forward pass at test time, using the stored inputs, that keeps only the activations still needed.
+     * Unlike {@link #feedForward(boolean)}, no map of all layer activations is built: a vertex output is only held by
+     * the inputs of the vertices it feeds, and each vertex releases its inputs once it has done its forward pass (its
+     * layer's input is set back to what it was before the call). So an activation is released as soon as the last of
+     * its consumers (in topological order) has used it, and peak memory is that of the activations live at once, rather
+     * than the sum of all activations.
+     *
+     * @return Output activations (order: same as defined in network configuration)
+     */
+    protected INDArray[] silentOutput() {
+        List<String> networkOutputs = configuration.getNetworkOutputs();
+        INDArray[] outputs = new INDArray[numOutputArrays];
+
+        //Layer inputs are replaced when the vertex inputs are set below, so they are saved before any of them is
+        INDArray[] layerInputs = new INDArray[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            if (vertices[i].hasLayer()) layerInputs[i] = vertices[i].getLayer().input();
+        }
+
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            INDArray out;
+            if (current.isInputVertex()) {
+                out = inputs[current.getVertexIndex()];
+            } else {
+                out = current.doForward(false);
+                current.setInputs(new INDArray[current.getNumInputArrays()]);
+                if (current.hasLayer()) current.getLayer().setInput(layerInputs[current.getVertexIndex()]);
+            }
+
+            int outputIdx = networkOutputs.indexOf(current.getVertexName());
+            if (outputIdx >= 0) outputs[outputIdx] = out;
+
+            VertexIndices[] outputsTo = current.getOutputVertices();
+            if (outputsTo != null) {
+                for (VertexIndices v : outputsTo) {
+                    //Network inputs are duplicated per consumer, as in feedForward: vertices may modify their input in place
+                    vertices[v.getVertexIndex()].setInput(v.getVertexEdgeNumber(), current.isInputVertex() ? out.dup() : out);
+                }
+            }
+        }
+
+        return outputs;
+    }
+
     /**
      * A convenience method that returns a single INDArray, instead of an INDArray[].
      * Useful for ComputationGraphs that have only a single output.
@@ -1060,6 +1249,51 @@ public class ComputationGraph implements Serializable, Model {
         return output(train, input)[0];
     }
 
+    /**
+     * Streaming bulk inference: calculates the network outputs for each minibatch of the iterator, and passes them to the
+     * consumer as soon as they have been calculated. Outputs aren't collected in memory, so memory use doesn't grow with
+     * the size of the data set: with a {@link org.deeplearning4j.util.PositionalChannelOutputWriter}, outputs go straight to disk.<br>
+     * Note that this method can only be used with ComputationGraphs with 1 input
+     *
+     * @param iterator data to calculate the outputs for
+     * @param train    If true: do forward pass at training time; false: do forward pass at test time
+     * @param consumer receives the outputs of each minibatch
+     * @return the number of examples
+     */
+    public long output(DataSetIterator iterator, boolean train, OutputConsumer consumer) {
+        if (numInputArrays != 1)
+            throw new UnsupportedOperationException("Cannot calculate output of ComputationGraph network with "
+                    + " multiple inputs using a DataSetIterator");
+        return output(ComputationGraphUtil.toMultiDataSetIterator(iterator), train, consumer);
+    }
+
+    /**
+     * Streaming bulk inference: calculates the network outputs for each minibatch of the iterator, and passes them to the
+     * consumer as soon as they have been calculated. The iterator is used as passed: it is not reset first.
+     *
+     * @param iterator data to calculate the outputs for
+     * @param train    If true: do forward pass at training time; false: do forward pass at test time
+     * @param consumer receives the outputs of each minibatch (order: same as defined in network configuration)
+     * @return the number of examples
+     */
+    public long output(MultiDataSetIterator iterator, boolean train, OutputConsumer consumer) {
+        long offset = 0;
+        while (iterator.hasNext()) {
+            MultiDataSet next = iterator.next();
+            if (next.getFeatures() == null)
+                break;
+
+            boolean hasMaskArrays = next.hasMaskArrays();
+            if (hasMaskArrays) setLayerMaskArrays(next.getFeaturesMaskArrays(), next.getLabelsMaskArrays());
+            INDArray[] out = output(train, next.getFeatures());
+            if (hasMaskArrays) clearLayerMaskArrays();
+
+            consumer.consume(offset, out);
+            offset += next.getFeatures(0).size(0);
+        }
+        return offset;
+    }
+
     /**
      * Calculate the gradient of the network with respect to some external errors.
      * Note that this is typically used for things like reinforcement learning, not typical networks that include
@@ -1115,6 +1349,19 @@ public class ComputationGraph implements Serializable, Model {
             Pair<Gradient, INDArray[]> pair = current.doBackward(truncatedBPTT);
             INDArray[] epsilons = pair.getSecond();
 
+            if (mixedPrecision != null && current.isOutputVertex()) {
+                //Scale the output layer gradients and errors (and hence all gradients) by the loss scale
+                double lossScale = mixedPrecision.getLossScale();
+                if (pair.getFirst() != null) {
+                    for (INDArray g : pair.getFirst().gradientForVariable().values()) g.muli(lossScale);
+                }
+                if (epsilons != null) {
+                    for (INDArray e : epsilons) {
+                        if (e != null) e.muli(lossScale);
+                    }
+                }
+            }
+
             //Inputs to the current GraphVertex:
             VertexIndices[] inputVertices = current.getInputVertices();
 
@@ -1255,6 +1502,22 @@ public class ComputationGraph implements Serializable, Model {
         solver.getOptimizer().setUpdaterComputationGraph(updater);
     }
 
+    /**
+     * Enable mixed precision training (loss scaling, and fp32 master weights when the ND4J data type is HALF), or
+     * disable it with null. See {@link MixedPrecision}
+     */
+    public void setMixedPrecision(MixedPrecision mixedPrecision) {
+        this.mixedPrecision = mixedPrecision;
+        if (mixedPrecision != null && flattenedParams != null) mixedPrecision.attach(flattenedParams);
+    }
+
+    /**
+     * @return the mixed precision training state, or null if mixed precision training is not enabled
+     */
+    public MixedPrecision getMixedPrecision() {
+        return mixedPrecision;
+    }
+
     /**
      * Get the specified output layer, by index. The index of the output layer may be 0 to {@link #getNumOutputArrays()}-1
      */
@@ -1385,6 +1648,38 @@ public class ComputationGraph implements Serializable, Model {
         return scoreExamples(ComputationGraphUtil.toMultiDataSet(data), addRegularizationTerms);
     }
 
+    /**
+     * Streaming version of {@link #scoreExamples(MultiDataSet, boolean)} for a whole data set: the scores of each
+     * minibatch (a column vector) are passed to the consumer as soon as they have been calculated, instead of being
+     * collected in memory. The iterator is used as passed: it is not reset first.
+     *
+     * @param iterator               The data to score
+     * @param addRegularizationTerms If true: add l1/l2 regularization terms (if any) to the score. If false: don't add regularization terms
+     * @param consumer               receives the scores of each minibatch
+     * @return the number of examples
+     */
+    public long scoreExamples(MultiDataSetIterator iterator, boolean addRegularizationTerms, OutputConsumer consumer) {
+        long offset = 0;
+        while (iterator.hasNext()) {
+            MultiDataSet next = iterator.next();
+            consumer.consume(offset, scoreExamples(next, addRegularizationTerms));
+            offset += next.getFeatures(0).size(0);
+        }
+        return offset;
+    }
+
+    /**
+     * Streaming version of {@link #scoreExamples(DataSet, boolean)} for a whole data set, see
+     * {@link #scoreExamples(MultiDataSetIterator, boolean, OutputConsumer)}.
+     * Note that this method can only be used with ComputationGraphs with 1 input and 1 output
+     */
+    public long scoreExamples(DataSetIterator iterator, boolean addRegularizationTerms, OutputConsumer consumer) {
+        if (numInputArrays != 1 || numOutputArrays != 1)
+            throw new UnsupportedOperationException("Cannot score ComputationGraph network with "
+                    + " DataSetIterator: network does not have 1 input and 1 output arrays");
+        return scoreExamples(ComputationGraphUtil.toMultiDataSetIterator(iterator), addRegularizationTerms, consumer);
+    }
+
     /**
      * Calculate the score for each example in a DataSet individually. Unlike {@link #score(MultiDataSet)} and {@link #score(MultiDataSet, boolean)}
      * this method does not average/sum over examples. This method allows for examples to be scored individually (at test time only), which
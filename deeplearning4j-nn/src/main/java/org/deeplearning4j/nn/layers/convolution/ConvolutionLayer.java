@@ -43,7 +43,9 @@ import org.slf4j.LoggerFactory;
 public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.ConvolutionLayer> {
     protected static final Logger log = LoggerFactory.getLogger(ConvolutionLayer.class);
 
-    ConvolutionHelper helper = null;
+    //Helpers are not serializable: re-created on first use after deserialization
+    transient ConvolutionHelper helper = null;
+    transient boolean helperInitialized;
 
     public ConvolutionLayer(NeuralNetConfiguration conf) {
         super(conf);
@@ -65,6 +67,17 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
                 log.warn("Could not load CudnnConvolutionHelper", t);
             }
         }
+        if (helper == null && layerConf().isCpuHelper() && CpuConvolutionHelper.isSupported()) {
+            helper = new CpuConvolutionHelper();
+        }
+        helperInitialized = true;
+    }
+
+    ConvolutionHelper helper() {
+        if (!helperInitialized) {
+            initializeHelper();
+        }
+        return helper;
     }
 
     @Override
@@ -125,7 +138,7 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
             delta = sigmaPrimeZ.muli(epsilon);  //Current shape: [miniBatch,outD,outH,outW]
         }
 
-        if (helper != null) {
+        if (helper() != null) {
             Pair<Gradient, INDArray> ret = helper.backpropGradient(input, weights, delta, kernel, strides, pad, biasGradView, weightGradView, afn, layerConf().getCudnnAlgoMode());
             if (ret != null) {
                 return ret;
@@ -204,7 +217,7 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         int outH = Convolution.outSize(inH, kernel[0], strides[0], pad[0],false);
         int outW = Convolution.outSize(inW, kernel[1], strides[1], pad[1], false);
 
-        if (helper != null) {
+        if (helper() != null) {
             INDArray ret = helper.preOutput(input, weights, bias, kernel, strides, pad, layerConf().getCudnnAlgoMode());
             if (ret != null) {
                 return ret;
@@ -250,7 +263,7 @@ public class ConvolutionLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
             return z;
         }
 
-        if (helper != null) {
+        if (helper() != null) {
             INDArray ret = helper.activate(z, conf.getLayer().getActivationFunction());
             if (ret != null) {
                 return ret;
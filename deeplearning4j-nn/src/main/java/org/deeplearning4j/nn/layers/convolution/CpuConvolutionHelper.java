@@ -0,0 +1,310 @@
+package org.deeplearning4j.nn.layers.convolution;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.AlgoMode;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.params.ConvolutionParamInitializer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.convolution.Convolution;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Convolution for the CPU backend, without the {@code [miniBatch, outH, outW, inDepth, kH, kW]} im2col buffer used by
+ * {@link ConvolutionLayer}. The algorithm is picked from the kernel shape:
+ * <ul>
+ *     <li>1x1 kernels, stride 1 and no padding: a single gemm over the input, reshaped without copying when it has
+ *     the layout of convolution layer activations</li>
+ *     <li>3x3 kernels and stride 1: Winograd F(2x2, 3x3) in the forward pass, which needs 16 multiplications per 2x2
+ *     output tile instead of 36</li>
+ * </ul>
+ * All other cases, including backprop of non 1x1 kernels, return null so that the layer uses its im2col + gemm
+ * implementation. Outputs and epsilons have the same strides as those of the im2col implementation.
+ * The helper can be disabled per layer with
+ * {@link org.deeplearning4j.nn.conf.layers.ConvolutionLayer.Builder#cpuHelper(boolean)}.
+ */
+public class CpuConvolutionHelper implements ConvolutionHelper {
+
+    /**
+     * @return true if the current ND4J backend keeps arrays in host memory, where this helper can access them
+     */
+    public static boolean isSupported() {
+        return Nd4j.getBackend().getClass().getName().toLowerCase().contains("cpu");
+    }
+
+    @Override
+    public INDArray preOutput(INDArray input, INDArray weights, INDArray bias, int[] kernel, int[] strides,
+                              int[] pad, AlgoMode mode) {
+        if (input.rank() != 4) {
+            return null;
+        }
+        if (isPointwise(kernel, strides, pad)) {
+            return preOutputPointwise(input, weights, bias);
+        } else if (kernel[0] == 3 && kernel[1] == 3 && strides[0] == 1 && strides[1] == 1) {
+            return preOutputWinograd(input, weights, bias, pad);
+        }
+        return null;
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray weights, INDArray delta, int[] kernel,
+                                                     int[] strides, int[] pad, INDArray biasGradView,
+                                                     INDArray weightGradView, String afn, AlgoMode mode) {
+        if (input.rank() != 4 || !isPointwise(kernel, strides, pad)) {
+            return null;
+        }
+        INDArray epsNext = backpropPointwise(input, weights, delta, biasGradView, weightGradView);
+
+        Gradient retGradient = new DefaultGradient();
+        retGradient.setGradientFor(ConvolutionParamInitializer.BIAS_KEY, biasGradView);
+        retGradient.setGradientFor(ConvolutionParamInitializer.WEIGHT_KEY, weightGradView, 'c');
+        return new Pair<>(retGradient, epsNext);
+    }
+
+    @Override
+    public INDArray activate(INDArray z, String afn) {
+        //Activation functions are applied by the layer
+        return null;
+    }
+
+    private static boolean isPointwise(int[] kernel, int[] strides, int[] pad) {
+        return kernel[0] == 1 && kernel[1] == 1 && strides[0] == 1 && strides[1] == 1 && pad[0] == 0 && pad[1] == 0;
+    }
+
+    //Input as [inDepth, miniBatch*H*W]: a zero-copy reshape for activations of a convolution layer below, which
+    // are [inDepth, miniBatch, H, W] in c order, permuted
+    private static INDArray pointwiseInput(INDArray input) {
+        int n = input.size(0) * input.size(2) * input.size(3);
+        return input.permute(1, 0, 2, 3).reshape('c', input.size(1), n);
+    }
+
+    private INDArray preOutputPointwise(INDArray input, INDArray weights, INDArray bias) {
+        int miniBatch = input.size(0);
+        int h = input.size(2);
+        int w = input.size(3);
+        int outDepth = weights.size(0);
+
+        INDArray x2d = pointwiseInput(input);
+        INDArray w2d = weights.reshape('c', outDepth, weights.size(1));
+
+        //[miniBatch*H*W, outDepth] in f order, with the same layout as the im2col implementation
+        INDArray z = x2d.transpose().mmul(w2d.transpose());
+        z.addiRowVector(bias);
+        z = Shape.newShapeNoCopy(z, new int[]{w, h, miniBatch, outDepth}, true);
+        return z.permute(2, 3, 1, 0);
+    }
+
+    private INDArray backpropPointwise(INDArray input, INDArray weights, INDArray delta, INDArray biasGradView,
+                                       INDArray weightGradView) {
+        int miniBatch = input.size(0);
+        int inDepth = input.size(1);
+        int h = input.size(2);
+        int w = input.size(3);
+        int outDepth = weights.size(0);
+        int n = miniBatch * h * w;
+
+        INDArray x2d = pointwiseInput(input);
+        INDArray w2d = weights.reshape('c', outDepth, inDepth);
+        INDArray delta2d = delta.permute(1, 0, 2, 3).reshape('c', outDepth, n);
+
+        //Weight gradients [outDepth, inDepth] in c order, written as their f order transpose
+        INDArray weightGrad2df = Shape.newShapeNoCopy(weightGradView, new int[]{outDepth, inDepth}, false).transpose();
+        Nd4j.gemm(x2d, delta2d, weightGrad2df, false, true, 1.0, 0.0);
+        biasGradView.assign(delta2d.sum(1));
+
+        //Epsilons [inDepth, miniBatch*H*W] in c order, again written as their f order transpose
+        INDArray epsNextOrig = Nd4j.create(new int[]{inDepth, miniBatch, h, w}, 'c');
+        INDArray epsNext2df = Shape.newShapeNoCopy(epsNextOrig, new int[]{inDepth, n}, false).transpose();
+        Nd4j.gemm(delta2d, w2d, epsNext2df, true, false, 1.0, 0.0);
+        return epsNextOrig.permute(1, 0, 2, 3);
+    }
+
+    private INDArray preOutputWinograd(INDArray input, INDArray weights, INDArray bias, int[] pad) {
+        int miniBatch = input.size(0);
+        int inDepth = input.size(1);
+        int inH = input.size(2);
+        int inW = input.size(3);
+        int outDepth = weights.size(0);
+        int outH = Convolution.outSize(inH, 3, 1, pad[0], false);
+        int outW = Convolution.outSize(inW, 3, 1, pad[1], false);
+        int tilesH = (outH + 1) / 2;
+        int tilesW = (outW + 1) / 2;
+        int tiles = tilesH * tilesW;
+        int numTiles = miniBatch * tiles;
+
+        double[] tile = new double[16];
+        double[] transformed = new double[16];
+
+        //Transformed kernels: [16, outDepth, inDepth]
+        double[] w = toArray(weights);
+        INDArray u = Nd4j.create(new int[]{16, outDepth, inDepth}, 'c');
+        DataBuffer ub = u.data();
+        for (int oc = 0; oc < outDepth; oc++) {
+            for (int ic = 0; ic < inDepth; ic++) {
+                transformKernel(w, (oc * inDepth + ic) * 9, transformed);
+                for (int xi = 0; xi < 16; xi++) {
+                    ub.put(u.offset() + (xi * outDepth + oc) * inDepth + ic, transformed[xi]);
+                }
+            }
+        }
+
+        //Transformed, overlapping 4x4 input tiles: [16, inDepth, miniBatch*tiles]
+        INDArray v = Nd4j.create(new int[]{16, inDepth, numTiles}, 'c');
+        DataBuffer vb = v.data();
+        DataBuffer in = input.data();
+        int[] is = input.stride();
+        double[] plane = new double[inH * inW];
+        for (int n = 0; n < miniBatch; n++) {
+            for (int ic = 0; ic < inDepth; ic++) {
+                readPlane(in, input.offset() + n * is[0] + ic * is[1], is[2], is[3], inH, inW, plane);
+                for (int th = 0; th < tilesH; th++) {
+                    for (int tw = 0; tw < tilesW; tw++) {
+                        int y0 = 2 * th - pad[0];
+                        int x0 = 2 * tw - pad[1];
+                        for (int i = 0; i < 4; i++) {
+                            int y = y0 + i;
+                            for (int j = 0; j < 4; j++) {
+                                int x = x0 + j;
+                                tile[i * 4 + j] = (y >= 0 && y < inH && x >= 0 && x < inW ? plane[y * inW + x] : 0.0);
+                            }
+                        }
+                        transformInput(tile, transformed);
+                        int p = n * tiles + th * tilesW + tw;
+                        for (int xi = 0; xi < 16; xi++) {
+                            vb.put(v.offset() + (xi * inDepth + ic) * numTiles + p, transformed[xi]);
+                        }
+                    }
+                }
+            }
+        }
+
+        //One [outDepth, inDepth] x [inDepth, miniBatch*tiles] gemm per element of the transformed tiles
+        INDArray[] m = new INDArray[16];
+        for (int xi = 0; xi < 16; xi++) {
+            m[xi] = u.tensorAlongDimension(xi, 1, 2).mmul(v.tensorAlongDimension(xi, 1, 2));
+        }
+
+        INDArray zOrig = Nd4j.create(new int[]{outDepth, miniBatch, outH, outW}, 'c');
+        DataBuffer zb = zOrig.data();
+        double[] y = new double[4];
+        for (int oc = 0; oc < outDepth; oc++) {
+            double b = bias.getDouble(oc);
+            for (int p = 0; p < numTiles; p++) {
+                for (int xi = 0; xi < 16; xi++) {
+                    tile[xi] = m[xi].data().getDouble(m[xi].offset() + oc * m[xi].stride(0) + p * m[xi].stride(1));
+                }
+                transformOutput(tile, y);
+                int n = p / tiles;
+                int oy = 2 * ((p % tiles) / tilesW);
+                int ox = 2 * ((p % tiles) % tilesW);
+                int base = zOrig.offset() + (oc * miniBatch + n) * outH * outW;
+                for (int i = 0; i < 2 && oy + i < outH; i++) {
+                    for (int j = 0; j < 2 && ox + j < outW; j++) {
+                        zb.put(base + (oy + i) * outW + ox + j, y[i * 2 + j] + b);
+                    }
+                }
+            }
+        }
+        return zOrig.permute(1, 0, 2, 3);
+    }
+
+    private static void readPlane(DataBuffer buffer, int offset, int strideH, int strideW, int h, int w,
+                                  double[] plane) {
+        for (int y = 0; y < h; y++) {
+            int row = offset + y * strideH;
+            for (int x = 0; x < w; x++) {
+                plane[y * w + x] = buffer.getDouble(row + x * strideW);
+            }
+        }
+    }
+
+    //Values of a [outDepth, inDepth, kH, kW] array, in c order
+    private static double[] toArray(INDArray weights) {
+        int[] shape = weights.shape();
+        int[] s = weights.stride();
+        DataBuffer buffer = weights.data();
+        double[] ret = new double[weights.length()];
+        int i = 0;
+        for (int a = 0; a < shape[0]; a++) {
+            for (int b = 0; b < shape[1]; b++) {
+                for (int c = 0; c < shape[2]; c++) {
+                    for (int d = 0; d < shape[3]; d++) {
+                        ret[i++] = buffer.getDouble(weights.offset() + a * s[0] + b * s[1] + c * s[2] + d * s[3]);
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Winograd F(2x2, 3x3) kernel transform G g G^T, of the 3x3 kernel at g[offset]
+     */
+    static void transformKernel(double[] g, int offset, double[] out) {
+        double[] t = new double[12];
+        for (int j = 0; j < 3; j++) {
+            double g0 = g[offset + j];
+            double g1 = g[offset + 3 + j];
+            double g2 = g[offset + 6 + j];
+            t[j] = g0;
+            t[3 + j] = 0.5 * (g0 + g1 + g2);
+            t[6 + j] = 0.5 * (g0 - g1 + g2);
+            t[9 + j] = g2;
+        }
+        for (int i = 0; i < 4; i++) {
+            double t0 = t[i * 3];
+            double t1 = t[i * 3 + 1];
+            double t2 = t[i * 3 + 2];
+            out[i * 4] = t0;
+            out[i * 4 + 1] = 0.5 * (t0 + t1 + t2);
+            out[i * 4 + 2] = 0.5 * (t0 - t1 + t2);
+            out[i * 4 + 3] = t2;
+        }
+    }
+
+    /**
+     * Winograd F(2x2, 3x3) input transform B^T d B, of a 4x4 tile
+     */
+    static void transformInput(double[] d, double[] out) {
+        for (int j = 0; j < 4; j++) {
+            double d0 = d[j];
+            double d1 = d[4 + j];
+            double d2 = d[8 + j];
+            double d3 = d[12 + j];
+            out[j] = d0 - d2;
+            out[4 + j] = d1 + d2;
+            out[8 + j] = d2 - d1;
+            out[12 + j] = d1 - d3;
+        }
+        for (int i = 0; i < 4; i++) {
+            double t0 = out[i * 4];
+            double t1 = out[i * 4 + 1];
+            double t2 = out[i * 4 + 2];
+            double t3 = out[i * 4 + 3];
+            out[i * 4] = t0 - t2;
+            out[i * 4 + 1] = t1 + t2;
+            out[i * 4 + 2] = t2 - t1;
+            out[i * 4 + 3] = t1 - t3;
+        }
+    }
+
+    /**
+     * Winograd F(2x2, 3x3) output transform A^T m A, of a 4x4 tile in to a 2x2 tile
+     */
+    static void transformOutput(double[] m, double[] out) {
+        double a0 = m[0] + m[4] + m[8];
+        double a1 = m[1] + m[5] + m[9];
+        double a2 = m[2] + m[6] + m[10];
+        double a3 = m[3] + m[7] + m[11];
+        double b0 = m[4] - m[8] - m[12];
+        double b1 = m[5] - m[9] - m[13];
+        double b2 = m[6] - m[10] - m[14];
+        double b3 = m[7] - m[11] - m[15];
+        out[0] = a0 + a1 + a2;
+        out[1] = a1 - a2 - a3;
+        out[2] = b0 + b1 + b2;
+        out[3] = b1 - b2 - b3;
+    }
+}
@@ -0,0 +1,248 @@
+package org.deeplearning4j.nn.layers.convolution.subsampling;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.conf.layers.SubsamplingLayer.PoolingType;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.convolution.Convolution;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * Max and average pooling for the CPU backend, computed directly over the input buffer.
+ * <p>
+ * Unlike the im2col implementation in {@link SubsamplingLayer}, no {@code [miniBatch, depth, outH, outW, kH, kW]}
+ * buffer is created: the only allocations are the output (activations or epsilons) and, for max pooling, one int
+ * per output element holding the position of the maximum. Those positions are kept from the forward pass in
+ * training, and reused by the backward pass for the same input.
+ * <p>
+ * Semantics match the im2col implementation: padding is treated as zeros, and average pooling divides by the full
+ * kernel size.
+ */
+public class CpuSubsamplingHelper implements SubsamplingHelper {
+
+    //Forward pass input and pooling configuration the argMax positions were computed for
+    private INDArray argMaxInput;
+    private int[] argMaxConfig;
+    //Position (y * inW + x) of the maximum of each output element, in c order, or -1 if it was padding
+    private int[] argMax = new int[0];
+
+    /**
+     * @return true if the current ND4J backend keeps arrays in host memory, where this helper can access them
+     */
+    public static boolean isSupported() {
+        return Nd4j.getBackend().getClass().getName().toLowerCase().contains("cpu");
+    }
+
+    @Override
+    public INDArray activate(INDArray input, boolean training, int[] kernel, int[] strides, int[] pad,
+                             PoolingType poolingType) {
+        if (input.rank() != 4 || (poolingType != PoolingType.MAX && poolingType != PoolingType.AVG)) {
+            return null;
+        }
+        int miniBatch = input.size(0);
+        int depth = input.size(1);
+        int outH = Convolution.outSize(input.size(2), kernel[0], strides[0], pad[0], false);
+        int outW = Convolution.outSize(input.size(3), kernel[1], strides[1], pad[1], false);
+
+        INDArray out = Nd4j.create(new int[]{miniBatch, depth, outH, outW}, 'c');
+        if (poolingType == PoolingType.AVG) {
+            avgPool(input, kernel, strides, pad, out.data(), out.offset());
+            return out;
+        }
+
+        int[] positions = null;
+        if (training) {
+            positions = argMaxBuffer(out.length());
+            argMaxInput = input;
+            argMaxConfig = config(kernel, strides, pad);
+        }
+        maxPool(input, kernel, strides, pad, out.data(), out.offset(), positions);
+        return out;
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray epsilon, int[] kernel, int[] strides,
+                                                     int[] pad, PoolingType poolingType) {
+        if (input.rank() != 4 || (poolingType != PoolingType.MAX && poolingType != PoolingType.AVG)) {
+            return null;
+        }
+        int miniBatch = input.size(0);
+        int depth = input.size(1);
+        int inH = input.size(2);
+        int inW = input.size(3);
+        int outH = epsilon.size(2);
+        int outW = epsilon.size(3);
+
+        //Same strides as the im2col implementation: [depth, miniBatch, H, W] in c order, permuted to
+        // [miniBatch, depth, H, W], to match the activations of a convolution layer below
+        INDArray outEpsilon = Nd4j.create(new int[]{depth, miniBatch, inH, inW}, 'c').permute(1, 0, 2, 3);
+        DataBuffer out = outEpsilon.data();
+        int[] os = outEpsilon.stride();
+        DataBuffer eps = epsilon.data();
+        int[] es = epsilon.stride();
+
+        if (poolingType == PoolingType.MAX) {
+            int[] positions = argMax;
+            if (input != argMaxInput || !Arrays.equals(argMaxConfig, config(kernel, strides, pad))
+                    || positions.length < epsilon.length()) {
+                positions = argMaxBuffer(epsilon.length());
+                maxPool(input, kernel, strides, pad, null, 0, positions);
+            }
+            //Release the input; the positions buffer is kept for the next minibatch
+            argMaxInput = null;
+
+            int i = 0;
+            for (int n = 0; n < miniBatch; n++) {
+                for (int c = 0; c < depth; c++) {
+                    int outBase = outEpsilon.offset() + n * os[0] + c * os[1];
+                    int epsBase = epsilon.offset() + n * es[0] + c * es[1];
+                    for (int oy = 0; oy < outH; oy++) {
+                        for (int ox = 0; ox < outW; ox++, i++) {
+                            int p = positions[i];
+                            if (p < 0)
+                                continue;
+                            int pos = outBase + (p / inW) * os[2] + (p % inW) * os[3];
+                            out.put(pos, out.getDouble(pos) + eps.getDouble(epsBase + oy * es[2] + ox * es[3]));
+                        }
+                    }
+                }
+            }
+        } else {
+            double kernelSize = kernel[0] * kernel[1];
+            for (int n = 0; n < miniBatch; n++) {
+                for (int c = 0; c < depth; c++) {
+                    int outBase = outEpsilon.offset() + n * os[0] + c * os[1];
+                    int epsBase = epsilon.offset() + n * es[0] + c * es[1];
+                    for (int oy = 0; oy < outH; oy++) {
+                        int y0 = oy * strides[0] - pad[0];
+                        int yStart = Math.max(y0, 0);
+                        int yEnd = Math.min(y0 + kernel[0], inH);
+                        for (int ox = 0; ox < outW; ox++) {
+                            int x0 = ox * strides[1] - pad[1];
+                            int xStart = Math.max(x0, 0);
+                            int xEnd = Math.min(x0 + kernel[1], inW);
+                            double g = eps.getDouble(epsBase + oy * es[2] + ox * es[3]) / kernelSize;
+                            for (int y = yStart; y < yEnd; y++) {
+                                for (int x = xStart; x < xEnd; x++) {
+                                    int pos = outBase + y * os[2] + x * os[3];
+                                    out.put(pos, out.getDouble(pos) + g);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return new Pair<Gradient, INDArray>(new DefaultGradient(), outEpsilon);
+    }
+
+    /**
+     * Max pooling of the input in to a contiguous c order output, if not null. The position of each maximum is
+     * written to positions, if not null
+     */
+    private static void maxPool(INDArray input, int[] kernel, int[] strides, int[] pad,
+                                DataBuffer out, int outOffset, int[] positions) {
+        int miniBatch = input.size(0);
+        int depth = input.size(1);
+        int inH = input.size(2);
+        int inW = input.size(3);
+        int outH = Convolution.outSize(inH, kernel[0], strides[0], pad[0], false);
+        int outW = Convolution.outSize(inW, kernel[1], strides[1], pad[1], false);
+        DataBuffer in = input.data();
+        int[] s = input.stride();
+
+        int i = 0;
+        for (int n = 0; n < miniBatch; n++) {
+            for (int c = 0; c < depth; c++) {
+                int base = input.offset() + n * s[0] + c * s[1];
+                for (int oy = 0; oy < outH; oy++) {
+                    int y0 = oy * strides[0] - pad[0];
+                    int yStart = Math.max(y0, 0);
+                    int yEnd = Math.min(y0 + kernel[0], inH);
+                    for (int ox = 0; ox < outW; ox++, i++) {
+                        int x0 = ox * strides[1] - pad[1];
+                        int xStart = Math.max(x0, 0);
+                        int xEnd = Math.min(x0 + kernel[1], inW);
+
+                        double max = Double.NEGATIVE_INFINITY;
+                        int maxPos = -1;
+                        for (int y = yStart; y < yEnd; y++) {
+                            for (int x = xStart; x < xEnd; x++) {
+                                double v = in.getDouble(base + y * s[2] + x * s[3]);
+                                if (v > max) {
+                                    max = v;
+                                    maxPos = y * inW + x;
+                                }
+                            }
+                        }
+                        //Padding is zeros, as with im2col
+                        boolean padded = yEnd - yStart < kernel[0] || xEnd - xStart < kernel[1];
+                        if (padded && max < 0) {
+                            max = 0;
+                            maxPos = -1;
+                        }
+
+                        if (out != null)
+                            out.put(outOffset + i, max);
+                        if (positions != null)
+                            positions[i] = maxPos;
+                    }
+                }
+            }
+        }
+    }
+
+    //Average pooling of the input in to a contiguous c order output
+    private static void avgPool(INDArray input, int[] kernel, int[] strides, int[] pad, DataBuffer out,
+                                int outOffset) {
+        int miniBatch = input.size(0);
+        int depth = input.size(1);
+        int inH = input.size(2);
+        int inW = input.size(3);
+        int outH = Convolution.outSize(inH, kernel[0], strides[0], pad[0], false);
+        int outW = Convolution.outSize(inW, kernel[1], strides[1], pad[1], false);
+        DataBuffer in = input.data();
+        int[] s = input.stride();
+        double kernelSize = kernel[0] * kernel[1];
+
+        int i = 0;
+        for (int n = 0; n < miniBatch; n++) {
+            for (int c = 0; c < depth; c++) {
+                int base = input.offset() + n * s[0] + c * s[1];
+                for (int oy = 0; oy < outH; oy++) {
+                    int y0 = oy * strides[0] - pad[0];
+                    int yStart = Math.max(y0, 0);
+                    int yEnd = Math.min(y0 + kernel[0], inH);
+                    for (int ox = 0; ox < outW; ox++, i++) {
+                        int x0 = ox * strides[1] - pad[1];
+                        int xStart = Math.max(x0, 0);
+                        int xEnd = Math.min(x0 + kernel[1], inW);
+
+                        double sum = 0.0;
+                        for (int y = yStart; y < yEnd; y++) {
+                            for (int x = xStart; x < xEnd; x++) {
+                                sum += in.getDouble(base + y * s[2] + x * s[3]);
+                            }
+                        }
+                        out.put(outOffset + i, sum / kernelSize);
+                    }
+                }
+            }
+        }
+    }
+
+    private int[] argMaxBuffer(int length) {
+        if (argMax.length < length)
+            argMax = new int[length];
+        return argMax;
+    }
+
+    private static int[] config(int[] kernel, int[] strides, int[] pad) {
+        return new int[]{kernel[0], kernel[1], strides[0], strides[1], pad[0], pad[1]};
+    }
+}
@@ -47,7 +47,9 @@ import java.util.Arrays;
 public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.SubsamplingLayer> {
     protected static final Logger log = LoggerFactory.getLogger(SubsamplingLayer.class);
 
-    SubsamplingHelper helper = null;
+    //Helpers are not serializable: re-created on first use after deserialization
+    transient SubsamplingHelper helper = null;
+    transient boolean helperInitialized;
 
     public SubsamplingLayer(NeuralNetConfiguration conf) {
         super(conf);
@@ -69,6 +71,18 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
                 log.warn("Could not load CudnnSubsamplingHelper", t);
             }
         }
+        if (helper == null && CpuSubsamplingHelper.isSupported()) {
+            //Pools directly over the input, without the im2col buffers below
+            helper = new CpuSubsamplingHelper();
+        }
+        helperInitialized = true;
+    }
+
+    SubsamplingHelper helper() {
+        if (!helperInitialized) {
+            initializeHelper();
+        }
+        return helper;
     }
 
     @Override
@@ -101,7 +115,7 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         int outH = Convolution.outSize(inH, kernel[0], strides[0], pad[0],false);
         int outW = Convolution.outSize(inW, kernel[1], strides[1], pad[1], false);
 
-        if (helper != null) {
+        if (helper() != null) {
             Pair<Gradient, INDArray> ret = helper.backpropGradient(input, epsilon, kernel, strides, pad, layerConf().getPoolingType());
             if (ret != null) {
                 return ret;
@@ -211,7 +225,7 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         int outH = Convolution.outSize(inH, kernel[0], strides[0], pad[0],false);
         int outW = Convolution.outSize(inW, kernel[1], strides[1], pad[1], false);
 
-        if (helper != null) {
+        if (helper() != null) {
             INDArray ret = helper.activate(input, training, kernel, strides, pad, layerConf().getPoolingType());
             if (ret != null) {
                 return ret;
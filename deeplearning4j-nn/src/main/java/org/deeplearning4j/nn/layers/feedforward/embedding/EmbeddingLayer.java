@@ -19,6 +19,7 @@
 package org.deeplearning4j.nn.layers.feedforward.embedding;
 
 import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
@@ -27,6 +28,8 @@ import org.deeplearning4j.nn.params.DefaultParamInitializer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.Arrays;
+
 /**Embedding layer: feed-forward layer that expects single integers per example as input (class numbers, in range 0 to numClass-1)
  * as input. This input has shape [numExamples,1] instead of [numExamples,numClasses] for the equivalent one-hot representation.
  * Mathematically, EmbeddingLayer is equivalent to using a DenseLayer with a one-hot representation for the input; however,
@@ -34,10 +37,17 @@ import org.nd4j.linalg.factory.Nd4j;
  * with all but one value being zero).<br>
  * <b>Note</b>: can only be used as the first layer for a network<br>
  * <b>Note 2</b>: For a given example index i, the output is activationFunction(weights.getRow(i) + bias), hence the
- * weight rows can be considered a vector/embedding for each example.
+ * weight rows can be considered a vector/embedding for each example.<br>
+ * <b>Note 3</b>: With sparse gradients enabled in the configuration, the weight gradient is non-zero only in the rows
+ * used by the last minibatch, and those rows are reported to the updater via {@link SparseGradientLayer}
  * @author Alex Black
  */
-public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer> {
+public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer>
+        implements SparseGradientLayer {
+    //Sparse gradients: rows of the weight gradient view set by the last backprop, and the view they were set in
+    private int[] gradientRows;
+    private INDArray gradientRowsView;
+
     public EmbeddingLayer(NeuralNetConfiguration conf) {
         super(conf);
     }
@@ -56,12 +66,26 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
 
         INDArray weights = getParam(DefaultParamInitializer.WEIGHT_KEY);
         INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
 
         int[] indexes = new int[input.length()];
-        for( int i=0; i<indexes.length; i++ ){
-            indexes[i] = input.getInt(i,0);
+        for( int i=0; i<indexes.length; i++ ) indexes[i] = input.getInt(i,0);
 
+        if(layerConf().isSparseGradients()){
+            //All other rows are still zero: updaters only write to the rows reported by sparseGradientRows()
+            if(weightGradients != gradientRowsView){
+                weightGradients.assign(0);
+                gradientRowsView = weightGradients;
+            } else {
+                for(int row : gradientRows) weightGradients.getRow(row).assign(0);
+            }
+            gradientRows = distinct(indexes);
+        } else {
+            weightGradients.assign(0);
+            gradientRows = null;
+            gradientRowsView = null;
+        }
+
+        for( int i=0; i<indexes.length; i++ ){
             weightGradients.getRow(indexes[i]).addi(delta.getRow(i));
         }
 
@@ -114,6 +138,27 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
         return ret;
     }
 
+    @Override
+    public int[] sparseGradientRows(String param){
+        return DefaultParamInitializer.WEIGHT_KEY.equals(param) ? gradientRows : null;
+    }
+
+    @Override
+    public void setSparseGradientRows(String param, int[] rows){
+        if(DefaultParamInitializer.WEIGHT_KEY.equals(param) && gradientRows != null) gradientRows = rows;
+    }
+
+    //Sorted, distinct values
+    private static int[] distinct(int[] indexes){
+        int[] sorted = indexes.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for( int i=0; i<sorted.length; i++ ){
+            if(i == 0 || sorted[i] != sorted[count-1]) sorted[count++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
     @Override
     protected void applyDropOutIfNecessary(boolean training){
         throw new UnsupportedOperationException("Dropout not supported with EmbeddingLayer");
@@ -38,7 +38,9 @@ import java.util.List;
 public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.layers.BatchNormalization> {
     protected static final Logger log = LoggerFactory.getLogger(BatchNormalization.class);
 
-    BatchNormalizationHelper helper = null;
+    //Helpers are not serializable: re-created on first use after deserialization
+    transient BatchNormalizationHelper helper = null;
+    transient boolean helperInitialized;
     protected int index = 0;
     protected List<IterationListener> listeners = new ArrayList<>();
     protected INDArray std;
@@ -60,6 +62,22 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
                 log.warn("Could not load CudnnBatchNormalizationHelper", t);
             }
         }
+        if (helper == null && CpuBatchNormalizationHelper.isSupported()) {
+            helper = new CpuBatchNormalizationHelper();
+        }
+        helperInitialized = true;
+    }
+
+    BatchNormalizationHelper helper() {
+        if (!helperInitialized) {
+            initializeHelper();
+        }
+        return helper;
+    }
+
+    //Unlike cudnn (as of v5.1), the cpu helper also supports the dense (2d) batch norm case
+    private boolean helperSupports(INDArray x) {
+        return helper() != null && (x.rank() == 4 || helper instanceof CpuBatchNormalizationHelper);
     }
 
     @Override
@@ -113,14 +131,17 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
 
 
 
-        if (helper != null && epsilon.rank() == 4) {
-            //Note that cudnn does not support dense (2d) batch norm case as of v5.1
+        if (helperSupports(epsilon)) {
             if(layerConf.isLockGammaBeta()){
                 gamma = Nd4j.valueArrayOf(new int[]{1,shape[1]},layerConf.getGamma());
             }
             Pair<Gradient, INDArray> ret = helper.backpropGradient(input, epsilon,
                     shape, gamma, dGammaView, dBetaView, layerConf.getEps());
             if (ret != null) {
+                dGlobalMeanView.assign(0);
+                dGlobalVarView.assign(0);
+                ret.getFirst().setGradientFor(BatchNormalizationParamInitializer.GLOBAL_MEAN, dGlobalMeanView);
+                ret.getFirst().setGradientFor(BatchNormalizationParamInitializer.GLOBAL_VAR, dGlobalVarView);
                 return ret;
             }
         }
@@ -247,6 +268,33 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
         int[] shape = getShape(x);
 
 
+        INDArray gamma = null;
+        INDArray beta = null;
+        INDArray globalMeanView = getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+        INDArray globalVarView = getParam(BatchNormalizationParamInitializer.GLOBAL_VAR);
+        if (layerConf.isLockGammaBeta()) {
+            if(helperSupports(x)){
+                //TODO: don't create these each iteration, when using cudnn
+                int[] gammaBetaShape = new int[]{1,layerConf().getNOut()};
+                gamma = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getGamma());
+                beta = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getBeta());
+            }
+        } else {
+            gamma = getParam(BatchNormalizationParamInitializer.GAMMA);
+            beta = getParam(BatchNormalizationParamInitializer.BETA);
+        }
+
+        if (helperSupports(x)) {
+            //Full batch training (see below): the cpu helper replaces the global stats when decay is 0
+            double decay = helper instanceof CpuBatchNormalizationHelper && !layerConf.isMinibatch() ?
+                    0.0 : layerConf.getDecay();
+            INDArray ret = helper.preOutput(x, training == TrainingMode.TRAIN,
+                    shape, gamma, beta, globalMeanView, globalVarView, decay, layerConf.getEps());
+            if (ret != null) {
+                return ret;
+            }
+        }
+
         // xHat = (x-xmean) / sqrt(var + epsilon)
         //Note that for CNNs, mean and variance are calculated per feature map (i.e., per activation) rather than per activation
         //Pg5 of http://arxiv.org/pdf/1502.03167v3.pdf
@@ -279,32 +327,6 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
         }
         std = Transforms.sqrt(var,true);
 
-        INDArray gamma = null;
-        INDArray beta = null;
-        INDArray globalMeanView = getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
-        INDArray globalVarView = getParam(BatchNormalizationParamInitializer.GLOBAL_VAR);
-        if (layerConf.isLockGammaBeta()) {
-            if(helper != null && input.rank() == 4){
-                //TODO: don't create these each iteration, when using cudnn
-                int[] gammaBetaShape = new int[]{1,layerConf().getNOut()};
-                gamma = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getGamma());
-                beta = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getBeta());
-            }
-        } else {
-            gamma = getParam(BatchNormalizationParamInitializer.GAMMA);
-            beta = getParam(BatchNormalizationParamInitializer.BETA);
-        }
-
-        if (helper != null && input.rank() != 4) {
-            //Note that cudnn does not support dense (2d) batch norm case as of v5.1
-            double decay = layerConf.getDecay();
-            INDArray ret = helper.preOutput(x, training == TrainingMode.TRAIN,
-                    shape, gamma, beta, globalMeanView, globalVarView, decay, layerConf.getEps());
-            if (ret != null) {
-                return ret;
-            }
-        }
-
         // BN(xk) = gamma*xˆ + β (applying gamma and beta for each activation)
         if (x.rank() == 2) {
             xMu = x.subRowVector(mean);
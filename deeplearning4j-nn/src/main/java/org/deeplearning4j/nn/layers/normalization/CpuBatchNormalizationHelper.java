@@ -0,0 +1,212 @@
+package org.deeplearning4j.nn.layers.normalization;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Batch normalization for the CPU backend, computed per channel directly over the input buffer, for both dense
+ * ({@code [miniBatch, nOut]}) and convolutional ({@code [miniBatch, depth, H, W]}) activations.
+ * <p>
+ * The forward pass computes the minibatch mean and variance of a channel in a single (Welford) pass, then writes the
+ * normalized, scaled and shifted values straight to the output: no xMu, xHat or broadcast temporaries are created.
+ * The backward pass takes two passes per channel, one for the dGamma/dBeta sums and one for the epsilons, again
+ * without any full size temporary. Only the per channel mean and 1/std are kept from the forward pass.
+ * <p>
+ * Semantics match the built-in implementation of {@link BatchNormalization}: variances are biased, eps is added to
+ * the minibatch variance before it is stored in the global variance, and in test mode the global variance is used
+ * as is.
+ */
+public class CpuBatchNormalizationHelper implements BatchNormalizationHelper {
+
+    //Forward pass input the mean and 1/std per channel were computed for
+    private INDArray statsInput;
+    private double[] channelMean = new double[0];
+    private double[] channelInvStd = new double[0];
+
+    /**
+     * @return true if the current ND4J backend keeps arrays in host memory, where this helper can access them
+     */
+    public static boolean isSupported() {
+        return Nd4j.getBackend().getClass().getName().toLowerCase().contains("cpu");
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray epsilon, int[] shape, INDArray gamma,
+                                                     INDArray dGammaView, INDArray dBetaView, double eps) {
+        if ((input.rank() != 2 && input.rank() != 4) || gamma == null) {
+            return null;
+        }
+        int miniBatch = input.size(0);
+        int depth = input.size(1);
+        int h = input.rank() == 4 ? input.size(2) : 1;
+        int w = input.rank() == 4 ? input.size(3) : 1;
+        double n = miniBatch * h * w;
+
+        if (input != statsInput || channelMean.length < depth) {
+            minibatchStats(input, eps);
+        }
+        //Release the input; the stats arrays are kept for the next minibatch
+        statsInput = null;
+
+        INDArray nextEpsilon = Nd4j.create(input.shape(), 'c');
+        DataBuffer in = input.data();
+        DataBuffer e = epsilon.data();
+        DataBuffer out = nextEpsilon.data();
+        int[] is = strides(input);
+        int[] es = strides(epsilon);
+        int[] os = strides(nextEpsilon);
+
+        for (int c = 0; c < depth; c++) {
+            double mu = channelMean[c];
+            double inv = channelInvStd[c];
+            int inBase = input.offset() + c * is[1];
+            int epsBase = epsilon.offset() + c * es[1];
+            int outBase = nextEpsilon.offset() + c * os[1];
+
+            //First pass: dL/dBeta = sum dL/dOut, dL/dGamma = sum dL/dOut .* xHat
+            double dBeta = 0.0;
+            double dGamma = 0.0;
+            for (int i = 0; i < miniBatch; i++) {
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        double xHat = (in.getDouble(inBase + i * is[0] + y * is[2] + x * is[3]) - mu) * inv;
+                        double g = e.getDouble(epsBase + i * es[0] + y * es[2] + x * es[3]);
+                        dBeta += g;
+                        dGamma += g * xHat;
+                    }
+                }
+            }
+
+            //Second pass: dL/dx = gamma/std * (dL/dOut - dL/dBeta/N - xHat * dL/dGamma/N)
+            double scale = gamma.getDouble(c) * inv;
+            double meanBeta = dBeta / n;
+            double meanGamma = dGamma / n;
+            for (int i = 0; i < miniBatch; i++) {
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        double xHat = (in.getDouble(inBase + i * is[0] + y * is[2] + x * is[3]) - mu) * inv;
+                        double g = e.getDouble(epsBase + i * es[0] + y * es[2] + x * es[3]);
+                        out.put(outBase + i * os[0] + y * os[2] + x * os[3], scale * (g - meanBeta - xHat * meanGamma));
+                    }
+                }
+            }
+
+            dGammaView.putScalar(c, dGamma);
+            dBetaView.putScalar(c, dBeta);
+        }
+
+        Gradient retGradient = new DefaultGradient();
+        retGradient.setGradientFor(BatchNormalizationParamInitializer.GAMMA, dGammaView);
+        retGradient.setGradientFor(BatchNormalizationParamInitializer.BETA, dBetaView);
+        return new Pair<>(retGradient, nextEpsilon);
+    }
+
+    /**
+     * @param decay weight of the previous global mean and variance when updating them in training; 0 replaces them
+     *              with the minibatch statistics
+     */
+    @Override
+    public INDArray preOutput(INDArray x, boolean training, int[] shape, INDArray gamma, INDArray beta,
+                              INDArray mean, INDArray var, double decay, double eps) {
+        if ((x.rank() != 2 && x.rank() != 4) || gamma == null || beta == null) {
+            return null;
+        }
+        int miniBatch = x.size(0);
+        int depth = x.size(1);
+        int h = x.rank() == 4 ? x.size(2) : 1;
+        int w = x.rank() == 4 ? x.size(3) : 1;
+
+        if (training) {
+            minibatchStats(x, eps);
+            statsInput = x;
+            for (int c = 0; c < depth; c++) {
+                //Global variance includes eps, as in the built-in implementation
+                double batchVar = 1.0 / (channelInvStd[c] * channelInvStd[c]);
+                mean.putScalar(c, decay * mean.getDouble(c) + (1 - decay) * channelMean[c]);
+                var.putScalar(c, decay * var.getDouble(c) + (1 - decay) * batchVar);
+            }
+        } else {
+            statsInput = null;
+            ensureCapacity(depth);
+            for (int c = 0; c < depth; c++) {
+                channelMean[c] = mean.getDouble(c);
+                channelInvStd[c] = 1.0 / Math.sqrt(var.getDouble(c));
+            }
+        }
+
+        INDArray out = Nd4j.create(x.shape(), 'c');
+        DataBuffer in = x.data();
+        DataBuffer o = out.data();
+        int[] is = strides(x);
+        int[] os = strides(out);
+        for (int c = 0; c < depth; c++) {
+            //out = gamma * (x - mean) / std + beta = x * scale + shift
+            double scale = gamma.getDouble(c) * channelInvStd[c];
+            double shift = beta.getDouble(c) - channelMean[c] * scale;
+            int inBase = x.offset() + c * is[1];
+            int outBase = out.offset() + c * os[1];
+            for (int i = 0; i < miniBatch; i++) {
+                for (int y = 0; y < h; y++) {
+                    for (int xi = 0; xi < w; xi++) {
+                        double v = in.getDouble(inBase + i * is[0] + y * is[2] + xi * is[3]);
+                        o.put(outBase + i * os[0] + y * os[2] + xi * os[3], v * scale + shift);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Mean and 1/sqrt(variance + eps) of each channel over examples and locations, in one (Welford) pass
+     */
+    private void minibatchStats(INDArray x, double eps) {
+        int miniBatch = x.size(0);
+        int depth = x.size(1);
+        int h = x.rank() == 4 ? x.size(2) : 1;
+        int w = x.rank() == 4 ? x.size(3) : 1;
+        DataBuffer in = x.data();
+        int[] s = strides(x);
+
+        ensureCapacity(depth);
+        for (int c = 0; c < depth; c++) {
+            int base = x.offset() + c * s[1];
+            double mu = 0.0;
+            double m2 = 0.0;
+            long count = 0;
+            for (int i = 0; i < miniBatch; i++) {
+                for (int y = 0; y < h; y++) {
+                    for (int xi = 0; xi < w; xi++) {
+                        double v = in.getDouble(base + i * s[0] + y * s[2] + xi * s[3]);
+                        count++;
+                        double delta = v - mu;
+                        mu += delta / count;
+                        m2 += delta * (v - mu);
+                    }
+                }
+            }
+            channelMean[c] = mu;
+            channelInvStd[c] = 1.0 / Math.sqrt(m2 / count + eps);
+        }
+    }
+
+    private void ensureCapacity(int depth) {
+        if (channelMean.length < depth) {
+            channelMean = new double[depth];
+            channelInvStd = new double[depth];
+        }
+    }
+
+    //Strides of a rank 2 or 4 array as [example, channel, y, x]; the location strides of a rank 2 array are unused
+    private static int[] strides(INDArray arr) {
+        int[] s = arr.stride();
+        if (arr.rank() == 4)
+            return s;
+        return new int[]{s[0], s[1], 0, 0};
+    }
+}
@@ -52,6 +52,9 @@ import java.util.Map;
  */
 public class GravesBidirectionalLSTM extends BaseRecurrentLayer<org.deeplearning4j.nn.conf.layers.GravesLSTM> {
 
+    //Gate, cell state and delta arrays, reused between passes. Shared by both directions, which are computed in turn
+    private transient LSTMBuffers buffers;
+
     public GravesBidirectionalLSTM(NeuralNetConfiguration conf) {
         super(conf);
     }
@@ -102,7 +105,8 @@ public class GravesBidirectionalLSTM extends BaseRecurrentLayer<org.deeplearning
                 GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_FORWARDS,
                 GravesBidirectionalLSTMParamInitializer.RECURRENT_WEIGHT_KEY_FORWARDS,
                 GravesBidirectionalLSTMParamInitializer.BIAS_KEY_FORWARDS,
-                gradientViews);
+                gradientViews,
+                buffers());
 
 
 
@@ -121,7 +125,8 @@ public class GravesBidirectionalLSTM extends BaseRecurrentLayer<org.deeplearning
                 GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_BACKWARDS,
                 GravesBidirectionalLSTMParamInitializer.RECURRENT_WEIGHT_KEY_BACKWARDS,
                 GravesBidirectionalLSTMParamInitializer.BIAS_KEY_BACKWARDS,
-                gradientViews);
+                gradientViews,
+                buffers());
 
 
         //merge the gradient, which is key value pair of String,INDArray
@@ -199,7 +204,8 @@ public class GravesBidirectionalLSTM extends BaseRecurrentLayer<org.deeplearning
                 getParam(GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_FORWARDS),
                 getParam(GravesBidirectionalLSTMParamInitializer.BIAS_KEY_FORWARDS),
                 training,null,null,forBackprop,true,
-                GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_FORWARDS);
+                GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_FORWARDS,
+                buffers());
 
         final FwdPassReturn backwardsEval = LSTMHelpers.activateHelper(
                 this,
@@ -209,7 +215,8 @@ public class GravesBidirectionalLSTM extends BaseRecurrentLayer<org.deeplearning
                 getParam(GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_BACKWARDS),
                 getParam(GravesBidirectionalLSTMParamInitializer.BIAS_KEY_BACKWARDS),
                 training,null,null,forBackprop,false,
-                GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_BACKWARDS);
+                GravesBidirectionalLSTMParamInitializer.INPUT_WEIGHT_KEY_BACKWARDS,
+                buffers());
 
 
         //sum outputs
@@ -248,8 +255,25 @@ public class GravesBidirectionalLSTM extends BaseRecurrentLayer<org.deeplearning
                 prevMemCellState,
                 forBackprop,
                 forwards,
-                inputKey);
+                inputKey,
+                buffers());
+
+    }
 
+    @Override
+    public void clear() {
+        super.clear();
+        if (buffers != null) {
+            buffers.clear();
+        }
+    }
+
+    //Not serialized: allocated on first use, including after deserialization
+    private LSTMBuffers buffers() {
+        if (buffers == null) {
+            buffers = new LSTMBuffers();
+        }
+        return buffers;
     }
 
     @Override
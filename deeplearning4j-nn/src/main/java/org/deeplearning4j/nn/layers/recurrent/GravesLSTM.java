@@ -39,6 +39,9 @@ public class GravesLSTM extends BaseRecurrentLayer<org.deeplearning4j.nn.conf.la
     public static final String STATE_KEY_PREV_ACTIVATION = "prevAct";
     public static final String STATE_KEY_PREV_MEMCELL = "prevMem";
 
+    //Gate, cell state and delta arrays, reused between passes
+    private transient LSTMBuffers buffers;
+
     public GravesLSTM(NeuralNetConfiguration conf) {
         super(conf);
     }
@@ -97,7 +100,8 @@ public class GravesLSTM extends BaseRecurrentLayer<org.deeplearning4j.nn.conf.la
                 GravesLSTMParamInitializer.INPUT_WEIGHT_KEY,
                 GravesLSTMParamInitializer.RECURRENT_WEIGHT_KEY,
                 GravesLSTMParamInitializer.BIAS_KEY,
-                gradientViews);
+                gradientViews,
+                buffers());
     }
 
 
@@ -144,7 +148,23 @@ public class GravesLSTM extends BaseRecurrentLayer<org.deeplearning4j.nn.conf.la
         final INDArray inputWeights = getParam(GravesLSTMParamInitializer.INPUT_WEIGHT_KEY);            //Shape: [n^(L-1),4*hiddenLayerSize]; order: [wi,wf,wo,wg]
         final INDArray biases = getParam(GravesLSTMParamInitializer.BIAS_KEY); //by row: IFOG			//Shape: [4,hiddenLayerSize]; order: [bi,bf,bo,bg]^T
 
-        return LSTMHelpers.activateHelper(this,this.conf,this.input,recurrentWeights,inputWeights,biases,training,prevOutputActivations,prevMemCellState,forBackprop,true,GravesLSTMParamInitializer.INPUT_WEIGHT_KEY);
+        return LSTMHelpers.activateHelper(this,this.conf,this.input,recurrentWeights,inputWeights,biases,training,prevOutputActivations,prevMemCellState,forBackprop,true,GravesLSTMParamInitializer.INPUT_WEIGHT_KEY,buffers());
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        if (buffers != null) {
+            buffers.clear();
+        }
+    }
+
+    //Not serialized: allocated on first use, including after deserialization
+    private LSTMBuffers buffers() {
+        if (buffers == null) {
+            buffers = new LSTMBuffers();
+        }
+        return buffers;
     }
 
     @Override
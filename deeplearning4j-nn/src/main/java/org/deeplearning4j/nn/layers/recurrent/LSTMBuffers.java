@@ -0,0 +1,38 @@
+package org.deeplearning4j.nn.layers.recurrent;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Scratch arrays of an LSTM layer, kept between forward and backward passes so that the gate, cell state and delta
+ * arrays of {@link LSTMHelpers} are allocated once per sequence shape instead of once per time step and minibatch.
+ * <p>
+ * Arrays returned here are overwritten by the next pass of the same layer: anything that outlives a pass (outputs,
+ * stored state) must be a copy. Not thread safe; each layer instance has its own buffers.
+ */
+class LSTMBuffers {
+    private final Map<String, INDArray> arrays = new HashMap<>();
+
+    /**
+     * @return an f order array of the given shape, with undefined contents
+     */
+    INDArray get(String key, int... shape) {
+        INDArray array = arrays.get(key);
+        if (array == null || !Arrays.equals(array.shape(), shape)) {
+            array = Nd4j.create(shape, 'f');
+            arrays.put(key, array);
+        }
+        return array;
+    }
+
+    /**
+     * Releases all arrays
+     */
+    void clear() {
+        arrays.clear();
+    }
+}
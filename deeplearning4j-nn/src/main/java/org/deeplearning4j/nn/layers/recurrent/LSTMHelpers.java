@@ -63,50 +63,73 @@ public class LSTMHelpers {
                                                 boolean forBackprop,
                                                 boolean forwards,
                                                 final String inputWeightKey) {
+        return activateHelper(layer, conf, input, recurrentWeights, originalInputWeights, biases, training,
+                originalPrevOutputActivations, originalPrevMemCellState, forBackprop, forwards, inputWeightKey,
+                new LSTMBuffers());
+    }
+
+    /**
+     * As above, with the gate, cell state and scratch arrays taken from (and left in) the given buffers.
+     * When forBackprop is true, the arrays of the returned FwdPassReturn are only valid until the next pass using
+     * the same buffers; lastAct and lastMemCell are always copies.
+     */
+    static FwdPassReturn activateHelper( final Layer layer,
+                                         final NeuralNetConfiguration conf,
+                                         final INDArray input,
+                                         final INDArray recurrentWeights,
+                                         final INDArray originalInputWeights,
+                                         final INDArray biases,
+                                         final boolean training,
+                                         final INDArray originalPrevOutputActivations,
+                                         final INDArray originalPrevMemCellState,
+                                         boolean forBackprop,
+                                         boolean forwards,
+                                         final String inputWeightKey,
+                                         final LSTMBuffers buffers) {
         //Mini-batch data format: for mini-batch size m, nIn inputs, and T time series length
         //Data has shape [m,nIn,T]. Layer activations/output has shape [m,nHiddenUnits,T]
         if(input == null || input.length() == 0) throw new IllegalArgumentException("Invalid input: not set or 0 length");
 
         INDArray inputWeights = originalInputWeights;
-        INDArray prevOutputActivations = originalPrevOutputActivations;
 
         boolean is2dInput = input.rank() < 3;        //Edge case of T=1, may have shape [m,nIn], equiv. to [m,nIn,1]
         int timeSeriesLength = (is2dInput ? 1 : input.size(2));
         int hiddenLayerSize = recurrentWeights.size(0);
         int miniBatchSize = input.size(0);
-
-        INDArray prevMemCellState;
-        if (originalPrevMemCellState == null) {
-            prevMemCellState = Nd4j.create(new int[]{miniBatchSize, hiddenLayerSize},'f');
-        } else {
-            prevMemCellState = originalPrevMemCellState.dup('f');
-        }
-
-
+        String afn = conf.getLayer().getActivationFunction();
 
         INDArray recurrentWeightsIFOG = recurrentWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(0,4*hiddenLayerSize)).dup('f');
 
-
         //Apply dropconnect to input (not recurrent) weights only:
         if (conf.isUseDropConnect() && training && conf.getLayer().getDropOut() > 0) {
             inputWeights = Dropout.applyDropConnect(layer, inputWeightKey);
         }
 
+        INDArray wFFTranspose = Shape.toMmulCompatible(recurrentWeights.get(NDArrayIndex.all(), interval(4 * hiddenLayerSize, 4 * hiddenLayerSize + 1)).transpose()); //current
+        INDArray wOOTranspose = Shape.toMmulCompatible(recurrentWeights.get(NDArrayIndex.all(), interval(4 * hiddenLayerSize + 1, 4 * hiddenLayerSize + 2)).transpose()); //current
+        INDArray wGGTranspose = Shape.toMmulCompatible(recurrentWeights.get(NDArrayIndex.all(), interval(4 * hiddenLayerSize + 2, 4 * hiddenLayerSize + 3)).transpose()); //previous
 
-        INDArray wFFTranspose = recurrentWeights.get(NDArrayIndex.all(), interval(4 * hiddenLayerSize, 4 * hiddenLayerSize + 1)).transpose(); //current
-        INDArray wOOTranspose = recurrentWeights.get(NDArrayIndex.all(), interval(4 * hiddenLayerSize + 1, 4 * hiddenLayerSize + 2)).transpose(); //current
-        INDArray wGGTranspose = recurrentWeights.get(NDArrayIndex.all(), interval(4 * hiddenLayerSize + 2, 4 * hiddenLayerSize + 3)).transpose(); //previous
-
-        if (timeSeriesLength > 1 || forBackprop) {
-            wFFTranspose = Shape.toMmulCompatible(wFFTranspose);
-            wOOTranspose = Shape.toMmulCompatible(wOOTranspose);
-            wGGTranspose = Shape.toMmulCompatible(wGGTranspose);
+        //Input projections (plus biases) for all time steps, in one gemm. Rows: example index varies fastest, then time
+        INDArray inputProjection = buffers.get("inputProjection", miniBatchSize * timeSeriesLength, 4 * hiddenLayerSize);
+        INDArray input2d;
+        if (is2dInput) {
+            input2d = Shape.toMmulCompatible(input);
+        } else {
+            INDArray inputCopy = buffers.get("input", miniBatchSize, timeSeriesLength, input.size(1));
+            inputCopy.assign(input.permute(0, 2, 1));
+            input2d = inputCopy.reshape('f', miniBatchSize * timeSeriesLength, input.size(1));    //Zero-copy reshape: f order
         }
+        Nd4j.gemm(input2d, inputWeights, inputProjection, false, false, 1.0, 0.0);
+        inputProjection.addiRowVector(biases);
 
-        //Allocate arrays for activations:
-        INDArray outputActivations = null;
-
+        //Allocate arrays for activations. For backprop, gates/cell states/outputs for all time steps are kept;
+        // otherwise only the previous and current time step are needed
         FwdPassReturn toReturn = new FwdPassReturn();
+        INDArray outputActivations;
+        INDArray ifogAll = null;
+        INDArray izAll = null;
+        INDArray memCellStateAll = null;
+        INDArray memCellActivationsAll = null;
         if (forBackprop) {
             toReturn.fwdPassOutputAsArrays = new INDArray[timeSeriesLength];
             toReturn.memCellState = new INDArray[timeSeriesLength];
@@ -116,16 +139,22 @@ public class LSTMHelpers {
             toReturn.fa = new INDArray[timeSeriesLength];
             toReturn.oa = new INDArray[timeSeriesLength];
             toReturn.ga = new INDArray[timeSeriesLength];
+
+            outputActivations = buffers.get("outputActivations", miniBatchSize, hiddenLayerSize, timeSeriesLength);
+            ifogAll = buffers.get("ifog", miniBatchSize, 4 * hiddenLayerSize, timeSeriesLength);
+            izAll = buffers.get("iz", miniBatchSize, hiddenLayerSize, timeSeriesLength);
+            memCellStateAll = buffers.get("memCellState", miniBatchSize, hiddenLayerSize, timeSeriesLength);
+            memCellActivationsAll = buffers.get("memCellActivations", miniBatchSize, hiddenLayerSize, timeSeriesLength);
         } else {
             outputActivations = Nd4j.create(new int[]{miniBatchSize, hiddenLayerSize, timeSeriesLength},'f');   //F order to keep time steps together
             toReturn.fwdPassOutput = outputActivations;
         }
+        INDArray temp = buffers.get("temp", miniBatchSize, hiddenLayerSize);
 
-        Level1 l1BLAS = Nd4j.getBlasWrapper().level1();
-
-        //initialize prevOutputActivations to zeroes
-        if (prevOutputActivations == null) {
-            prevOutputActivations = Nd4j.zeros(new int[]{miniBatchSize, hiddenLayerSize});
+        INDArray prevOutputActivations = originalPrevOutputActivations;
+        INDArray prevMemCellState = originalPrevMemCellState;
+        if (prevMemCellState == null) {
+            prevMemCellState = buffers.get("zeros", miniBatchSize, hiddenLayerSize).assign(0);
         }
 
         for (int iTimeIndex = 0; iTimeIndex < timeSeriesLength; iTimeIndex++) {
@@ -135,77 +164,67 @@ public class LSTMHelpers {
                 time = timeSeriesLength - iTimeIndex - 1;
             }
 
-
-            INDArray miniBatchData = (is2dInput ? input : input.tensorAlongDimension(time, 1, 0));    //[Expected shape: [m,nIn]. Also deals with edge case of T=1, with 'time series' data of shape [m,nIn], equiv. to [m,nIn,1]
-            miniBatchData = Shape.toMmulCompatible(miniBatchData);
-
-
-            //Calculate activations for: network input + forget, output, input modulation gates. Next 3 lines are first part of those
-            INDArray ifogActivations = miniBatchData.mmul(inputWeights);    //Shape: [miniBatch,4*layerSize]
-            Nd4j.gemm(prevOutputActivations, recurrentWeightsIFOG, ifogActivations, false, false, 1.0, 1.0);
-            ifogActivations.addiRowVector(biases);
+            //Calculate activations for: network input + forget, output, input modulation gates: input projection,
+            // plus recurrent contribution from the previous time step (none at the first, zeros by default)
+            INDArray ifogActivations = (forBackprop ? ifogAll.tensorAlongDimension(time, 1, 0) : buffers.get("ifogStep", miniBatchSize, 4 * hiddenLayerSize));
+            ifogActivations.assign(inputProjection.get(interval(time * miniBatchSize, (time + 1) * miniBatchSize), NDArrayIndex.all()));
+            if (prevOutputActivations != null) {
+                Nd4j.gemm(prevOutputActivations, recurrentWeightsIFOG, ifogActivations, false, false, 1.0, 1.0);
+            }
 
             INDArray inputActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(0,hiddenLayerSize));
-            if (forBackprop) toReturn.iz[time] = inputActivations.dup('f');
-            Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(conf.getLayer().getActivationFunction(), inputActivations));
+            if (forBackprop) toReturn.iz[time] = izAll.tensorAlongDimension(time, 1, 0).assign(inputActivations);
+            Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(afn, inputActivations));
             if (forBackprop) toReturn.ia[time] = inputActivations;
 
             INDArray forgetGateActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(hiddenLayerSize,2*hiddenLayerSize));
-            INDArray pmcellWFF = prevMemCellState.dup('f').muliRowVector(wFFTranspose);
-            l1BLAS.axpy(pmcellWFF.length(), 1.0, pmcellWFF, forgetGateActivations);   //y = a*x + y i.e., forgetGateActivations.addi(pmcellWFF)
-            //Above line: treats matrix as a vector. Can only do this because we're sure both pwcelWFF and forgetGateACtivations are f order, offset 0 and have same strides
+            forgetGateActivations.addi(temp.assign(prevMemCellState).muliRowVector(wFFTranspose));
             Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(SIGMOID, forgetGateActivations));
             if (forBackprop) toReturn.fa[time] = forgetGateActivations;
 
-
             INDArray inputModGateActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(3*hiddenLayerSize,4*hiddenLayerSize));
-            INDArray pmcellWGG = prevMemCellState.dup('f').muliRowVector(wGGTranspose);
-            l1BLAS.axpy(pmcellWGG.length(), 1.0, pmcellWGG, inputModGateActivations);   //inputModGateActivations.addi(pmcellWGG)
+            inputModGateActivations.addi(temp.assign(prevMemCellState).muliRowVector(wGGTranspose));
             Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(SIGMOID, inputModGateActivations));
             if (forBackprop) toReturn.ga[time] = inputModGateActivations;
 
-            //Memory cell state
+            //Memory cell state: forget gate * previous state + input modulation gate * input. The state arrays
+            // alternate between two buffers when only the previous time step is needed
             INDArray currentMemoryCellState;
-            INDArray inputModMulInput;
-            if(forBackprop){
-                currentMemoryCellState = prevMemCellState.dup('f').muli(forgetGateActivations);
-                inputModMulInput = inputModGateActivations.dup('f').muli(inputActivations);
+            if (forBackprop) {
+                currentMemoryCellState = memCellStateAll.tensorAlongDimension(time, 1, 0);
             } else {
-                currentMemoryCellState = forgetGateActivations.muli(prevMemCellState);
-                inputModMulInput = inputModGateActivations.muli(inputActivations);
+                currentMemoryCellState = buffers.get(iTimeIndex % 2 == 0 ? "memCellStateA" : "memCellStateB", miniBatchSize, hiddenLayerSize);
             }
-            l1BLAS.axpy(currentMemoryCellState.length(), 1.0, inputModMulInput, currentMemoryCellState);   //currentMemoryCellState.addi(inputModMulInput)
+            Nd4j.getExecutioner().exec(new MulOp(forgetGateActivations, prevMemCellState, currentMemoryCellState));
+            Nd4j.getExecutioner().exec(new MulOp(inputModGateActivations, inputActivations, temp));
+            currentMemoryCellState.addi(temp);
 
             INDArray outputGateActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,3*hiddenLayerSize));
-            INDArray pmcellWOO = currentMemoryCellState.dup('f').muliRowVector(wOOTranspose);
-            l1BLAS.axpy(pmcellWOO.length(), 1.0, pmcellWOO, outputGateActivations);   //outputGateActivations.addi(pmcellWOO)
+            outputGateActivations.addi(temp.assign(currentMemoryCellState).muliRowVector(wOOTranspose));
             Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(SIGMOID, outputGateActivations));
             if (forBackprop) toReturn.oa[time] = outputGateActivations;
 
-            //LSTM unit outputs:
-            INDArray currMemoryCellActivation = Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(conf.getLayer().getActivationFunction(), currentMemoryCellState.dup('f')));
-            INDArray currHiddenUnitActivations;
-            if(forBackprop){
-                currHiddenUnitActivations = currMemoryCellActivation.dup('f').muli(outputGateActivations);    //Expected shape: [m,hiddenLayerSize]
-            } else {
-                currHiddenUnitActivations = currMemoryCellActivation.muli(outputGateActivations);    //Expected shape: [m,hiddenLayerSize]
-            }
+            //LSTM unit outputs, written directly in to the output array:
+            INDArray currMemoryCellActivation = (forBackprop ? memCellActivationsAll.tensorAlongDimension(time, 1, 0) : temp);
+            currMemoryCellActivation.assign(currentMemoryCellState);
+            Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(afn, currMemoryCellActivation));
+            INDArray currHiddenUnitActivations = outputActivations.tensorAlongDimension(time, 1, 0);    //Expected shape: [m,hiddenLayerSize]
+            Nd4j.getExecutioner().exec(new MulOp(currMemoryCellActivation, outputGateActivations, currHiddenUnitActivations));
 
             if (forBackprop) {
                 toReturn.fwdPassOutputAsArrays[time] = currHiddenUnitActivations;
                 toReturn.memCellState[time] = currentMemoryCellState;
                 toReturn.memCellActivations[time] = currMemoryCellActivation;
-            } else {
-                outputActivations.tensorAlongDimension(time, 1, 0).assign(currHiddenUnitActivations);
             }
 
             prevOutputActivations = currHiddenUnitActivations;
             prevMemCellState = currentMemoryCellState;
-
-            toReturn.lastAct = currHiddenUnitActivations;
-            toReturn.lastMemCell = currentMemoryCellState;
         }
 
+        //Copies: stored as layer state, so must not be views of the buffers or the output
+        toReturn.lastAct = prevOutputActivations.dup('f');
+        toReturn.lastMemCell = prevMemCellState.dup('f');
+
         return toReturn;
     }
 
@@ -222,7 +241,28 @@ public class LSTMHelpers {
                                                                   final String recurrentWeightKey,
                                                                   final String biasWeightKey,
                                                                   final Map<String,INDArray> gradientViews) {
+        return backpropGradientHelper(conf, input, recurrentWeights, inputWeights, epsilon, truncatedBPTT,
+                tbpttBackwardLength, fwdPass, forwards, inputWeightKey, recurrentWeightKey, biasWeightKey,
+                gradientViews, new LSTMBuffers());
+    }
 
+    /**
+     * As above, with the delta and scratch arrays taken from the given buffers
+     */
+    static Pair<Gradient, INDArray> backpropGradientHelper(final NeuralNetConfiguration conf,
+                                                           final INDArray input,
+                                                           final INDArray recurrentWeights,
+                                                           final INDArray inputWeights,
+                                                           final INDArray epsilon,
+                                                           final boolean truncatedBPTT,
+                                                           final int tbpttBackwardLength,
+                                                           final FwdPassReturn fwdPass,
+                                                           final boolean forwards,
+                                                           final String inputWeightKey,
+                                                           final String recurrentWeightKey,
+                                                           final String biasWeightKey,
+                                                           final Map<String,INDArray> gradientViews,
+                                                           final LSTMBuffers buffers) {
 
         //Expect errors to have shape: [miniBatchSize,n^(L+1),timeSeriesLength]
         int hiddenLayerSize = recurrentWeights.size(0);    //i.e., n^L
@@ -239,9 +279,14 @@ public class LSTMHelpers {
         //F order here so that content for time steps are together
         INDArray epsilonNext = Nd4j.create(new int[]{miniBatchSize, prevLayerSize, timeSeriesLength},'f');    //i.e., what would be W^L*(delta^L)^T. Shape: [m,n^(L-1),T]
 
-        INDArray nablaCellStateNext = null;
+        //Cell state errors for the current and the next time step: two buffers, swapped after each time step
+        INDArray nablaCellState = buffers.get("nablaCellStateA", miniBatchSize, hiddenLayerSize);
+        INDArray nablaCellStateNext = buffers.get("nablaCellStateB", miniBatchSize, hiddenLayerSize);
+        INDArray nablaOut = buffers.get("nablaOut", miniBatchSize, hiddenLayerSize);
+        INDArray temp = buffers.get("backpropTemp", miniBatchSize, hiddenLayerSize);
+        String afn = conf.getLayer().getActivationFunction();
 
-        INDArray deltaifogNext = Nd4j.create(new int[]{miniBatchSize,4*hiddenLayerSize},'f');
+        INDArray deltaifogNext = buffers.get("deltaifog", miniBatchSize, 4 * hiddenLayerSize).assign(0);
         INDArray deltaiNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(0,hiddenLayerSize));
         INDArray deltafNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(hiddenLayerSize,2*hiddenLayerSize));
         INDArray deltaoNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,3*hiddenLayerSize));
@@ -280,12 +325,11 @@ public class LSTMHelpers {
 
 
             //First: calclate the components of nablaCellState that relies on the next time step deltas, so we can overwrite the deltas
-            INDArray nablaCellState;
             if(iTimeIndex != timeSeriesLength -1){
-                nablaCellState = deltafNext.dup('f').muliRowVector(wFFTranspose);
-                l1BLAS.axpy(nablaCellState.length(), 1.0, deltagNext.dup('f').muliRowVector(wGGTranspose), nablaCellState);
+                nablaCellState.assign(deltafNext).muliRowVector(wFFTranspose);
+                nablaCellState.addi(temp.assign(deltagNext).muliRowVector(wGGTranspose));
             } else {
-                nablaCellState = Nd4j.create(new int[]{miniBatchSize,hiddenLayerSize},'f');
+                nablaCellState.assign(0);
             }
 
             INDArray prevMemCellState = (iTimeIndex == 0 ? null : fwdPass.memCellState[time - inext]);
@@ -295,32 +339,29 @@ public class LSTMHelpers {
 
             //LSTM unit output errors (dL/d(a_out)); not to be confused with \delta=dL/d(z_out)
             INDArray epsilonSlice = (is2dInput ? epsilon : epsilon.tensorAlongDimension(time, 1, 0));        //(w^{L+1}*(delta^{(L+1)t})^T)^T or equiv.
-            INDArray nablaOut = Shape.toOffsetZeroCopy(epsilonSlice, 'f'); //Shape: [m,n^L]
+            nablaOut.assign(epsilonSlice); //Shape: [m,n^L]
             if (iTimeIndex != timeSeriesLength - 1) {
                 //if t == timeSeriesLength-1 then deltaiNext etc are zeros
                 Nd4j.gemm(deltaifogNext, wIFOG, nablaOut, false, true, 1.0, 1.0);
             }
 
-            //Output gate deltas:
+            //Output gate deltas: nablaOut * sigmah(s) * sigmoid'(zo), with sigmoid'(zo) == ao*(1-ao)
             INDArray sigmahOfS = fwdPass.memCellActivations[time];
             INDArray ao = fwdPass.oa[time];
-            INDArray sigmaoPrimeOfZo = Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform("timesoneminus", ao.dup('f')));    //Equivalent to sigmoid deriv on zo
-            //Normally would use zo.dup() in above line, but won't be using zo again (for this time step). Ditto for zf, zg, zi
             INDArray deltao = deltaoNext;
-            Nd4j.getExecutioner().exec(new MulOp(nablaOut,sigmahOfS,deltao));
-            deltao.muli(sigmaoPrimeOfZo);
+            Nd4j.getExecutioner().exec(new TimesOneMinus(ao,deltao));
+            deltao.muli(nablaOut).muli(sigmahOfS);
 
             //Memory cell error:
-            INDArray sigmahPrimeOfS = Nd4j.getExecutioner().execAndReturn(Nd4j.getOpFactory().createTransform(conf.getLayer().getActivationFunction(), currMemCellState.dup('f')).derivative());//	shape: [m,n^L]
-            l1BLAS.axpy(nablaCellState.length(), 1.0, ao.muli(nablaOut).muli(sigmahPrimeOfS), nablaCellState);
-            INDArray deltaMulRowWOO = deltao.dup('f').muliRowVector(wOOTranspose);
-            l1BLAS.axpy(nablaCellState.length(), 1.0, deltaMulRowWOO, nablaCellState); //nablaCellState.addi(deltao.mulRowVector(wOOTranspose));
+            temp.assign(currMemCellState);
+            Nd4j.getExecutioner().exec(Nd4j.getOpFactory().createTransform(afn, temp).derivative());    //sigmah'(s), shape: [m,n^L]
+            nablaCellState.addi(temp.muli(ao).muli(nablaOut));
+            nablaCellState.addi(temp.assign(deltao).muliRowVector(wOOTranspose));
             if (iTimeIndex != timeSeriesLength - 1) {
                 INDArray nextForgetGateAs = fwdPass.fa[time + inext];
-                int length = nablaCellState.length();
-                l1BLAS.axpy(length, 1.0, nextForgetGateAs.muli(nablaCellStateNext), nablaCellState);       //nablaCellState.addi(nextForgetGateAs.mul(nablaCellStateNext))
+                Nd4j.getExecutioner().exec(new MulOp(nextForgetGateAs, nablaCellStateNext, temp));
+                nablaCellState.addi(temp);
             }
-            nablaCellStateNext = nablaCellState;    //Store for use in next iteration
 
             //Forget gate delta:
             INDArray af = fwdPass.fa[time];
@@ -345,7 +386,7 @@ public class LSTMHelpers {
             //Network input delta:
             INDArray zi = fwdPass.iz[time];
             INDArray deltai = deltaiNext;
-            Nd4j.getExecutioner().exec(Nd4j.getOpFactory().createTransform(conf.getLayer().getActivationFunction(), zi, null, deltai).derivative());
+            Nd4j.getExecutioner().exec(Nd4j.getOpFactory().createTransform(afn, zi, null, deltai).derivative());
             deltai.muli(ag);
             deltai.muli(nablaCellState);
             //Shape: [m,n^L]
@@ -370,14 +411,14 @@ public class LSTMHelpers {
 
                 //Shape: [1,n^L]. sum(0) is sum over examples in mini-batch.
                 //Can use axpy here because result of sum and rwGradients[4 to 6] have order Nd4j.order(), via Nd4j.create()
-                INDArray dLdwFF = deltaf.dup('f').muli(prevMemCellState).sum(0);    //mul not mmul because these weights are from unit j->j only (whereas other recurrent weights are i->j for all i,j)
-                l1BLAS.axpy(hiddenLayerSize,1.0,dLdwFF,rwGradientsFF);     //rwGradients[4].addi(dLdwFF);    //dL/dw_{FF}
-                INDArray dLdwGG = deltag.dup('f').muli(prevMemCellState).sum(0);
-                l1BLAS.axpy(hiddenLayerSize,1.0,dLdwGG,rwGradientsGG);     //rwGradients[6].addi(dLdwGG);
+                Nd4j.getExecutioner().exec(new MulOp(deltaf, prevMemCellState, temp));    //mul not mmul because these weights are from unit j->j only (whereas other recurrent weights are i->j for all i,j)
+                l1BLAS.axpy(hiddenLayerSize,1.0,temp.sum(0),rwGradientsFF);     //rwGradients[4].addi(dLdwFF);    //dL/dw_{FF}
+                Nd4j.getExecutioner().exec(new MulOp(deltag, prevMemCellState, temp));
+                l1BLAS.axpy(hiddenLayerSize,1.0,temp.sum(0),rwGradientsGG);     //rwGradients[6].addi(dLdwGG);
             }
 
-            INDArray dLdwOO = deltao.dup('f').muli(currMemCellState).sum(0);    //Expected shape: [n^L,1]. sum(0) is sum over examples in mini-batch.
-            l1BLAS.axpy(hiddenLayerSize,1.0,dLdwOO,rwGradientsOO); //rwGradients[5].addi(dLdwOO);    //dL/dw_{OOxy}
+            Nd4j.getExecutioner().exec(new MulOp(deltao, currMemCellState, temp));
+            l1BLAS.axpy(hiddenLayerSize,1.0,temp.sum(0),rwGradientsOO); //rwGradients[5].addi(dLdwOO);    //dL/dw_{OOxy}. sum(0) is sum over examples in mini-batch.
 
             if(iTimeIndex > 0){
                 l1BLAS.axpy(4*hiddenLayerSize,1.0, deltaifogNext.sum(0), bGradientsOut);
@@ -401,6 +442,11 @@ public class LSTMHelpers {
                 INDArray wog = inputWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,4*hiddenLayerSize));
                 Nd4j.gemm(deltaog, wog, epsilonNextSlice, false, true, 1.0, 1.0);   //epsilonNextSlice.addi(deltao.mmul(woTranspose)).addi(deltag.mmul(wgTranspose));
             }
+
+            //Store for use in next iteration: this time step's cell state errors are the next ones there
+            INDArray swap = nablaCellStateNext;
+            nablaCellStateNext = nablaCellState;
+            nablaCellState = swap;
         }
 
         Gradient retGradient = new DefaultGradient();
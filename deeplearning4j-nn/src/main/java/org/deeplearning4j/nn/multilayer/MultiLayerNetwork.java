@@ -28,9 +28,11 @@ import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.api.Classifier;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.api.OutputConsumer;
 import org.deeplearning4j.nn.api.Updater;
 import org.deeplearning4j.nn.api.layers.IOutputLayer;
 import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.BackpropType;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
@@ -43,6 +45,8 @@ import org.deeplearning4j.nn.weights.WeightInit;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.solvers.MixedPrecision;
+import org.deeplearning4j.util.MicroBatchUtils;
 import org.deeplearning4j.util.ModelSerializer;
 import org.deeplearning4j.util.MultiLayerUtil;
 import org.deeplearning4j.util.TimeSeriesUtils;
@@ -105,6 +109,14 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
     protected int layerIndex;	//For Layer.get/setIndex()
 
     protected transient Solver solver;	//Used to call optimizers during backprop
+    protected MixedPrecision mixedPrecision;	//Loss scaling and master weights state; null if not used
+
+    //Mask arrays of the current minibatch, as set by setLayerMaskArrays
+    protected transient INDArray featuresMaskArray;
+    protected transient INDArray labelsMaskArray;
+    //Gradient accumulation: sum of the micro-batch gradients, and number of iterator minibatches in the current one
+    protected transient INDArray accumulatedGradients;
+    protected transient int accumulatedBatches;
 
 
     public MultiLayerNetwork(MultiLayerConfiguration conf) {
@@ -1053,11 +1065,27 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
                 iter.reset();
             update(TaskUtils.buildTask(iter));
             iter.reset();
+            boolean accumulate = layerWiseConfigurations.getAccumulationSteps() > 1
+                    && layerWiseConfigurations.getBackpropType() != BackpropType.TruncatedBPTT;
             while (iter.hasNext()) {
                 DataSet next = iter.next();
                 if (next.getFeatureMatrix() == null || next.getLabels() == null)
                     break;
 
+                if(accumulate){
+                    //One updater step for accumulationSteps minibatches: each is fit as its own micro-batch(es)
+                    List<DataSet> minibatches = new ArrayList<>();
+                    minibatches.add(next);
+                    while(minibatches.size() < layerWiseConfigurations.getAccumulationSteps() && iter.hasNext()){
+                        DataSet ds = iter.next();
+                        if (ds.getFeatureMatrix() == null || ds.getLabels() == null)
+                            break;
+                        minibatches.add(ds);
+                    }
+                    next = mergeMinibatches(minibatches);
+                    accumulatedBatches = minibatches.size();
+                }
+
                 boolean hasMaskArrays = next.hasMaskArrays();
 
                 if(layerWiseConfigurations.getBackpropType() == BackpropType.TruncatedBPTT) {
@@ -1077,10 +1105,29 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
                 }
 
                 if(hasMaskArrays) clearLayerMaskArrays();
+                accumulatedBatches = 0;
             }
         }
     }
 
+    /** Concatenate the examples of several minibatches, for gradient accumulation */
+    private static DataSet mergeMinibatches(List<DataSet> minibatches){
+        if(minibatches.size() == 1) return minibatches.get(0);
+        List<INDArray> features = new ArrayList<>();
+        List<INDArray> labels = new ArrayList<>();
+        List<INDArray> featuresMasks = new ArrayList<>();
+        List<INDArray> labelsMasks = new ArrayList<>();
+        for(DataSet ds : minibatches){
+            features.add(ds.getFeatureMatrix());
+            labels.add(ds.getLabels());
+            featuresMasks.add(ds.getFeaturesMaskArray());
+            labelsMasks.add(ds.getLabelsMaskArray());
+        }
+        Pair<INDArray,INDArray> f = MicroBatchUtils.concatExamples(features, featuresMasks);
+        Pair<INDArray,INDArray> l = MicroBatchUtils.concatExamples(labels, labelsMasks);
+        return new DataSet(f.getFirst(), l.getFirst(), f.getSecond(), l.getSecond());
+    }
+
     /** Calculate and set gradients for MultiLayerNetwork, based on OutputLayer and labels*/
     protected void backprop() {
         Pair<Gradient,INDArray> pair = calcBackpropGradients(null, true);
@@ -1132,6 +1179,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
                 throw new IllegalStateException("No labels found");
             outputLayer.setLabels(labels);
             currPair = outputLayer.backpropGradient(null);
+            scaleLoss(currPair);
 
             for( Map.Entry<String, INDArray> entry : currPair.getFirst().gradientForVariable().entrySet()) {
                 String origName = entry.getKey();
@@ -1173,6 +1221,14 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         return new Pair<>(gradient,currPair.getSecond());
     }
 
+    /** Mixed precision: scale the output layer gradients and errors (and hence all gradients) by the loss scale */
+    private void scaleLoss(Pair<Gradient,INDArray> outputLayerPair) {
+        if(mixedPrecision == null) return;
+        double lossScale = mixedPrecision.getLossScale();
+        for(INDArray g : outputLayerPair.getFirst().gradientForVariable().values()) g.muli(lossScale);
+        if(outputLayerPair.getSecond() != null) outputLayerPair.getSecond().muli(lossScale);
+    }
+
     protected void doTruncatedBPTT(INDArray input, INDArray labels, INDArray featuresMaskArray, INDArray labelsMaskArray) {
         if( input.rank() != 3 || labels.rank() != 3 ){
             log.warn("Cannot do truncated BPTT with non-3d inputs or labels. Expect input with shape [miniBatchSize,nIn,timeSeriesLength], got "
@@ -1270,6 +1326,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         LinkedList<Pair<String,INDArray>> gradientList = new LinkedList<>();
 
         Pair<Gradient,INDArray> currPair = outputLayer.backpropGradient(null);
+        scaleLoss(currPair);
 
         for( Map.Entry<String, INDArray> entry : currPair.getFirst().gradientForVariable().entrySet()) {
             multiGradientKey = String.valueOf(numLayers - 1) + "_" + entry.getKey();
@@ -1542,11 +1599,34 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
      * [0.5, 0.5] or some other probability distribution summing to one
      */
     public INDArray output(INDArray input, boolean train) {
+        if (!train) {
+            setInput(input);
+            return silentOutput();
+        }
         List<INDArray> activations = feedForward(input, train);
         //last activation is output
         return activations.get(activations.size() - 1);
     }
 
+    /**
+     * Forward pass at test time, using the currently set input, that keeps only the activations of the current layer.
+     * Unlike {@link #feedForward(boolean)}, activations of earlier layers aren't collected, and each layer's input is
+     * set back to what it was before the call once the layer has been activated, so peak memory is that of two
+     * consecutive layers, rather than the sum of all activations, and layer state is left as it was.
+     *
+     * @return the output of the last layer
+     */
+    protected INDArray silentOutput() {
+        INDArray currInput = input;
+        for (int i = 0; i < layers.length; i++) {
+            INDArray prevInput = layers[i].input();
+            INDArray out = activationFromPrevLayer(i, currInput, false);
+            layers[i].setInput(prevInput);
+            currInput = out;
+        }
+        return currInput;
+    }
+
     /** Calculate the output of the network, with masking arrays. The masking arrays are used in situations such
      * as one-to-many and many-to-one recurrent neural network (RNN) designs, as well as for supporting time series
      * of varying lengths within the same minibatch.
@@ -1583,25 +1663,46 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
      * [0.5, 0.5] or some other probability distribution summing to one
      */
     public INDArray output(DataSetIterator iterator, boolean train) {
-        List<INDArray> outList = new ArrayList<>();
-        while(iterator.hasNext()){
-            DataSet next = iterator.next();
+        final List<INDArray> outList = new ArrayList<>();
+        output(iterator, train, new OutputConsumer() {
+            @Override
+            public void consume(long exampleOffset, INDArray... outputs) {
+                outList.add(outputs[0]);
+            }
+        });
+        return Nd4j.vstack(outList.toArray(new INDArray[0]));
+    }
 
+    /**
+     * Streaming version of {@link #output(DataSetIterator, boolean)}: the output of each minibatch is passed to the
+     * consumer as soon as it has been calculated, instead of being stacked with all other outputs. So memory use doesn't
+     * grow with the size of the data set: with a {@link org.deeplearning4j.util.PositionalChannelOutputWriter}, outputs go
+     * straight to disk.<br>
+     * As with {@link #output(DataSetIterator, boolean)}, the iterator is used as passed: it is not reset first.
+     *
+     * @param iterator data to calculate the outputs for
+     * @param train    whether to do the forward pass at training time
+     * @param consumer receives the outputs of each minibatch
+     * @return the number of examples
+     */
+    public long output(DataSetIterator iterator, boolean train, OutputConsumer consumer) {
+        long offset = 0;
+        while (iterator.hasNext()) {
+            DataSet next = iterator.next();
             if (next.getFeatureMatrix() == null || next.getLabels() == null)
                 break;
 
-            INDArray features = next.getFeatures();
-
-            if(next.hasMaskArrays()){
-                INDArray fMask = next.getFeaturesMaskArray();
-                INDArray lMask = next.getLabelsMaskArray();
-                outList.add(this.output(features,train,fMask,lMask));
-
+            INDArray features = next.getFeatureMatrix();
+            INDArray out;
+            if (next.hasMaskArrays()) {
+                out = output(features, train, next.getFeaturesMaskArray(), next.getLabelsMaskArray());
             } else {
-                outList.add(output(features,train));
+                out = output(features, train);
             }
+            consumer.consume(offset, out);
+            offset += features.size(0);
         }
-        return Nd4j.vstack(outList.toArray(new INDArray[0]));
+        return offset;
     }
 
     public INDArray output(DataSetIterator iterator) {
@@ -1744,12 +1845,32 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
     }
 
     public INDArray scoreExamples(DataSetIterator iter, boolean addRegularizationTerms){
-        List<INDArray> out = new ArrayList<>();
+        final List<INDArray> out = new ArrayList<>();
+        scoreExamples(iter, addRegularizationTerms, new OutputConsumer() {
+            @Override
+            public void consume(long exampleOffset, INDArray... outputs) {
+                out.add(outputs[0]);
+            }
+        });
+        return Nd4j.toFlattened('f',out);
+    }
 
-        while(iter.hasNext()){
-            out.add(scoreExamples(iter.next(), addRegularizationTerms));
+    /**Streaming version of {@link #scoreExamples(DataSetIterator, boolean)}: the scores of each minibatch (a column
+     * vector, see {@link #scoreExamples(DataSet, boolean)}) are passed to the consumer as soon as they have been
+     * calculated, instead of being collected in memory. The iterator is used as passed: it is not reset first.
+     * @param iter Data to score
+     * @param addRegularizationTerms If true: add l1/l2 regularization terms (if any) to the score. If false: don't add regularization terms
+     * @param consumer receives the scores of each minibatch
+     * @return the number of examples
+     */
+    public long scoreExamples(DataSetIterator iter, boolean addRegularizationTerms, OutputConsumer consumer){
+        long offset = 0;
+        while (iter.hasNext()) {
+            DataSet next = iter.next();
+            consumer.consume(offset, scoreExamples(next, addRegularizationTerms));
+            offset += next.numExamples();
         }
-        return Nd4j.toFlattened('f',out);
+        return offset;
     }
 
     /**Calculate the score for each example in a DataSet individually. Unlike {@link #score(DataSet)} and {@link #score(DataSet, boolean)}
@@ -1815,16 +1936,12 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
             truncatedBPTTGradient();
         }
         else {
-            //First: do a feed-forward through the network
-            //Note that we don't actually need to do the full forward pass through the output layer right now; but we do
-            // need the input to the output layer to be set (such that backprop can be done)
-            List<INDArray> activations = feedForwardToLayer(layers.length-2,true);
-            INDArray actSecondLastLayer = activations.get(activations.size()-1);
-            if(layerWiseConfigurations.getInputPreProcess(layers.length-1) != null)
-                actSecondLastLayer = layerWiseConfigurations.getInputPreProcess(layers.length-1).preProcess(actSecondLastLayer,getInputMiniBatchSize());
-            getOutputLayer().setInput(actSecondLastLayer);
-            //Then: compute gradients
-            backprop();
+            int numMicroBatches = layerWiseConfigurations.getMicroBatches() * Math.max(1, accumulatedBatches);
+            if(numMicroBatches > 1 && input.size(0) > 1) {
+                computeGradientAndScoreMicroBatches(numMicroBatches);
+                return;
+            }
+            feedForwardAndBackprop();
         }
         if(!(getOutputLayer() instanceof IOutputLayer)){
             throw new IllegalStateException("Cannot calculate gradient and score with respect to labels: final layer is not an IOutputLayer");
@@ -1832,6 +1949,69 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         score = ((IOutputLayer)getOutputLayer()).computeScore(calcL1(),calcL2(), true);
     }
 
+    private void feedForwardAndBackprop() {
+        //First: do a feed-forward through the network
+        //Note that we don't actually need to do the full forward pass through the output layer right now; but we do
+        // need the input to the output layer to be set (such that backprop can be done)
+        List<INDArray> activations = feedForwardToLayer(layers.length-2,true);
+        INDArray actSecondLastLayer = activations.get(activations.size()-1);
+        if(layerWiseConfigurations.getInputPreProcess(layers.length-1) != null)
+            actSecondLastLayer = layerWiseConfigurations.getInputPreProcess(layers.length-1).preProcess(actSecondLastLayer,getInputMiniBatchSize());
+        getOutputLayer().setInput(actSecondLastLayer);
+        //Then: compute gradients
+        backprop();
+    }
+
+    /**
+     * Gradient accumulation: compute the gradient and score of the current minibatch as sums over micro-batches, so that
+     * the activations of only one micro-batch are held at a time. The accumulated gradient is left in the gradients view
+     * and the minibatch input is restored, so the updater normalizes by the full minibatch size as usual.
+     * Loss functions sum over examples, hence the result matches that of a single pass over the minibatch
+     */
+    protected void computeGradientAndScoreMicroBatches(int numMicroBatches) {
+        if(!(getOutputLayer() instanceof IOutputLayer)){
+            throw new IllegalStateException("Cannot calculate gradient and score with respect to labels: final layer is not an IOutputLayer");
+        }
+        if(flattenedGradients == null) initGradientsView();
+        if(accumulatedGradients == null || accumulatedGradients.length() != flattenedGradients.length()) {
+            accumulatedGradients = Nd4j.create(flattenedGradients.shape(), 'f');
+        } else {
+            accumulatedGradients.assign(0);
+        }
+        INDArray fullInput = input;
+        INDArray fullLabels = labels;
+        INDArray fullFeaturesMask = featuresMaskArray;
+        INDArray fullLabelsMask = labelsMaskArray;
+        boolean hasMaskArrays = fullFeaturesMask != null || fullLabelsMask != null;
+        Map<SparseGradientLayer, Map<String, int[]>> sparseRows = new IdentityHashMap<>();
+
+        int[] split = MicroBatchUtils.splitPoints(fullInput.size(0), numMicroBatches);
+        double lossSum = 0.0;
+        int numExamples = 0;
+        for( int i=0; i<split.length-1; i++ ){
+            if(hasMaskArrays) setLayerMaskArrays(MicroBatchUtils.getExamples(fullFeaturesMask, split[i], split[i+1]),
+                    MicroBatchUtils.getExamples(fullLabelsMask, split[i], split[i+1]));
+            setInput(MicroBatchUtils.getExamples(fullInput, split[i], split[i+1]));
+            setLabels(MicroBatchUtils.getExamples(fullLabels, split[i], split[i+1]));
+
+            feedForwardAndBackprop();
+            accumulatedGradients.addi(flattenedGradients);
+            MicroBatchUtils.collectSparseGradientRows(layers, sparseRows);
+
+            //Loss summed over the micro-batch examples; regularization is added once, below
+            Layer outputLayer = getOutputLayer();
+            lossSum += ((IOutputLayer)outputLayer).computeScore(0.0, 0.0, true) * outputLayer.getInputMiniBatchSize();
+            numExamples += outputLayer.getInputMiniBatchSize();
+        }
+        flattenedGradients.assign(accumulatedGradients);
+        MicroBatchUtils.setSparseGradientRows(sparseRows);
+
+        if(hasMaskArrays) setLayerMaskArrays(fullFeaturesMask, fullLabelsMask);
+        setInput(fullInput);
+        setLabels(fullLabels);
+        score = (lossSum + calcL1() + calcL2()) / numExamples;
+    }
+
     @Override
     public void accumulateScore(double accum) {
 
@@ -2307,6 +2487,22 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         solver.getOptimizer().setUpdater(updater);
     }
 
+    /**
+     * Enable mixed precision training (loss scaling, and fp32 master weights when the ND4J data type is HALF), or
+     * disable it with null. See {@link MixedPrecision}
+     */
+    public void setMixedPrecision(MixedPrecision mixedPrecision) {
+        this.mixedPrecision = mixedPrecision;
+        if (mixedPrecision != null && flattenedParams != null) mixedPrecision.attach(flattenedParams);
+    }
+
+    /**
+     * @return the mixed precision training state, or null if mixed precision training is not enabled
+     */
+    public MixedPrecision getMixedPrecision() {
+        return mixedPrecision;
+    }
+
     /**Set the mask arrays for features and labels. Mask arrays are typically used in situations such as one-to-many
      * and many-to-one learning with recurrent neural networks, as well as for supporting time series of varying lengths
      * within the same minibatch.<br>
@@ -2321,6 +2517,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
      * @see #clearLayerMaskArrays()
      */
     public void setLayerMaskArrays(INDArray featuresMaskArray, INDArray labelsMaskArray){
+        this.featuresMaskArray = featuresMaskArray;
+        this.labelsMaskArray = labelsMaskArray;
         if(featuresMaskArray != null){
             //feedforward layers below a RNN layer: need the input (features) mask array
             //Reason: even if the time series input is zero padded, the output from the dense layers are
@@ -2353,6 +2551,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         for (Layer layer : layers) {
             layer.setMaskArray(null);
         }
+        this.featuresMaskArray = null;
+        this.labelsMaskArray = null;
     }
 
     /**
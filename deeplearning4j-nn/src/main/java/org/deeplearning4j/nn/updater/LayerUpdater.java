@@ -3,10 +3,12 @@ package org.deeplearning4j.nn.updater;
 import org.apache.commons.math3.util.FastMath;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.GradientNormalization;
 import org.deeplearning4j.nn.conf.LearningRatePolicy;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.impl.accum.Norm2;
 import org.nd4j.linalg.factory.Nd4j;
@@ -17,6 +19,7 @@ import org.nd4j.linalg.learning.*;
 import org.nd4j.linalg.learning.NoOpUpdater;
 import org.nd4j.linalg.ops.transforms.Transforms;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -27,6 +30,9 @@ import java.util.Map;
 public class LayerUpdater implements Updater {
     protected Map<String, GradientUpdater> updaterForVariable = new LinkedHashMap<>();
     protected INDArray viewArray;
+    //Updater state of each variable, and for sparse gradients, the last iteration each row was updated in
+    protected Map<String, INDArray> stateViewForVariable = new HashMap<>();
+    protected Map<String, int[]> lastIterationForRows = new HashMap<>();
 
     @Override
     public void setStateViewArray(Layer layer, INDArray viewArray, boolean initialize) {
@@ -41,6 +47,7 @@ public class LayerUpdater implements Updater {
             if(thisSize == 0) continue;
             INDArray subset = viewArray.get(NDArrayIndex.point(0), NDArrayIndex.interval(count, count+thisSize));
             gu.setStateViewArray(subset, paramsArray.shape(), paramsArray.ordering(), initialize);
+            stateViewForVariable.put(entry.getKey(), subset);
             count += thisSize;
         }
     }
@@ -79,8 +86,14 @@ public class LayerUpdater implements Updater {
             if (decay != LearningRatePolicy.None || layer.conf().getLayer().getUpdater() == org.deeplearning4j.nn.conf.Updater.NESTEROVS)
                 applyLrDecayPolicy(decay, layer, iteration, paramName);
             updater = init(paramName, layer);
-            gradient2 = updater.getGradient(gradientOrig, iteration);
-            postApply(layer, gradient2, paramName, miniBatchSize);
+            int[] rows = layer instanceof SparseGradientLayer ?
+                    ((SparseGradientLayer) layer).sparseGradientRows(paramName) : null;
+            if (rows != null) {
+                gradient2 = sparseUpdate(layer, gradientOrig, rows, paramName, iteration, miniBatchSize);
+            } else {
+                gradient2 = updater.getGradient(gradientOrig, iteration);
+                postApply(layer, gradient2, paramName, miniBatchSize);
+            }
             gradient.setGradientFor(paramName, gradient2);
         }
     }
@@ -91,10 +104,18 @@ public class LayerUpdater implements Updater {
      * @param layer
      * @param gradient
      * @param param
+     * @param miniBatchSize number of examples the gradient is summed over: with gradient accumulation, the examples
+     *                      of all micro-batches
      */
     public void postApply(Layer layer, INDArray gradient, String param, int miniBatchSize) {
+        postApply(layer, gradient, layer.getParam(param), param, miniBatchSize);
+    }
+
+    /**
+     * Apply the regularization, for the given values of the parameter (all of them, or the updated rows only)
+     */
+    protected void postApply(Layer layer, INDArray gradient, INDArray params, String param, int miniBatchSize) {
         NeuralNetConfiguration conf = layer.conf();
-        INDArray params = layer.getParam(param);
         if (conf.isUseRegularization() && conf.getL2ByParam(param) > 0)
             gradient.addi(params.mul(conf.getL2ByParam(param)));    //dC/dw = dC0/dw + lambda/n * w where C0 is pre-l2 cost function
         if (conf.isUseRegularization() && conf.getL1ByParam(param) > 0)
@@ -104,6 +125,138 @@ public class LayerUpdater implements Updater {
 
     }
 
+    /**
+     * Update only the given rows of a parameter's gradient, and the same rows of the updater state, by running a
+     * temporary updater of the same type on those rows. All other rows of the gradient must be zero, and are left
+     * as is. The state of each row is first decayed for the iterations since it was last updated, as if it had
+     * zero gradients in those iterations (the parameter itself is not moved for them).
+     *
+     * @return the gradient array, with the updated rows
+     */
+    protected INDArray sparseUpdate(Layer layer, INDArray gradient, int[] rows, String param, int iteration,
+                                    int miniBatchSize) {
+        int cols = gradient.size(1);
+        INDArray params = layer.getParam(param);
+        //Updater state blocks have the shape and order of the parameter
+        boolean cOrder = params.ordering() == 'c';
+        INDArray gradientRows = getRows(gradient, rows);
+        GradientUpdater rowUpdater = createUpdater(param, layer);
+
+        INDArray state = stateViewForVariable.get(param);
+        INDArray rowState = null;
+        int[] lastIteration = null;
+        if (state != null) {
+            lastIteration = lastIterationForRows.get(param);
+            if (lastIteration == null || lastIteration.length != gradient.rows()) {
+                //Rows have no history (new, or restored/averaged updater state): no decay to catch up on
+                lastIteration = new int[gradient.rows()];
+                Arrays.fill(lastIteration, iteration - 1);
+                lastIterationForRows.put(param, lastIteration);
+            }
+            double[] decay = stateDecay(layer, param);
+            int blockLength = gradient.length();
+            int blocks = state.length() / blockLength;
+            rowState = Nd4j.create(1, blocks * rows.length * cols);
+            copyStateRows(state, rowState, rows, cols, cOrder, blocks, decay, lastIteration, iteration, true);
+            rowUpdater.setStateViewArray(rowState, new int[]{rows.length, cols}, 'c', false);
+        }
+
+        INDArray updated = rowUpdater.getGradient(gradientRows, iteration);
+        postApply(layer, updated, getRows(params, rows), param, miniBatchSize);
+
+        putRows(updated, gradient, rows);
+        if (state != null) {
+            copyStateRows(state, rowState, rows, cols, cOrder, state.length() / gradient.length(), null,
+                    lastIteration, iteration, false);
+            for (int row : rows) lastIteration[row] = iteration;
+        }
+        return gradient;
+    }
+
+    /**
+     * Per iteration decay of each block of the updater state of a variable, with zero gradients
+     */
+    protected double[] stateDecay(Layer layer, String variable) {
+        org.deeplearning4j.nn.conf.layers.Layer conf = layer.conf().getLayer();
+        switch (conf.getUpdaterByParam(variable)) {
+            case ADAM:
+                return new double[]{conf.getAdamMeanDecay(), conf.getAdamVarDecay()};
+            case NESTEROVS:
+                return new double[]{conf.getMomentum()};
+            case RMSPROP:
+                return new double[]{conf.getRmsDecay()};
+            case ADADELTA:
+                return new double[]{conf.getRho(), conf.getRho()};
+            default:
+                return new double[]{1.0, 1.0};
+        }
+    }
+
+    //Rows of a matrix, in a new c order array
+    private static INDArray getRows(INDArray matrix, int[] rows) {
+        int cols = matrix.size(1);
+        INDArray out = Nd4j.create(new int[]{rows.length, cols}, 'c');
+        DataBuffer in = matrix.data();
+        DataBuffer o = out.data();
+        int[] s = matrix.stride();
+        for (int i = 0; i < rows.length; i++) {
+            int base = matrix.offset() + rows[i] * s[0];
+            for (int j = 0; j < cols; j++) {
+                o.put(out.offset() + i * cols + j, in.getDouble(base + j * s[1]));
+            }
+        }
+        return out;
+    }
+
+    //Assign the rows of a c order array to the given rows of a matrix
+    private static void putRows(INDArray values, INDArray matrix, int[] rows) {
+        int cols = matrix.size(1);
+        DataBuffer in = values.data();
+        DataBuffer o = matrix.data();
+        int[] s = matrix.stride();
+        int[] vs = values.stride();
+        for (int i = 0; i < rows.length; i++) {
+            int base = matrix.offset() + rows[i] * s[0];
+            for (int j = 0; j < cols; j++) {
+                o.put(base + j * s[1], in.getDouble(values.offset() + i * vs[0] + j * vs[1]));
+            }
+        }
+    }
+
+    /**
+     * Copy the given rows of each block of a variable's updater state (each block having the shape and order of the
+     * variable) to or from the c order blocks of a row updater's state. When copying to the row state, each value is
+     * multiplied by the decay of its block for the iterations skipped since the row was last updated
+     */
+    private static void copyStateRows(INDArray state, INDArray rowState, int[] rows, int cols, boolean cOrder,
+                                      int blocks, double[] decay, int[] lastIteration, int iteration, boolean toRows) {
+        DataBuffer full = state.data();
+        DataBuffer part = rowState.data();
+        int fullStride = state.stride(1);
+        int partStride = rowState.stride(1);
+        int numRows = lastIteration.length;
+        int blockLength = numRows * cols;
+        for (int b = 0; b < blocks; b++) {
+            for (int i = 0; i < rows.length; i++) {
+                int r = rows[i];
+                double scale = 1.0;
+                if (toRows) {
+                    int skipped = Math.max(iteration - lastIteration[r] - 1, 0);
+                    scale = skipped == 0 ? 1.0 : Math.pow(decay[Math.min(b, decay.length - 1)], skipped);
+                }
+                for (int j = 0; j < cols; j++) {
+                    int fullIdx = state.offset() + (b * blockLength + (cOrder ? r * cols + j : r + j * numRows)) * fullStride;
+                    int partIdx = rowState.offset() + (b * rows.length * cols + i * cols + j) * partStride;
+                    if (toRows) {
+                        part.put(partIdx, scale * full.getDouble(fullIdx));
+                    } else {
+                        full.put(fullIdx, part.getDouble(partIdx));
+                    }
+                }
+            }
+        }
+    }
+
     /**
      *  Update momentum if schedule exist
      */
@@ -231,41 +384,50 @@ public class LayerUpdater implements Updater {
     public GradientUpdater init(String variable, Layer layer){
         GradientUpdater updater = updaterForVariable.get(variable);
         if(updater == null){
-            org.deeplearning4j.nn.conf.Updater u = layer.conf().getLayer().getUpdaterByParam(variable);
-            switch (u){
-                case SGD:
-                    updater = new org.nd4j.linalg.learning.Sgd(layer.conf().getLearningRateByParam(variable));
-                    break;
-                case ADAM:
-                    updater = new Adam(layer.conf().getLearningRateByParam(variable),
-                            layer.conf().getLayer().getAdamMeanDecay(),
-                            layer.conf().getLayer().getAdamVarDecay());
-                    break;
-                case ADADELTA:
-                    updater = new AdaDelta(layer.conf().getLayer().getRho(), layer.conf().getLayer().getEpsilon());
-                    break;
-                case NESTEROVS:
-                    updater = new Nesterovs(layer.conf().getLayer().getMomentum(), layer.conf().getLearningRateByParam(variable));
-                    break;
-                case ADAGRAD:
-                    updater = new AdaGrad(layer.conf().getLearningRateByParam(variable), layer.conf().getLayer().getEpsilon());
-                    break;
-                case RMSPROP:
-                    updater = new org.nd4j.linalg.learning.RmsProp(layer.conf().getLearningRateByParam(variable), layer.conf().getLayer().getRmsDecay());
-                    break;
-                case NONE:
-                    updater = new NoOpUpdater();
-                    break;
-                case CUSTOM:
-                    throw new UnsupportedOperationException("Custom updaters: not yet implemented");
-                default:
-                    throw new IllegalArgumentException("Unknown updater: " + u);
-            }
+            updater = createUpdater(variable, layer);
             updaterForVariable.put(variable, updater);
         }
         return updater;
     }
 
+    /**
+     * Create a new gradient updater for the given variable, with the layer's current configuration
+     */
+    protected GradientUpdater createUpdater(String variable, Layer layer){
+        GradientUpdater updater;
+        org.deeplearning4j.nn.conf.Updater u = layer.conf().getLayer().getUpdaterByParam(variable);
+        switch (u){
+            case SGD:
+                updater = new org.nd4j.linalg.learning.Sgd(layer.conf().getLearningRateByParam(variable));
+                break;
+            case ADAM:
+                updater = new Adam(layer.conf().getLearningRateByParam(variable),
+                        layer.conf().getLayer().getAdamMeanDecay(),
+                        layer.conf().getLayer().getAdamVarDecay());
+                break;
+            case ADADELTA:
+                updater = new AdaDelta(layer.conf().getLayer().getRho(), layer.conf().getLayer().getEpsilon());
+                break;
+            case NESTEROVS:
+                updater = new Nesterovs(layer.conf().getLayer().getMomentum(), layer.conf().getLearningRateByParam(variable));
+                break;
+            case ADAGRAD:
+                updater = new AdaGrad(layer.conf().getLearningRateByParam(variable), layer.conf().getLayer().getEpsilon());
+                break;
+            case RMSPROP:
+                updater = new org.nd4j.linalg.learning.RmsProp(layer.conf().getLearningRateByParam(variable), layer.conf().getLayer().getRmsDecay());
+                break;
+            case NONE:
+                updater = new NoOpUpdater();
+                break;
+            case CUSTOM:
+                throw new UnsupportedOperationException("Custom updaters: not yet implemented");
+            default:
+                throw new IllegalArgumentException("Unknown updater: " + u);
+        }
+        return updater;
+    }
+
     @Override
     public boolean equals(Object other){
         if(!(other instanceof LayerUpdater)) return false;
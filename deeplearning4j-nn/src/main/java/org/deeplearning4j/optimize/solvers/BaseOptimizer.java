@@ -27,6 +27,7 @@ import org.deeplearning4j.nn.conf.LearningRatePolicy;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.updater.UpdaterCreator;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
@@ -52,6 +53,8 @@ public abstract class BaseOptimizer implements ConvexOptimizer {
 
     protected NeuralNetConfiguration conf;
     protected int iteration = 0;
+    //Mixed precision: true if the gradients of the last gradientAndScore() call overflowed, and were not applied
+    protected boolean gradientOverflow = false;
     protected static final Logger log = LoggerFactory.getLogger(BaseOptimizer.class);
     protected StepFunction stepFunction;
     protected Collection<IterationListener> iterationListeners = new ArrayList<>();
@@ -152,10 +155,25 @@ public abstract class BaseOptimizer implements ConvexOptimizer {
         model.computeGradientAndScore();
         Pair<Gradient,Double> pair = model.gradientAndScore();
         score = pair.getSecond();
-        updateGradientAccordingToParams(pair.getFirst(), model, model.batchSize());
+        MixedPrecision mixedPrecision = getMixedPrecision(model);
+        gradientOverflow = mixedPrecision != null
+                && !mixedPrecision.unscaleGradients(pair.getFirst().gradientForVariable().values());
+        if (!gradientOverflow)
+            updateGradientAccordingToParams(pair.getFirst(), model, model.batchSize());
         return pair;
     }
 
+    /**
+     * @return the mixed precision training state of the model, or null if mixed precision is not used
+     */
+    protected static MixedPrecision getMixedPrecision(Model model) {
+        if (model instanceof MultiLayerNetwork)
+            return ((MultiLayerNetwork) model).getMixedPrecision();
+        if (model instanceof ComputationGraph)
+            return ((ComputationGraph) model).getMixedPrecision();
+        return null;
+    }
+
     /**
      * Optimize call. This runs the optimizer.
      * @return whether it converged or not
@@ -167,6 +185,11 @@ public abstract class BaseOptimizer implements ConvexOptimizer {
         INDArray gradient;
         INDArray searchDirection;
         INDArray parameters = null;
+        //Line search compares the scores of several steps per iteration; overflowed (skipped) gradients and loss
+        //scale changes between those evaluations would corrupt it, so loss scaling is only supported by SGD
+        if(getMixedPrecision(model) != null)
+            throw new UnsupportedOperationException("Mixed precision training is only supported with "
+                    + "OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT, not " + conf.getOptimizationAlgo());
         model.validateInput();
         Pair<Gradient,Double> pair = gradientAndScore();
         if(searchState.isEmpty()){
@@ -0,0 +1,161 @@
+package org.deeplearning4j.optimize.solvers;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.accum.MatchCondition;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.conditions.Condition;
+import org.nd4j.linalg.indexing.conditions.Conditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Mixed precision training state of a MultiLayerNetwork or ComputationGraph: dynamic loss scaling, and fp32 master
+ * weights when the parameters are stored in half precision. Used by {@link StochasticGradientDescent}.
+ * <p>
+ * Parameters, gradients, activations and updater state all use the ND4J data type: set it to HALF for half precision
+ * storage, on backends that support it. As ND4J uses a single data type for all arrays, the fp32 master weights are
+ * kept as the rounding residual between them and the half precision parameters, one float per parameter. Parameter
+ * changes made outside of training (averaging, setParams) are picked up as is. With any other data type, no master
+ * weights are needed and only loss scaling is applied.
+ * <p>
+ * Memory: half precision parameters take 2 bytes per parameter, and the fp32 residual another 4 bytes per parameter,
+ * on the heap. Parameter memory is therefore about 1.5 times that of fp32 training, not half of it. The savings are in
+ * gradients, activations and updater state, which stay in half precision.
+ * <p>
+ * Loss scaling: the errors and gradients of the output layers are multiplied by the loss scale, so that small
+ * gradients are not flushed to zero in half precision backprop. Before the updater is applied, gradients are checked
+ * for overflow (infinite or NaN values) and divided by the loss scale. On overflow the iteration is skipped and the
+ * loss scale halved; after growthInterval iterations without overflow, it is doubled.
+ */
+public class MixedPrecision implements Serializable {
+    private static final Logger log = LoggerFactory.getLogger(MixedPrecision.class);
+
+    public static final double DEFAULT_LOSS_SCALE = 32768.0;
+    public static final int DEFAULT_GROWTH_INTERVAL = 2000;
+
+    private double lossScale;
+    private final int growthInterval;
+    private int iterationsSinceOverflow;
+    private int skippedIterations;
+    //fp32 master weights minus the half precision parameters
+    private float[] residual;
+
+    public MixedPrecision() {
+        this(DEFAULT_LOSS_SCALE, DEFAULT_GROWTH_INTERVAL);
+    }
+
+    /**
+     * @param initialLossScale Initial loss scale. Powers of 2 avoid rounding errors when scaling
+     * @param growthInterval   Number of iterations without overflow after which the loss scale is doubled
+     */
+    public MixedPrecision(double initialLossScale, int growthInterval) {
+        if (initialLossScale < 1.0 || growthInterval <= 0) {
+            throw new IllegalArgumentException("Invalid loss scaling: initial loss scale must be >= 1 and growth interval "
+                    + "must be > 0, got " + initialLossScale + " and " + growthInterval);
+        }
+        this.lossScale = initialLossScale;
+        this.growthInterval = growthInterval;
+    }
+
+    /**
+     * @return the loss scale for the next iteration
+     */
+    public double getLossScale() {
+        return lossScale;
+    }
+
+    /**
+     * @return number of iterations skipped because of gradient overflow
+     */
+    public int getSkippedIterations() {
+        return skippedIterations;
+    }
+
+    /**
+     * Check the (loss scaled) gradients for overflow and, if there is none, divide them by the loss scale in place
+     *
+     * @return false if the gradients overflowed, in which case the iteration should be skipped
+     */
+    public boolean unscaleGradients(Collection<INDArray> gradients) {
+        for (INDArray g : gradients) {
+            if (!isFinite(g)) {
+                skippedIterations++;
+                iterationsSinceOverflow = 0;
+                lossScale = Math.max(lossScale / 2.0, 1.0);
+                log.debug("Gradient overflow: skipping iteration, loss scale reduced to {}", lossScale);
+                return false;
+            }
+        }
+        if (lossScale != 1.0) {
+            for (INDArray g : gradients) g.divi(lossScale);
+        }
+        if (++iterationsSinceOverflow >= growthInterval) {
+            iterationsSinceOverflow = 0;
+            lossScale *= 2.0;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the parameters are stored in half precision, and steps should be applied with
+     * {@link #step(INDArray, INDArray, double)}
+     */
+    public boolean hasMasterWeights(INDArray params) {
+        return params.data().dataType() == DataBuffer.Type.HALF;
+    }
+
+    /**
+     * Apply params += sign * update to the fp32 master weights, and store them rounded to the parameters
+     *
+     * @param params Flattened parameters, in half precision
+     * @param update Flattened update (gradient after the updater)
+     * @param sign   -1 to subtract the update, as with the negative step functions; 1 to add it
+     */
+    public void step(INDArray params, INDArray update, double sign) {
+        int n = params.length();
+        if (residual == null || residual.length != n) {
+            residual = new float[n];
+        }
+        DataBuffer p = params.data();
+        DataBuffer u = update.data();
+        int pStride = params.elementWiseStride();
+        int uStride = update.elementWiseStride();
+        if (pStride <= 0 || uStride <= 0) {
+            throw new IllegalStateException("Expected flattened (contiguous) parameters and update arrays");
+        }
+        for (int i = 0; i < n; i++) {
+            int pIdx = params.offset() + i * pStride;
+            float master = p.getFloat(pIdx) + residual[i];
+            master += (float) (sign * u.getFloat(update.offset() + i * uStride));
+            p.put(pIdx, master);
+            residual[i] = master - p.getFloat(pIdx);
+        }
+    }
+
+    /**
+     * Called when attached to a network with the given parameters. If the parameters are not half precision (for
+     * example, a half precision checkpoint restored for fp32 training), the master weights are restored to them
+     */
+    public void attach(INDArray params) {
+        if (residual == null || hasMasterWeights(params))
+            return;
+        if (residual.length == params.length()) {
+            for (int i = 0; i < residual.length; i++) {
+                params.putScalar(i, params.getDouble(i) + residual[i]);
+            }
+        }
+        residual = null;
+    }
+
+    private static boolean isFinite(INDArray arr) {
+        return countMatches(arr, Conditions.isNan()) == 0 && countMatches(arr, Conditions.isInfinite()) == 0;
+    }
+
+    private static int countMatches(INDArray arr, Condition condition) {
+        return (int) Nd4j.getExecutioner().exec(new MatchCondition(arr, condition), Integer.MAX_VALUE).getDouble(0);
+    }
+}
@@ -25,6 +25,8 @@ import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.optimize.api.IterationListener;
 import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.api.TerminationCondition;
+import org.deeplearning4j.optimize.stepfunctions.NegativeDefaultStepFunction;
+import org.deeplearning4j.optimize.stepfunctions.NegativeGradientStepFunction;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.util.Collection;
@@ -54,12 +56,20 @@ public class StochasticGradientDescent extends BaseOptimizer {
             Pair<Gradient,Double> pair = gradientAndScore();
             Gradient gradient = pair.getFirst();
 
-            INDArray params = model.params();
-            stepFunction.step(params,gradient.gradient());
-            //Note: model.params() is always in-place for MultiLayerNetwork and ComputationGraph, hence no setParams is necessary there
-            //However: for pretrain layers, params are NOT a view. Thus a setParams call is necessary
-            //But setParams should be a no-op for MLN and CG
-            model.setParams(params);
+            if(!gradientOverflow) {
+                INDArray params = model.params();
+                MixedPrecision mixedPrecision = getMixedPrecision(model);
+                if(mixedPrecision != null && mixedPrecision.hasMasterWeights(params)) {
+                    boolean negative = stepFunction instanceof NegativeDefaultStepFunction || stepFunction instanceof NegativeGradientStepFunction;
+                    mixedPrecision.step(params, gradient.gradient(), negative ? -1.0 : 1.0);
+                } else {
+                    stepFunction.step(params,gradient.gradient());
+                }
+                //Note: model.params() is always in-place for MultiLayerNetwork and ComputationGraph, hence no setParams is necessary there
+                //However: for pretrain layers, params are NOT a view. Thus a setParams call is necessary
+                //But setParams should be a no-op for MLN and CG
+                model.setParams(params);
+            }
 
             for(IterationListener listener : iterationListeners)
                 listener.iterationDone(model, i);
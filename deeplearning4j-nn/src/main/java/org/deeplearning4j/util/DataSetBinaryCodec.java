@@ -0,0 +1,158 @@
+package org.deeplearning4j.util;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Compact binary encoding for INDArrays and DataSets.<br>
+ * Arrays are written as: rank (int), shape (int[rank]), then the values as little-endian floats in 'c' order.
+ * DataSets are written as a flags int (bit 0: features mask present, bit 1: labels mask present, bit 2: no labels)
+ * followed by the features, labels (if present) and mask arrays (if present).
+ * <p>
+ * Unlike Java serialization, encoding and decoding is a straight copy of the values, and decoding can fill
+ * existing arrays of the right shape instead of allocating new ones.
+ * Note that values are always stored in single precision.
+ */
+public class DataSetBinaryCodec {
+
+    public static final int FLAG_FEATURES_MASK = 1;
+    public static final int FLAG_LABELS_MASK = 2;
+    public static final int FLAG_NO_LABELS = 4;
+
+    private DataSetBinaryCodec() {
+    }
+
+    /**
+     * @return Number of bytes required to encode the given array
+     */
+    public static int encodedLength(INDArray arr) {
+        long len = 4L + 4L * arr.rank() + 4L * arr.length();
+        if (len > Integer.MAX_VALUE) throw new IllegalArgumentException("Array is too large to encode: " + len + " bytes");
+        return (int) len;
+    }
+
+    /**
+     * @return Number of bytes required to encode the given DataSet
+     */
+    public static int encodedLength(DataSet ds) {
+        long len = 4L + encodedLength(ds.getFeatures());
+        if (ds.getLabels() != null) len += encodedLength(ds.getLabels());
+        if (ds.getFeaturesMaskArray() != null) len += encodedLength(ds.getFeaturesMaskArray());
+        if (ds.getLabelsMaskArray() != null) len += encodedLength(ds.getLabelsMaskArray());
+        if (len > Integer.MAX_VALUE) throw new IllegalArgumentException("DataSet is too large to encode: " + len + " bytes");
+        return (int) len;
+    }
+
+    /**
+     * Write the array at the buffer's current position. The buffer must use little-endian byte order
+     */
+    public static void write(INDArray arr, ByteBuffer buffer) {
+        checkOrder(buffer);
+        int[] shape = arr.shape();
+        buffer.putInt(shape.length);
+        for (int s : shape) buffer.putInt(s);
+        float[] values = arr.dup('c').data().asFloat();
+        buffer.asFloatBuffer().put(values, 0, arr.length());
+        buffer.position(buffer.position() + 4 * arr.length());
+    }
+
+    /**
+     * Write the DataSet at the buffer's current position. The buffer must use little-endian byte order
+     */
+    public static void write(DataSet ds, ByteBuffer buffer) {
+        checkOrder(buffer);
+        int flags = 0;
+        if (ds.getFeaturesMaskArray() != null) flags |= FLAG_FEATURES_MASK;
+        if (ds.getLabelsMaskArray() != null) flags |= FLAG_LABELS_MASK;
+        if (ds.getLabels() == null) flags |= FLAG_NO_LABELS;
+        buffer.putInt(flags);
+        write(ds.getFeatures(), buffer);
+        if (ds.getLabels() != null) write(ds.getLabels(), buffer);
+        if (ds.getFeaturesMaskArray() != null) write(ds.getFeaturesMaskArray(), buffer);
+        if (ds.getLabelsMaskArray() != null) write(ds.getLabelsMaskArray(), buffer);
+    }
+
+    /**
+     * Read an array from the buffer's current position.
+     *
+     * @param reuse If non-null, and a contiguous 'c' order array of the same shape: the values are written into
+     *              this array, which is returned. Otherwise a new array is created. Either way, the values are
+     *              copied straight from the buffer into the array's data buffer
+     */
+    public static INDArray read(ByteBuffer buffer, INDArray reuse) {
+        checkOrder(buffer);
+        int rank = buffer.getInt();
+        int[] shape = new int[rank];
+        int length = 1;
+        for (int i = 0; i < rank; i++) {
+            shape[i] = buffer.getInt();
+            length *= shape[i];
+        }
+        FloatBuffer values = buffer.asFloatBuffer();
+        values.limit(length);
+        buffer.position(buffer.position() + 4 * length);
+
+        INDArray out = canReuse(reuse, shape) ? reuse : Nd4j.create(shape, 'c');
+        DataBuffer data = out.data();
+        if (data.dataType() == DataBuffer.Type.FLOAT) {
+            data.asNioFloat().put(values);
+        } else if (data.dataType() == DataBuffer.Type.DOUBLE) {
+            DoubleBuffer db = data.asNioDouble();
+            for (int i = 0; i < length; i++) {
+                db.put(i, values.get(i));
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                data.put(i, values.get(i));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Read a DataSet from the buffer's current position, reusing the arrays of {@code reuse} where possible
+     */
+    public static DataSet read(ByteBuffer buffer, DataSet reuse) {
+        int flags = buffer.getInt();
+        INDArray features = read(buffer, reuse == null ? null : reuse.getFeatures());
+        INDArray labels = null;
+        if ((flags & FLAG_NO_LABELS) == 0)
+            labels = read(buffer, reuse == null ? null : reuse.getLabels());
+        INDArray featuresMask = null;
+        INDArray labelsMask = null;
+        if ((flags & FLAG_FEATURES_MASK) != 0)
+            featuresMask = read(buffer, reuse == null ? null : reuse.getFeaturesMaskArray());
+        if ((flags & FLAG_LABELS_MASK) != 0)
+            labelsMask = read(buffer, reuse == null ? null : reuse.getLabelsMaskArray());
+
+        if (reuse != null) {
+            reuse.setFeatures(features);
+            reuse.setLabels(labels);
+            reuse.setFeaturesMaskArray(featuresMask);
+            reuse.setLabelsMaskArray(labelsMask);
+            return reuse;
+        }
+        return new DataSet(features, labels, featuresMask, labelsMask);
+    }
+
+    private static boolean canReuse(INDArray arr, int[] shape) {
+        if (arr == null || arr.ordering() != 'c' || arr.offset() != 0) return false;
+        if (arr.rank() != shape.length) return false;
+        for (int i = 0; i < shape.length; i++) {
+            if (arr.size(i) != shape[i]) return false;
+        }
+        return arr.data().length() == arr.length();
+    }
+
+    private static void checkOrder(ByteBuffer buffer) {
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN)
+            throw new IllegalArgumentException("Buffer must use little-endian byte order");
+    }
+}
@@ -18,32 +18,27 @@
 
 package org.deeplearning4j.util;
 
-import org.apache.commons.io.FileUtils;
-
 import java.io.File;
-import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Queue;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Naive disk based queue for storing items on disk.
+ * Disk based queue for storing items on disk.
  * Only meant for poll and adding items.
+ * <p>
+ * This is a {@link SegmentedDiskQueue} using Java serialization for the elements: items are appended to
+ * memory-mapped segment files in the queue directory, rather than being written to one file per item.
+ * For DataSets and INDArrays, use {@link SegmentedDiskQueue} directly with {@link QueueSerializers#dataSets()}
+ * or {@link QueueSerializers#arrays()}, which avoid Java serialization entirely.
+ * <p>
+ * The open segment files are not serialized: a serialized queue is written as its directory, and a deserialized queue
+ * reopens that directory and recovers the elements that have not been consumed. The original queue should not be used
+ * after it has been serialized, as both would then consume the same segment files.
  * @author Adam Gibson
  */
-public class DiskBasedQueue<E> implements Queue<E>,Serializable {
+public class DiskBasedQueue<E> extends SegmentedDiskQueue<E> implements Serializable {
 
-    private File dir;
-    private Queue<String> paths = new ConcurrentLinkedDeque<>();
-    private ScheduledExecutorService executorService;
-    private AtomicBoolean running = new AtomicBoolean(true);
-    private Queue<E> save = new ConcurrentLinkedDeque<>();
+    private final File dir;
 
     public DiskBasedQueue() {
         this(".queue");
@@ -55,150 +50,28 @@ public class DiskBasedQueue<E> implements Queue<E>,Serializable {
     }
 
     public DiskBasedQueue(File dir) {
-        this.dir = dir;
-        if(!dir.exists() && dir.isDirectory()) {
-            throw new IllegalArgumentException("Illegal queue: must be a directory");
-        }
-
-        if(!dir.exists())
-            dir.mkdirs();
-        if(dir.listFiles() != null && dir.listFiles().length > 1)
-            try {
-                FileUtils.deleteDirectory(dir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-
-
-        dir.mkdir();
-
-
-        executorService = Executors.newSingleThreadScheduledExecutor();
-
-        executorService.execute(new Runnable() {
-            @Override
-            public void run() {
-               while(running.get()) {
-                while(!save.isEmpty())
-                    addAndSave(save.poll());
-                   try {
-                       Thread.sleep(1000);
-                   } catch (InterruptedException e) {
-                       Thread.currentThread().interrupt();
-                   }
-               }
-            }
-        });
-    }
-
-    @Override
-    public int size() {
-        return paths.size();
-    }
-
-    @Override
-    public boolean isEmpty() {
-        return paths.isEmpty();
-    }
-
-    @Override
-    public boolean contains(Object o) {
-        throw new UnsupportedOperationException();
-
-    }
-
-    @Override
-    public Iterator<E> iterator() {
-        throw new UnsupportedOperationException();
-
-    }
-
-    @Override
-    public Object[] toArray() {
-        throw new UnsupportedOperationException();
-
-    }
-
-    @Override
-    public <T> T[] toArray(T[] a) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean add(E e) {
-        save.add(e);
-        return true;
-    }
-
-    @Override
-    public boolean remove(Object o) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean containsAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean addAll(Collection<? extends E> c) {
-        for(E e : c)
-            addAndSave(e);
-        return true;
-    }
-
-    @Override
-    public boolean removeAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean retainAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public void clear() {
-        throw new UnsupportedOperationException();
+        this(dir, false);
     }
 
-    @Override
-    public boolean offer(E e) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public E remove() {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public E poll() {
-        String path = paths.poll();
-        E ret = SerializationUtils.readObject(new File(path));
-        File item = new File(path);
-        item.delete();
-        return ret;
-    }
-
-    @Override
-    public E element() {
-        throw new UnsupportedOperationException();
+    private DiskBasedQueue(File dir, boolean recover) {
+        super(new Builder<E>(dir, QueueSerializers.<E>javaSerialization()).recover(recover));
+        this.dir = dir;
     }
 
-    @Override
-    public E peek() {
-        throw new UnsupportedOperationException();
+    private Object writeReplace() throws ObjectStreamException {
+        sync();
+        return new SerializedForm(dir);
     }
 
+    private static class SerializedForm implements Serializable {
+        private final File dir;
 
+        private SerializedForm(File dir) {
+            this.dir = dir;
+        }
 
-
-    private void addAndSave(E e) {
-        File path = new File(dir,UUID.randomUUID().toString());
-        SerializationUtils.saveObject(e,path);
-        paths.add(path.getAbsolutePath());
+        private Object readResolve() throws ObjectStreamException {
+            return new DiskBasedQueue<>(dir, true);
+        }
     }
-
-
 }
@@ -0,0 +1,268 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilities for gradient accumulation: splitting a minibatch into micro-batches along the example dimension, and
+ * concatenating several minibatches into one
+ */
+public class MicroBatchUtils {
+
+    private MicroBatchUtils() {
+    }
+
+    /**
+     * Split points of numExamples examples into (at most) numMicroBatches micro-batches of nearly equal size
+     *
+     * @return Array of length (number of micro-batches + 1): micro-batch i is examples [split[i], split[i+1])
+     */
+    public static int[] splitPoints(int numExamples, int numMicroBatches) {
+        int n = Math.max(1, Math.min(numMicroBatches, numExamples));
+        int[] split = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            split[i] = (int) ((long) numExamples * i / n);
+        }
+        return split;
+    }
+
+    /**
+     * Examples [from, to) of an array of any rank, along dimension 0, as a view
+     *
+     * @return The examples, or null if the array is null
+     */
+    public static INDArray getExamples(INDArray arr, int from, int to) {
+        if (arr == null)
+            return null;
+        INDArrayIndex[] indexes = new INDArrayIndex[arr.rank()];
+        indexes[0] = NDArrayIndex.interval(from, to);
+        for (int i = 1; i < indexes.length; i++) {
+            indexes[i] = NDArrayIndex.all();
+        }
+        return arr.get(indexes);
+    }
+
+    /**
+     * Examples [from, to) of each array, as in {@link #getExamples(INDArray, int, int)}
+     */
+    public static INDArray[] getExamples(INDArray[] arrs, int from, int to) {
+        if (arrs == null)
+            return null;
+        INDArray[] out = new INDArray[arrs.length];
+        for (int i = 0; i < arrs.length; i++) {
+            out[i] = getExamples(arrs[i], from, to);
+        }
+        return out;
+    }
+
+    /**
+     * Concatenate arrays along dimension 0 (examples). All other dimensions, including the time series length of
+     * time series data, must be the same: see {@link #concatExamples(List, List)} for time series of different lengths
+     *
+     * @return The concatenated array, or null if all arrays are null
+     */
+    public static INDArray concatExamples(List<INDArray> arrays) {
+        int nulls = 0;
+        for (INDArray arr : arrays) {
+            if (arr == null)
+                nulls++;
+        }
+        if (nulls == arrays.size())
+            return null;
+        if (nulls > 0)
+            throw new IllegalArgumentException("Cannot concatenate minibatches: array (or mask array) is present for some "
+                    + "minibatches but not others");
+        if (arrays.size() == 1)
+            return arrays.get(0);
+
+        int[] shape = arrays.get(0).shape();
+        for (INDArray arr : arrays) {
+            int[] s = arr.shape();
+            if (s.length != shape.length || !Arrays.equals(Arrays.copyOfRange(s, 1, s.length), Arrays.copyOfRange(shape, 1, shape.length))) {
+                throw new IllegalArgumentException("Cannot concatenate minibatches with shapes " + Arrays.toString(shape)
+                        + " and " + Arrays.toString(s) + ": only the number of examples may differ");
+            }
+        }
+        return Nd4j.concat(0, arrays.toArray(new INDArray[arrays.size()]));
+    }
+
+    /**
+     * Concatenate arrays and their mask arrays along dimension 0 (examples), as in {@link #concatExamples(List)}.
+     * Time series (rank 3) arrays of different lengths are padded with zeros at the end to the longest length; their
+     * mask arrays are padded the same way, and minibatches without a mask array get one that marks all their time
+     * steps as present.
+     *
+     * @param arrays Arrays of each minibatch
+     * @param masks  Mask arrays of each minibatch (same size as arrays; entries may be null)
+     * @return The concatenated array and mask array; either may be null
+     */
+    public static Pair<INDArray, INDArray> concatExamples(List<INDArray> arrays, List<INDArray> masks) {
+        int maxLength = -1;
+        boolean pad = false;
+        for (INDArray arr : arrays) {
+            if (arr == null || arr.rank() != 3) {
+                pad = false;
+                break;
+            }
+            if (maxLength >= 0 && arr.size(2) != maxLength)
+                pad = true;
+            maxLength = Math.max(maxLength, arr.size(2));
+        }
+        if (!pad)
+            return new Pair<>(concatExamples(arrays), concatExamples(masks));
+
+        List<INDArray> paddedArrays = new ArrayList<>();
+        List<INDArray> paddedMasks = new ArrayList<>();
+        for (int i = 0; i < arrays.size(); i++) {
+            INDArray arr = arrays.get(i);
+            INDArray mask = masks.get(i);
+            int length = arr.size(2);
+            if (mask == null)
+                mask = Nd4j.ones(arr.size(0), length);
+            if (length == maxLength) {
+                paddedArrays.add(arr);
+                paddedMasks.add(mask);
+                continue;
+            }
+            INDArray padded = Nd4j.zeros(arr.size(0), arr.size(1), maxLength);
+            padded.put(new INDArrayIndex[]{NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(0, length)}, arr);
+            INDArray paddedMask = Nd4j.zeros(arr.size(0), maxLength);
+            paddedMask.put(new INDArrayIndex[]{NDArrayIndex.all(), NDArrayIndex.interval(0, length)}, mask);
+            paddedArrays.add(padded);
+            paddedMasks.add(paddedMask);
+        }
+        return new Pair<>(concatExamples(paddedArrays), concatExamples(paddedMasks));
+    }
+
+    /**
+     * Concatenate each of the arrays of several minibatches (inputs, labels or mask arrays of multiple input/output
+     * networks), as in {@link #concatExamples(List)}
+     *
+     * @return The concatenated arrays, or null if all minibatches have null arrays
+     */
+    public static INDArray[] concatExamplesArrays(List<INDArray[]> arrays) {
+        int nulls = 0;
+        for (INDArray[] arr : arrays) {
+            if (arr == null)
+                nulls++;
+        }
+        if (nulls == arrays.size())
+            return null;
+        if (nulls > 0)
+            throw new IllegalArgumentException("Cannot concatenate minibatches: arrays (or mask arrays) are present for some "
+                    + "minibatches but not others");
+
+        INDArray[] out = new INDArray[arrays.get(0).length];
+        for (int i = 0; i < out.length; i++) {
+            List<INDArray> list = new ArrayList<>();
+            for (INDArray[] arr : arrays) {
+                list.add(arr[i]);
+            }
+            out[i] = concatExamples(list);
+        }
+        return out;
+    }
+
+    /**
+     * Concatenate each of the arrays of several minibatches, and their mask arrays, as in
+     * {@link #concatExamples(List, List)}: time series of different lengths are padded and masked
+     *
+     * @return The concatenated arrays and mask arrays; either may be null
+     */
+    public static Pair<INDArray[], INDArray[]> concatExamplesArrays(List<INDArray[]> arrays, List<INDArray[]> masks) {
+        int nulls = 0;
+        for (INDArray[] arr : arrays) {
+            if (arr == null)
+                nulls++;
+        }
+        if (nulls == arrays.size())
+            return new Pair<>(null, concatExamplesArrays(masks));
+        if (nulls > 0)
+            throw new IllegalArgumentException("Cannot concatenate minibatches: arrays are present for some minibatches "
+                    + "but not others");
+
+        INDArray[] out = new INDArray[arrays.get(0).length];
+        INDArray[] outMasks = new INDArray[out.length];
+        boolean anyMask = false;
+        for (int i = 0; i < out.length; i++) {
+            List<INDArray> list = new ArrayList<>();
+            List<INDArray> maskList = new ArrayList<>();
+            for (int j = 0; j < arrays.size(); j++) {
+                list.add(arrays.get(j)[i]);
+                INDArray[] m = masks.get(j);
+                maskList.add(m == null ? null : m[i]);
+            }
+            Pair<INDArray, INDArray> pair = concatExamples(list, maskList);
+            out[i] = pair.getFirst();
+            outMasks[i] = pair.getSecond();
+            anyMask |= (outMasks[i] != null);
+        }
+        return new Pair<>(out, anyMask ? outMasks : null);
+    }
+
+    /**
+     * Add the rows reported by {@link SparseGradientLayer#sparseGradientRows(String)} for each layer and parameter
+     * to the given map, after the backprop of one micro-batch
+     */
+    public static void collectSparseGradientRows(Layer[] layers, Map<SparseGradientLayer, Map<String, int[]>> rows) {
+        for (Layer layer : layers) {
+            if (!(layer instanceof SparseGradientLayer))
+                continue;
+            SparseGradientLayer l = (SparseGradientLayer) layer;
+            Map<String, int[]> layerRows = rows.get(l);
+            if (layerRows == null) {
+                layerRows = new HashMap<>();
+                rows.put(l, layerRows);
+            }
+            for (String param : l.paramTable().keySet()) {
+                int[] r = l.sparseGradientRows(param);
+                if (r == null)
+                    continue;
+                int[] prev = layerRows.get(param);
+                layerRows.put(param, prev == null ? r : union(prev, r));
+            }
+        }
+    }
+
+    /**
+     * Set the rows collected by {@link #collectSparseGradientRows(Layer[], Map)}, once the gradients of all
+     * micro-batches have been accumulated
+     */
+    public static void setSparseGradientRows(Map<SparseGradientLayer, Map<String, int[]>> rows) {
+        for (Map.Entry<SparseGradientLayer, Map<String, int[]>> e : rows.entrySet()) {
+            for (Map.Entry<String, int[]> p : e.getValue().entrySet()) {
+                e.getKey().setSparseGradientRows(p.getKey(), p.getValue());
+            }
+        }
+    }
+
+    //Union of two sorted arrays of distinct values
+    private static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            int v;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                v = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                v = b[j++];
+            } else {
+                v = a[i++];
+                j++;
+            }
+            out[n++] = v;
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -11,6 +11,7 @@ import org.deeplearning4j.nn.conf.layers.RBM;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
+import org.deeplearning4j.optimize.solvers.MixedPrecision;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.factory.Nd4j;
@@ -33,6 +34,7 @@ public class ModelSerializer {
 
     public static final String OLD_UPDATER_BIN = "updater.bin";
     public static final String UPDATER_BIN = "updaterState.bin";
+    public static final String MIXED_PRECISION_BIN = "mixedPrecision.bin";
 
     private ModelSerializer() {
     }
@@ -126,11 +128,46 @@ public class ModelSerializer {
             }
         }
 
+        //Loss scale and master weights; the parameters themselves are saved in the current data type
+        MixedPrecision mixedPrecision = null;
+        if (model instanceof MultiLayerNetwork) {
+            mixedPrecision = ((MultiLayerNetwork) model).getMixedPrecision();
+        } else if (model instanceof ComputationGraph) {
+            mixedPrecision = ((ComputationGraph) model).getMixedPrecision();
+        }
+        if (mixedPrecision != null) {
+            ZipEntry mixedPrecisionEntry = new ZipEntry(MIXED_PRECISION_BIN);
+            zipfile.putNextEntry(mixedPrecisionEntry);
+
+            bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(mixedPrecision);
+            oos.flush();
+            oos.close();
+
+            inputStream = new ByteArrayInputStream(bos.toByteArray());
+            writeEntry(inputStream, zipfile);
+        }
+
         zipfile.flush();
         zipfile.close();
     }
 
 
+    private static MixedPrecision readMixedPrecision(ZipFile zipFile) throws IOException {
+        ZipEntry entry = zipFile.getEntry(MIXED_PRECISION_BIN);
+        if (entry == null)
+            return null;
+        ObjectInputStream ois = new ObjectInputStream(zipFile.getInputStream(entry));
+        try {
+            return (MixedPrecision) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        } finally {
+            ois.close();
+        }
+    }
+
     private static void writeEntry(InputStream inputStream, ZipOutputStream zipStream) throws IOException {
         byte[] bytes = new byte[1024];
         int bytesRead;
@@ -229,6 +266,8 @@ public class ModelSerializer {
             }
         }
 
+        MixedPrecision mixedPrecision = readMixedPrecision(zipFile);
+
         ZipEntry prep = zipFile.getEntry("preprocessor.bin");
         if (prep != null) {
             InputStream stream = zipFile.getInputStream(prep);
@@ -250,6 +289,9 @@ public class ModelSerializer {
             MultiLayerConfiguration confFromJson = MultiLayerConfiguration.fromJson(json);
             MultiLayerNetwork network = new MultiLayerNetwork(confFromJson);
             network.init(params, false);
+            if (mixedPrecision != null) {
+                network.setMixedPrecision(mixedPrecision);
+            }
 
             if(gotUpdaterState && updaterState != null){
                 network.getUpdater().setStateViewArray(network, updaterState, false);
@@ -438,6 +480,8 @@ public class ModelSerializer {
             }
         }
 
+        MixedPrecision mixedPrecision = readMixedPrecision(zipFile);
+
         ZipEntry prep = zipFile.getEntry("preprocessor.bin");
         if (prep != null) {
             InputStream stream = zipFile.getInputStream(prep);
@@ -459,6 +503,9 @@ public class ModelSerializer {
             ComputationGraphConfiguration confFromJson = ComputationGraphConfiguration.fromJson(json);
             ComputationGraph cg = new ComputationGraph(confFromJson);
             cg.init(params, false);
+            if (mixedPrecision != null) {
+                cg.setMixedPrecision(mixedPrecision);
+            }
 
 
             if(gotUpdaterState && updaterState != null){
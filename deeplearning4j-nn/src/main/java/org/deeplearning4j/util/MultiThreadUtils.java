@@ -34,7 +34,13 @@ public class MultiThreadUtils {
 	}
 
 	public static synchronized ExecutorService newExecutorService() {
-		int nThreads = Runtime.getRuntime().availableProcessors();
+		return newExecutorService(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Executor service of daemon threads, with the given number of threads
+	 */
+	public static synchronized ExecutorService newExecutorService(int nThreads) {
 		return new ThreadPoolExecutor(nThreads, nThreads, 60L, TimeUnit.SECONDS,
 				new LinkedTransferQueue<Runnable>(),
 				new ThreadFactory() {
@@ -0,0 +1,94 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.nn.api.OutputConsumer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link OutputConsumer} that writes outputs to a file, so that bulk inference results don't have to fit in to memory.
+ * Each minibatch is written at the file position of its first example, with {@link FileChannel#write(ByteBuffer, long)}
+ * from a reused direct buffer, so minibatches may be consumed in any order.
+ * <p>
+ * The file holds one row per example, in example order: the example's output flattened in 'c' order, as 4 byte
+ * big-endian floats (i.e., as written by {@link java.io.DataOutput#writeFloat(float)}). All rows must have the same length,
+ * so for time series outputs all minibatches must have the same number of time steps.
+ * Only one of the network's outputs (the first, by default) is written.
+ */
+public class PositionalChannelOutputWriter implements OutputConsumer, Closeable {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int outputIndex;
+    private int rowLength = -1;
+    private long numExamples;
+    private ByteBuffer buffer;
+
+    public PositionalChannelOutputWriter(File file) throws IOException {
+        this(file, 0);
+    }
+
+    /**
+     * @param file        file to write to. Existing contents are discarded
+     * @param outputIndex index of the network output to write
+     */
+    public PositionalChannelOutputWriter(File file, int outputIndex) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        this.outputIndex = outputIndex;
+    }
+
+    @Override
+    public synchronized void consume(long exampleOffset, INDArray... outputs) {
+        INDArray output = outputs[outputIndex];
+        int numRows = output.size(0);
+        int length = output.length() / numRows;
+        if (rowLength < 0)
+            rowLength = length;
+        else if (length != rowLength)
+            throw new IllegalStateException("Output row length changed: " + rowLength + " != " + length);
+
+        float[] values = Nd4j.toFlattened('c', output).data().asFloat();
+        int numBytes = 4 * values.length;
+        if (buffer == null || buffer.capacity() < numBytes)
+            buffer = ByteBuffer.allocateDirect(numBytes);
+        buffer.clear();
+        buffer.asFloatBuffer().put(values);    //Big-endian: the ByteBuffer default
+        buffer.limit(numBytes);
+        long position = 4L * exampleOffset * rowLength;
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write outputs", e);
+        }
+        numExamples = Math.max(numExamples, exampleOffset + numRows);
+    }
+
+    /**
+     * @return number of values per example, or -1 if nothing was written yet
+     */
+    public synchronized int getRowLength() {
+        return rowLength;
+    }
+
+    /**
+     * @return number of examples written
+     */
+    public synchronized long getNumExamples() {
+        return numExamples;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+}
@@ -0,0 +1,33 @@
+package org.deeplearning4j.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary serializer used by {@link SegmentedDiskQueue} to write elements into (and read them back from)
+ * memory-mapped segment files. All buffers passed to a serializer use little-endian byte order.
+ * <p>
+ * The queue calls {@link #encodedLength(Object)} immediately followed by {@link #write(Object, ByteBuffer)} for
+ * the same element, from a single thread at a time.
+ *
+ * @param <E> element type
+ * @see QueueSerializers
+ */
+public interface QueueSerializer<E> {
+
+    /**
+     * @return Exact number of bytes that {@link #write(Object, ByteBuffer)} will write for this element
+     */
+    int encodedLength(E element);
+
+    /**
+     * Write the element at the buffer's current position, advancing the position by {@link #encodedLength(Object)}
+     */
+    void write(E element, ByteBuffer buffer);
+
+    /**
+     * Read an element from the buffer's current position
+     *
+     * @param length Number of bytes of this element
+     */
+    E read(ByteBuffer buffer, int length);
+}
@@ -0,0 +1,96 @@
+package org.deeplearning4j.util;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Standard {@link QueueSerializer} implementations
+ */
+public class QueueSerializers {
+
+    private QueueSerializers() {
+    }
+
+    /**
+     * Serializer for DataSets, using the {@link DataSetBinaryCodec} binary format (values stored as floats)
+     */
+    public static QueueSerializer<DataSet> dataSets() {
+        return new QueueSerializer<DataSet>() {
+            @Override
+            public int encodedLength(DataSet element) {
+                return DataSetBinaryCodec.encodedLength(element);
+            }
+
+            @Override
+            public void write(DataSet element, ByteBuffer buffer) {
+                DataSetBinaryCodec.write(element, buffer);
+            }
+
+            @Override
+            public DataSet read(ByteBuffer buffer, int length) {
+                return DataSetBinaryCodec.read(buffer, (DataSet) null);
+            }
+        };
+    }
+
+    /**
+     * Serializer for INDArrays, using the {@link DataSetBinaryCodec} binary format (values stored as floats)
+     */
+    public static QueueSerializer<INDArray> arrays() {
+        return new QueueSerializer<INDArray>() {
+            @Override
+            public int encodedLength(INDArray element) {
+                return DataSetBinaryCodec.encodedLength(element);
+            }
+
+            @Override
+            public void write(INDArray element, ByteBuffer buffer) {
+                DataSetBinaryCodec.write(element, buffer);
+            }
+
+            @Override
+            public INDArray read(ByteBuffer buffer, int length) {
+                return DataSetBinaryCodec.read(buffer, (INDArray) null);
+            }
+        };
+    }
+
+    /**
+     * Fallback serializer for arbitrary Serializable objects, using Java serialization
+     */
+    public static <E> QueueSerializer<E> javaSerialization() {
+        return new JavaSerializer<>();
+    }
+
+    private static class JavaSerializer<E> implements QueueSerializer<E> {
+        //encodedLength() is always directly followed by write() for the same element: avoid serializing twice
+        private Object lastElement;
+        private byte[] lastBytes;
+
+        @Override
+        public int encodedLength(E element) {
+            lastElement = element;
+            lastBytes = SerializationUtils.toByteArray((Serializable) element);
+            return lastBytes.length;
+        }
+
+        @Override
+        public void write(E element, ByteBuffer buffer) {
+            byte[] bytes = (element == lastElement ? lastBytes : SerializationUtils.toByteArray((Serializable) element));
+            buffer.put(bytes);
+            lastElement = null;
+            lastBytes = null;
+        }
+
+        @Override
+        public E read(ByteBuffer buffer, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return SerializationUtils.readObject(new ByteArrayInputStream(bytes));
+        }
+    }
+}
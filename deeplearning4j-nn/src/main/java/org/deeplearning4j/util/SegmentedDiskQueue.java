@@ -0,0 +1,488 @@
+package org.deeplearning4j.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A FIFO queue that spills elements to disk, backed by an append-only log of memory-mapped segment files.
+ * <p>
+ * Elements are first buffered in memory (up to {@code memoryCapacity} elements). Once that buffer is full, and until
+ * the data on disk has been drained again, new elements are appended to the current segment file using a
+ * {@link QueueSerializer}; {@link QueueSerializers#dataSets()} and {@link QueueSerializers#arrays()} write raw
+ * array values, without Java serialization. FIFO order is preserved across the memory buffer and the disk log.
+ * <p>
+ * Record layout within a segment (little-endian): {@code int length, byte[length] payload}. A length of 0 marks the
+ * end of the data written to the segment, and a negative length marks a record that has already been consumed.
+ * The payload is written before the length, so a record only becomes visible once it is complete.
+ * <p>
+ * Segments are named in order of creation. Fully consumed segments are recycled (up to {@code maxRecycledSegments})
+ * rather than deleted and recreated. Segments are unmapped and their files closed as soon as they have been consumed
+ * (including when the queue is drained), so only segments holding unconsumed elements stay mapped. Mapped segments are flushed to disk every {@code syncEvery} appends (batched
+ * fsync), on {@link #sync()} and on {@link #close()}. With {@code recover(true)}, unconsumed records left in the
+ * directory by a previous (possibly crashed) process are loaded on startup; otherwise existing segment files are
+ * deleted.
+ * <p>
+ * All operations are synchronized: this class is safe for use by multiple producers and consumers.
+ *
+ * @param <E> element type
+ */
+public class SegmentedDiskQueue<E> extends AbstractQueue<E> implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SegmentedDiskQueue.class);
+
+    public static final String SEGMENT_PREFIX = "segment-";
+    public static final String SEGMENT_SUFFIX = ".log";
+
+    private final File dir;
+    private final QueueSerializer<E> serializer;
+    private final int segmentSize;
+    private final int memoryCapacity;
+    private final int syncEvery;
+    private final int maxRecycledSegments;
+
+    private final ArrayDeque<E> memory = new ArrayDeque<>();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ArrayDeque<Segment> recycled = new ArrayDeque<>();
+    private long diskCount = 0;
+    private long nextSegmentId = 0;
+    private int unsynced = 0;
+    private boolean closed = false;
+
+    protected SegmentedDiskQueue(Builder<E> builder) {
+        this.dir = builder.dir;
+        this.serializer = builder.serializer;
+        this.segmentSize = builder.segmentSize;
+        this.memoryCapacity = builder.memoryCapacity;
+        this.syncEvery = builder.syncEvery;
+        this.maxRecycledSegments = builder.maxRecycledSegments;
+
+        if (dir.exists() && !dir.isDirectory())
+            throw new IllegalArgumentException("Illegal queue: must be a directory");
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IllegalStateException("Could not create queue directory " + dir);
+
+        try {
+            File[] existing = listSegments(dir);
+            if (builder.recover) {
+                for (File f : existing) recoverSegment(f);
+                if (diskCount > 0) log.info("Recovered {} elements from {} segments in {}", diskCount, segments.size(), dir);
+                else while (!segments.isEmpty()) retire(segments.pollFirst());
+            } else {
+                for (File f : existing) {
+                    if (!f.delete()) log.warn("Could not delete old queue segment {}", f);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening disk queue in " + dir, e);
+        }
+    }
+
+    @Override
+    public synchronized boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        if (closed) throw new IllegalStateException("Queue has been closed");
+        //Elements only go to memory if nothing is on disk: otherwise FIFO order would be violated
+        if (diskCount == 0 && memory.size() < memoryCapacity) {
+            memory.add(e);
+            return true;
+        }
+        try {
+            append(e);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error writing to disk queue in " + dir, ex);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized E poll() {
+        if (!memory.isEmpty()) return memory.poll();
+        if (diskCount == 0) return null;
+        return readHead(true);
+    }
+
+    @Override
+    public synchronized E peek() {
+        if (!memory.isEmpty()) return memory.peek();
+        if (diskCount == 0) return null;
+        return readHead(false);
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, memory.size() + diskCount);
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return memory.isEmpty() && diskCount == 0;
+    }
+
+    /**
+     * @return Number of elements currently stored on disk
+     */
+    public synchronized long sizeOnDisk() {
+        return diskCount;
+    }
+
+    /**
+     * Not supported: elements on disk can only be accessed in order via poll/peek
+     */
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * An iterator that removes elements from the head of the queue as it goes. hasNext() returns false as soon as the
+     * queue is empty. This allows the queue to be used as a data source, for example
+     * {@code new ExistingDataSetIterator(queue.drainingIterator())} for feeding ParallelWrapper
+     */
+    public Iterator<E> drainingIterator() {
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return !isEmpty();
+            }
+
+            @Override
+            public E next() {
+                E next = poll();
+                if (next == null) throw new NoSuchElementException();
+                return next;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Flush all written data to disk
+     */
+    public synchronized void sync() {
+        for (Segment s : segments) s.buffer.force();
+        unsynced = 0;
+    }
+
+    /**
+     * Flush and close all segments. Unconsumed elements remain on disk, and can be loaded by a new queue created with
+     * {@code recover(true)}. Elements buffered in memory are written to disk first.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        if (!memory.isEmpty() && diskCount == 0) {
+            while (!memory.isEmpty()) append(memory.poll());
+        } else if (!memory.isEmpty()) {
+            //Can't write the (older) memory elements after the disk elements without reordering
+            log.warn("Discarding {} in-memory elements on close of disk queue {}", memory.size(), dir);
+            memory.clear();
+        }
+        sync();
+        for (Segment s : segments) s.close();
+        for (Segment s : recycled) s.delete();
+        segments.clear();
+        recycled.clear();
+        closed = true;
+    }
+
+    /**
+     * Close the queue and delete all segment files
+     */
+    public synchronized void delete() throws IOException {
+        memory.clear();
+        for (Segment s : segments) s.delete();
+        for (Segment s : recycled) s.delete();
+        segments.clear();
+        recycled.clear();
+        diskCount = 0;
+        closed = true;
+    }
+
+    private void append(E e) throws IOException {
+        int length = serializer.encodedLength(e);
+        Segment tail = segments.peekLast();
+        if (tail == null || !tail.fits(length)) {
+            tail = nextSegment(length);
+            segments.add(tail);
+        }
+        tail.append(e, length);
+        diskCount++;
+        if (syncEvery > 0 && ++unsynced >= syncEvery) {
+            tail.buffer.force();
+            unsynced = 0;
+        }
+    }
+
+    private E readHead(boolean consume) {
+        while (true) {
+            Segment head = segments.peekFirst();
+            int length = head.buffer.getInt(head.readPos);
+            if (length > 0) {
+                ByteBuffer bb = head.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                bb.position(head.readPos + 4);
+                bb.limit(head.readPos + 4 + length);
+                E out = serializer.read(bb, length);
+                if (consume) {
+                    head.buffer.putInt(head.readPos, -length);
+                    head.readPos += 4 + length;
+                    diskCount--;
+                    if (diskCount == 0) {
+                        //Drained: release the mapping. The next append takes a recycled segment
+                        while (!segments.isEmpty()) retire(segments.pollFirst());
+                    }
+                }
+                return out;
+            } else if (length < 0) {
+                head.readPos += 4 - length;
+            } else {
+                //End of data in this segment: move on to the next one
+                if (segments.size() == 1)
+                    throw new IllegalStateException("Disk queue is corrupt: expected " + diskCount + " more elements");
+                retire(segments.pollFirst());
+            }
+        }
+    }
+
+    private Segment nextSegment(int recordLength) throws IOException {
+        long required = Math.max(segmentSize, 8L + recordLength);
+        if (required > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Element is too large for disk queue: " + recordLength + " bytes");
+        File file = new File(dir, segmentName(nextSegmentId++));
+
+        Iterator<Segment> iter = recycled.iterator();
+        while (iter.hasNext()) {
+            Segment s = iter.next();
+            if (s.capacity >= required && s.file.renameTo(file)) {
+                iter.remove();
+                s.file = file;
+                s.open();
+                s.rewind();
+                return s;
+            }
+        }
+        return new Segment(file, (int) required, 0, 0);
+    }
+
+    private void retire(Segment s) {
+        if (recycled.size() < maxRecycledSegments) {
+            //Recycled segments are kept as closed, unmapped files until reused
+            s.close();
+            recycled.add(s);
+        } else {
+            s.delete();
+        }
+    }
+
+    private void recoverSegment(File f) throws IOException {
+        String name = f.getName();
+        long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        nextSegmentId = Math.max(nextSegmentId, id + 1);
+
+        Segment s = new Segment(f, (int) f.length(), -1, -1);
+        int pos = 0;
+        int firstPending = -1;
+        while (pos + 4 <= s.capacity) {
+            int length = s.buffer.getInt(pos);
+            if (length == 0) break;
+            if (length > 0) {
+                if (firstPending < 0) firstPending = pos;
+                diskCount++;
+            }
+            pos += 4 + Math.abs(length);
+        }
+        s.writePos = pos;
+        s.readPos = (firstPending < 0 ? pos : firstPending);
+        segments.add(s);
+    }
+
+    private static File[] listSegments(File dir) {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File d, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static String segmentName(long id) {
+        return SEGMENT_PREFIX + String.format("%016d", id) + SEGMENT_SUFFIX;
+    }
+
+    /**
+     * Release a mapping immediately instead of when the buffer is garbage collected, so that the address space is
+     * returned and the file can be renamed or deleted (which fails on Windows while it is mapped). The buffer must not
+     * be accessed afterwards. Best effort: if the JVM does not allow this, the mapping is released by the GC instead
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            try {
+                //Java 9+
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                //Java 7/8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            log.debug("Could not unmap disk queue segment; mapping will be released on garbage collection", e);
+        }
+    }
+
+    private class Segment {
+        private File file;
+        private final int capacity;
+        private RandomAccessFile raf;
+        private MappedByteBuffer buffer;
+        private int writePos;
+        private int readPos;
+
+        private Segment(File file, int capacity, int writePos, int readPos) throws IOException {
+            this.file = file;
+            this.capacity = capacity;
+            open();
+            if (writePos >= 0) {
+                this.writePos = writePos;
+                this.readPos = readPos;
+                buffer.putInt(writePos, 0);
+            }
+        }
+
+        private void open() throws IOException {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(capacity);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private boolean fits(int recordLength) {
+            //Record plus length header, and room for the terminator after it
+            return (long) writePos + 8L + recordLength <= capacity;
+        }
+
+        private void append(E e, int length) {
+            ByteBuffer bb = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            bb.position(writePos + 4);
+            serializer.write(e, bb);
+            if (bb.position() != writePos + 4 + length)
+                throw new IllegalStateException("Serializer wrote " + (bb.position() - writePos - 4)
+                        + " bytes, expected " + length);
+            buffer.putInt(writePos + 4 + length, 0);
+            //Length last: the record is only visible (including to recovery) once fully written
+            buffer.putInt(writePos, length);
+            writePos += 4 + length;
+        }
+
+        private void rewind() {
+            writePos = 0;
+            readPos = 0;
+            buffer.putInt(0, 0);
+        }
+
+        private void close() {
+            if (buffer == null) return;
+            unmap(buffer);
+            buffer = null;
+            try {
+                raf.close();
+            } catch (IOException e) {
+                log.warn("Error closing queue segment {}", file, e);
+            }
+            raf = null;
+        }
+
+        private void delete() {
+            close();
+            if (!file.delete()) file.deleteOnExit();
+        }
+    }
+
+
+    public static class Builder<E> {
+        private File dir;
+        private QueueSerializer<E> serializer;
+        private int segmentSize = 64 * 1024 * 1024;
+        private int memoryCapacity = 0;
+        private int syncEvery = 0;
+        private int maxRecycledSegments = 2;
+        private boolean recover = false;
+
+        public Builder(File dir, QueueSerializer<E> serializer) {
+            this.dir = dir;
+            this.serializer = serializer;
+        }
+
+        /**
+         * Size of each segment file in bytes (default: 64MB). Elements larger than this get a segment of their own
+         */
+        public Builder<E> segmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Maximum number of elements held in memory before spilling to disk (default: 0 - all elements go to disk)
+         */
+        public Builder<E> memoryCapacity(int memoryCapacity) {
+            this.memoryCapacity = memoryCapacity;
+            return this;
+        }
+
+        /**
+         * Force written data to disk every N appends (default: 0 - only on sync() and close())
+         */
+        public Builder<E> syncEvery(int syncEvery) {
+            this.syncEvery = syncEvery;
+            return this;
+        }
+
+        /**
+         * Maximum number of consumed segment files kept for reuse (default: 2)
+         */
+        public Builder<E> maxRecycledSegments(int maxRecycledSegments) {
+            this.maxRecycledSegments = maxRecycledSegments;
+            return this;
+        }
+
+        /**
+         * If true: load unconsumed elements from segment files already present in the directory.
+         * If false (default): delete any existing segment files
+         */
+        public Builder<E> recover(boolean recover) {
+            this.recover = recover;
+            return this;
+        }
+
+        public SegmentedDiskQueue<E> build() {
+            return new SegmentedDiskQueue<>(this);
+        }
+    }
+}
@@ -2,7 +2,7 @@ package org.deeplearning4j.spark.api.worker;
 
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.deeplearning4j.berkeley.Pair;
-import org.deeplearning4j.datasets.iterator.AsyncMultiDataSetIterator;
+import org.deeplearning4j.datasets.iterator.parallel.ParallelPrefetchMultiDataSetIterator;
 import org.deeplearning4j.datasets.iterator.IteratorMultiDataSetIterator;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.spark.api.TrainingResult;
@@ -50,7 +50,7 @@ public class ExecuteWorkerMultiDataSetFlatMap<R extends TrainingResult> implemen
 
         MultiDataSetIterator batchedIterator = new IteratorMultiDataSetIterator(dataSetIterator, batchSize);
         if(prefetchCount > 0){
-            batchedIterator = new AsyncMultiDataSetIterator(batchedIterator, prefetchCount);
+            batchedIterator = new ParallelPrefetchMultiDataSetIterator.Builder(batchedIterator).workers(1).queueSize(prefetchCount).build();
         }
 
         try {
@@ -99,8 +99,8 @@ public class ExecuteWorkerMultiDataSetFlatMap<R extends TrainingResult> implemen
             }
         } finally {
             //Make sure we shut down the async thread properly...
-            if(batchedIterator instanceof AsyncMultiDataSetIterator){
-                ((AsyncMultiDataSetIterator)batchedIterator).shutdown();
+            if(batchedIterator instanceof ParallelPrefetchMultiDataSetIterator){
+                ((ParallelPrefetchMultiDataSetIterator)batchedIterator).shutdown();
             }
 
             if (Nd4j.getExecutioner() instanceof GridExecutioner)
@@ -0,0 +1,86 @@
+package org.deeplearning4j.ui.stats;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of reusable float[] buffers, used to snapshot parameter, gradient and activation arrays on the training
+ * thread, so that stats can be calculated later on another thread without allocating a copy for every array on every
+ * report.<br>
+ * Buffers may be larger than requested: callers must track the number of valid values themselves.
+ * Buffers are acquired on the training thread and released by the stats collection thread; all methods are thread safe.
+ */
+class ArrayBufferPool {
+
+    private final int maxPooledBuffers;
+    private final List<float[]> free = new ArrayList<>();
+
+    ArrayBufferPool(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Get a buffer with at least the specified length; the smallest suitable pooled buffer is used, if available
+     */
+    synchronized float[] acquire(int length) {
+        float[] best = null;
+        for (float[] f : free) {
+            if (f.length >= length && (best == null || f.length < best.length)) best = f;
+        }
+        if (best != null) {
+            free.remove(best);
+            return best;
+        }
+        return new float[length];
+    }
+
+    /**
+     * Return a buffer to the pool. If the pool is full, the smallest buffer is discarded
+     */
+    synchronized void release(float[] buffer) {
+        if (buffer == null) return;
+        free.add(buffer);
+        if (free.size() > maxPooledBuffers) {
+            float[] smallest = buffer;
+            for (float[] f : free) {
+                if (f.length < smallest.length) smallest = f;
+            }
+            free.remove(smallest);
+        }
+    }
+
+    /**
+     * Copy the values of the given array into a pooled buffer. Element order is not preserved for non-contiguous
+     * arrays, which is fine for summary statistics.
+     *
+     * @return Buffer containing the first array.length() values of the array
+     */
+    float[] snapshot(INDArray array) {
+        int length = array.length();
+        float[] buffer = acquire(length);
+        INDArray source = array;
+        if (source.elementWiseStride() != 1) {
+            //Not a contiguous block of the underlying buffer: need a (temporary) contiguous copy
+            source = array.dup();
+        }
+
+        DataBuffer data = source.data();
+        int offset = source.offset();
+        if (data.dataType() == DataBuffer.Type.DOUBLE) {
+            DoubleBuffer db = data.asNioDouble();
+            for (int i = 0; i < length; i++) {
+                buffer[i] = (float) db.get(offset + i);
+            }
+        } else {
+            FloatBuffer fb = data.asNioFloat();
+            fb.position(offset);
+            fb.get(buffer, 0, length);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,78 @@
+package org.deeplearning4j.ui.stats;
+
+import lombok.Data;
+import org.deeplearning4j.ui.stats.api.Histogram;
+
+/**
+ * Summary statistics (mean, standard deviation, mean magnitude, and optionally a histogram) for one array snapshot.
+ * <p>
+ * Mean, standard deviation, mean magnitude and range are calculated in a single pass over the values; when a
+ * histogram is required, a second pass bins the values (the range must be known before binning).
+ * Standard deviation is the bias-corrected (N-1) estimate, consistent with {@code INDArray.stdNumber()}.
+ * Non-finite values are excluded from the histogram range and counts.
+ */
+@Data
+class ArraySummaryStats {
+
+    private double mean;
+    private double stdev;
+    private double meanMagnitude;
+    private Histogram histogram;
+
+    /**
+     * @param values Values to calculate the stats for
+     * @param length Number of values to use (values.length may be larger, for pooled buffers)
+     * @param nBins  Number of histogram bins, or 0 if no histogram is required
+     */
+    static ArraySummaryStats calculate(float[] values, int length, int nBins) {
+        ArraySummaryStats out = new ArraySummaryStats();
+        if (length == 0) {
+            out.mean = Double.NaN;
+            out.stdev = Double.NaN;
+            out.meanMagnitude = Double.NaN;
+            if (nBins > 0) out.histogram = new Histogram(0.0, 0.0, nBins, new int[nBins]);
+            return out;
+        }
+
+        //Sums are shifted by the first value, to avoid catastrophic cancellation in the variance calculation
+        double shift = values[0];
+        double sum = 0.0;
+        double sumSq = 0.0;
+        double sumAbs = 0.0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            double v = values[i];
+            double d = v - shift;
+            sum += d;
+            sumSq += d * d;
+            sumAbs += Math.abs(v);
+            //Comparisons are false for NaN; infinities are excluded explicitly
+            if (v < min && v != Double.NEGATIVE_INFINITY) min = v;
+            if (v > max && v != Double.POSITIVE_INFINITY) max = v;
+        }
+
+        out.mean = shift + sum / length;
+        out.stdev = (length > 1 ? Math.sqrt(Math.max(0.0, (sumSq - sum * sum / length) / (length - 1))) : 0.0);
+        out.meanMagnitude = sumAbs / length;
+
+        if (nBins > 0) {
+            if (min > max) {
+                //No finite values
+                min = 0.0;
+                max = 0.0;
+            }
+            int[] counts = new int[nBins];
+            double scale = (max > min ? nBins / (max - min) : 0.0);
+            for (int i = 0; i < length; i++) {
+                double v = values[i];
+                if (!(v >= min && v <= max)) continue; //Non-finite values (including NaN)
+                int bin = (int) ((v - min) * scale);
+                if (bin >= nBins) bin = nBins - 1;
+                counts[bin]++;
+            }
+            out.histogram = new Histogram(min, max, nBins, counts);
+        }
+        return out;
+    }
+}
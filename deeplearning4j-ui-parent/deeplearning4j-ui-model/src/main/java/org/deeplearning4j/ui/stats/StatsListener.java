@@ -16,7 +16,6 @@ import org.deeplearning4j.ui.stats.impl.DefaultStatsInitializationConfiguration;
 import org.deeplearning4j.ui.stats.impl.DefaultStatsUpdateConfiguration;
 import org.deeplearning4j.ui.stats.impl.SbeStatsInitializationReport;
 import org.deeplearning4j.ui.stats.impl.SbeStatsReport;
-import org.deeplearning4j.ui.stats.temp.HistogramBin;
 import org.deeplearning4j.ui.storage.StatsStorageRouter;
 import org.deeplearning4j.ui.storage.StorageMetaData;
 import org.deeplearning4j.util.UIDProvider;
@@ -33,12 +32,24 @@ import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.RuntimeMXBean;
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * StatsListener: a general purpose listener for collecting and reporting system and model information.
  * <p>
  * Stats are collected and passed on to a {@link StatsStorageRouter}.
+ * <p>
+ * By default, stats are calculated on the training thread. If {@link StatsUpdateConfiguration#collectAsync()} is
+ * enabled, the required arrays are instead copied into pooled buffers on the training thread, and histograms and summary
+ * stats are calculated (in a single pass per array), along with memory and GC stats and storage, on a background
+ * thread. Additionally, {@link StatsUpdateConfiguration#collectionTimeBudget()} can be used to automatically reduce the
+ * reporting frequency when stats collection takes too large a fraction of the training time.
  *
  * @author Alex Black
  */
@@ -46,7 +57,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class StatsListener implements IterationListener {
 
     public static String TYPE_ID = "StatsListener";
-    private enum StatType {Mean, Stdev, MeanMagnitude}
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final int MAX_REPORTING_FREQUENCY = 1 << 20;
 
 //    public enum ErrorHandling {LogAndContinue, Fail};
 //    private ErrorHandling errorHandling = ErrorHandling.LogAndContinue;
@@ -59,6 +71,7 @@ public class StatsListener implements IterationListener {
     private final String workerID;
 
     private int iterCount = 0;
+    private int reportingFrequency;     //Current reporting frequency; may be larger than configured, due to the time budget
 
     private long initTime;
     private long lastReportTime = -1;
@@ -73,6 +86,12 @@ public class StatsListener implements IterationListener {
     private List<GarbageCollectorMXBean> gcBeans;
     private Map<String,Pair<Long,Long>> gcStatsAtLastReport;
 
+    private long lastReportNanos;
+    private volatile long lastCollectionNanos;
+    private transient ArrayBufferPool bufferPool;
+    private transient ExecutorService executor;
+    private transient volatile Future<?> pendingReport;
+
     public StatsListener(StatsStorageRouter router) {
         this(router, null, null, null, null);
     }
@@ -101,6 +120,7 @@ public class StatsListener implements IterationListener {
         } else {
             this.workerID = workerID;
         }
+        this.reportingFrequency = Math.max(1, this.updateConfig.reportingFrequency());
     }
 
     @Override
@@ -127,11 +147,23 @@ public class StatsListener implements IterationListener {
             updateExamplesMinibatchesCounts(model);
         }
 
-        if (config.reportingFrequency() > 1 && (iterCount == 0 || iterCount % config.reportingFrequency() != 0)) {
+        if (reportingFrequency > 1 && (iterCount == 0 || iterCount % reportingFrequency != 0)) {
+            iterCount++;
+            return;
+        }
+
+        if (config.collectAsync() && pendingReport != null && !pendingReport.isDone()) {
+            //Previous report is still being calculated: skip this one, rather than blocking the training thread
             iterCount++;
             return;
         }
 
+        long startNanos = System.nanoTime();
+        if (lastReportIteration >= 0) {
+            adaptReportingFrequency(lastCollectionNanos, startNanos - lastReportNanos);
+        }
+        lastReportNanos = startNanos;
+
         StatsReport report = new SbeStatsReport(paramNames);
         report.reportIDs(sessionID, TYPE_ID, workerID, System.currentTimeMillis()); //TODO support NTP time
 
@@ -156,51 +188,13 @@ public class StatsListener implements IterationListener {
             minibatchesSinceLastReport = 0;
         }
 
-        if (config.collectMemoryStats()) {
-
-            Runtime runtime = Runtime.getRuntime();
-            long jvmTotal = runtime.totalMemory();
-            long jvmMax = runtime.maxMemory();
-
-            //Off-heap memory
-            long offheapTotal = Pointer.totalBytes();
-            long offheapMax = Pointer.maxBytes();
-
-            //GPU
-            long[] gpuCurrentBytes = null;
-            long[] gpuMaxBytes = null;
-            NativeOps nativeOps = NativeOpsHolder.getInstance().getDeviceNativeOps();
-            int nDevices = nativeOps.getAvailableDevices();
-            if(nDevices > 0){
-                gpuCurrentBytes = new long[nDevices];
-                gpuMaxBytes = new long[nDevices];
+        if (!config.collectAsync()) {
+            //For async collection, these are collected on the background thread
+            if (config.collectMemoryStats()) {
+                reportMemory(report);
             }
-
-            report.reportMemoryUse(jvmTotal, jvmMax, offheapTotal, offheapMax, gpuCurrentBytes, gpuMaxBytes);
-        }
-
-        if(config.collectGarbageCollectionStats()){
-            if(lastReportIteration == -1 || gcBeans == null){
-                //Haven't reported GC stats before...
-                gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
-                gcStatsAtLastReport = new HashMap<>();
-                for( GarbageCollectorMXBean bean : gcBeans ){
-                    long count = bean.getCollectionCount();
-                    long timeMs = bean.getCollectionTime();
-                    gcStatsAtLastReport.put(bean.getName(), new Pair<>(count,timeMs));
-                }
-            } else {
-                for( GarbageCollectorMXBean bean : gcBeans ){
-                    long count = bean.getCollectionCount();
-                    long timeMs = bean.getCollectionTime();
-                    Pair<Long,Long> lastStats = gcStatsAtLastReport.get(bean.getName());
-                    long deltaGCCount = count - lastStats.getFirst();
-                    long deltaGCTime = timeMs - lastStats.getSecond();
-
-                    lastStats.setFirst(count);
-                    lastStats.setSecond(timeMs);
-                    report.reportGarbageCollection(bean.getName(), (int)deltaGCCount, (int)deltaGCTime);
-                }
+            if (config.collectGarbageCollectionStats()) {
+                reportGarbageCollection(report);
             }
         }
 
@@ -227,75 +221,34 @@ public class StatsListener implements IterationListener {
         }
 
 
-        //--- Histograms ---
-
-        if (config.collectHistograms(StatsType.Parameters)) {
-            Map<String, Histogram> paramHistograms = getHistograms(model.paramTable(), config.numHistogramBins(StatsType.Parameters));
-            report.reportHistograms(StatsType.Parameters, paramHistograms);
-        }
-
-        if (config.collectHistograms(StatsType.Updates)) {
-            Map<String, Histogram> updateHistograms = getHistograms(model.gradient().gradientForVariable(), config.numHistogramBins(StatsType.Updates));
-            report.reportHistograms(StatsType.Updates, updateHistograms);
-        }
-
-        if (config.collectHistograms(StatsType.Activations)) {
-            Map<String, INDArray> activations = getActivationArraysMap(model);
-            Map<String, Histogram> activationHistograms = getHistograms(activations, config.numHistogramBins(StatsType.Activations));
-            report.reportHistograms(StatsType.Activations, activationHistograms);
-        }
-
-
-        //--- Summary Stats: Mean, Variance, Mean Magnitudes ---
-
-        if (config.collectMean(StatsType.Parameters)) {
-            Map<String, Double> meanParams = calculateSummaryStats(model.paramTable(), StatType.Mean);
-            report.reportMean(StatsType.Parameters, meanParams);
-        }
-
-        if (config.collectMean(StatsType.Updates)) {
-            Map<String, Double> meanUpdates = calculateSummaryStats(model.gradient().gradientForVariable(), StatType.Mean);
-            report.reportMean(StatsType.Updates, meanUpdates);
-        }
-
-        if (config.collectMean(StatsType.Activations)) {
-            Map<String, INDArray> activations = getActivationArraysMap(model);
-            Map<String, Double> meanActivations = calculateSummaryStats(activations, StatType.Mean);
-            report.reportMean(StatsType.Activations, meanActivations);
-        }
-
-
-        if (config.collectStdev(StatsType.Parameters)) {
-            Map<String, Double> stdevParams = calculateSummaryStats(model.paramTable(), StatType.Stdev);
-            report.reportStdev(StatsType.Parameters, stdevParams);
-        }
-
-        if (config.collectStdev(StatsType.Updates)) {
-            Map<String, Double> stdevUpdates = calculateSummaryStats(model.gradient().gradientForVariable(), StatType.Stdev);
-            report.reportStdev(StatsType.Updates, stdevUpdates);
-        }
-
-        if (config.collectStdev(StatsType.Activations)) {
-            Map<String, INDArray> activations = getActivationArraysMap(model);
-            Map<String, Double> stdevActivations = calculateSummaryStats(activations, StatType.Stdev);
-            report.reportStdev(StatsType.Activations, stdevActivations);
-        }
-
-
-        if (config.collectMeanMagnitudes(StatsType.Parameters)) {
-            Map<String, Double> meanMagParams = calculateSummaryStats(model.paramTable(), StatType.MeanMagnitude);
-            report.reportMeanMagnitudes(StatsType.Parameters, meanMagParams);
-        }
+        if (config.collectAsync()) {
+            //Copy the arrays now (they will be modified by the next iteration); calculate the stats later
+            Map<StatsType, Map<String, ArraySnapshot>> snapshots = new EnumMap<>(StatsType.class);
+            for (StatsType type : StatsType.values()) {
+                if (collectArrayStats(config, type)) {
+                    snapshots.put(type, snapshotArrays(getArrays(model, type)));
+                }
+            }
+            long trainingThreadNanos = System.nanoTime() - startNanos;
+            pendingReport = getExecutor().submit(new CollectionTask(report, snapshots, trainingThreadNanos));
 
-        if (config.collectMeanMagnitudes(StatsType.Updates)) {
-            Map<String, Double> meanMagUpdates = calculateSummaryStats(model.gradient().gradientForVariable(), StatType.MeanMagnitude);
-            report.reportMeanMagnitudes(StatsType.Updates, meanMagUpdates);
+            lastReportTime = currentTime;
+            lastReportIteration = iterCount;
+            iterCount++;
+            return;
         }
 
-        if (config.collectMeanMagnitudes(StatsType.Activations)) {
-            Map<String, INDArray> activations = getActivationArraysMap(model);
-            Map<String, Double> meanMagActivations = calculateSummaryStats(activations, StatType.MeanMagnitude);
-            report.reportMeanMagnitudes(StatsType.Activations, meanMagActivations);
+        //--- Histograms and Summary Stats: Mean, Variance, Mean Magnitudes ---
+        //All calculated together, in one pass over a copy of each array (plus one binning pass for histograms)
+        for (StatsType type : StatsType.values()) {
+            if (collectArrayStats(config, type)) {
+                Map<String, ArraySnapshot> snapshots = snapshotArrays(getArrays(model, type));
+                try {
+                    reportArrayStats(report, type, snapshots);
+                } finally {
+                    releaseSnapshots(snapshots);
+                }
+            }
         }
 
 
@@ -305,6 +258,7 @@ public class StatsListener implements IterationListener {
         lastReportIteration = iterCount;
 
         this.router.putUpdate(report);
+        lastCollectionNanos = System.nanoTime() - startNanos;
 
         //TODO error handling as per below
 //        try{
@@ -325,6 +279,158 @@ public class StatsListener implements IterationListener {
         iterCount++;
     }
 
+    /**
+     * Wait for any report that is still being calculated asynchronously (see {@link StatsUpdateConfiguration#collectAsync()})
+     * to be completed and passed to the {@link StatsStorageRouter}
+     */
+    public void flush() {
+        Future<?> pending = pendingReport;
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get the current reporting frequency. This is the configured reporting frequency, unless it has been increased
+     * due to the stats collection time budget ({@link StatsUpdateConfiguration#collectionTimeBudget()})
+     */
+    public int getReportingFrequency() {
+        return reportingFrequency;
+    }
+
+    private void adaptReportingFrequency(long collectionNanos, long intervalNanos) {
+        double budget = updateConfig.collectionTimeBudget();
+        if (budget <= 0.0 || intervalNanos <= 0) return;
+
+        //Doubling/halving keeps the frequency a multiple of the configured frequency; the 1/4 margin avoids oscillation
+        double fraction = (double) collectionNanos / intervalNanos;
+        int minFrequency = Math.max(1, updateConfig.reportingFrequency());
+        if (fraction > budget && reportingFrequency <= MAX_REPORTING_FREQUENCY / 2) {
+            reportingFrequency *= 2;
+            log.debug("Stats collection used {}% of training time (budget: {}%); reporting every {} iterations",
+                    (int) (100 * fraction), (int) (100 * budget), reportingFrequency);
+        } else if (fraction < budget / 4 && reportingFrequency > minFrequency) {
+            reportingFrequency = Math.max(minFrequency, reportingFrequency / 2);
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            //Daemon thread, which also exits when idle: a listener that is no longer used doesn't keep a thread
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "StatsListener-" + workerID);
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    private static boolean collectArrayStats(StatsUpdateConfiguration config, StatsType type) {
+        return config.collectHistograms(type) || config.collectMean(type) || config.collectStdev(type)
+                || config.collectMeanMagnitudes(type);
+    }
+
+    private Map<String, ArraySnapshot> snapshotArrays(Map<String, INDArray> arrays) {
+        if (bufferPool == null) {
+            bufferPool = new ArrayBufferPool(MAX_POOLED_BUFFERS);
+        }
+        Map<String, ArraySnapshot> out = new LinkedHashMap<>();
+        for (Map.Entry<String, INDArray> entry : arrays.entrySet()) {
+            INDArray arr = entry.getValue();
+            if (arr == null) continue;
+            out.put(entry.getKey(), new ArraySnapshot(bufferPool.snapshot(arr), arr.length()));
+        }
+        return out;
+    }
+
+    private void releaseSnapshots(Map<String, ArraySnapshot> snapshots) {
+        for (ArraySnapshot snapshot : snapshots.values()) {
+            bufferPool.release(snapshot.values);
+        }
+    }
+
+    private void reportArrayStats(StatsReport report, StatsType type, Map<String, ArraySnapshot> snapshots) {
+        StatsUpdateConfiguration config = updateConfig;
+        int nBins = (config.collectHistograms(type) ? config.numHistogramBins(type) : 0);
+
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        Map<String, Double> means = new LinkedHashMap<>();
+        Map<String, Double> stdevs = new LinkedHashMap<>();
+        Map<String, Double> meanMagnitudes = new LinkedHashMap<>();
+        for (Map.Entry<String, ArraySnapshot> entry : snapshots.entrySet()) {
+            ArraySnapshot snapshot = entry.getValue();
+            ArraySummaryStats stats = ArraySummaryStats.calculate(snapshot.values, snapshot.length, nBins);
+            histograms.put(entry.getKey(), stats.getHistogram());
+            means.put(entry.getKey(), stats.getMean());
+            stdevs.put(entry.getKey(), stats.getStdev());
+            meanMagnitudes.put(entry.getKey(), stats.getMeanMagnitude());
+        }
+
+        if (config.collectHistograms(type)) report.reportHistograms(type, histograms);
+        if (config.collectMean(type)) report.reportMean(type, means);
+        if (config.collectStdev(type)) report.reportStdev(type, stdevs);
+        if (config.collectMeanMagnitudes(type)) report.reportMeanMagnitudes(type, meanMagnitudes);
+    }
+
+    private void reportMemory(StatsReport report) {
+        Runtime runtime = Runtime.getRuntime();
+        long jvmTotal = runtime.totalMemory();
+        long jvmMax = runtime.maxMemory();
+
+        //Off-heap memory
+        long offheapTotal = Pointer.totalBytes();
+        long offheapMax = Pointer.maxBytes();
+
+        //GPU
+        long[] gpuCurrentBytes = null;
+        long[] gpuMaxBytes = null;
+        NativeOps nativeOps = NativeOpsHolder.getInstance().getDeviceNativeOps();
+        int nDevices = nativeOps.getAvailableDevices();
+        if(nDevices > 0){
+            gpuCurrentBytes = new long[nDevices];
+            gpuMaxBytes = new long[nDevices];
+        }
+
+        report.reportMemoryUse(jvmTotal, jvmMax, offheapTotal, offheapMax, gpuCurrentBytes, gpuMaxBytes);
+    }
+
+    private void reportGarbageCollection(StatsReport report) {
+        if(gcBeans == null){
+            //Haven't reported GC stats before...
+            gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+            gcStatsAtLastReport = new HashMap<>();
+            for( GarbageCollectorMXBean bean : gcBeans ){
+                long count = bean.getCollectionCount();
+                long timeMs = bean.getCollectionTime();
+                gcStatsAtLastReport.put(bean.getName(), new Pair<>(count,timeMs));
+            }
+        } else {
+            for( GarbageCollectorMXBean bean : gcBeans ){
+                long count = bean.getCollectionCount();
+                long timeMs = bean.getCollectionTime();
+                Pair<Long,Long> lastStats = gcStatsAtLastReport.get(bean.getName());
+                long deltaGCCount = count - lastStats.getFirst();
+                long deltaGCTime = timeMs - lastStats.getSecond();
+
+                lastStats.setFirst(count);
+                lastStats.setSecond(timeMs);
+                report.reportGarbageCollection(bean.getName(), (int)deltaGCCount, (int)deltaGCTime);
+            }
+        }
+    }
+
     private long getTime() {
         //Abstraction to allow NTP to be plugged in later...
         return System.currentTimeMillis();
@@ -454,54 +560,6 @@ public class StatsListener implements IterationListener {
         totalMinibatches++;
     }
 
-    private static Map<String, Double> calculateSummaryStats(Map<String, INDArray> source, StatType statType) {
-        Map<String, Double> out = new LinkedHashMap<>();
-        for (Map.Entry<String, INDArray> entry : source.entrySet()) {
-            String name = entry.getKey();
-            double value;
-            switch (statType) {
-                case Mean:
-                    value = entry.getValue().meanNumber().doubleValue();
-                    break;
-                case Stdev:
-                    value = entry.getValue().stdNumber().doubleValue();
-                    break;
-                case MeanMagnitude:
-                    value = entry.getValue().norm1Number().doubleValue() / entry.getValue().length();
-                    break;
-                default:
-                    throw new RuntimeException();   //Should never happen
-            }
-            out.put(name, value);
-        }
-        return out;
-    }
-
-    private static Map<String, Histogram> getHistograms(Map<String, INDArray> map, int nBins) {
-        //TODO This is temporary approach...
-        Map<String, Histogram> out = new LinkedHashMap<>();
-
-        for (Map.Entry<String, INDArray> entry : map.entrySet()) {
-            HistogramBin histogram = new HistogramBin.Builder(entry.getValue().dup())
-                    .setBinCount(nBins)
-                    .setRounding(6)
-                    .build();
-            INDArray bins = histogram.getBins();
-            int[] count = new int[nBins];
-            for( int i=0; i<bins.length(); i++ ){
-                count[i] = (int)bins.getDouble(i);
-            }
-
-            double min = histogram.getMin();
-            double max = histogram.getMax();
-
-            Histogram h = new Histogram(min, max, nBins, count);
-
-            out.put(entry.getKey(), h);
-        }
-        return out;
-    }
-
     private static Map<String, INDArray> getActivationArraysMap(Model model) {
         Map<String, INDArray> map = new LinkedHashMap<>();
         if (model instanceof MultiLayerNetwork) {
@@ -523,4 +581,70 @@ public class StatsListener implements IterationListener {
 
         return map;
     }
+
+    private static Map<String, INDArray> getArrays(Model model, StatsType type) {
+        switch (type) {
+            case Parameters:
+                return model.paramTable();
+            case Updates:
+                return model.gradient().gradientForVariable();
+            case Activations:
+                return getActivationArraysMap(model);
+            default:
+                throw new RuntimeException();   //Should never happen
+        }
+    }
+
+    private static class ArraySnapshot {
+        private final float[] values;
+        private final int length;
+
+        private ArraySnapshot(float[] values, int length) {
+            this.values = values;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Completes a report on the background thread: memory, GC, histograms and summary stats, then routes it
+     */
+    private class CollectionTask implements Runnable {
+        private final StatsReport report;
+        private final Map<StatsType, Map<String, ArraySnapshot>> snapshots;
+        private final long trainingThreadNanos;
+
+        private CollectionTask(StatsReport report, Map<StatsType, Map<String, ArraySnapshot>> snapshots,
+                               long trainingThreadNanos) {
+            this.report = report;
+            this.snapshots = snapshots;
+            this.trainingThreadNanos = trainingThreadNanos;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                if (updateConfig.collectMemoryStats()) {
+                    reportMemory(report);
+                }
+                if (updateConfig.collectGarbageCollectionStats()) {
+                    reportGarbageCollection(report);
+                }
+                for (Map.Entry<StatsType, Map<String, ArraySnapshot>> entry : snapshots.entrySet()) {
+                    reportArrayStats(report, entry.getKey(), entry.getValue());
+                }
+
+                long collectionNanos = trainingThreadNanos + (System.nanoTime() - start);
+                report.reportStatsCollectionDurationMS((int) (collectionNanos / 1000000));
+                router.putUpdate(report);
+            } catch (Throwable t) {
+                log.warn("Error calculating or storing stats report", t);
+            } finally {
+                for (Map<String, ArraySnapshot> m : snapshots.values()) {
+                    releaseSnapshots(m);
+                }
+                lastCollectionNanos = trainingThreadNanos + (System.nanoTime() - start);
+            }
+        }
+    }
 }
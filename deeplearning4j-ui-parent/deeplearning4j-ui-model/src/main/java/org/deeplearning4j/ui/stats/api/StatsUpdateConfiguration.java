@@ -14,6 +14,21 @@ public interface StatsUpdateConfiguration {
      */
     int reportingFrequency();
 
+    /**
+     * Should stats be calculated and reported asynchronously? If true, the required arrays are copied on the training
+     * thread, and the (more expensive) histograms, summary stats and storage happen on a background thread.
+     * A report is skipped if the previous one is still being calculated.
+     */
+    boolean collectAsync();
+
+    /**
+     * Maximum fraction (0 to 1) of wall clock time that may be spent on stats collection. If collection takes longer
+     * than this, the reporting frequency is reduced (reports become less frequent) until the collection time is within
+     * the budget; it is increased again (down to {@link #reportingFrequency()}) once collection becomes cheap enough.
+     * Values of 0 or less disable this.
+     */
+    double collectionTimeBudget();
+
     //TODO
     //boolean useNTPTimeSource();
 
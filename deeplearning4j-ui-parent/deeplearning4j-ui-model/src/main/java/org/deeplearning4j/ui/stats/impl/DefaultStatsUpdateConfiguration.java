@@ -11,6 +11,8 @@ import org.deeplearning4j.ui.stats.api.StatsUpdateConfiguration;
 public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration {
 
     private int reportingFrequency = 1;
+    private boolean collectAsync = false;
+    private double collectionTimeBudget = 0.0;
     private boolean collectPerformanceStats = true;
     private boolean collectMemoryStats = true;
     private boolean collectGarbageCollectionStats = true;
@@ -39,6 +41,16 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
         return reportingFrequency;
     }
 
+    @Override
+    public boolean collectAsync() {
+        return collectAsync;
+    }
+
+    @Override
+    public double collectionTimeBudget() {
+        return collectionTimeBudget;
+    }
+
     @Override
     public boolean collectPerformanceStats() {
         return collectPerformanceStats;
@@ -118,6 +130,8 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
 
     public static class DefaultStatsUpdateConfigurationBuilder {
         private int reportingFrequency = 1;
+        private boolean collectAsync = false;
+        private double collectionTimeBudget = 0.0;
         private boolean collectPerformanceStats = true;
         private boolean collectMemoryStats = true;
         private boolean collectGarbageCollectionStats = true;
@@ -144,6 +158,16 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
             return this;
         }
 
+        public DefaultStatsUpdateConfiguration.DefaultStatsUpdateConfigurationBuilder collectAsync(boolean collectAsync) {
+            this.collectAsync = collectAsync;
+            return this;
+        }
+
+        public DefaultStatsUpdateConfiguration.DefaultStatsUpdateConfigurationBuilder collectionTimeBudget(double collectionTimeBudget) {
+            this.collectionTimeBudget = collectionTimeBudget;
+            return this;
+        }
+
         public DefaultStatsUpdateConfiguration.DefaultStatsUpdateConfigurationBuilder collectPerformanceStats(boolean collectPerformanceStats) {
             this.collectPerformanceStats = collectPerformanceStats;
             return this;
@@ -230,11 +254,11 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
         }
 
         public DefaultStatsUpdateConfiguration build() {
-            return new DefaultStatsUpdateConfiguration(reportingFrequency, collectPerformanceStats, collectMemoryStats, collectGarbageCollectionStats, collectLearningRates, collectHistogramsParameters, collectHistogramsUpdates, isCollectHistogramsActivations, numHistogramBins, collectMeanParameters, collectMeanUpdates, collectMeanActivations, collectStdevParameters, collectStdevUpdates, collectStdevActivations, collectMeanMagnitudesParameters, collectMeanMagnitudesUpdates, collectMeanMagnitudesActivations);
+            return new DefaultStatsUpdateConfiguration(reportingFrequency, collectAsync, collectionTimeBudget, collectPerformanceStats, collectMemoryStats, collectGarbageCollectionStats, collectLearningRates, collectHistogramsParameters, collectHistogramsUpdates, isCollectHistogramsActivations, numHistogramBins, collectMeanParameters, collectMeanUpdates, collectMeanActivations, collectStdevParameters, collectStdevUpdates, collectStdevActivations, collectMeanMagnitudesParameters, collectMeanMagnitudesUpdates, collectMeanMagnitudesActivations);
         }
 
         public String toString() {
-            return "org.deeplearning4j.ui.stats.impl.DefaultStatsUpdateConfiguration.DefaultStatsUpdateConfigurationBuilder(reportingFrequency=" + this.reportingFrequency + ", collectPerformanceStats=" + this.collectPerformanceStats + ", collectMemoryStats=" + this.collectMemoryStats + ", collectGarbageCollectionStats=" + this.collectGarbageCollectionStats + ", collectLearningRates=" + this.collectLearningRates + ", collectHistogramsParameters=" + this.collectHistogramsParameters + ", collectHistogramsUpdates=" + this.collectHistogramsUpdates + ", isCollectHistogramsActivations=" + this.isCollectHistogramsActivations + ", numHistogramBins=" + this.numHistogramBins + ", collectMeanParameters=" + this.collectMeanParameters + ", collectMeanUpdates=" + this.collectMeanUpdates + ", collectMeanActivations=" + this.collectMeanActivations + ", collectStdevParameters=" + this.collectStdevParameters + ", collectStdevUpdates=" + this.collectStdevUpdates + ", collectStdevActivations=" + this.collectStdevActivations + ", collectMeanMagnitudesParameters=" + this.collectMeanMagnitudesParameters + ", collectMeanMagnitudesUpdates=" + this.collectMeanMagnitudesUpdates + ", collectMeanMagnitudesActivations=" + this.collectMeanMagnitudesActivations + ")";
+            return "org.deeplearning4j.ui.stats.impl.DefaultStatsUpdateConfiguration.DefaultStatsUpdateConfigurationBuilder(reportingFrequency=" + this.reportingFrequency + ", collectAsync=" + this.collectAsync + ", collectionTimeBudget=" + this.collectionTimeBudget + ", collectPerformanceStats=" + this.collectPerformanceStats + ", collectMemoryStats=" + this.collectMemoryStats + ", collectGarbageCollectionStats=" + this.collectGarbageCollectionStats + ", collectLearningRates=" + this.collectLearningRates + ", collectHistogramsParameters=" + this.collectHistogramsParameters + ", collectHistogramsUpdates=" + this.collectHistogramsUpdates + ", isCollectHistogramsActivations=" + this.isCollectHistogramsActivations + ", numHistogramBins=" + this.numHistogramBins + ", collectMeanParameters=" + this.collectMeanParameters + ", collectMeanUpdates=" + this.collectMeanUpdates + ", collectMeanActivations=" + this.collectMeanActivations + ", collectStdevParameters=" + this.collectStdevParameters + ", collectStdevUpdates=" + this.collectStdevUpdates + ", collectStdevActivations=" + this.collectStdevActivations + ", collectMeanMagnitudesParameters=" + this.collectMeanMagnitudesParameters + ", collectMeanMagnitudesUpdates=" + this.collectMeanMagnitudesUpdates + ", collectMeanMagnitudesActivations=" + this.collectMeanMagnitudesActivations + ")";
         }
     }
 }
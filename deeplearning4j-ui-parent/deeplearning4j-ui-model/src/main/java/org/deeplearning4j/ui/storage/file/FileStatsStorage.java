@@ -0,0 +1,608 @@
+package org.deeplearning4j.ui.storage.file;
+
+import org.deeplearning4j.ui.storage.Persistable;
+import org.deeplearning4j.ui.storage.StatsStorage;
+import org.deeplearning4j.ui.storage.StatsStorageListener;
+import org.deeplearning4j.ui.storage.StorageMetaData;
+import org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage.SessionTypeId;
+import org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage.SessionTypeWorkerId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An implementation of the {@link StatsStorage} interface, backed by append-only files in a directory.<br>
+ * Unlike {@link org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage}, which commits on every put, this implementation
+ * is write-behind: puts only add the object to an in-memory pending list (which is immediately visible to queries and
+ * listeners), and a background thread writes all pending objects as a group, with (at most) one sync per file per
+ * group commit. Encoding of the objects is also done by the background thread.
+ * <p>
+ * Layout of the directory:
+ * <ul>
+ *     <li>{@code meta.bin}: static info and storage metadata records (all loaded into memory on open)</li>
+ *     <li>{@code updates-N.bin}: one file per (session, type, worker) stream, containing the updates in the order they
+ *     were received. A sparse in-memory time index (see {@link UpdateLog}) allows range queries, point queries and
+ *     {@link #getLatestUpdate(String, String, String)} to read only the relevant part of the file</li>
+ * </ul>
+ * Optionally, old updates can be downsampled/removed (see {@link Builder#retention(long, long, long)}); this is done
+ * periodically by the background thread, or on demand via {@link #compact()}.
+ * <p>
+ * Producers are throttled if the writer falls behind: once {@link Builder#maxPending(int)} updates are pending, the
+ * put call flushes synchronously.
+ */
+public class FileStatsStorage implements StatsStorage {
+    private static final Logger log = LoggerFactory.getLogger(FileStatsStorage.class);
+
+    private static final String META_FILE = "meta.bin";
+    private static final String UPDATE_FILE_PREFIX = "updates-";
+    private static final String UPDATE_FILE_SUFFIX = ".bin";
+    private static final byte TYPE_STATIC_INFO = 1;
+    private static final byte TYPE_META_DATA = 2;
+
+    private final File directory;
+    private final int indexBlockSize;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxPending;
+    private final boolean syncOnFlush;
+    private final long retentionFullResolutionMs;
+    private final long retentionDownsampleIntervalMs;
+    private final long retentionMaxAgeMs;
+    private final long compactionIntervalMs;
+
+    private final Map<SessionTypeWorkerId, UpdateLog> updateLogs = new ConcurrentHashMap<>();
+    private final Map<SessionTypeWorkerId, Persistable> staticInfo = new ConcurrentHashMap<>();
+    private final Map<SessionTypeId, StorageMetaData> storageMetaData = new ConcurrentHashMap<>();
+    private final Set<String> sessionIDs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<StatsStorageListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final DataOutputStream metaOut;
+    private final FileOutputStream metaFileOut;
+    private final List<Persistable> pendingMeta = new ArrayList<>();
+    private int nextLogNumber = 0;
+
+    private final AtomicInteger numPending = new AtomicInteger(0);
+    private final Object flushLock = new Object();
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final Condition writerCondition = writerLock.newCondition();
+    private final Thread writerThread;
+    private volatile boolean isClosed = false;
+    private long lastCompaction = System.currentTimeMillis();
+
+    public FileStatsStorage(File directory) {
+        this(new Builder(directory));
+    }
+
+    public FileStatsStorage(Builder builder) {
+        this.directory = builder.directory;
+        this.indexBlockSize = builder.indexBlockSize;
+        this.batchSize = builder.batchSize;
+        this.flushIntervalMs = builder.flushIntervalMs;
+        this.maxPending = builder.maxPending;
+        this.syncOnFlush = builder.syncOnFlush;
+        this.retentionFullResolutionMs = builder.retentionFullResolutionMs;
+        this.retentionDownsampleIntervalMs = builder.retentionDownsampleIntervalMs;
+        this.retentionMaxAgeMs = builder.retentionMaxAgeMs;
+        this.compactionIntervalMs = builder.compactionIntervalMs;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new RuntimeException("Could not create directory: " + directory);
+        }
+
+        File metaFile = new File(directory, META_FILE);
+        try {
+            loadMeta(metaFile);
+            loadUpdateLogs();
+            metaFileOut = new FileOutputStream(metaFile, true);
+            metaOut = new DataOutputStream(new BufferedOutputStream(metaFileOut));
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening stats storage in directory " + directory, e);
+        }
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "FileStatsStorage writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private void loadMeta(File metaFile) throws IOException {
+        if (!metaFile.exists()) return;
+        long validLength = 0;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(metaFile)))) {
+            while (true) {
+                byte type;
+                try {
+                    type = dis.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                Persistable p;
+                try {
+                    String className = dis.readUTF();
+                    byte[] content = new byte[dis.readInt()];
+                    dis.readFully(content);
+                    p = UpdateLog.instantiate(className);
+                    p.decode(content);
+                } catch (EOFException e) {
+                    log.warn("Ignoring incomplete record at end of {}", metaFile);
+                    break;
+                }
+                validLength = metaFile.length() - dis.available();
+                putMetaInMemory(type, p);
+            }
+        }
+        if (validLength < metaFile.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(metaFile, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+    }
+
+    private void putMetaInMemory(byte type, Persistable p) {
+        sessionIDs.add(p.getSessionID());
+        if (type == TYPE_STATIC_INFO) {
+            staticInfo.put(new SessionTypeWorkerId(p.getSessionID(), p.getTypeID(), p.getWorkerID()), p);
+        } else {
+            storageMetaData.put(new SessionTypeId(p.getSessionID(), p.getTypeID()), (StorageMetaData) p);
+        }
+    }
+
+    private void loadUpdateLogs() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            String name = f.getName();
+            if (!name.startsWith(UPDATE_FILE_PREFIX) || !name.endsWith(UPDATE_FILE_SUFFIX)) continue;
+            int number = Integer.parseInt(name.substring(UPDATE_FILE_PREFIX.length(), name.length() - UPDATE_FILE_SUFFIX.length()));
+            nextLogNumber = Math.max(nextLogNumber, number + 1);
+
+            UpdateLog updateLog = new UpdateLog(f, indexBlockSize);
+            updateLogs.put(new SessionTypeWorkerId(updateLog.getSessionID(), updateLog.getTypeID(), updateLog.getWorkerID()), updateLog);
+            sessionIDs.add(updateLog.getSessionID());
+        }
+    }
+
+    private synchronized UpdateLog getUpdateLog(String sessionID, String typeID, String workerID, boolean createIfRequired) {
+        SessionTypeWorkerId id = new SessionTypeWorkerId(sessionID, typeID, workerID);
+        UpdateLog updateLog = updateLogs.get(id);
+        if (updateLog != null || !createIfRequired) return updateLog;
+
+        File f = new File(directory, UPDATE_FILE_PREFIX + (nextLogNumber++) + UPDATE_FILE_SUFFIX);
+        try {
+            updateLog = new UpdateLog(f, sessionID, typeID, workerID, indexBlockSize);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating update log " + f, e);
+        }
+        updateLogs.put(id, updateLog);
+        return updateLog;
+    }
+
+    private synchronized void logIDs(String sessionId, String typeID, String workerID) {
+        if (!sessionIDs.contains(sessionId)) {
+            sessionIDs.add(sessionId);
+            for (StatsStorageListener l : listeners) {
+                l.notifyNewSession(sessionId);
+                l.notifyNewWorkerID(sessionId, workerID);   //Must also be a new worker ID...
+            }
+        } else {
+            SessionTypeWorkerId id = new SessionTypeWorkerId(sessionId, typeID, workerID);
+            if (!updateLogs.containsKey(id) && !staticInfo.containsKey(id)) {
+                for (StatsStorageListener l : listeners) {
+                    l.notifyNewWorkerID(sessionId, workerID);
+                }
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (isClosed) throw new IllegalStateException("FileStatsStorage has been closed");
+    }
+
+    // ----- Background writing -----
+
+    private void runWriter() {
+        while (!isClosed) {
+            writerLock.lock();
+            try {
+                if (numPending.get() < batchSize && !isClosed) {
+                    writerCondition.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                writerLock.unlock();
+            }
+
+            try {
+                flush();
+                if (retentionFullResolutionMs > 0
+                        && System.currentTimeMillis() - lastCompaction > compactionIntervalMs) {
+                    compact();
+                }
+            } catch (Exception e) {
+                log.error("Error writing stats to {}", directory, e);
+            }
+        }
+    }
+
+    private void signalWriter() {
+        writerLock.lock();
+        try {
+            writerCondition.signal();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void afterPut() {
+        int n = numPending.incrementAndGet();
+        if (n >= maxPending) {
+            //Writer is falling behind: throttle the producer
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing stats to " + directory, e);
+            }
+        } else if (n >= batchSize) {
+            signalWriter();
+        }
+    }
+
+    /**
+     * Write all pending static info, metadata and updates to disk (group commit)
+     */
+    public void flush() throws IOException {
+        flush(syncOnFlush);
+    }
+
+    private void flush(boolean sync) throws IOException {
+        synchronized (flushLock) {
+            int written = 0;
+            List<Persistable> meta;
+            synchronized (pendingMeta) {
+                meta = new ArrayList<>(pendingMeta);
+                pendingMeta.clear();
+            }
+            if (!meta.isEmpty()) {
+                for (Persistable p : meta) {
+                    metaOut.writeByte(p instanceof StorageMetaData ? TYPE_META_DATA : TYPE_STATIC_INFO);
+                    metaOut.writeUTF(p.getClass().getName());
+                    byte[] content = p.encode();
+                    metaOut.writeInt(content.length);
+                    metaOut.write(content);
+                }
+                metaOut.flush();
+                if (sync) metaFileOut.getFD().sync();
+                written += meta.size();
+            }
+
+            for (UpdateLog updateLog : updateLogs.values()) {
+                written += updateLog.flush(sync);
+            }
+            numPending.addAndGet(-written);
+        }
+    }
+
+    /**
+     * Apply the retention policy (if any) to all update logs, rewriting them as required
+     */
+    public void compact() throws IOException {
+        lastCompaction = System.currentTimeMillis();
+        if (retentionFullResolutionMs <= 0) return;
+        int removed = 0;
+        synchronized (flushLock) {
+            for (UpdateLog updateLog : updateLogs.values()) {
+                removed += updateLog.compact(retentionFullResolutionMs,
+                        retentionDownsampleIntervalMs, retentionMaxAgeMs);
+            }
+        }
+        if (removed > 0) {
+            log.debug("Stats storage compaction removed {} updates", removed);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isClosed) return;
+        isClosed = true;
+        signalWriter();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush(true);
+        metaOut.close();
+        for (UpdateLog updateLog : updateLogs.values()) {
+            updateLog.close();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    // ----- Query methods -----
+
+    @Override
+    public List<String> listSessionIDs() {
+        return new ArrayList<>(sessionIDs);
+    }
+
+    @Override
+    public boolean sessionExists(String sessionID) {
+        return sessionIDs.contains(sessionID);
+    }
+
+    @Override
+    public Persistable getStaticInfo(String sessionID, String typeID, String workerID) {
+        return staticInfo.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+    }
+
+    @Override
+    public List<String> listTypeIDsForSession(String sessionID) {
+        Set<String> typeIDs = new HashSet<>();
+        for (SessionTypeId st : storageMetaData.keySet()) {
+            if (sessionID.equals(st.getSessionID())) typeIDs.add(st.getTypeID());
+        }
+        for (SessionTypeWorkerId stw : staticInfo.keySet()) {
+            if (sessionID.equals(stw.getSessionID())) typeIDs.add(stw.getTypeID());
+        }
+        for (SessionTypeWorkerId stw : updateLogs.keySet()) {
+            if (sessionID.equals(stw.getSessionID())) typeIDs.add(stw.getTypeID());
+        }
+        return new ArrayList<>(typeIDs);
+    }
+
+    @Override
+    public List<String> listWorkerIDsForSession(String sessionID) {
+        List<String> out = new ArrayList<>();
+        for (SessionTypeWorkerId ids : staticInfo.keySet()) {
+            if (sessionID.equals(ids.getSessionID())) {
+                out.add(ids.getWorkerID());
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public int getNumUpdateRecordsFor(String sessionID) {
+        int count = 0;
+        for (Map.Entry<SessionTypeWorkerId, UpdateLog> e : updateLogs.entrySet()) {
+            if (sessionID.equals(e.getKey().getSessionID())) {
+                count += e.getValue().numRecords();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getNumUpdateRecordsFor(String sessionID, String typeID, String workerID) {
+        UpdateLog updateLog = getUpdateLog(sessionID, typeID, workerID, false);
+        return updateLog == null ? 0 : updateLog.numRecords();
+    }
+
+    @Override
+    public Persistable getLatestUpdate(String sessionID, String typeID, String workerID) {
+        UpdateLog updateLog = getUpdateLog(sessionID, typeID, workerID, false);
+        if (updateLog == null) return null;
+        try {
+            return updateLog.getLatest();
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading stats from " + updateLog.getFile(), e);
+        }
+    }
+
+    @Override
+    public Persistable getUpdate(String sessionID, String typeID, String workerID, long timestamp) {
+        UpdateLog updateLog = getUpdateLog(sessionID, typeID, workerID, false);
+        if (updateLog == null) return null;
+        try {
+            return updateLog.get(timestamp);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading stats from " + updateLog.getFile(), e);
+        }
+    }
+
+    @Override
+    public List<Persistable> getLatestUpdateAllWorkers(String sessionID, String typeID) {
+        List<Persistable> list = new ArrayList<>();
+        for (SessionTypeWorkerId id : updateLogs.keySet()) {
+            if (sessionID.equals(id.getSessionID()) && typeID.equals(id.getTypeID())) {
+                Persistable p = getLatestUpdate(sessionID, typeID, id.getWorkerID());
+                if (p != null) {
+                    list.add(p);
+                }
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public List<Persistable> getAllUpdatesAfter(String sessionID, String typeID, String workerID, long timestamp) {
+        UpdateLog updateLog = getUpdateLog(sessionID, typeID, workerID, false);
+        if (updateLog == null) return new ArrayList<>();
+        try {
+            return updateLog.getAllAfter(timestamp);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading stats from " + updateLog.getFile(), e);
+        }
+    }
+
+    @Override
+    public StorageMetaData getStorageMetaData(String sessionID, String typeID) {
+        return storageMetaData.get(new SessionTypeId(sessionID, typeID));
+    }
+
+    // ----- Store new info -----
+
+    @Override
+    public void putStaticInfo(Persistable staticInfo) {
+        checkOpen();
+        logIDs(staticInfo.getSessionID(), staticInfo.getTypeID(), staticInfo.getWorkerID());
+        putMetaInMemory(TYPE_STATIC_INFO, staticInfo);
+        synchronized (pendingMeta) {
+            pendingMeta.add(staticInfo);
+        }
+        afterPut();
+
+        for (StatsStorageListener l : listeners) {
+            l.notifyStaticInfo(staticInfo.getSessionID(), staticInfo.getTypeID(), staticInfo.getWorkerID());
+        }
+    }
+
+    @Override
+    public void putUpdate(Persistable update) {
+        checkOpen();
+        logIDs(update.getSessionID(), update.getTypeID(), update.getWorkerID());
+        getUpdateLog(update.getSessionID(), update.getTypeID(), update.getWorkerID(), true).add(update);
+        afterPut();
+
+        for (StatsStorageListener l : listeners) {
+            l.notifyStatusUpdate(update.getSessionID(), update.getTypeID(), update.getWorkerID(), update.getTimeStamp());
+        }
+    }
+
+    @Override
+    public void putStorageMetaData(StorageMetaData storageMetaData) {
+        checkOpen();
+        putMetaInMemory(TYPE_META_DATA, storageMetaData);
+        synchronized (pendingMeta) {
+            pendingMeta.add(storageMetaData);
+        }
+        afterPut();
+
+        for (StatsStorageListener l : listeners) {
+            l.notifyStorageMetaData(storageMetaData.getSessionID(), storageMetaData.getTypeID());
+        }
+    }
+
+    // ----- Listeners -----
+
+    @Override
+    public void registerStatsStorageListener(StatsStorageListener listener) {
+        if (!this.listeners.contains(listener)) {
+            this.listeners.add(listener);
+        }
+    }
+
+    @Override
+    public void deregisterStatsStorageListener(StatsStorageListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    @Override
+    public void removeAllListeners() {
+        this.listeners.clear();
+    }
+
+    @Override
+    public List<StatsStorageListener> getListeners() {
+        return new ArrayList<>(listeners);
+    }
+
+
+    public static class Builder {
+
+        private File directory;
+        private int batchSize = 256;
+        private long flushIntervalMs = 1000;
+        private int maxPending = 10000;
+        private boolean syncOnFlush = true;
+        private int indexBlockSize = 64;
+        private long retentionFullResolutionMs = 0;
+        private long retentionDownsampleIntervalMs = 0;
+        private long retentionMaxAgeMs = 0;
+        private long compactionIntervalMs = 60000;
+
+        /**
+         * @param directory Directory for the stats files. Created if it does not exist; existing data is loaded
+         */
+        public Builder(File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Number of pending objects at which the background writer is woken up, before the flush interval has
+         * elapsed (default: 256)
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Maximum time between group commits, in milliseconds (default: 1000)
+         */
+        public Builder flushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+            return this;
+        }
+
+        /**
+         * Maximum number of pending (not yet written) objects. If this is reached, put calls write synchronously
+         * (default: 10000)
+         */
+        public Builder maxPending(int maxPending) {
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        /**
+         * If true (default): force written data to the storage device once per group commit. This protects against
+         * data loss on OS crash/power loss; data is always written on close
+         */
+        public Builder syncOnFlush(boolean syncOnFlush) {
+            this.syncOnFlush = syncOnFlush;
+            return this;
+        }
+
+        /**
+         * Number of updates per entry of the sparse time index (default: 64). Lower values make queries read less
+         * data, at the cost of more memory for the index
+         */
+        public Builder indexBlockSize(int indexBlockSize) {
+            this.indexBlockSize = indexBlockSize;
+            return this;
+        }
+
+        /**
+         * Retention policy for updates. Ages are relative to the most recent update of each worker.
+         *
+         * @param fullResolutionMs     Updates newer than this are all kept
+         * @param downsampleIntervalMs Older updates are downsampled to one update per interval (0: no downsampling)
+         * @param maxAgeMs             Updates older than this are removed (0: no limit)
+         */
+        public Builder retention(long fullResolutionMs, long downsampleIntervalMs, long maxAgeMs) {
+            this.retentionFullResolutionMs = fullResolutionMs;
+            this.retentionDownsampleIntervalMs = downsampleIntervalMs;
+            this.retentionMaxAgeMs = maxAgeMs;
+            return this;
+        }
+
+        /**
+         * How often to apply the retention policy, in milliseconds (default: 60000)
+         */
+        public Builder compactionIntervalMs(long compactionIntervalMs) {
+            this.compactionIntervalMs = compactionIntervalMs;
+            return this;
+        }
+
+        public FileStatsStorage build() {
+            return new FileStatsStorage(this);
+        }
+    }
+}
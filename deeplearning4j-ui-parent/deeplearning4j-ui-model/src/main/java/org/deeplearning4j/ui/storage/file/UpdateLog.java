@@ -0,0 +1,443 @@
+package org.deeplearning4j.ui.storage.file;
+
+import org.deeplearning4j.ui.storage.Persistable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only log of updates for a single (session, type, worker) stream, used by {@link FileStatsStorage}.
+ * <p>
+ * File format: a header (magic number, then session, type and worker IDs as modified UTF-8), followed by records.
+ * Each record is: int length (of the rest of the record), long timestamp, class name (modified UTF-8), and the encoded
+ * {@link Persistable} bytes.
+ * <p>
+ * A sparse index is kept in memory: for every block of {@code blockSize} consecutive records, the file offset of the
+ * block and the min/max timestamps in the block. Range and point queries only read (and decode) the blocks that can
+ * contain matching records; the most recent record is located directly. Updates are normally appended in timestamp
+ * order, but the index does not depend on that.
+ * <p>
+ * New updates are first added to an in-memory pending list (visible to queries), and are written to the file as one
+ * batch by {@link #flush(boolean)}.
+ */
+class UpdateLog implements Closeable {
+    static final int MAGIC = 0x444C3455;
+    private static final Map<String, Class<?>> classCache = new ConcurrentHashMap<>();
+
+    private final String sessionID;
+    private final String typeID;
+    private final String workerID;
+    private final int blockSize;
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long dataStart;
+    private long end;
+    private int numRecords;
+
+    //Sparse index: one entry per block of records
+    private long[] blockOffset = new long[16];
+    private long[] blockMin = new long[16];
+    private long[] blockMax = new long[16];
+    private int numBlocks;
+    private int recordsInLastBlock;
+
+    private long latestTimestamp = Long.MIN_VALUE;
+    private long latestOffset = -1;
+
+    private final List<Persistable> pending = new ArrayList<>();
+
+    /**
+     * Create a new, empty log
+     */
+    UpdateLog(File file, String sessionID, String typeID, String workerID, int blockSize) throws IOException {
+        this.file = file;
+        this.sessionID = sessionID;
+        this.typeID = typeID;
+        this.workerID = workerID;
+        this.blockSize = blockSize;
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        writeHeader(dos);
+        dos.close();
+
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+        writeFully(ByteBuffer.wrap(baos.toByteArray()), 0);
+        dataStart = baos.size();
+        end = dataStart;
+    }
+
+    /**
+     * Open an existing log, and rebuild the index by scanning the record headers. A partially written record at the
+     * end of the file (for example, after a crash) is truncated
+     */
+    UpdateLog(File file, int blockSize) throws IOException {
+        this.file = file;
+        this.blockSize = blockSize;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        try {
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (dis.readInt() != MAGIC) throw new IOException("Not a stats update log: " + file);
+                sessionID = dis.readUTF();
+                typeID = dis.readUTF();
+                workerID = dis.readUTF();
+            } finally {
+                dis.close();
+            }
+            dataStart = 4 + utfLength(sessionID) + utfLength(typeID) + utfLength(workerID);
+            rebuildIndex();
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader(DataOutputStream dos) throws IOException {
+        dos.writeInt(MAGIC);
+        dos.writeUTF(sessionID);
+        dos.writeUTF(typeID);
+        dos.writeUTF(workerID);
+    }
+
+    private static int utfLength(String s) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new DataOutputStream(baos).writeUTF(s);
+        return baos.size();
+    }
+
+    private void rebuildIndex() throws IOException {
+        numBlocks = 0;
+        recordsInLastBlock = 0;
+        numRecords = 0;
+        latestTimestamp = Long.MIN_VALUE;
+        latestOffset = -1;
+
+        long size = channel.size();
+        long pos = dataStart;
+        //Note: stream is not closed, as that would close the channel
+        channel.position(dataStart);
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        while (pos + 12 <= size) {
+            int length = dis.readInt();
+            if (length < 8 || pos + 4 + length > size) break;
+            long timestamp = dis.readLong();
+            skipFully(dis, length - 8);
+            indexRecord(pos, timestamp);
+            pos += 4 + length;
+        }
+        end = pos;
+        if (end < size) {
+            //Incomplete record at the end of the file
+            channel.truncate(end);
+        }
+    }
+
+    private static void skipFully(DataInputStream dis, int n) throws IOException {
+        while (n > 0) {
+            int skipped = dis.skipBytes(n);
+            if (skipped <= 0) throw new EOFException();
+            n -= skipped;
+        }
+    }
+
+    private void indexRecord(long offset, long timestamp) {
+        if (numBlocks == 0 || recordsInLastBlock == blockSize) {
+            if (numBlocks == blockOffset.length) {
+                int newLength = 2 * blockOffset.length;
+                blockOffset = Arrays.copyOf(blockOffset, newLength);
+                blockMin = Arrays.copyOf(blockMin, newLength);
+                blockMax = Arrays.copyOf(blockMax, newLength);
+            }
+            blockOffset[numBlocks] = offset;
+            blockMin[numBlocks] = timestamp;
+            blockMax[numBlocks] = timestamp;
+            numBlocks++;
+            recordsInLastBlock = 0;
+        }
+        int b = numBlocks - 1;
+        blockMin[b] = Math.min(blockMin[b], timestamp);
+        blockMax[b] = Math.max(blockMax[b], timestamp);
+        recordsInLastBlock++;
+        numRecords++;
+
+        if (timestamp >= latestTimestamp) {
+            latestTimestamp = timestamp;
+            latestOffset = offset;
+        }
+    }
+
+    String getSessionID() {
+        return sessionID;
+    }
+
+    String getTypeID() {
+        return typeID;
+    }
+
+    String getWorkerID() {
+        return workerID;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized void add(Persistable p) {
+        pending.add(p);
+    }
+
+    synchronized int numPending() {
+        return pending.size();
+    }
+
+    /**
+     * Write all pending updates to the file, as a single write
+     *
+     * @param sync If true: force the written data to the storage device
+     * @return Number of updates written
+     */
+    synchronized int flush(boolean sync) throws IOException {
+        if (pending.isEmpty()) return 0;
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        long[] offsets = new long[pending.size()];
+        for (int i = 0; i < pending.size(); i++) {
+            offsets[i] = end + baos.size();
+            writeRecord(dos, pending.get(i));
+        }
+        dos.flush();
+
+        writeFully(ByteBuffer.wrap(baos.toByteArray()), end);
+        if (sync) channel.force(false);
+
+        for (int i = 0; i < pending.size(); i++) {
+            indexRecord(offsets[i], pending.get(i).getTimeStamp());
+        }
+        end += baos.size();
+
+        int n = pending.size();
+        pending.clear();
+        return n;
+    }
+
+    private static void writeRecord(DataOutputStream dos, Persistable p) throws IOException {
+        byte[] className = utf(p.getClass().getName());
+        byte[] content = p.encode();
+        dos.writeInt(8 + className.length + content.length);
+        dos.writeLong(p.getTimeStamp());
+        dos.write(className);
+        dos.write(content);
+    }
+
+    private static byte[] utf(String s) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new DataOutputStream(baos).writeUTF(s);
+        return baos.toByteArray();
+    }
+
+    private void writeFully(ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            position += channel.write(bb, position);
+        }
+    }
+
+    private void readFully(ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) throw new EOFException("Unexpected end of file: " + file);
+            position += read;
+        }
+        bb.flip();
+    }
+
+    synchronized int numRecords() {
+        return numRecords + pending.size();
+    }
+
+    synchronized Persistable getLatest() throws IOException {
+        Persistable latestPending = null;
+        for (Persistable p : pending) {
+            if (latestPending == null || p.getTimeStamp() >= latestPending.getTimeStamp()) latestPending = p;
+        }
+        if (latestPending != null && latestPending.getTimeStamp() >= latestTimestamp) return latestPending;
+        if (latestOffset < 0) return null;
+        ByteBuffer bb = readBlock(latestOffset, end);
+        return decodeRecord(bb);
+    }
+
+    /**
+     * @return The most recently written update with the given timestamp, or null if none exists
+     */
+    synchronized Persistable get(long timestamp) throws IOException {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            if (pending.get(i).getTimeStamp() == timestamp) return pending.get(i);
+        }
+        for (int b = numBlocks - 1; b >= 0; b--) {
+            if (timestamp < blockMin[b] || timestamp > blockMax[b]) continue;
+            ByteBuffer bb = readBlock(blockOffset[b], blockEnd(b));
+            int matchPosition = -1;
+            while (bb.hasRemaining()) {
+                int start = bb.position();
+                int length = bb.getInt();
+                long ts = bb.getLong();
+                if (ts == timestamp) matchPosition = start;
+                bb.position(start + 4 + length);
+            }
+            if (matchPosition >= 0) {
+                bb.position(matchPosition);
+                return decodeRecord(bb);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return All updates with timestamp strictly greater than the given timestamp, sorted by time. If there are
+     * multiple updates with the same timestamp, only the most recently written is returned
+     */
+    synchronized List<Persistable> getAllAfter(long timestamp) throws IOException {
+        TreeMap<Long, Persistable> out = new TreeMap<>();
+        for (int b = 0; b < numBlocks; b++) {
+            if (blockMax[b] <= timestamp) continue;
+            ByteBuffer bb = readBlock(blockOffset[b], blockEnd(b));
+            while (bb.hasRemaining()) {
+                int start = bb.position();
+                int length = bb.getInt();
+                long ts = bb.getLong();
+                if (ts > timestamp) {
+                    bb.position(start);
+                    out.put(ts, decodeRecord(bb));
+                }
+                bb.position(start + 4 + length);
+            }
+        }
+        for (Persistable p : pending) {
+            if (p.getTimeStamp() > timestamp) out.put(p.getTimeStamp(), p);
+        }
+        return new ArrayList<>(out.values());
+    }
+
+    private long blockEnd(int block) {
+        return block + 1 < numBlocks ? blockOffset[block + 1] : end;
+    }
+
+    private ByteBuffer readBlock(long from, long to) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate((int) (to - from));
+        readFully(bb, from);
+        return bb;
+    }
+
+    //Decode the record at the current position of the buffer; position is moved to the end of the record
+    private static Persistable decodeRecord(ByteBuffer bb) throws IOException {
+        int start = bb.position();
+        int length = bb.getInt();
+        bb.getLong();
+        int classNameLength = bb.getShort() & 0xFFFF;
+        byte[] classNameBytes = new byte[classNameLength];
+        bb.get(classNameBytes);
+        String className = new String(classNameBytes, "UTF-8");
+        byte[] content = new byte[start + 4 + length - bb.position()];
+        bb.get(content);
+
+        Persistable p = instantiate(className);
+        p.decode(content);
+        return p;
+    }
+
+    static Persistable instantiate(String className) {
+        try {
+            Class<?> c = classCache.get(className);
+            if (c == null) {
+                c = Class.forName(className);
+                classCache.put(className, c);
+            }
+            return (Persistable) c.newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException("Could not instantiate Persistable of type " + className, e);
+        }
+    }
+
+    /**
+     * Rewrite the log, downsampling old updates. Relative to the most recent timestamp in this log: updates in the
+     * last {@code fullResolutionMs} are all kept; older updates are thinned out to (at most) one per
+     * {@code downsampleIntervalMs}, and updates older than {@code maxAgeMs} are removed (if maxAgeMs > 0).
+     * The most recent update is always retained. Pending (not yet written) updates are not affected.
+     *
+     * @return Number of updates removed
+     */
+    synchronized int compact(long fullResolutionMs, long downsampleIntervalMs, long maxAgeMs) throws IOException {
+        if (numRecords == 0) return 0;
+
+        long latest = latestTimestamp;
+        long fullFrom = latest - fullResolutionMs;
+        long dropBefore = (maxAgeMs > 0 ? latest - maxAgeMs : Long.MIN_VALUE);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        int removed = 0;
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            writeHeader(dos);
+            Set<Long> keptBuckets = new HashSet<>();
+            for (int b = 0; b < numBlocks; b++) {
+                ByteBuffer bb = readBlock(blockOffset[b], blockEnd(b));
+                while (bb.hasRemaining()) {
+                    int start = bb.position();
+                    int length = bb.getInt();
+                    long ts = bb.getLong();
+                    boolean keep;
+                    if (ts >= fullFrom || blockOffset[b] + start == latestOffset) {
+                        keep = true;
+                    } else if (ts < dropBefore) {
+                        keep = false;
+                    } else {
+                        keep = downsampleIntervalMs <= 0 || keptBuckets.add(ts / downsampleIntervalMs);
+                    }
+                    if (keep) {
+                        dos.write(bb.array(), start, 4 + length);
+                    } else {
+                        removed++;
+                    }
+                    bb.position(start + 4 + length);
+                }
+            }
+        }
+
+        if (removed == 0) {
+            tmp.delete();
+            return 0;
+        }
+
+        raf.close();
+        try {
+            //Atomic replace: a crash during compaction leaves either the old or the compacted log, never neither
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            //On failure the old log is unchanged, so reopening it keeps the current index valid
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+        }
+        rebuildIndex();
+        return removed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush(true);
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.deeplearning4j.ui.storage.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import org.deeplearning4j.ui.storage.StatsStorageRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UI-side receiver for frames sent by a {@link RemoteStatsStorageRouter}: a minimal HTTP server (using the JDK's built
+ * in HTTP server) that decodes each posted frame and passes the contents to a {@link StatsStorageRouter} - usually a
+ * {@link org.deeplearning4j.ui.storage.StatsStorage} such as
+ * {@link org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage} or
+ * {@link org.deeplearning4j.ui.storage.file.FileStatsStorage}.
+ * <p>
+ * Frames are processed one at a time, in the order they are received. To receive frames in an existing web server
+ * instead, pass the request body to {@link StatsFrameCodec#decodeInto(InputStream, StatsStorageRouter)}.
+ */
+public class RemoteStatsStorageReceiver implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(RemoteStatsStorageReceiver.class);
+
+    public static final String DEFAULT_PATH = "/remoteReceive";
+
+    private final StatsStorageRouter storage;
+    private final String path;
+    private final HttpServer server;
+    private final AtomicLong numReceived = new AtomicLong();
+
+    /**
+     * @param storage Storage to pass received objects to
+     * @param port    Port to listen on; 0 to use any free port (see {@link #getPort()})
+     */
+    public RemoteStatsStorageReceiver(@NonNull StatsStorageRouter storage, int port) throws IOException {
+        this(storage, port, DEFAULT_PATH);
+    }
+
+    public RemoteStatsStorageReceiver(@NonNull StatsStorageRouter storage, int port, @NonNull String path)
+                    throws IOException {
+        this.storage = storage;
+        this.path = path;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleExchange(exchange);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * @return The port this receiver is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return Address to use with {@link RemoteStatsStorageRouter}, for connections from the local machine
+     */
+    public String getLocalAddress() {
+        return "http://localhost:" + getPort() + path;
+    }
+
+    /**
+     * @return Total number of objects received so far
+     */
+    public long getNumReceived() {
+        return numReceived.get();
+    }
+
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is supported");
+                return;
+            }
+            int n;
+            try (InputStream in = exchange.getRequestBody()) {
+                n = StatsFrameCodec.decodeInto(in, storage);
+            } catch (IOException e) {
+                log.warn("Invalid stats frame received from {}", exchange.getRemoteAddress(), e);
+                respond(exchange, 400, e.getMessage());
+                return;
+            } catch (Exception e) {
+                log.error("Error storing received stats", e);
+                respond(exchange, 500, String.valueOf(e.getMessage()));
+                return;
+            }
+            numReceived.addAndGet(n);
+            exchange.sendResponseHeaders(204, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] bytes = (message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8));
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Stop the server. The storage is not closed
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
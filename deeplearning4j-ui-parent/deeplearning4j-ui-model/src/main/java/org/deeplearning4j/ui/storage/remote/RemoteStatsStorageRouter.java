@@ -0,0 +1,517 @@
+package org.deeplearning4j.ui.storage.remote;
+
+import lombok.Data;
+import org.deeplearning4j.ui.storage.Persistable;
+import org.deeplearning4j.ui.storage.StatsStorageRouter;
+import org.deeplearning4j.ui.storage.StorageMetaData;
+import org.deeplearning4j.ui.storage.remote.StatsFrameCodec.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link StatsStorageRouter} that sends storage metadata, static info and updates to a remote
+ * {@link RemoteStatsStorageReceiver} (or any HTTP endpoint that passes the request body to
+ * {@link StatsFrameCodec#decodeInto(java.io.InputStream, StatsStorageRouter)}).
+ * <p>
+ * Put calls never do any network I/O: objects are added to a bounded queue, and a background thread encodes them in
+ * batches (see {@link StatsFrameCodec}) and POSTs one compressed binary frame per batch. Responses are fully read, so
+ * the underlying HTTP connection is kept alive and reused between frames. If sending fails, the same batch is retried
+ * with exponential backoff.
+ * <p>
+ * Storage metadata and static info are never dropped (they are small, and posted once per session). If the update queue
+ * is full (for example, because the receiver is slow or unavailable), new updates are handled according to the
+ * {@link OverflowPolicy}.
+ */
+public class RemoteStatsStorageRouter implements StatsStorageRouter, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(RemoteStatsStorageRouter.class);
+
+    /**
+     * What to do with an update if the queue is full:
+     * <ul>
+     *     <li>Block: block the caller until there is space in the queue</li>
+     *     <li>DropNewest: discard the new update</li>
+     *     <li>DropOldest: discard the oldest queued update</li>
+     *     <li>Coalesce: discard every second queued update of the same session/type/worker (keeping the most recent),
+     *     so that the history is sent at a lower resolution instead of losing a contiguous period</li>
+     * </ul>
+     */
+    public enum OverflowPolicy {Block, DropNewest, DropOldest, Coalesce}
+
+    private final URL url;
+    private final int maxQueueSize;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean compress;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final long initialRetryDelayMs;
+    private final long maxRetryDelayMs;
+    private final long closeTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final ArrayDeque<Record> metaQueue = new ArrayDeque<>();
+    private final ArrayDeque<Record> updateQueue = new ArrayDeque<>();
+    private boolean sending = false;
+    private boolean flushRequested = false;
+    private volatile boolean isClosed = false;
+
+    private final AtomicLong numDropped = new AtomicLong();
+    private final AtomicLong numSent = new AtomicLong();
+    private final AtomicLong numFrames = new AtomicLong();
+    private final Thread senderThread;
+
+    /**
+     * @param address Address of the receiver; for example, {@code http://localhost:9000/remoteReceive}
+     */
+    public RemoteStatsStorageRouter(String address) {
+        this(new Builder(address));
+    }
+
+    public RemoteStatsStorageRouter(Builder builder) {
+        try {
+            this.url = new URL(builder.getAddress());
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid receiver address: " + builder.getAddress(), e);
+        }
+        //Copied, so that later changes to the builder don't affect this router
+        this.maxQueueSize = builder.getMaxQueueSize();
+        this.maxBatchSize = builder.getMaxBatchSize();
+        this.lingerMs = builder.getLingerMs();
+        this.overflowPolicy = builder.getOverflowPolicy();
+        this.compress = builder.isCompress();
+        this.connectTimeoutMs = builder.getConnectTimeoutMs();
+        this.readTimeoutMs = builder.getReadTimeoutMs();
+        this.initialRetryDelayMs = builder.getInitialRetryDelayMs();
+        this.maxRetryDelayMs = builder.getMaxRetryDelayMs();
+        this.closeTimeoutMs = builder.getCloseTimeoutMs();
+
+        senderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runSender();
+            }
+        }, "RemoteStatsStorageRouter sender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    @Override
+    public void putStorageMetaData(StorageMetaData storageMetaData) {
+        enqueue(new Record(StatsFrameCodec.TYPE_META_DATA, storageMetaData));
+    }
+
+    @Override
+    public void putStaticInfo(Persistable persistable) {
+        enqueue(new Record(StatsFrameCodec.TYPE_STATIC_INFO, persistable));
+    }
+
+    @Override
+    public void putUpdate(Persistable persistable) {
+        enqueue(new Record(StatsFrameCodec.TYPE_UPDATE, persistable));
+    }
+
+    /**
+     * @return Number of updates discarded so far, due to the queue being full
+     */
+    public long getNumDropped() {
+        return numDropped.get();
+    }
+
+    /**
+     * @return Number of objects successfully sent so far
+     */
+    public long getNumSent() {
+        return numSent.get();
+    }
+
+    /**
+     * @return Number of frames (HTTP requests) successfully sent so far
+     */
+    public long getNumFrames() {
+        return numFrames.get();
+    }
+
+    /**
+     * @return Number of objects currently waiting to be sent (not including any batch currently being sent)
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return metaQueue.size() + updateQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Record record) {
+        if (isClosed) throw new IllegalStateException("Cannot put: router is closed");
+        lock.lock();
+        try {
+            if (record.getType() != StatsFrameCodec.TYPE_UPDATE) {
+                metaQueue.add(record);
+                notEmpty.signal();
+                return;
+            }
+
+            while (updateQueue.size() >= maxQueueSize) {
+                switch (overflowPolicy) {
+                    case Block:
+                        try {
+                            notFull.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            numDropped.incrementAndGet();
+                            return;
+                        }
+                        if (isClosed) return;
+                        break;
+                    case DropNewest:
+                        numDropped.incrementAndGet();
+                        return;
+                    case DropOldest:
+                        updateQueue.pollFirst();
+                        numDropped.incrementAndGet();
+                        break;
+                    case Coalesce:
+                        int removed = coalesce(record.getPersistable());
+                        if (removed == 0) {
+                            updateQueue.pollFirst();
+                            removed = 1;
+                        }
+                        numDropped.addAndGet(removed);
+                        break;
+                }
+            }
+
+            updateQueue.add(record);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Remove every second queued update from the same stream as p, counting back from the most recent one (which is kept)
+    private int coalesce(Persistable p) {
+        int count = 0;
+        for (Record r : updateQueue) {
+            if (sameStream(r.getPersistable(), p)) count++;
+        }
+        if (count < 2) return 0;
+
+        int removed = 0;
+        int idx = 0;
+        Iterator<Record> iter = updateQueue.iterator();
+        while (iter.hasNext()) {
+            Record r = iter.next();
+            if (!sameStream(r.getPersistable(), p)) continue;
+            if ((count - 1 - idx) % 2 == 1) {
+                iter.remove();
+                removed++;
+            }
+            idx++;
+        }
+        return removed;
+    }
+
+    private static boolean sameStream(Persistable p1, Persistable p2) {
+        return eq(p1.getSessionID(), p2.getSessionID()) && eq(p1.getTypeID(), p2.getTypeID())
+                && eq(p1.getWorkerID(), p2.getWorkerID());
+    }
+
+    private static boolean eq(String s1, String s2) {
+        return (s1 == null ? s2 == null : s1.equals(s2));
+    }
+
+    /**
+     * Block until all queued objects have been sent, or the timeout elapses
+     *
+     * @return True if everything was sent; false on timeout
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            flushRequested = true;  //Don't wait for the linger time
+            notEmpty.signal();
+            while (sending || !metaQueue.isEmpty() || !updateQueue.isEmpty()) {
+                if (remaining <= 0) return false;
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting new objects, and attempt to send all queued objects (for up to
+     * {@link Builder#closeTimeoutMs(long)}). Anything that cannot be sent by then is discarded.
+     */
+    @Override
+    public void close() {
+        if (isClosed) return;
+        isClosed = true;
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            senderThread.join(closeTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (senderThread.isAlive()) {
+            senderThread.interrupt();
+        }
+    }
+
+    private void runSender() {
+        List<Record> batch = null;
+        byte[] frame = null;
+        long retryDelay = 0;
+        int failures = 0;
+        while (true) {
+            try {
+                if (batch == null) {
+                    batch = takeBatch();
+                    if (batch == null) return;  //Closed, and nothing left to send
+                    try {
+                        frame = StatsFrameCodec.encode(batch, compress);
+                    } catch (Exception e) {
+                        log.error("Error encoding stats; discarding {} objects", batch.size(), e);
+                        batch = null;
+                        finishedBatch();
+                        continue;
+                    }
+                }
+
+                send(frame, batch.size());
+                numSent.addAndGet(batch.size());
+                numFrames.incrementAndGet();
+                if (failures > 0) {
+                    log.info("Sending stats to {} succeeded after {} failed attempts", url, failures);
+                }
+                batch = null;
+                frame = null;
+                retryDelay = 0;
+                failures = 0;
+                finishedBatch();
+            } catch (InterruptedException e) {
+                finishedBatch();
+                return;
+            } catch (RuntimeException e) {
+                //Not a network error, so retrying the same batch won't help; keep the thread alive for the next one
+                log.error("Error sending stats to {}; discarding {} objects", url, (batch == null ? 0 : batch.size()), e);
+                batch = null;
+                frame = null;
+                retryDelay = 0;
+                failures = 0;
+                finishedBatch();
+            } catch (IOException e) {
+                failures++;
+                if (isClosed) {
+                    log.warn("Could not send stats to {} on close; discarding {} objects", url,
+                            batch.size() + getQueueSize(), e);
+                    finishedBatch();
+                    return;
+                }
+                if (failures == 1) {
+                    log.warn("Error sending stats to {}; retrying", url, e);
+                }
+                retryDelay = Math.min(Math.max(2 * retryDelay, initialRetryDelayMs), maxRetryDelayMs);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException e2) {
+                    finishedBatch();
+                    return;
+                }
+            }
+        }
+    }
+
+    //Wait until a full batch is available (or the linger time has passed, or the router is closed), then remove it
+    private List<Record> takeBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (metaQueue.isEmpty() && updateQueue.isEmpty()) {
+                if (isClosed) return null;
+                notEmpty.await();
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+            while (!isClosed && !flushRequested && remaining > 0 && metaQueue.size() + updateQueue.size() < maxBatchSize) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+
+            //Metadata and static info first: the receiver may need them to interpret the updates
+            List<Record> batch = new ArrayList<>(Math.min(maxBatchSize, metaQueue.size() + updateQueue.size()));
+            while (batch.size() < maxBatchSize && !metaQueue.isEmpty()) batch.add(metaQueue.pollFirst());
+            while (batch.size() < maxBatchSize && !updateQueue.isEmpty()) batch.add(updateQueue.pollFirst());
+            if (metaQueue.isEmpty() && updateQueue.isEmpty()) flushRequested = false;
+            sending = true;
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finishedBatch() {
+        lock.lock();
+        try {
+            sending = false;
+            idle.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send(byte[] frame, int numObjects) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setConnectTimeout(connectTimeoutMs);
+        conn.setReadTimeout(readTimeoutMs);
+        conn.setFixedLengthStreamingMode(frame.length);
+        conn.setRequestProperty("Content-Type", "application/octet-stream");
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(frame);
+        }
+
+        int code = conn.getResponseCode();
+        //Fully read and close the response, so that the connection can be reused for the next frame
+        InputStream is = (code < 400 ? conn.getInputStream() : conn.getErrorStream());
+        if (is != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                while (is.read(buffer) >= 0) {
+                    //Discard
+                }
+            } finally {
+                is.close();
+            }
+        }
+        if (code < 200 || code >= 300) {
+            throw new IOException("Receiver returned HTTP status " + code + " for " + numObjects + " objects");
+        }
+    }
+
+
+    @Data
+    public static class Builder {
+
+        private String address;
+        private int maxQueueSize = 1000;
+        private int maxBatchSize = 100;
+        private long lingerMs = 100;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.Coalesce;
+        private boolean compress = true;
+        private int connectTimeoutMs = 5000;
+        private int readTimeoutMs = 30000;
+        private long initialRetryDelayMs = 100;
+        private long maxRetryDelayMs = 30000;
+        private long closeTimeoutMs = 10000;
+
+        /**
+         * @param address Address of the receiver; for example, {@code http://localhost:9000/remoteReceive}
+         */
+        public Builder(String address) {
+            this.address = address;
+        }
+
+        /**
+         * Maximum number of updates waiting to be sent. When reached, {@link #overflowPolicy(OverflowPolicy)} applies
+         * (default: 1000)
+         */
+        public Builder maxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Maximum number of objects per frame (default: 100)
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Maximum time to wait for a full batch before sending a partial one, in milliseconds (default: 100)
+         */
+        public Builder lingerMs(long lingerMs) {
+            this.lingerMs = lingerMs;
+            return this;
+        }
+
+        /**
+         * What to do with new updates when the queue is full (default: {@link OverflowPolicy#Coalesce})
+         */
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Whether frames should be compressed (default: true)
+         */
+        public Builder compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        public Builder connectTimeoutMs(int connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            return this;
+        }
+
+        public Builder readTimeoutMs(int readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        /**
+         * Delay before retrying a failed send; doubled on each consecutive failure, up to maxRetryDelayMs
+         * (defaults: 100 and 30000)
+         */
+        public Builder retryDelayMs(long initialRetryDelayMs, long maxRetryDelayMs) {
+            this.initialRetryDelayMs = initialRetryDelayMs;
+            this.maxRetryDelayMs = maxRetryDelayMs;
+            return this;
+        }
+
+        /**
+         * Maximum time for {@link RemoteStatsStorageRouter#close()} to wait for queued objects to be sent (default: 10000)
+         */
+        public Builder closeTimeoutMs(long closeTimeoutMs) {
+            this.closeTimeoutMs = closeTimeoutMs;
+            return this;
+        }
+
+        public RemoteStatsStorageRouter build() {
+            return new RemoteStatsStorageRouter(this);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.deeplearning4j.ui.storage.remote;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.deeplearning4j.ui.storage.Persistable;
+import org.deeplearning4j.ui.storage.StatsStorageRouter;
+import org.deeplearning4j.ui.storage.StorageMetaData;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary frame format used to send batches of {@link Persistable} objects (storage metadata, static info and updates)
+ * from a {@link RemoteStatsStorageRouter} to a {@link RemoteStatsStorageReceiver}.
+ * <p>
+ * Frame layout: magic number (int), version (byte), flags (byte; 1 = payload is deflate compressed), then the payload:
+ * number of records (int), followed by each record as: record type (byte), Persistable class name (UTF),
+ * encoded length (int) and the encoded bytes (i.e., {@link Persistable#encode()}; SBE for the stats classes).
+ */
+public class StatsFrameCodec {
+    public static final int MAGIC = 0x444C3446;
+    public static final byte VERSION = 1;
+    public static final byte FLAG_COMPRESSED = 1;
+
+    public static final byte TYPE_META_DATA = 1;
+    public static final byte TYPE_STATIC_INFO = 2;
+    public static final byte TYPE_UPDATE = 3;
+
+    private static final Map<String, Class<?>> classCache = new ConcurrentHashMap<>();
+
+    private StatsFrameCodec() {
+    }
+
+    /**
+     * A single object in a frame, with the type of put (metadata, static info, update) it came from
+     */
+    @AllArgsConstructor
+    @Data
+    public static class Record {
+        private byte type;
+        private Persistable persistable;
+    }
+
+    /**
+     * Encode the records as a single frame
+     *
+     * @param records  Records to encode
+     * @param compress Whether to deflate the payload
+     */
+    public static byte[] encode(List<Record> records, boolean compress) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(baos);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? FLAG_COMPRESSED : 0);
+        header.flush();
+
+        Deflater deflater = null;
+        OutputStream payloadOut = baos;
+        if (compress) {
+            //Stats are mostly small numbers and repeated parameter names: fast compression is good enough
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            payloadOut = new DeflaterOutputStream(baos, deflater, 8192);
+        }
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(payloadOut));
+            dos.writeInt(records.size());
+            for (Record r : records) {
+                byte[] bytes = r.getPersistable().encode();
+                dos.writeByte(r.getType());
+                dos.writeUTF(r.getPersistable().getClass().getName());
+                dos.writeInt(bytes.length);
+                dos.write(bytes);
+            }
+            dos.close();
+        } finally {
+            if (deflater != null) deflater.end();
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decode all records from a frame
+     */
+    public static List<Record> decode(InputStream in) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        int magic = header.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Invalid stats frame: magic number " + Integer.toHexString(magic));
+        }
+        byte version = header.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported stats frame version: " + version);
+        }
+        byte flags = header.readByte();
+
+        InputStream payloadIn = in;
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            payloadIn = new InflaterInputStream(in);
+        }
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(payloadIn));
+        int n = dis.readInt();
+        if (n < 0) throw new IOException("Invalid stats frame: negative record count");
+        List<Record> out = new ArrayList<>(Math.min(n, 1024));
+        for (int i = 0; i < n; i++) {
+            byte type = dis.readByte();
+            String className = dis.readUTF();
+            int length = dis.readInt();
+            if (length < 0) throw new IOException("Invalid stats frame: negative record length");
+            byte[] bytes = new byte[length];
+            dis.readFully(bytes);
+            Persistable p = instantiate(className);
+            p.decode(bytes);
+            out.add(new Record(type, p));
+        }
+        return out;
+    }
+
+    /**
+     * Decode a frame and pass each record to the router/storage, in order
+     *
+     * @return Number of records decoded
+     */
+    public static int decodeInto(InputStream in, StatsStorageRouter router) throws IOException {
+        List<Record> records = decode(in);
+        for (Record r : records) {
+            switch (r.getType()) {
+                case TYPE_META_DATA:
+                    if (!(r.getPersistable() instanceof StorageMetaData)) {
+                        throw new IOException("Invalid stats frame: metadata record of type "
+                                + r.getPersistable().getClass().getName());
+                    }
+                    router.putStorageMetaData((StorageMetaData) r.getPersistable());
+                    break;
+                case TYPE_STATIC_INFO:
+                    router.putStaticInfo(r.getPersistable());
+                    break;
+                case TYPE_UPDATE:
+                    router.putUpdate(r.getPersistable());
+                    break;
+                default:
+                    throw new IOException("Invalid stats frame: unknown record type " + r.getType());
+            }
+        }
+        return records.size();
+    }
+
+    private static Persistable instantiate(String className) throws IOException {
+        try {
+            Class<?> c = classCache.get(className);
+            if (c == null) {
+                //Don't initialize the class until it is known to be a Persistable: class names come from the network
+                c = Class.forName(className, false, StatsFrameCodec.class.getClassLoader());
+                if (!Persistable.class.isAssignableFrom(c)) {
+                    throw new IOException("Invalid stats frame: " + className + " is not a Persistable");
+                }
+                classCache.put(className, c);
+            }
+            return (Persistable) c.newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new IOException("Could not instantiate Persistable of type " + className, e);
+        }
+    }
+}
@@ -6,17 +6,22 @@ import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.ui.stats.api.Histogram;
+import org.deeplearning4j.ui.stats.impl.DefaultStatsUpdateConfiguration;
 import org.deeplearning4j.ui.storage.Persistable;
 import org.deeplearning4j.ui.storage.StatsStorage;
 import org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage;
 import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by Alex on 07/10/2016.
@@ -66,4 +71,68 @@ public class TestStatsListener {
 
     }
 
+    @Test
+    public void testListenerAsync(){
+
+        DataSet ds = new IrisDataSetIterator(150,150).next();
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .iterations(1).optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .list()
+                .layer(0, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                        .nIn(4).nOut(3).build())
+                .pretrain(false).backprop(true)
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        StatsStorage ss = new MapDBStatsStorage();  //in-memory
+
+        StatsListener listener = new StatsListener(ss, null,
+                DefaultStatsUpdateConfiguration.builder().collectAsync(true).build(), null, null);
+        net.setListeners(listener);
+
+        for( int i=0; i<3; i++ ){
+            net.fit(ds);
+            listener.flush();
+        }
+
+        String sessionID = ss.listSessionIDs().get(0);
+        String typeID = ss.listTypeIDsForSession(sessionID).get(0);
+        String  workerID = ss.listWorkerIDsForSession(sessionID).get(0);
+
+        List<Persistable> updates = ss.getAllUpdatesAfter(sessionID, typeID, workerID, 0);
+        assertEquals(3, updates.size());
+    }
+
+    @Test
+    public void testArraySummaryStats(){
+        Nd4j.getRandom().setSeed(12345);
+        INDArray arr = Nd4j.rand(10, 20).subi(0.3);
+
+        ArrayBufferPool pool = new ArrayBufferPool(4);
+        float[] values = pool.snapshot(arr);
+        ArraySummaryStats stats = ArraySummaryStats.calculate(values, arr.length(), 10);
+
+        assertEquals(arr.meanNumber().doubleValue(), stats.getMean(), 1e-5);
+        assertEquals(arr.stdNumber().doubleValue(), stats.getStdev(), 1e-5);
+        assertEquals(arr.norm1Number().doubleValue() / arr.length(), stats.getMeanMagnitude(), 1e-5);
+
+        Histogram h = stats.getHistogram();
+        assertEquals(arr.minNumber().doubleValue(), h.getMin(), 1e-6);
+        assertEquals(arr.maxNumber().doubleValue(), h.getMax(), 1e-6);
+        int sum = 0;
+        for (int c : h.getBinCounts()) sum += c;
+        assertEquals(arr.length(), sum);
+
+        //Views: stats should be calculated over the view's values only
+        INDArray row = arr.getRow(3);
+        pool.release(values);
+        float[] rowValues = pool.snapshot(row);
+        assertTrue(rowValues.length >= row.length());
+        stats = ArraySummaryStats.calculate(rowValues, row.length(), 0);
+        assertEquals(row.meanNumber().doubleValue(), stats.getMean(), 1e-5);
+    }
+
 }
@@ -0,0 +1,120 @@
+package org.deeplearning4j.ui.storage;
+
+import org.deeplearning4j.ui.stats.api.StatsInitializationReport;
+import org.deeplearning4j.ui.stats.api.StatsReport;
+import org.deeplearning4j.ui.stats.impl.SbeStatsInitializationReport;
+import org.deeplearning4j.ui.stats.impl.SbeStatsReport;
+import org.deeplearning4j.ui.storage.file.FileStatsStorage;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestFileStatsStorage {
+
+    @Test
+    public void testFileStatsStorage() throws IOException {
+        File dir = Files.createTempDirectory("TestFileStatsStorage").toFile();
+        dir.deleteOnExit();
+
+        StatsStorage ss = new FileStatsStorage.Builder(dir)
+                .indexBlockSize(4)
+                .build();
+
+        assertEquals(0, ss.listSessionIDs().size());
+        assertNull(ss.getLatestUpdate("sid0", "tid0", "wid0"));
+
+        ss.putStaticInfo(getInitReport(0));
+        assertEquals(Collections.singletonList("sid0"), ss.listSessionIDs());
+        assertEquals(getInitReport(0), ss.getStaticInfo("sid0", "tid0", "wid0"));
+
+        StorageMetaData meta = new StorageMetaData(0, "sid0", "tid0", "wid0", SbeStatsInitializationReport.class, SbeStatsReport.class);
+        ss.putStorageMetaData(meta);
+        assertEquals(meta, ss.getStorageMetaData("sid0", "tid0"));
+
+        //Updates should be visible immediately, before being written
+        for (int i = 0; i < 100; i++) {
+            ss.putUpdate(getReport(0, 0, 0, 1000 + i));
+        }
+        ss.putUpdate(getReport(0, 0, 1, 1000));
+        assertEquals(101, ss.getNumUpdateRecordsFor("sid0"));
+        assertEquals(getReport(0, 0, 0, 1099), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+
+        ((FileStatsStorage) ss).flush();
+        assertEquals(100, ss.getNumUpdateRecordsFor("sid0", "tid0", "wid0"));
+        assertEquals(getReport(0, 0, 0, 1099), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+        assertEquals(getReport(0, 0, 0, 1042), ss.getUpdate("sid0", "tid0", "wid0", 1042));
+        assertNull(ss.getUpdate("sid0", "tid0", "wid0", 5000));
+        assertEquals(2, ss.getLatestUpdateAllWorkers("sid0", "tid0").size());
+
+        List<Persistable> after = ss.getAllUpdatesAfter("sid0", "tid0", "wid0", 1089);
+        assertEquals(10, after.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(getReport(0, 0, 0, 1090 + i), after.get(i));
+        }
+
+        //Close and re-open
+        ss.close();
+        assertTrue(ss.isClosed());
+
+        ss = new FileStatsStorage.Builder(dir)
+                .indexBlockSize(4)
+                .build();
+        assertEquals(Collections.singletonList("sid0"), ss.listSessionIDs());
+        assertEquals(getInitReport(0), ss.getStaticInfo("sid0", "tid0", "wid0"));
+        assertEquals(meta, ss.getStorageMetaData("sid0", "tid0"));
+        assertEquals(101, ss.getNumUpdateRecordsFor("sid0"));
+        assertEquals(getReport(0, 0, 0, 1099), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+        assertEquals(getReport(0, 0, 0, 1042), ss.getUpdate("sid0", "tid0", "wid0", 1042));
+        assertEquals(getReport(0, 0, 1, 1000), ss.getLatestUpdate("sid0", "tid0", "wid1"));
+        assertEquals(10, ss.getAllUpdatesAfter("sid0", "tid0", "wid0", 1089).size());
+        ss.close();
+    }
+
+    @Test
+    public void testRetention() throws IOException {
+        File dir = Files.createTempDirectory("TestFileStatsStorage").toFile();
+        dir.deleteOnExit();
+
+        //Keep last 100ms at full resolution, then one update per 50ms, and nothing older than 300ms
+        FileStatsStorage ss = new FileStatsStorage.Builder(dir)
+                .retention(100, 50, 300)
+                .build();
+
+        for (int i = 0; i < 50; i++) {
+            ss.putUpdate(getReport(0, 0, 0, 10 * i));
+        }
+        ss.flush();
+        ss.compact();
+
+        List<Persistable> all = ss.getAllUpdatesAfter("sid0", "tid0", "wid0", -1);
+        assertEquals(16, all.size());
+        assertEquals(getReport(0, 0, 0, 190), all.get(0));
+        assertEquals(getReport(0, 0, 0, 490), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+        assertNull(ss.getUpdate("sid0", "tid0", "wid0", 210));
+        assertNotNull(ss.getUpdate("sid0", "tid0", "wid0", 400));
+        ss.close();
+    }
+
+    private static StatsInitializationReport getInitReport(int idNumber) {
+        StatsInitializationReport rep = new SbeStatsInitializationReport();
+        rep.reportModelInfo("classname", "jsonconfig", new String[]{"p0", "p1"}, 1, 10);
+        rep.reportIDs("sid" + idNumber, "tid" + idNumber, "wid" + idNumber, 12345);
+        rep.reportHardwareInfo(0, 2, 1000, 2000, new long[]{3000, 4000}, new String[]{"dev0", "dev1"}, "hardwareuid");
+        rep.reportSoftwareInfo("arch", "osName", "jvmName", "jvmVersion", "1.8", "backend", "dtype", "hostname", "jvmuid");
+        return rep;
+    }
+
+    private static StatsReport getReport(int sid, int tid, int wid, long time) {
+        StatsReport rep = new SbeStatsReport(new String[]{"p0", "p1"});
+        rep.reportIDs("sid" + sid, "tid" + tid, "wid" + wid, time);
+        rep.reportScore(100.0);
+        rep.reportPerformance(1000, 1001, 1002, 1003.0, 1004.0);
+        return rep;
+    }
+}
@@ -0,0 +1,85 @@
+package org.deeplearning4j.ui.storage;
+
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.ui.stats.StatsListener;
+import org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage;
+import org.deeplearning4j.ui.storage.remote.RemoteStatsStorageReceiver;
+import org.deeplearning4j.ui.storage.remote.RemoteStatsStorageRouter;
+import org.junit.Test;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestRemoteStatsStorage {
+
+    @Test
+    public void testRemoteRouterAndReceiver() throws Exception {
+        DataSet ds = new IrisDataSetIterator(150,150).next();
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .iterations(1).optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .list()
+                .layer(0, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                        .nIn(4).nOut(3).build())
+                .pretrain(false).backprop(true)
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        StatsStorage ss = new MapDBStatsStorage();  //in-memory
+        try (RemoteStatsStorageReceiver receiver = new RemoteStatsStorageReceiver(ss, 0);
+             RemoteStatsStorageRouter router = new RemoteStatsStorageRouter.Builder(receiver.getLocalAddress())
+                     .maxBatchSize(4).build()) {
+
+            net.setListeners(new StatsListener(router));
+            for (int i = 0; i < 10; i++) {
+                net.fit(ds);
+            }
+
+            assertTrue(router.flush(30, TimeUnit.SECONDS));
+            assertEquals(0, router.getNumDropped());
+            assertEquals(12, router.getNumSent());     //Metadata + static info + 10 updates
+            assertTrue(router.getNumFrames() >= 3);
+            assertEquals(12, receiver.getNumReceived());
+        }
+
+        assertEquals(1, ss.listSessionIDs().size());
+        String sessionID = ss.listSessionIDs().get(0);
+        String typeID = ss.listTypeIDsForSession(sessionID).get(0);
+        String workerID = ss.listWorkerIDsForSession(sessionID).get(0);
+
+        assertNotNull(ss.getStaticInfo(sessionID, typeID, workerID));
+        assertNotNull(ss.getStorageMetaData(sessionID, typeID));
+        List<Persistable> updates = ss.getAllUpdatesAfter(sessionID, typeID, workerID, 0);
+        assertEquals(10, updates.size());
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        //Nothing listening on this address: sends fail, and the queue fills up
+        for (RemoteStatsStorageRouter.OverflowPolicy policy : new RemoteStatsStorageRouter.OverflowPolicy[]{
+                        RemoteStatsStorageRouter.OverflowPolicy.DropNewest, RemoteStatsStorageRouter.OverflowPolicy.DropOldest,
+                        RemoteStatsStorageRouter.OverflowPolicy.Coalesce}) {
+            RemoteStatsStorageRouter router = new RemoteStatsStorageRouter.Builder("http://localhost:1/remoteReceive")
+                    .maxQueueSize(8).lingerMs(60000).overflowPolicy(policy).closeTimeoutMs(1000).build();
+
+            for (int i = 0; i < 20; i++) {
+                router.putUpdate(new StorageMetaData(i, "sid", "tid", "wid", "initClass", "updateClass"));
+            }
+
+            assertEquals(policy.toString(), 8, router.getQueueSize());
+            assertEquals(policy.toString(), 12, router.getNumDropped());
+            router.close();
+        }
+    }
+}
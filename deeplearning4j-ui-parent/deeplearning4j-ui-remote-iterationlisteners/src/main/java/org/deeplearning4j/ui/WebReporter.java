@@ -10,16 +10,23 @@ import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This is simple wrapper for sending state updates generated by IterationListeners.
  * Basic idea is simple: network processing should be handled in background, without slowing caller thread
  *
+ * The queue is bounded: if the UI can't keep up, the oldest queued reports are discarded, rather than using more and
+ * more memory. For stats from {@link org.deeplearning4j.ui.stats.StatsListener}, use
+ * {@link org.deeplearning4j.ui.storage.remote.RemoteStatsStorageRouter} instead, which batches and compresses reports.
+ *
  * @author raver119@gmail.com
  */
 public class WebReporter {
     private static final WebReporter INSTANCE = new WebReporter();
-    protected LinkedBlockingQueue<Pair<WebTarget, Entity>> queue = new LinkedBlockingQueue<>();
+    public static final int MAX_QUEUE_SIZE = 100;
+    protected LinkedBlockingQueue<Pair<WebTarget, Entity>> queue = new LinkedBlockingQueue<>(MAX_QUEUE_SIZE);
+    private final AtomicLong numDropped = new AtomicLong();
 
     private static final Logger log = LoggerFactory.getLogger(WebReporter.class);
 
@@ -39,7 +46,20 @@ public class WebReporter {
      * @param entity
      */
     public void queueReport(WebTarget target, Entity entity) {
-        queue.add(Pair.makePair(target, entity));
+        Pair<WebTarget, Entity> pair = Pair.makePair(target, entity);
+        while (!queue.offer(pair)) {
+            //Queue is full: the UI isn't keeping up. Drop the oldest report; newer ones supersede it anyway
+            if (queue.poll() != null && numDropped.getAndIncrement() % MAX_QUEUE_SIZE == 0) {
+                log.warn("UI is not keeping up with reports: {} reports dropped so far", numDropped.get());
+            }
+        }
+    }
+
+    /**
+     * @return Number of reports discarded so far, due to the queue being full
+     */
+    public long getNumDropped() {
+        return numDropped.get();
     }
 
     /**
@@ -67,14 +87,11 @@ public class WebReporter {
                 try {
                     Pair<WebTarget, Entity> pair = queue.take();
                     postReport(pair.getFirst(), pair.getSecond());
+                } catch (InterruptedException e) {
+                    return;
                 } catch (Exception e) {
                     log.error("Exception caught but ignored: " + e.getMessage());
                     e.printStackTrace();
-                } finally {
-                    try {
-                        Thread.sleep(100);
-                    } catch (Exception e) {
-                    }
                 }
             }
         }